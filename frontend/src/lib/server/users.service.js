@@ -0,0 +1,35 @@
+import axios from "axios";
+import 'dotenv/config';
+
+const API_BASE_URL = process.env.API_BASE_URL;
+
+// Höchstens so viele Nutzer pro Request (wie UserController.MAX_PROFILES)
+const MAX_PROFILES = 100;
+
+// Öffentliche Profile (Name, Bewertung, Bild) der gegebenen Nutzer statt der ganzen Nutzerliste
+async function loadProfiles(jwt_token, emails) {
+  const unique = [...new Set(emails.filter(Boolean))];
+  const chunks = [];
+  for (let i = 0; i < unique.length; i += MAX_PROFILES) {
+    chunks.push(unique.slice(i, i + MAX_PROFILES));
+  }
+
+  const responses = await Promise.all(
+    chunks.map((chunk) => {
+      const params = new URLSearchParams();
+      chunk.forEach((email) => params.append("emails", email));
+      return axios({
+        method: "get",
+        url: `${API_BASE_URL}/api/users/profiles?${params}`,
+        headers: { Authorization: "Bearer " + jwt_token },
+      });
+    })
+  );
+  return responses.flatMap((response) => response.data);
+}
+
+const users = {
+  loadProfiles,
+};
+
+export default users;
@@ -0,0 +1,41 @@
+const API_BASE_URL = process.env.API_BASE_URL;
+
+// Anfrage-Header, die für Range und Caching ans Backend gehen
+const REQUEST_HEADERS = ['range', 'if-none-match', 'if-modified-since'];
+
+const RESPONSE_HEADERS = [
+    'content-type', 'content-length', 'content-range', 'accept-ranges',
+    'etag', 'last-modified', 'cache-control'
+];
+
+// Proxy für Bilder: der Browser hat kein JWT, der Server schon. Der Body wird gestreamt, nicht gepuffert
+export async function GET({ params, request, locals }) {
+    const jwt_token = locals.jwt_token;
+
+    if (!jwt_token) {
+        return new Response(null, { status: 401 });
+    }
+
+    const headers = { Authorization: "Bearer " + jwt_token };
+    for (const name of REQUEST_HEADERS) {
+        const value = request.headers.get(name);
+        if (value) {
+            headers[name] = value;
+        }
+    }
+
+    try {
+        const response = await fetch(`${API_BASE_URL}/api/images/${encodeURIComponent(params.id)}`, { headers });
+        const responseHeaders = new Headers();
+        for (const name of RESPONSE_HEADERS) {
+            const value = response.headers.get(name);
+            if (value) {
+                responseHeaders.set(name, value);
+            }
+        }
+        return new Response(response.body, { status: response.status, headers: responseHeaders });
+    } catch (err) {
+        console.log('Error loading image:', err.message);
+        return new Response(null, { status: 502 });
+    }
+}
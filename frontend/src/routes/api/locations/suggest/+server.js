@@ -0,0 +1,27 @@
+import { json } from '@sveltejs/kit';
+import axios from 'axios';
+
+const API_BASE_URL = process.env.API_BASE_URL;
+
+// Proxy für das Autocomplete: der Browser hat kein JWT, der Server schon
+export async function GET({ url, locals }) {
+    const jwt_token = locals.jwt_token;
+    const q = url.searchParams.get('q') || '';
+
+    if (!jwt_token || q.length < 2) {
+        return json([]);
+    }
+
+    try {
+        const response = await axios({
+            method: "get",
+            url: `${API_BASE_URL}/api/locations/suggest`,
+            params: { q, limit: 5 },
+            headers: { Authorization: "Bearer " + jwt_token },
+        });
+        return json(response.data);
+    } catch (err) {
+        console.log('Error loading location suggestions:', err.message);
+        return json([]);
+    }
+}
@@ -1,5 +1,6 @@
 import axios from "axios";
 import 'dotenv/config';
+import userProfiles from '$lib/server/users.service.js';
 
 const API_BASE_URL = process.env.API_BASE_URL;
 
@@ -46,12 +47,9 @@ export async function load({ locals }) {
 
     // Load users (to get driver names)
     try {
-        const usersResponse = await axios({
-            method: "get",
-            url: `${API_BASE_URL}/api/users`,
-            headers: { Authorization: "Bearer " + jwt_token }
-        });
-        users = usersResponse.data;
+        const bookedRideIds = new Set(bookings.map(b => b.rideId));
+        const driverIds = rides.filter(r => bookedRideIds.has(r.id)).map(r => r.driverId);
+        users = await userProfiles.loadProfiles(jwt_token, driverIds);
     } catch (err) {
         console.log('Error loading users:', err);
     }
@@ -1,6 +1,7 @@
 import axios from "axios";
 import { error } from '@sveltejs/kit';
 import 'dotenv/config';
+import userProfiles from '$lib/server/users.service.js';
 
 const API_BASE_URL = process.env.API_BASE_URL;
 
@@ -18,16 +19,15 @@ export async function load({ locals }) {
     let users = [];
 
     try {
-        const [ridesRes, bookingsRes, usersRes] = await Promise.all([
+        const [ridesRes, bookingsRes] = await Promise.all([
             axios({ method: "get", url: `${API_BASE_URL}/api/rides?pageSize=100`, headers: { Authorization: "Bearer " + jwt_token } }),
-            axios({ method: "get", url: `${API_BASE_URL}/api/bookings`, headers: { Authorization: "Bearer " + jwt_token } }),
-            axios({ method: "get", url: `${API_BASE_URL}/api/users`, headers: { Authorization: "Bearer " + jwt_token } })
+            axios({ method: "get", url: `${API_BASE_URL}/api/bookings`, headers: { Authorization: "Bearer " + jwt_token } })
         ]);
 
         rides = (ridesRes.data.content || []).filter(r => r.driverId === userEmail);
         const myRideIds = rides.map(r => r.id);
         bookings = bookingsRes.data.filter(b => myRideIds.includes(b.rideId));
-        users = usersRes.data;
+        users = await userProfiles.loadProfiles(jwt_token, bookings.map(b => b.riderId));
     } catch (err) {
         console.log('Error loading data:', err);
     }
@@ -72,5 +72,35 @@ export const actions = {
         } catch (err) {
             return { success: false, error: 'Could not reject booking' };
         }
+    },
+
+    approveBookings: async ({ request, locals }) => bulkDecision(request, locals, 'approve'),
+
+    rejectBookings: async ({ request, locals }) => bulkDecision(request, locals, 'reject')
+};
+
+// Mehrere Anfragen mit einem Request entscheiden
+async function bulkDecision(request, locals, action) {
+    const jwt_token = locals.jwt_token;
+    if (!jwt_token) throw error(401, 'Authentication required');
+
+    const data = await request.formData();
+    const bookingIds = data.getAll('bookingIds');
+    if (bookingIds.length === 0) {
+        return { success: false, error: 'Please select at least one request' };
     }
-};
\ No newline at end of file
+
+    const params = new URLSearchParams();
+    bookingIds.forEach((id) => params.append('bookingIds', id));
+
+    try {
+        const response = await axios({
+            method: "put",
+            url: `${API_BASE_URL}/api/service/me/${action}bookings?${params}`,
+            headers: { Authorization: "Bearer " + jwt_token },
+        });
+        return { success: true, action, count: response.data.length, requested: bookingIds.length };
+    } catch (err) {
+        return { success: false, error: `Could not ${action} bookings` };
+    }
+}
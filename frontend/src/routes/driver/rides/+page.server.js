@@ -53,7 +53,12 @@ export const actions = {
             pricePerSeat: parseFloat(data.get('pricePerSeat')),
             seatsTotal: parseInt(data.get('seatsTotal')),
             description: data.get('description') || null,
-            routeRadiusKm: parseFloat(data.get('routeRadiusKm')) || 5.0
+            routeRadiusKm: parseFloat(data.get('routeRadiusKm')) || 5.0,
+            instantBook: data.get('instantBook') === 'on',
+            startLat: parseFloat(data.get('startLocationLat')) || null,
+            startLng: parseFloat(data.get('startLocationLng')) || null,
+            endLat: parseFloat(data.get('endLocationLat')) || null,
+            endLng: parseFloat(data.get('endLocationLng')) || null
         };
 
         try {
@@ -1,6 +1,7 @@
 import axios from "axios";
 import { error } from '@sveltejs/kit';
 import 'dotenv/config';
+import userProfiles from '$lib/server/users.service.js';
 
 const API_BASE_URL = process.env.API_BASE_URL;
 
@@ -13,8 +14,9 @@ export async function load({ url, locals }) {
             rides: [],
             users: [],
             myBookings: [],
-            nrOfPages: 0,
-            currentPage: 1,
+            nextCursor: null,
+            totalElements: null,
+            cursor: '',
             currentUserEmail: '',
             dbUser: null,
             user: null,
@@ -29,10 +31,12 @@ export async function load({ url, locals }) {
     let rides = [];
     let users = [];
     let myBookings = [];
-    let nrOfPages = 0;
+    let nextCursor = null;
+    let totalElements = null;
     let dbUser = null;
     const userEmail = user_info?.email || '';
-    const currentPage = parseInt(url.searchParams.get('pageNumber') || '1');
+    // Opaque continuation token from the previous page (keyset pagination)
+    const cursor = url.searchParams.get('cursor') || '';
     const pageSize = parseInt(url.searchParams.get('pageSize') || '10');
     
     // Filter parameters
@@ -46,7 +50,11 @@ export async function load({ url, locals }) {
     try {
         const isAdmin = user_info?.user_roles?.includes('admin');
         
-        let query = `?pageSize=${pageSize}&pageNumber=${currentPage}`;
+        let query = `?pageSize=${pageSize}`;
+        // The total is only needed on the first page
+        if (cursor) {
+            query += `&cursor=${encodeURIComponent(cursor)}&withTotal=false`;
+        }
         
         // Admin: use selected filter or show all. User: always OPEN only
         if (isAdmin) {
@@ -60,48 +68,33 @@ export async function load({ url, locals }) {
         if (filterMaxPrice) {
             query += `&maxPrice=${filterMaxPrice}`;
         }
-        
-        const ridesResponse = await axios({
-            method: "get",
-            url: `${API_BASE_URL}/api/rides` + query,
-            headers: { Authorization: "Bearer " + jwt_token }
-        });
-        
-        let allRides = ridesResponse.data.content || [];
-        
-        // Client-side filtering for from/to/date
         if (filterFrom) {
-            allRides = allRides.filter(r => 
-                r.startLocation.toLowerCase().includes(filterFrom.toLowerCase())
-            );
+            query += `&from=${encodeURIComponent(filterFrom)}`;
         }
         if (filterTo) {
-            allRides = allRides.filter(r => 
-                r.endLocation.toLowerCase().includes(filterTo.toLowerCase())
-            );
+            query += `&to=${encodeURIComponent(filterTo)}`;
         }
         if (filterDate) {
-            allRides = allRides.filter(r => {
-                if (!r.departureTime) return false;
-                const rideDate = r.departureTime.split('T')[0];
-                return rideDate === filterDate;
-            });
+            query += `&date=${filterDate}`;
         }
         
-        rides = allRides;
-        nrOfPages = ridesResponse.data.totalPages || 0;
+        // Filtering by from/to/date happens on the server
+        const ridesResponse = await axios({
+            method: "get",
+            url: `${API_BASE_URL}/api/rides/search` + query,
+            headers: { Authorization: "Bearer " + jwt_token }
+        });
+        
+        rides = ridesResponse.data.content || [];
+        nextCursor = ridesResponse.data.nextCursor || null;
+        totalElements = ridesResponse.data.totalElements ?? null;
     } catch (err) {
         console.log('Error loading rides:', err);
     }
 
-    // Load users
+    // Load driver profiles
     try {
-        const usersResponse = await axios({
-            method: "get",
-            url: `${API_BASE_URL}/api/users`,
-            headers: { Authorization: "Bearer " + jwt_token }
-        });
-        users = usersResponse.data;
+        users = await userProfiles.loadProfiles(jwt_token, rides.map(r => r.driverId));
     } catch (err) {
         console.log('Error loading users:', err);
     }
@@ -134,8 +127,9 @@ export async function load({ url, locals }) {
         rides,
         users,
         myBookings,
-        nrOfPages,
-        currentPage,
+        nextCursor,
+        totalElements,
+        cursor,
         currentUserEmail: userEmail,
         dbUser,
         user: user_info,
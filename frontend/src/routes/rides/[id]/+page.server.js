@@ -1,6 +1,7 @@
 import axios from "axios";
 import { error } from '@sveltejs/kit';
 import 'dotenv/config';
+import userProfiles from '$lib/server/users.service.js';
 
 const API_BASE_URL = process.env.API_BASE_URL;
 
@@ -35,25 +36,12 @@ export async function load({ params, locals }) {
         throw error(404, 'Ride not found');
     }
 
-    // Load all users (to get driver info)
-    try {
-        const usersResponse = await axios({
-            method: "get",
-            url: `${API_BASE_URL}/api/users`,
-            headers: { Authorization: "Bearer " + jwt_token }
-        });
-        users = usersResponse.data;
-        driver = users.find(u => u.email === ride.driverId);
-    } catch (err) {
-        console.log('Error loading users:', err);
-    }
-
     // Load reviews for this driver
-    if (driver) {
+    if (ride.driverId) {
         try {
             const driverReviewsResponse = await axios({
                 method: "get",
-                url: `${API_BASE_URL}/api/reviews/user/${driver.email}`,
+                url: `${API_BASE_URL}/api/reviews/user/${ride.driverId}`,
                 headers: { Authorization: "Bearer " + jwt_token }
             });
             driverReviews = driverReviewsResponse.data;
@@ -88,43 +76,59 @@ export async function load({ params, locals }) {
 
     // Load all bookings for this ride
     const userEmail = user_info?.email || '';
+    let allBookings = [];
     try {
         const bookingsResponse = await axios({
             method: "get",
             url: `${API_BASE_URL}/api/bookings`,
             headers: { Authorization: "Bearer " + jwt_token }
         });
-        const allBookings = bookingsResponse.data;
-        
-        // Find my booking
-        myBooking = allBookings.find(b => b.rideId === rideId && b.riderId === userEmail);
-        
-        // Get approved bookings with pickup locations (for map)
-        const isDriver = ride.driverId === userEmail;
-        const isAdmin = user_info?.user_roles?.includes('admin');
-        
-        if (isDriver || isAdmin) {
-            approvedBookings = allBookings
-                .filter(b => b.rideId === rideId && b.status === 'APPROVED' && b.pickupLocation)
-                .map(b => {
-                    const rider = users.find(u => u.email === b.riderId);
-                    return {
-                        location: b.pickupLocation,
-                        riderName: rider ? `${rider.firstName || ''} ${rider.lastName || ''}`.trim() : 'Rider',
-                        riderId: b.riderId
-                    };
-                });
-        } else if (myBooking && myBooking.status === 'APPROVED' && myBooking.pickupLocation) {
-            approvedBookings = [{
-                location: myBooking.pickupLocation,
-                riderName: 'Your Pickup',
-                riderId: userEmail
-            }];
-        }
+        allBookings = bookingsResponse.data;
     } catch (err) {
         console.log('Error loading bookings:', err);
     }
 
+    // Load profiles of the driver, reviewers and riders in one request
+    try {
+        users = await userProfiles.loadProfiles(jwt_token, [
+            ride.driverId,
+            ...reviews.map(r => r.fromUserId),
+            ...driverReviews.map(r => r.fromUserId),
+            ...allBookings.filter(b => b.rideId === rideId).map(b => b.riderId)
+        ]);
+        driver = users.find(u => u.email === ride.driverId) || null;
+    } catch (err) {
+        console.log('Error loading users:', err);
+    }
+
+    // Find my booking
+    myBooking = allBookings.find(b => b.rideId === rideId && b.riderId === userEmail);
+    
+    // Get approved bookings with pickup locations (for map)
+    const isDriver = ride.driverId === userEmail;
+    const isAdmin = user_info?.user_roles?.includes('admin');
+    
+    if (isDriver || isAdmin) {
+        approvedBookings = allBookings
+            .filter(b => b.rideId === rideId && b.status === 'APPROVED' && b.pickupLocation)
+            .map(b => {
+                const rider = users.find(u => u.email === b.riderId);
+                return {
+                    location: b.pickupLocation,
+                    point: b.pickupPoint,
+                    riderName: rider ? `${rider.firstName || ''} ${rider.lastName || ''}`.trim() : 'Rider',
+                    riderId: b.riderId
+                };
+            });
+    } else if (myBooking && myBooking.status === 'APPROVED' && myBooking.pickupLocation) {
+        approvedBookings = [{
+            location: myBooking.pickupLocation,
+            point: myBooking.pickupPoint,
+            riderName: 'Your Pickup',
+            riderId: userEmail
+        }];
+    }
+
     return {
         ride,
         driver,
@@ -139,6 +143,15 @@ export async function load({ params, locals }) {
     };
 }
 
+// Idempotency-Key mitsenden: ein wiederholter Submit liefert die erste Antwort
+function idempotencyHeaders(jwt_token, idempotencyKey) {
+    const headers = { Authorization: "Bearer " + jwt_token };
+    if (idempotencyKey) {
+        headers['Idempotency-Key'] = idempotencyKey;
+    }
+    return headers;
+}
+
 export const actions = {
     bookRide: async ({ request, params, locals }) => {
         const jwt_token = locals.jwt_token;
@@ -152,6 +165,7 @@ export const actions = {
         const pickupLocation = data.get('pickupLocation') || '';
         const message = data.get('message') || '';
         const promoCode = data.get('promoCode') || '';
+        const idempotencyKey = data.get('idempotencyKey');
 
         if (!pickupLocation) {
             return { success: false, error: 'Please select a pickup location' };
@@ -172,7 +186,7 @@ export const actions = {
             await axios({
                 method: "put",
                 url: url.toString(),
-                headers: { Authorization: "Bearer " + jwt_token },
+                headers: idempotencyHeaders(jwt_token, idempotencyKey),
             });
             return { success: true, action: 'booked' };
         } catch (err) {
@@ -181,6 +195,29 @@ export const actions = {
         }
     },
 
+    joinWaitlist: async ({ request, params, locals }) => {
+        const jwt_token = locals.jwt_token;
+        const rideId = params.id;
+
+        if (!jwt_token) {
+            throw error(401, 'Authentication required');
+        }
+
+        const data = await request.formData();
+
+        try {
+            await axios({
+                method: "put",
+                url: `${API_BASE_URL}/api/service/me/joinwaitlist?rideId=${rideId}&seats=1`,
+                headers: idempotencyHeaders(jwt_token, data.get('idempotencyKey')),
+            });
+            return { success: true, action: 'waitlisted' };
+        } catch (err) {
+            console.log('Error joining waitlist:', err);
+            return { success: false, error: 'Could not join the waitlist' };
+        }
+    },
+
     submitReview: async ({ request, params, locals }) => {
         const jwt_token = locals.jwt_token;
         const rideId = params.id;
@@ -297,6 +334,39 @@ export const actions = {
         }
     },
 
+    saveRoute: async ({ request, params, locals }) => {
+        const jwt_token = locals.jwt_token;
+        const rideId = params.id;
+
+        if (!jwt_token) {
+            throw error(401, 'Authentication required');
+        }
+
+        const data = await request.formData();
+        let coordinates;
+        try {
+            coordinates = JSON.parse(data.get('coordinates'));
+        } catch (err) {
+            return { success: false, error: 'Invalid route' };
+        }
+
+        try {
+            await axios({
+                method: "put",
+                url: `${API_BASE_URL}/api/rides/${rideId}/route`,
+                headers: {
+                    "Content-Type": "application/json",
+                    Authorization: "Bearer " + jwt_token,
+                },
+                data: { coordinates },
+            });
+            return { success: true, action: 'routeSaved' };
+        } catch (err) {
+            console.log('Error saving route:', err);
+            return { success: false, error: 'Could not save route' };
+        }
+    },
+
     updateReview: async ({ request, locals }) => {
         const jwt_token = locals.jwt_token;
 
@@ -2,12 +2,25 @@ package ch.zhaw.shareway;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import ch.zhaw.shareway.service.CommitRetryingTransactionManager;
+
 @SpringBootApplication
 @EnableScheduling
+@EnableAsync
 public class SharewayApplication {
 
+	// Mehrdokument-Transaktionen (Instant-Book), braucht ein Replica Set wie Atlas
+	@Bean
+	MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+		return new CommitRetryingTransactionManager(databaseFactory);
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(SharewayApplication.class, args);
 	}
@@ -5,6 +5,7 @@ import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -13,7 +14,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import ch.zhaw.shareway.model.FlaggedContent;
 import ch.zhaw.shareway.repository.FlaggedContentRepository;
-import ch.zhaw.shareway.service.UserService;
+import ch.zhaw.shareway.security.AuthenticatedUser;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -22,20 +23,18 @@ public class AdminController {
     @Autowired
     private FlaggedContentRepository flaggedContentRepository;
 
-    @Autowired
-    private UserService userService;
-
     @GetMapping("/flagged")
-    public ResponseEntity<List<FlaggedContent>> getFlaggedContent() {
-        if (!userService.userHasRole("admin")) {
+    public ResponseEntity<List<FlaggedContent>> getFlaggedContent(@AuthenticationPrincipal AuthenticatedUser me) {
+        if (!me.isAdmin()) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
         return ResponseEntity.ok(flaggedContentRepository.findAll());
     }
 
     @DeleteMapping("/flagged/{id}")
-    public ResponseEntity<String> deleteFlaggedEntry(@PathVariable String id) {
-        if (!userService.userHasRole("admin")) {
+    public ResponseEntity<String> deleteFlaggedEntry(@PathVariable String id,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        if (!me.isAdmin()) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
         flaggedContentRepository.deleteById(id);
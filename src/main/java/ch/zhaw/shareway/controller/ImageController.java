@@ -0,0 +1,66 @@
+package ch.zhaw.shareway.controller;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import ch.zhaw.shareway.security.AuthenticatedUser;
+import ch.zhaw.shareway.service.ImageService;
+import ch.zhaw.shareway.service.ImageService.Image;
+
+@RestController
+@RequestMapping("/api")
+public class ImageController {
+
+    // Bilder ändern sich nie: ein neues Bild bekommt eine neue Id
+    static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable();
+
+    static final String CONTENT_SECURITY_POLICY = "default-src 'none'; sandbox";
+
+    @Autowired
+    ImageService imageService;
+
+    /**
+     * Stream an image from GridFS. Supports Range requests and answers
+     * If-None-Match / If-Modified-Since with 304. Profile images are visible
+     * to every user, license images only to their owner and admins.
+     */
+    @GetMapping("/images/{id}")
+    public ResponseEntity<Resource> getImage(@PathVariable String id,
+            @AuthenticationPrincipal AuthenticatedUser me) throws IOException {
+        Optional<Image> optImage = imageService.find(id);
+        if (optImage.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        Image image = optImage.get();
+        if (!ImageService.PROFILE.equals(image.getKind())
+                && !me.isAdmin() && !me.getEmail().equals(image.getOwner())) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+
+        // Range und 304 übernimmt Spring für Resource-Bodies mit ETag / Last-Modified
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(image.getResource().getContentType()))
+                .contentLength(image.getResource().contentLength())
+                .eTag(image.getId())
+                .lastModified(image.getFile().getUploadDate().toInstant())
+                .cacheControl(CACHE_CONTROL)
+                // Migrierte Bilder können SVG o.ä. sein: nie als Dokument mit Skripten ausführen
+                .header("Content-Security-Policy", CONTENT_SECURITY_POLICY)
+                .header("X-Content-Type-Options", "nosniff")
+                .body(image.getResource());
+    }
+}
@@ -0,0 +1,56 @@
+package ch.zhaw.shareway.controller;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import ch.zhaw.shareway.security.LocalJwtIssuer;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Issues tokens for the offline profile "local-jwt"; does not exist otherwise
+ */
+@RestController
+@Profile("local-jwt")
+public class LocalTokenController {
+
+    static final long MAX_VALIDITY_SECONDS = 3600;
+
+    @Autowired
+    private LocalJwtIssuer localJwtIssuer;
+
+    /**
+     * Sign a token for any user; only answers requests from this machine
+     */
+    @GetMapping("/local/token")
+    public ResponseEntity<String> issueToken(@RequestParam String email,
+            @RequestParam(defaultValue = "user") List<String> roles,
+            @RequestParam(defaultValue = "3600") long validitySeconds,
+            HttpServletRequest request) {
+        if (!isLoopback(request.getRemoteAddr())) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        if (validitySeconds < 1 || validitySeconds > MAX_VALIDITY_SECONDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(localJwtIssuer.issue(email, roles, Duration.ofSeconds(validitySeconds)));
+    }
+
+    private boolean isLoopback(String remoteAddr) {
+        try {
+            // remoteAddr ist immer eine IP, es wird nichts aufgelöst
+            return InetAddress.getByName(remoteAddr).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
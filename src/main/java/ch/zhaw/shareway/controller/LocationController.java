@@ -0,0 +1,47 @@
+package ch.zhaw.shareway.controller;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import ch.zhaw.shareway.model.GeocodedLocation;
+import ch.zhaw.shareway.model.LocationSuggestion;
+import ch.zhaw.shareway.service.GeocodingService;
+import ch.zhaw.shareway.service.LocationSuggestIndex;
+
+@RestController
+@RequestMapping("/api")
+public class LocationController {
+
+    @Autowired
+    GeocodingService geocodingService;
+
+    @Autowired
+    LocationSuggestIndex locationSuggestIndex;
+
+    // Max. Anzahl Vorschläge pro Anfrage
+    private static final int MAX_SUGGESTIONS = 20;
+
+    @GetMapping("/locations/geocode")
+    public ResponseEntity<GeocodedLocation> geocode(@RequestParam String q) {
+        Optional<GeocodedLocation> location = geocodingService.geocode(q);
+        if (location.isPresent()) {
+            return ResponseEntity.ok(location.get());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/locations/suggest")
+    public ResponseEntity<List<LocationSuggestion>> suggest(
+            @RequestParam String q,
+            @RequestParam(required = false, defaultValue = "8") Integer limit) {
+        List<LocationSuggestion> suggestions = locationSuggestIndex.suggest(q, Math.min(limit, MAX_SUGGESTIONS));
+        return ResponseEntity.ok(suggestions);
+    }
+}
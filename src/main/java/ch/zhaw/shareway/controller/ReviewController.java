@@ -6,6 +6,7 @@ import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -26,8 +27,9 @@ import ch.zhaw.shareway.repository.BookingRepository;
 import ch.zhaw.shareway.repository.ReviewRepository;
 import ch.zhaw.shareway.repository.RideRepository;
 import ch.zhaw.shareway.repository.UserRepository;
+import ch.zhaw.shareway.security.AuthenticatedUser;
 import ch.zhaw.shareway.service.ContentModerationService;
-import ch.zhaw.shareway.service.UserService;
+import ch.zhaw.shareway.service.UserCache;
 
 @RestController
 @RequestMapping("/api")
@@ -46,15 +48,16 @@ public class ReviewController {
     UserRepository userRepository;
 
     @Autowired
-    UserService userService;
+    UserCache userCache;
 
     @Autowired
     ContentModerationService contentModerationService;
 
     // POST /api/reviews - Neue Bewertung erstellen
     @PostMapping("/reviews")
-    public ResponseEntity<Review> createReview(@RequestBody ReviewCreateDTO dto) {
-        String userEmail = userService.getEmail();
+    public ResponseEntity<Review> createReview(@RequestBody ReviewCreateDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
 
         // Validierung: Rating zwischen 1-5
         if (dto.getRating() < 1 || dto.getRating() > 5) {
@@ -122,8 +125,9 @@ public class ReviewController {
 
     // PUT /api/reviews/{id} - Review bearbeiten (nur Owner)
     @PutMapping("/reviews/{id}")
-    public ResponseEntity<Review> updateReview(@PathVariable String id, @RequestBody ReviewCreateDTO dto) {
-        String userEmail = userService.getEmail();
+    public ResponseEntity<Review> updateReview(@PathVariable String id, @RequestBody ReviewCreateDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
 
         Optional<Review> optReview = reviewRepository.findById(id);
         if (optReview.isEmpty()) {
@@ -133,7 +137,7 @@ public class ReviewController {
         Review review = optReview.get();
 
         // Nur Owner darf bearbeiten
-        boolean isAdmin = userService.userHasRole("admin");
+        boolean isAdmin = me.isAdmin();
         if (!review.getFromUserId().equals(userEmail) && !isAdmin) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
@@ -160,9 +164,9 @@ public class ReviewController {
 
     // DELETE /api/reviews/{id} - Review löschen (Owner oder Admin)
     @DeleteMapping("/reviews/{id}")
-    public ResponseEntity<String> deleteReview(@PathVariable String id) {
-        String userEmail = userService.getEmail();
-        boolean isAdmin = userService.userHasRole("admin");
+    public ResponseEntity<String> deleteReview(@PathVariable String id, @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        boolean isAdmin = me.isAdmin();
 
         Optional<Review> optReview = reviewRepository.findById(id);
         if (optReview.isEmpty()) {
@@ -202,7 +206,7 @@ public class ReviewController {
             User user = optUser.get();
             user.setRating(Math.round(averageRating * 10.0) / 10.0);
             user.setReviewCount(reviews.size());
-            userRepository.save(user);
+            userCache.invalidate(userRepository.save(user));
         }
     }
 }
\ No newline at end of file
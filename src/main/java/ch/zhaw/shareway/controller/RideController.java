@@ -1,13 +1,18 @@
 package ch.zhaw.shareway.controller;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -20,10 +25,19 @@ import org.springframework.web.bind.annotation.RestController;
 
 import ch.zhaw.shareway.model.Ride;
 import ch.zhaw.shareway.model.RideCreateDTO;
+import ch.zhaw.shareway.model.RidePage;
+import ch.zhaw.shareway.model.RideRouteDTO;
 import ch.zhaw.shareway.model.RideStatus;
 import ch.zhaw.shareway.model.RideUpdateDTO;
 import ch.zhaw.shareway.repository.BookingRepository;
 import ch.zhaw.shareway.repository.RideRepository;
+import ch.zhaw.shareway.security.AuthenticatedUser;
+import ch.zhaw.shareway.service.GeocodingService;
+import ch.zhaw.shareway.service.LocationSuggestIndex;
+import ch.zhaw.shareway.service.OptimisticRetry;
+import ch.zhaw.shareway.service.RideCommandExecutor;
+import ch.zhaw.shareway.service.RideGeoIndex;
+import ch.zhaw.shareway.service.RideRouteIndex;
 import ch.zhaw.shareway.service.RideService;
 import ch.zhaw.shareway.service.UserService;
 
@@ -31,6 +45,9 @@ import ch.zhaw.shareway.service.UserService;
 @RequestMapping("/api")
 public class RideController {
 
+    // Max. Treffer für /rides/nearby und /rides/along
+    static final int MAX_LIMIT = 100;
+
     @Autowired
     private RideRepository rideRepository;
 
@@ -43,10 +60,29 @@ public class RideController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private RideGeoIndex rideGeoIndex;
+
+    @Autowired
+    private RideRouteIndex rideRouteIndex;
+
+    @Autowired
+    private GeocodingService geocodingService;
+
+    @Autowired
+    private LocationSuggestIndex locationSuggestIndex;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private RideCommandExecutor rideCommands;
+
     @PostMapping("/rides")
-    public ResponseEntity<Ride> createRide(@RequestBody RideCreateDTO rideDTO) {
+    public ResponseEntity<Ride> createRide(@RequestBody RideCreateDTO rideDTO,
+            @AuthenticationPrincipal AuthenticatedUser me) {
         // Nur user oder admin dürfen Rides erstellen
-        if (!userService.canCreateRides()) {
+        if (!userService.canCreateRides(me)) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
@@ -81,32 +117,101 @@ public class RideController {
         if (rideDTO.getRouteRadiusKm() != null) {
             ride.setRouteRadiusKm(rideDTO.getRouteRadiusKm());
         }
+        if (rideDTO.getInstantBook() != null) {
+            ride.setInstantBook(rideDTO.getInstantBook());
+        }
+        // Koordinaten für die Umkreissuche (GeoJSON: lng, lat)
+        // Ohne Koordinaten: Ortschaft aus dem Gazetteer
+        if (rideDTO.getStartLat() != null && rideDTO.getStartLng() != null) {
+            ride.setStartPoint(new GeoJsonPoint(rideDTO.getStartLng(), rideDTO.getStartLat()));
+        } else {
+            ride.setStartPoint(geocodingService.toPoint(rideDTO.getStartLocation()));
+        }
+        if (rideDTO.getEndLat() != null && rideDTO.getEndLng() != null) {
+            ride.setEndPoint(new GeoJsonPoint(rideDTO.getEndLng(), rideDTO.getEndLat()));
+        } else {
+            ride.setEndPoint(geocodingService.toPoint(rideDTO.getEndLocation()));
+        }
 
         Ride savedRide = rideRepository.save(ride);
+        rideGeoIndex.update(savedRide);
+        rideRouteIndex.update(savedRide);
+        locationSuggestIndex.add(savedRide.getStartLocation());
+        locationSuggestIndex.add(savedRide.getEndLocation());
         return ResponseEntity.status(HttpStatus.CREATED).body(savedRide);
     }
 
     @GetMapping("/rides")
-    public ResponseEntity<Page<Ride>> getAllRides(
+    public ResponseEntity<RidePage> getAllRides(
             @RequestParam(required = false) RideStatus status,
             @RequestParam(required = false) Double maxPrice,
-            @RequestParam(required = false, defaultValue = "1") Integer pageNumber,
-            @RequestParam(required = false, defaultValue = "5") Integer pageSize) {
-
-        Page<Ride> rides;
-
-        if (status == null && maxPrice == null) {
-            rides = rideRepository.findAll(PageRequest.of(pageNumber - 1, pageSize));
-        } else if (status != null && maxPrice != null) {
-            rides = rideRepository.findByStatusAndPricePerSeatLessThanEqual(status, maxPrice,
-                    PageRequest.of(pageNumber - 1, pageSize));
-        } else if (maxPrice != null) {
-            rides = rideRepository.findByPricePerSeatLessThanEqual(maxPrice,
-                    PageRequest.of(pageNumber - 1, pageSize));
-        } else {
-            rides = rideRepository.findByStatus(status, PageRequest.of(pageNumber - 1, pageSize));
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "5") Integer pageSize,
+            @RequestParam(required = false, defaultValue = "true") Boolean withTotal) {
+
+        try {
+            RidePage rides = rideService.listRides(status, maxPrice, cursor, pageSize, withTotal);
+            return new ResponseEntity<>(rides, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/rides/search")
+    public ResponseEntity<RidePage> searchRides(
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime departureFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime departureTo,
+            @RequestParam(required = false) RideStatus status,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "5") Integer pageSize,
+            @RequestParam(required = false, defaultValue = "true") Boolean withTotal) {
+
+        try {
+            RidePage rides = rideService.searchRides(from, to, date, departureFrom, departureTo,
+                    status, maxPrice, cursor, pageSize, withTotal);
+            return new ResponseEntity<>(rides, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/rides/nearby")
+    public ResponseEntity<List<Ride>> getRidesNearby(
+            @RequestParam Double fromLat,
+            @RequestParam Double fromLng,
+            @RequestParam Double toLat,
+            @RequestParam Double toLng,
+            @RequestParam(required = false, defaultValue = "20") Integer limit) {
+
+        if (Math.abs(fromLat) > 90 || Math.abs(toLat) > 90
+                || Math.abs(fromLng) > 180 || Math.abs(toLng) > 180
+                || limit < 1 || limit > MAX_LIMIT) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Ride> rides = rideService.findRidesNear(fromLat, fromLng, toLat, toLng, limit);
+        return new ResponseEntity<>(rides, HttpStatus.OK);
+    }
+
+    @GetMapping("/rides/along")
+    public ResponseEntity<List<Ride>> getRidesAlongRoute(
+            @RequestParam Double pickupLat,
+            @RequestParam Double pickupLng,
+            @RequestParam Double dropoffLat,
+            @RequestParam Double dropoffLng,
+            @RequestParam(required = false, defaultValue = "20") Integer limit) {
+
+        if (Math.abs(pickupLat) > 90 || Math.abs(dropoffLat) > 90
+                || Math.abs(pickupLng) > 180 || Math.abs(dropoffLng) > 180
+                || limit < 1 || limit > MAX_LIMIT) {
+            return ResponseEntity.badRequest().build();
         }
 
+        List<Ride> rides = rideService.findRidesAlongRoute(pickupLat, pickupLng, dropoffLat, dropoffLng, limit);
         return new ResponseEntity<>(rides, HttpStatus.OK);
     }
 
@@ -120,57 +225,118 @@ public class RideController {
     }
 
     @DeleteMapping("/rides/{id}")
-    public ResponseEntity<String> deleteRide(@PathVariable String id) {
-        Optional<Ride> ride = rideRepository.findById(id);
-
-        if (ride.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
-
-        // Admin darf alle löschen, Driver nur eigene
-        String userEmail = userService.getEmail();
-        boolean isAdmin = userService.userHasRole("admin");
-        boolean isOwnRide = ride.get().getDriverId().equals(userEmail);
-
-        if (!isAdmin && !isOwnRide) {
-            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
-        }
-
-        // Delete all bookings for this ride first
-        bookingRepository.deleteByRideId(id);
-
-        rideRepository.deleteById(id);
-        return ResponseEntity.status(HttpStatus.OK).body("DELETED");
+    public ResponseEntity<String> deleteRide(@PathVariable String id, @AuthenticationPrincipal AuthenticatedUser me) {
+        // In der Lane der Ride: vorher eingereihte Buchungen werden mitgelöscht,
+        // spätere finden die Ride nicht mehr
+        return rideCommands.execute(id, () -> {
+            Optional<Ride> ride = rideRepository.findById(id);
+
+            if (ride.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+
+            // Admin darf alle löschen, Driver nur eigene
+            String userEmail = me.getEmail();
+            boolean isAdmin = me.isAdmin();
+            boolean isOwnRide = ride.get().getDriverId().equals(userEmail);
+
+            if (!isAdmin && !isOwnRide) {
+                return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+            }
+
+            // Delete all bookings for this ride first
+            bookingRepository.deleteByRideId(id);
+
+            rideRepository.deleteById(id);
+            rideGeoIndex.remove(id);
+            rideRouteIndex.remove(id);
+            locationSuggestIndex.remove(ride.get().getStartLocation());
+            locationSuggestIndex.remove(ride.get().getEndLocation());
+            return ResponseEntity.status(HttpStatus.OK).body("DELETED");
+        });
     }
 
     @PutMapping("/rides/{id}")
     public ResponseEntity<Ride> updateRide(
             @PathVariable String id,
-            @RequestBody RideUpdateDTO dto) {
-
-        Optional<Ride> existingRide = rideRepository.findById(id);
-        if (existingRide.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
-
-        Ride ride = existingRide.get();
-
-        String userEmail = userService.getEmail();
-        boolean isAdmin = userService.userHasRole("admin");
-
-        if (!ride.getDriverId().equals(userEmail) && !isAdmin) {
-            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+            @RequestBody RideUpdateDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+
+        String userEmail = me.getEmail();
+        boolean isAdmin = me.isAdmin();
+
+        // Bei gleichzeitiger Änderung neu lesen und erneut anwenden
+        try {
+            return rideCommands.execute(id, () -> optimisticRetry.run("ride.update", () -> {
+                Optional<Ride> existingRide = rideRepository.findById(id);
+                if (existingRide.isEmpty()) {
+                    return ResponseEntity.notFound().build();
+                }
+
+                Ride ride = existingRide.get();
+
+                if (!ride.getDriverId().equals(userEmail) && !isAdmin) {
+                    return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+                }
+
+                if (ride.getStatus() != RideStatus.OPEN) {
+                    return ResponseEntity.badRequest().build();
+                }
+
+                ride.setDepartureTime(LocalDateTime.parse(dto.getDepartureTime()));
+                ride.setPricePerSeat(dto.getPricePerSeat());
+                ride.setDescription(dto.getDescription());
+                ride.setRouteRadiusKm(dto.getRouteRadiusKm());
+                if (dto.getInstantBook() != null) {
+                    ride.setInstantBook(dto.getInstantBook());
+                }
+
+                Ride savedRide = rideRepository.save(ride);
+                rideGeoIndex.update(savedRide);
+                rideRouteIndex.update(savedRide);
+                return ResponseEntity.ok(savedRide);
+            }));
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
+    }
 
-        if (ride.getStatus() != RideStatus.OPEN) {
-            return ResponseEntity.badRequest().build();
+    // Route aus der Kartenansicht (OSRM) speichern, wird vereinfacht
+    @PutMapping("/rides/{id}/route")
+    public ResponseEntity<Ride> updateRideRoute(
+            @PathVariable String id,
+            @RequestBody RideRouteDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+
+        String userEmail = me.getEmail();
+        boolean isAdmin = me.isAdmin();
+
+        // Bei gleichzeitiger Änderung neu lesen und erneut anwenden
+        try {
+            return rideCommands.execute(id, () -> optimisticRetry.run("ride.route", () -> {
+                Optional<Ride> existingRide = rideRepository.findById(id);
+                if (existingRide.isEmpty()) {
+                    return ResponseEntity.notFound().build();
+                }
+
+                Ride ride = existingRide.get();
+
+                if (!ride.getDriverId().equals(userEmail) && !isAdmin) {
+                    return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+                }
+
+                GeoJsonLineString route = rideService.simplifyRoute(dto.getCoordinates());
+                if (route == null) {
+                    return ResponseEntity.badRequest().build();
+                }
+                ride.setRoute(route);
+
+                Ride savedRide = rideRepository.save(ride);
+                rideRouteIndex.update(savedRide);
+                return ResponseEntity.ok(savedRide);
+            }));
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-
-        ride.setDepartureTime(LocalDateTime.parse(dto.getDepartureTime()));
-        ride.setPricePerSeat(dto.getPricePerSeat());
-        ride.setDescription(dto.getDescription());
-        ride.setRouteRadiusKm(dto.getRouteRadiusKm());
-
-        return ResponseEntity.ok(rideRepository.save(ride));
     }
 }
\ No newline at end of file
@@ -1,30 +1,52 @@
 package ch.zhaw.shareway.controller;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.BookingStatus;
 import ch.zhaw.shareway.model.Ride;
 import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.SeatHold;
 import ch.zhaw.shareway.model.User;
 import ch.zhaw.shareway.model.VerificationStatus;
 import ch.zhaw.shareway.repository.RideRepository;
 import ch.zhaw.shareway.repository.UserRepository;
+import ch.zhaw.shareway.security.AuthenticatedUser;
 import ch.zhaw.shareway.service.BookingService;
+import ch.zhaw.shareway.service.IdempotencyService;
 import ch.zhaw.shareway.service.MailService;
-import ch.zhaw.shareway.service.UserService;
+import ch.zhaw.shareway.service.OptimisticRetry;
+import ch.zhaw.shareway.service.RideCommandExecutor;
+import ch.zhaw.shareway.service.RideGeoIndex;
+import ch.zhaw.shareway.service.RideRouteIndex;
+import ch.zhaw.shareway.service.SeatHoldService;
+import ch.zhaw.shareway.service.UserCache;
 
 @RestController
 @RequestMapping("/api/service")
 public class RideServiceController {
 
+    static final int MAX_BULK_BOOKINGS = 100;
+
     @Autowired
     private BookingService bookingService;
 
@@ -35,25 +57,118 @@ public class RideServiceController {
     private UserRepository userRepository;
 
     @Autowired
-    private UserService userService;
+    private UserCache userCache;
 
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private RideGeoIndex rideGeoIndex;
+
+    @Autowired
+    private RideRouteIndex rideRouteIndex;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private SeatHoldService seatHoldService;
+
+    @Autowired
+    private RideCommandExecutor rideCommands;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
 
     /**
-     * Book a ride for myself (Rider) - MIT PROMO-CODE
+     * Book a ride for myself (Rider) - MIT PROMO-CODE. A retry with the same
+     * Idempotency-Key header returns the first response.
      */
     @PutMapping("/me/bookride")
-    public ResponseEntity<Booking> bookRideForMe(
+    public ResponseEntity<?> bookRideForMe(
+            @RequestParam String rideId,
+            @RequestParam(defaultValue = "1") int seats,
+            @RequestParam(required = false) String pickupLocation,
+            @RequestParam(required = false) String message,
+            @RequestParam(required = false) String promoCode,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        String request = String.join("|", "bookride", rideId, String.valueOf(seats),
+                pickupLocation, message, promoCode);
+        return idempotencyService.execute(idempotencyKey, userEmail, request, () -> {
+            Optional<Booking> booking = rideCommands.execute(rideId, () -> bookingService.createBooking(
+                    rideId, userEmail, seats, pickupLocation, message, promoCode));
+
+            if (booking.isPresent()) {
+                // Instant-Book: direkt genehmigt
+                if (booking.get().getStatus() == BookingStatus.APPROVED) {
+                    sendApprovalMail(booking.get());
+                }
+                return ResponseEntity.ok(booking.get());
+            }
+            return ResponseEntity.badRequest().build();
+        });
+    }
+
+    /**
+     * Join the waitlist of a full ride; the booking is promoted automatically
+     * when enough seats are freed
+     */
+    @PutMapping("/me/joinwaitlist")
+    public ResponseEntity<?> joinWaitlistForMe(
             @RequestParam String rideId,
             @RequestParam(defaultValue = "1") int seats,
             @RequestParam(required = false) String pickupLocation,
             @RequestParam(required = false) String message,
-            @RequestParam(required = false) String promoCode) {
-        String userEmail = userService.getEmail();
-        Optional<Booking> booking = bookingService.createBooking(
-                rideId, userEmail, seats, pickupLocation, message, promoCode);
+            @RequestParam(required = false) String promoCode,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        String request = String.join("|", "joinwaitlist", rideId, String.valueOf(seats),
+                pickupLocation, message, promoCode);
+        return idempotencyService.execute(idempotencyKey, userEmail, request, () -> {
+            Optional<Booking> booking = rideCommands.execute(rideId, () -> bookingService.joinWaitlist(
+                    rideId, userEmail, seats, pickupLocation, message, promoCode));
+
+            if (booking.isPresent()) {
+                return ResponseEntity.ok(booking.get());
+            }
+            return ResponseEntity.badRequest().build();
+        });
+    }
+
+    /**
+     * Hold seats for a few minutes while the rider completes the booking
+     */
+    @PutMapping("/me/holdseats")
+    public ResponseEntity<SeatHold> holdSeatsForMe(
+            @RequestParam String rideId,
+            @RequestParam(defaultValue = "1") int seats,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        Optional<SeatHold> hold = seatHoldService.createHold(rideId, userEmail, seats);
+
+        if (hold.isPresent()) {
+            return ResponseEntity.ok(hold.get());
+        }
+        return ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * Book the held seats, the booking keeps them until the driver decides
+     */
+    @PutMapping("/me/confirmhold")
+    public ResponseEntity<Booking> confirmMyHold(
+            @RequestParam String holdId,
+            @RequestParam(required = false) String pickupLocation,
+            @RequestParam(required = false) String message,
+            @RequestParam(required = false) String promoCode,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        Optional<Booking> booking = seatHoldService.confirmHold(
+                holdId, userEmail, pickupLocation, message, promoCode);
 
         if (booking.isPresent()) {
             return ResponseEntity.ok(booking.get());
@@ -61,66 +176,161 @@ public class RideServiceController {
         return ResponseEntity.badRequest().build();
     }
 
+    @PutMapping("/me/releasehold")
+    public ResponseEntity<SeatHold> releaseMyHold(@RequestParam String holdId,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        Optional<SeatHold> hold = seatHoldService.releaseHold(holdId, userEmail);
+
+        if (hold.isPresent()) {
+            return ResponseEntity.ok(hold.get());
+        }
+        return ResponseEntity.notFound().build();
+    }
+
     @PutMapping("/me/approvebooking")
-    public ResponseEntity<Booking> approveMyBooking(@RequestParam String bookingId) {
-        String userEmail = userService.getEmail();
-        Optional<Booking> booking = bookingService.approveBooking(bookingId, userEmail);
+    public ResponseEntity<?> approveMyBooking(@RequestParam String bookingId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        return idempotencyService.execute(idempotencyKey, userEmail, "approvebooking|" + bookingId, () -> {
+            // Genehmigungen derselben Ride können zu einem Batch zusammengefasst werden
+            Optional<Booking> booking = bookingService.findRideId(bookingId)
+                    .map(rideId -> rideCommands.execute(rideId, "approve:" + userEmail, bookingId,
+                            id -> bookingService.approveBooking(id, userEmail).orElse(null),
+                            ids -> byId(bookingService.approveBookings(ids, userEmail))));
+
+            if (booking.isPresent()) {
+                sendApprovalMail(booking.get());
+                return ResponseEntity.ok(booking.get());
+            }
+            return ResponseEntity.badRequest().build();
+        });
+    }
 
-        if (booking.isPresent()) {
-            Booking b = booking.get();
-
-            // E-Mail an Rider senden
-            Optional<Ride> ride = rideRepository.findById(b.getRideId());
-            if (ride.isPresent()) {
-                ch.zhaw.shareway.model.Mail mail = new ch.zhaw.shareway.model.Mail();
-                mail.setTo(b.getRiderId());
-                mail.setSubject("ShareWay - Buchung bestätigt!");
-                mail.setMessage(
-                        "Gute Nachrichten!\n\n" +
-                                "Deine Buchung wurde bestätigt.\n\n" +
-                                "Fahrt: " + ride.get().getStartLocation() + " → " + ride.get().getEndLocation() + "\n" +
-                                "Abfahrt: " + ride.get().getDepartureTime() + "\n\n" +
-                                "Viel Spass bei der Fahrt!\n" +
-                                "Dein ShareWay Team");
-                mailService.sendMail(mail);
+    // E-Mail an Rider senden, im Hintergrund
+    private void sendApprovalMail(Booking b) {
+        rideRepository.findById(b.getRideId())
+                .ifPresent(ride -> mailService.sendMailAsync(approvalMail(b, ride)));
+    }
+
+    private ch.zhaw.shareway.model.Mail approvalMail(Booking b, Ride ride) {
+        ch.zhaw.shareway.model.Mail mail = new ch.zhaw.shareway.model.Mail();
+        mail.setTo(b.getRiderId());
+        mail.setSubject("ShareWay - Buchung bestätigt!");
+        mail.setMessage(
+                "Gute Nachrichten!\n\n" +
+                        "Deine Buchung wurde bestätigt.\n\n" +
+                        "Fahrt: " + ride.getStartLocation() + " → " + ride.getEndLocation() + "\n" +
+                        "Abfahrt: " + ride.getDepartureTime() + "\n\n" +
+                        "Viel Spass bei der Fahrt!\n" +
+                        "Dein ShareWay Team");
+        return mail;
+    }
+
+    @PutMapping("/me/rejectbooking")
+    public ResponseEntity<?> rejectMyBooking(@RequestParam String bookingId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        return idempotencyService.execute(idempotencyKey, userEmail, "rejectbooking|" + bookingId, () -> {
+            Optional<Booking> booking = bookingService.findRideId(bookingId)
+                    .map(rideId -> rideCommands.execute(rideId, "reject:" + userEmail, bookingId,
+                            id -> bookingService.rejectBooking(id, userEmail).orElse(null),
+                            ids -> byId(bookingService.rejectBookings(ids, userEmail))));
+
+            if (booking.isPresent()) {
+                Booking b = booking.get();
+
+                // E-Mail an Rider senden, im Hintergrund
+                rideRepository.findById(b.getRideId())
+                        .ifPresent(ride -> mailService.sendMailAsync(rejectionMail(b, ride)));
+
+                return ResponseEntity.ok(b);
             }
+            return ResponseEntity.badRequest().build();
+        });
+    }
 
-            return ResponseEntity.ok(b);
+    private ch.zhaw.shareway.model.Mail rejectionMail(Booking b, Ride ride) {
+        ch.zhaw.shareway.model.Mail mail = new ch.zhaw.shareway.model.Mail();
+        mail.setTo(b.getRiderId());
+        mail.setSubject("ShareWay - Buchung abgelehnt");
+        mail.setMessage(
+                "Leider wurde deine Buchung abgelehnt.\n\n" +
+                        "Fahrt: " + ride.getStartLocation() + " → " + ride.getEndLocation() + "\n\n"
+                        +
+                        "Bitte suche nach einer anderen Mitfahrgelegenheit.\n\n" +
+                        "Dein ShareWay Team");
+        return mail;
+    }
+
+    /**
+     * Approve several booking requests at once
+     *
+     * @return the approved bookings; requests that are not the driver's, not
+     *         REQUESTED anymore or do not fit into the free seats are left out
+     */
+    @PutMapping("/me/approvebookings")
+    public ResponseEntity<List<Booking>> approveMyBookings(@RequestParam List<String> bookingIds,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        if (bookingIds.isEmpty() || bookingIds.size() > MAX_BULK_BOOKINGS) {
+            return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.badRequest().build();
+        List<Booking> approved = perRide(bookingIds, ids -> bookingService.approveBookings(ids, me.getEmail()));
+        queueMails(approved, this::approvalMail);
+        return ResponseEntity.ok(approved);
     }
 
-    @PutMapping("/me/rejectbooking")
-    public ResponseEntity<Booking> rejectMyBooking(@RequestParam String bookingId) {
-        String userEmail = userService.getEmail();
-        Optional<Booking> booking = bookingService.rejectBooking(bookingId, userEmail);
+    /**
+     * Reject several booking requests at once
+     *
+     * @return the rejected bookings
+     */
+    @PutMapping("/me/rejectbookings")
+    public ResponseEntity<List<Booking>> rejectMyBookings(@RequestParam List<String> bookingIds,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        if (bookingIds.isEmpty() || bookingIds.size() > MAX_BULK_BOOKINGS) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<Booking> rejected = perRide(bookingIds, ids -> bookingService.rejectBookings(ids, me.getEmail()));
+        queueMails(rejected, this::rejectionMail);
+        return ResponseEntity.ok(rejected);
+    }
 
-        if (booking.isPresent()) {
-            Booking b = booking.get();
-
-            // E-Mail an Rider senden
-            Optional<Ride> ride = rideRepository.findById(b.getRideId());
-            if (ride.isPresent()) {
-                ch.zhaw.shareway.model.Mail mail = new ch.zhaw.shareway.model.Mail();
-                mail.setTo(b.getRiderId());
-                mail.setSubject("ShareWay - Buchung abgelehnt");
-                mail.setMessage(
-                        "Leider wurde deine Buchung abgelehnt.\n\n" +
-                                "Fahrt: " + ride.get().getStartLocation() + " → " + ride.get().getEndLocation() + "\n\n"
-                                +
-                                "Bitte suche nach einer anderen Mitfahrgelegenheit.\n\n" +
-                                "Dein ShareWay Team");
-                mailService.sendMail(mail);
-            }
+    // Sammelaufträge je Ride in deren Lane ausführen, damit sie sich mit Einzelbefehlen nicht überholen
+    private List<Booking> perRide(List<String> bookingIds, Function<List<String>, List<Booking>> command) {
+        Map<String, List<String>> idsByRide = new LinkedHashMap<>();
+        bookingService.findRideIds(bookingIds).forEach(
+                (bookingId, rideId) -> idsByRide.computeIfAbsent(rideId, id -> new ArrayList<>()).add(bookingId));
+        List<Booking> result = new ArrayList<>();
+        idsByRide.forEach((rideId, ids) -> result.addAll(rideCommands.execute(rideId, () -> command.apply(ids))));
+        return result;
+    }
+
+    private Map<String, Booking> byId(List<Booking> bookings) {
+        return bookings.stream().collect(Collectors.toMap(Booking::getId, b -> b));
+    }
 
-            return ResponseEntity.ok(b);
+    // Rides einmal laden, E-Mails im Hintergrund versenden
+    private void queueMails(List<Booking> bookings, BiFunction<Booking, Ride, ch.zhaw.shareway.model.Mail> mail) {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        Map<String, Ride> rides = new HashMap<>();
+        rideRepository.findAllById(bookings.stream().map(Booking::getRideId).distinct().toList())
+                .forEach(ride -> rides.put(ride.getId(), ride));
+        for (Booking b : bookings) {
+            Ride ride = rides.get(b.getRideId());
+            if (ride != null) {
+                mailService.sendMailAsync(mail.apply(b, ride));
+            }
         }
-        return ResponseEntity.badRequest().build();
     }
 
     @PutMapping("/admin/verify")
-    public ResponseEntity<User> verifyUser(@RequestParam String userId) {
-        if (!userService.userHasRole("admin")) {
+    public ResponseEntity<User> verifyUser(@RequestParam String userId, @AuthenticationPrincipal AuthenticatedUser me) {
+        if (!me.isAdmin()) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
@@ -132,12 +342,13 @@ public class RideServiceController {
         User user = optUser.get();
         user.setVerificationStatus(VerificationStatus.VERIFIED);
         User savedUser = userRepository.save(user);
+        userCache.invalidate(savedUser);
         return ResponseEntity.ok(savedUser);
     }
 
     @PutMapping("/admin/reject")
-    public ResponseEntity<User> rejectUser(@RequestParam String userId) {
-        if (!userService.userHasRole("admin")) {
+    public ResponseEntity<User> rejectUser(@RequestParam String userId, @AuthenticationPrincipal AuthenticatedUser me) {
+        if (!me.isAdmin()) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
@@ -149,41 +360,60 @@ public class RideServiceController {
         User user = optUser.get();
         user.setVerificationStatus(VerificationStatus.DENIED);
         User savedUser = userRepository.save(user);
+        userCache.invalidate(savedUser);
         return ResponseEntity.ok(savedUser);
     }
 
     @PutMapping("/me/completeride")
-    public ResponseEntity<Ride> completeMyRide(@RequestParam String rideId) {
-        String userEmail = userService.getEmail();
-
-        Optional<Ride> optRide = rideRepository.findById(rideId);
-        if (optRide.isEmpty()) {
-            return ResponseEntity.notFound().build();
-        }
-
-        Ride ride = optRide.get();
-
-        if (!ride.getDriverId().equals(userEmail) && !userService.userHasRole("admin")) {
-            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+    public ResponseEntity<Ride> completeMyRide(@RequestParam String rideId,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+
+        boolean isAdmin = me.isAdmin();
+
+        // Bei gleichzeitiger Änderung neu lesen und erneut prüfen
+        try {
+            return rideCommands.execute(rideId, () -> optimisticRetry.run("ride.complete", () -> {
+                Optional<Ride> optRide = rideRepository.findById(rideId);
+                if (optRide.isEmpty()) {
+                    return ResponseEntity.notFound().build();
+                }
+
+                Ride ride = optRide.get();
+
+                if (!ride.getDriverId().equals(userEmail) && !isAdmin) {
+                    return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+                }
+
+                if (ride.getStatus() != RideStatus.OPEN) {
+                    return ResponseEntity.badRequest().build();
+                }
+
+                ride.setStatus(RideStatus.COMPLETED);
+                Ride savedRide = rideRepository.save(ride);
+                rideGeoIndex.update(savedRide);
+                rideRouteIndex.update(savedRide);
+                return ResponseEntity.ok(savedRide);
+            }));
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-
-        if (ride.getStatus() != RideStatus.OPEN) {
-            return ResponseEntity.badRequest().build();
-        }
-
-        ride.setStatus(RideStatus.COMPLETED);
-        Ride savedRide = rideRepository.save(ride);
-        return ResponseEntity.ok(savedRide);
     }
 
     @PutMapping("/me/cancelbooking")
-    public ResponseEntity<Booking> cancelMyBooking(@RequestParam String bookingId) {
-        String userEmail = userService.getEmail();
-        Optional<Booking> booking = bookingService.cancelBooking(bookingId, userEmail);
-
-        if (booking.isPresent()) {
-            return ResponseEntity.ok(booking.get());
-        }
-        return ResponseEntity.badRequest().build();
+    public ResponseEntity<?> cancelMyBooking(@RequestParam String bookingId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        return idempotencyService.execute(idempotencyKey, userEmail, "cancelbooking|" + bookingId, () -> {
+            Optional<Booking> booking = bookingService.findRideId(bookingId)
+                    .flatMap(rideId -> rideCommands.execute(rideId,
+                            () -> bookingService.cancelBooking(bookingId, userEmail)));
+
+            if (booking.isPresent()) {
+                return ResponseEntity.ok(booking.get());
+            }
+            return ResponseEntity.badRequest().build();
+        });
     }
 }
\ No newline at end of file
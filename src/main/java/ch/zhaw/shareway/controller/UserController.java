@@ -2,52 +2,109 @@ package ch.zhaw.shareway.controller;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.model.UserProfile;
 import ch.zhaw.shareway.model.UserProfileUpdateDTO;
 import ch.zhaw.shareway.model.UserRole;
 import ch.zhaw.shareway.model.VerificationStatus;
 import ch.zhaw.shareway.repository.UserRepository;
+import ch.zhaw.shareway.security.AuthenticatedUser;
+import ch.zhaw.shareway.service.ImageService;
+import ch.zhaw.shareway.service.UserCache;
 import ch.zhaw.shareway.service.UserService;
 
 @RestController
 @RequestMapping("/api")
 public class UserController {
 
+    static final int MAX_PAGE_SIZE = 100;
+    static final int MAX_PROFILES = 100;
+
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    UserCache userCache;
+
     @Autowired
     UserService userService;
 
+    @Autowired
+    ImageService imageService;
+
+    /**
+     * All users, one page at a time (admins only); the total is in the
+     * X-Total-Count header
+     */
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> allUsers = userRepository.findAll();
-        return new ResponseEntity<>(allUsers, HttpStatus.OK);
+    public ResponseEntity<List<User>> getAllUsers(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int pageSize,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        if (!me.isAdmin()) {
+            return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+        }
+        if (page < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Page<User> users = userRepository.findAll(PageRequest.of(page, pageSize, Sort.by("email")));
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(users.getTotalElements()))
+                .body(users.getContent());
+    }
+
+    /**
+     * Public profiles (name, rating, picture) of the given users, e.g. for
+     * the names next to rides and bookings
+     */
+    @GetMapping("/users/profiles")
+    public ResponseEntity<List<UserProfile>> getProfiles(
+            @RequestParam(defaultValue = "") List<String> ids,
+            @RequestParam(defaultValue = "") List<String> emails) {
+        Set<String> idSet = withoutBlanks(ids);
+        Set<String> emailSet = withoutBlanks(emails);
+        if (idSet.size() + emailSet.size() > MAX_PROFILES) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userService.findProfiles(idSet, emailSet));
+    }
+
+    private static Set<String> withoutBlanks(List<String> values) {
+        return values.stream().filter(value -> !value.isBlank()).collect(Collectors.toSet());
     }
 
     @PutMapping("/users/me/profile")
-    public ResponseEntity<User> updateMyProfile(@RequestBody UserProfileUpdateDTO dto) {
-        String userEmail = userService.getEmail();
+    public ResponseEntity<User> updateMyProfile(@RequestBody UserProfileUpdateDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
         Optional<User> optUser = userRepository.findByEmail(userEmail);
 
         User user;
 
         if (optUser.isEmpty()) {
-            String auth0Id = userService.getAuth0Id();
-            String name = userService.getName();
+            String auth0Id = me.getSubject();
+            String name = me.getName();
 
             UserRole role;
-            if (userService.userHasRole("admin")) {
+            if (me.isAdmin()) {
                 role = UserRole.ADMIN;
             } else {
                 role = UserRole.USER;
@@ -58,18 +115,28 @@ public class UserController {
             user = optUser.get();
         }
 
+        String oldImage = user.getProfileImageId();
+        try {
+            user.setProfileImageId(imageService.update(oldImage, dto.getProfileImage(), userEmail,
+                    ImageService.PROFILE));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid profile image of " + userEmail + ": " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
         user.setFirstName(dto.getFirstName());
         user.setLastName(dto.getLastName());
-        user.setProfileImage(dto.getProfileImage());
         user.setPhoneNumber(dto.getPhoneNumber());
 
         User savedUser = userRepository.save(user);
+        userCache.invalidate(savedUser);
+        imageService.deleteReplaced(oldImage, savedUser.getProfileImageId());
         return new ResponseEntity<>(savedUser, HttpStatus.OK);
     }
 
     @PutMapping("/users/me/verification")
-    public ResponseEntity<User> requestVerification(@RequestBody UserProfileUpdateDTO dto) {
-        String userEmail = userService.getEmail();
+    public ResponseEntity<User> requestVerification(@RequestBody UserProfileUpdateDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
         Optional<User> optUser = userRepository.findByEmail(userEmail);
 
         if (optUser.isEmpty()) {
@@ -78,34 +145,47 @@ public class UserController {
 
         User user = optUser.get();
 
-        user.setLicenseImageFront(dto.getLicenseImageFront());
-        user.setLicenseImageBack(dto.getLicenseImageBack());
+        String oldFront = user.getLicenseImageFrontId();
+        String oldBack = user.getLicenseImageBackId();
+        try {
+            user.setLicenseImageFrontId(imageService.update(oldFront, dto.getLicenseImageFront(), userEmail,
+                    ImageService.LICENSE_FRONT));
+            user.setLicenseImageBackId(imageService.update(oldBack, dto.getLicenseImageBack(), userEmail,
+                    ImageService.LICENSE_BACK));
+        } catch (IllegalArgumentException e) {
+            // Schon gespeichertes Vorderseiten-Bild wieder löschen
+            imageService.deleteReplaced(user.getLicenseImageFrontId(), oldFront);
+            System.err.println("Invalid license image of " + userEmail + ": " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
 
-        if (user.getLicenseImageFront() != null && !user.getLicenseImageFront().isEmpty() &&
-                user.getLicenseImageBack() != null && !user.getLicenseImageBack().isEmpty()) {
+        if (user.getLicenseImageFrontId() != null && user.getLicenseImageBackId() != null) {
             user.setVerificationStatus(VerificationStatus.PENDING);
         } else {
             user.setVerificationStatus(VerificationStatus.UNVERIFIED);
         }
 
         User savedUser = userRepository.save(user);
+        userCache.invalidate(savedUser);
+        imageService.deleteReplaced(oldFront, savedUser.getLicenseImageFrontId());
+        imageService.deleteReplaced(oldBack, savedUser.getLicenseImageBackId());
         return new ResponseEntity<>(savedUser, HttpStatus.OK);
     }
 
     @GetMapping("/users/me")
-    public ResponseEntity<User> getMyUser() {
-        String userEmail = userService.getEmail();
-        Optional<User> optUser = userRepository.findByEmail(userEmail);
+    public ResponseEntity<User> getMyUser(@AuthenticationPrincipal AuthenticatedUser me) {
+        String userEmail = me.getEmail();
+        Optional<User> optUser = userCache.findByEmail(userEmail);
 
         if (optUser.isPresent()) {
             return new ResponseEntity<>(optUser.get(), HttpStatus.OK);
         } else {
             // User existiert nicht -> automatisch erstellen
-            String auth0Id = userService.getAuth0Id();
-            String name = userService.getName();
+            String auth0Id = me.getSubject();
+            String name = me.getName();
 
             UserRole role;
-            if (userService.userHasRole("admin")) {
+            if (me.isAdmin()) {
                 role = UserRole.ADMIN;
             } else {
                 role = UserRole.USER;
@@ -113,13 +193,14 @@ public class UserController {
 
             User newUser = new User(auth0Id, userEmail, name, role);
             User savedUser = userRepository.save(newUser);
+            userCache.invalidate(savedUser);
             return new ResponseEntity<>(savedUser, HttpStatus.CREATED);
         }
     }
 
     @GetMapping("/users/pending")
-    public ResponseEntity<List<User>> getPendingUsers() {
-        if (!userService.userHasRole("admin")) {
+    public ResponseEntity<List<User>> getPendingUsers(@AuthenticationPrincipal AuthenticatedUser me) {
+        if (!me.isAdmin()) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
@@ -6,6 +6,7 @@ import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,10 +15,11 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import ch.zhaw.shareway.model.UserRole;
 import ch.zhaw.shareway.model.Vehicle;
 import ch.zhaw.shareway.model.VehicleCreateDTO;
 import ch.zhaw.shareway.repository.VehicleRepository;
-import ch.zhaw.shareway.service.UserService;
+import ch.zhaw.shareway.security.AuthenticatedUser;
 
 @RestController
 @RequestMapping("/api")
@@ -26,13 +28,11 @@ public class VehicleController {
     @Autowired
     VehicleRepository vehicleRepository;
 
-    @Autowired
-    UserService userService;
-
     @PostMapping("/vehicles")
-    public ResponseEntity<Vehicle> createVehicle(@RequestBody VehicleCreateDTO dto) {
+    public ResponseEntity<Vehicle> createVehicle(@RequestBody VehicleCreateDTO dto,
+            @AuthenticationPrincipal AuthenticatedUser me) {
         // Nur user oder admin dürfen Vehicles erstellen
-        if (!userService.userHasRole("user") && !userService.userHasRole("admin")) {
+        if (!me.hasRole(UserRole.USER) && !me.isAdmin()) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
 
@@ -54,7 +54,8 @@ public class VehicleController {
     }
 
     @DeleteMapping("/vehicles/{id}")
-    public ResponseEntity<String> deleteVehicle(@PathVariable String id) {
+    public ResponseEntity<String> deleteVehicle(@PathVariable String id,
+            @AuthenticationPrincipal AuthenticatedUser me) {
         Optional<Vehicle> vehicle = vehicleRepository.findById(id);
 
         if (vehicle.isEmpty()) {
@@ -62,7 +63,7 @@ public class VehicleController {
         }
 
         // Nur Owner darf löschen
-        String userEmail = userService.getEmail();
+        String userEmail = me.getEmail();
         if (!vehicle.get().getOwnerId().equals(userEmail)) {
             return new ResponseEntity<>(HttpStatus.FORBIDDEN);
         }
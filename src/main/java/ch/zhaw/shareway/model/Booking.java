@@ -3,6 +3,10 @@ package ch.zhaw.shareway.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Getter;
@@ -12,6 +16,19 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
 @Document("bookings")
+@CompoundIndexes({
+        // Nur eine aktive Buchung pro Rider und Ride (inkl. Warteliste); stornierte oder abgelehnte
+        // Buchungen fallen aus dem Index, damit neu gebucht werden kann ($in braucht MongoDB 6.0+)
+        @CompoundIndex(name = "ride_rider_current", def = "{'rideId': 1, 'riderId': 1}", unique = true,
+                partialFilter = "{'status': {'$in': ['REQUESTED', 'APPROVED', 'COMPLETED', 'WAITLISTED']}}"),
+        // Warteliste einer Ride in Reihenfolge, enthält nur wartende Bookings
+        @CompoundIndex(name = "ride_waitlist", def = "{'rideId': 1, 'waitlistedAt': 1, '_id': 1}",
+                partialFilter = "{'status': 'WAITLISTED'}"),
+        // Bookings einer Ride, optional nach Status
+        @CompoundIndex(name = "ride_status", def = "{'rideId': 1, 'status': 1}"),
+        // Bookings eines Riders, optional nach Status
+        @CompoundIndex(name = "rider_status", def = "{'riderId': 1, 'status': 1}")
+})
 @NoArgsConstructor
 @RequiredArgsConstructor
 @Getter
@@ -19,6 +36,10 @@ import lombok.Setter;
 public class Booking {
     @Id
     private String id;
+
+    // Optimistic Locking: save() schlägt fehl, wenn das Dokument inzwischen geändert wurde
+    @Version
+    private Long version;
     
     @NonNull
     private String rideId;
@@ -30,8 +51,17 @@ public class Booking {
     private Integer seats;
     
     private BookingStatus status = BookingStatus.REQUESTED;
+
+    // Aus einem Seat-Hold entstanden: Plätze sind schon vor der Genehmigung reserviert
+    private boolean seatsReserved;
+
+    // Zeitpunkt des Eintrags in die Warteliste, bestimmt die Reihenfolge beim Nachrücken
+    private LocalDateTime waitlistedAt;
     
     private String pickupLocation;
+
+    // Geokodierter Abholort (GeoJSON, [lng, lat])
+    private GeoJsonPoint pickupPoint;
     
     private String message;
     
@@ -5,5 +5,6 @@ public enum BookingStatus {
     APPROVED,       // Vom Driver bestätigt
     REJECTED,       // Vom Driver abgelehnt
     CANCELED,       // Vom Rider storniert
-    COMPLETED       // Fahrt abgeschlossen
+    COMPLETED,      // Fahrt abgeschlossen
+    WAITLISTED      // Ride voll, rückt nach, sobald Plätze frei werden
 }
\ No newline at end of file
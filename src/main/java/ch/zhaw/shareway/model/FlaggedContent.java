@@ -3,6 +3,7 @@ package ch.zhaw.shareway.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Getter;
@@ -18,6 +19,7 @@ public class FlaggedContent {
     @Id
     private String id;
     private String contentType;  // REVIEW, RIDE, BOOKING
+    @Indexed
     private String contentId;    // ID des Contents
     private String content;      // Der Text
     private String reason;       // KI-Begründung
@@ -0,0 +1,39 @@
+package ch.zhaw.shareway.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Geocoding result, cached per normalized query string. Cached entries
+ * expire after 30 days; entries added by hand without createdAt are kept.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Document("geocodes")
+public class GeocodedLocation {
+
+    @Id
+    private String query;        // Normalisierte Eingabe, z.B. "bahnhofstrasse 1 8001 zurich"
+    private String name;         // Ortschaft aus dem Gazetteer, z.B. "Zürich"
+    private String canton;       // Kantonskürzel, z.B. "ZH"
+    private GeoJsonPoint point;  // [lng, lat]
+    // TTL-Index: begrenzt die Collection, abgelaufene Einträge kommen wieder aus dem Gazetteer
+    @Indexed(name = "createdAt_ttl", expireAfter = "30d")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public GeocodedLocation(String query, String name, String canton, GeoJsonPoint point) {
+        this.query = query;
+        this.name = name;
+        this.canton = canton;
+        this.point = point;
+    }
+}
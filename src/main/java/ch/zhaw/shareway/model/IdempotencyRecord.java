@@ -0,0 +1,46 @@
+package ch.zhaw.shareway.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Response of a request sent with an Idempotency-Key header. A retry with
+ * the same key gets this response again instead of running the request.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Document("idempotencyKeys")
+public class IdempotencyRecord {
+
+    // Benutzer und Key, damit sich Keys verschiedener Benutzer nicht treffen
+    @Id
+    private String id;
+
+    // Endpoint und Parameter: ein Key gilt nur für denselben Request
+    private String request;
+
+    // null, solange der erste Request noch läuft
+    private Integer responseStatus;
+
+    private String responseBody;
+
+    @Indexed(name = "createdAt_ttl", expireAfter = "24h")
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    public IdempotencyRecord(String id, String request) {
+        this.id = id;
+        this.request = request;
+    }
+
+    public boolean isCompleted() {
+        return responseStatus != null;
+    }
+}
@@ -0,0 +1,13 @@
+package ch.zhaw.shareway.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class LocationSuggestion {
+    private String name;
+    private int uses;   // Anzahl Rides mit diesem Start oder Ziel
+    private Double lat; // null, wenn keine Ortschaft zugeordnet werden kann
+    private Double lng;
+}
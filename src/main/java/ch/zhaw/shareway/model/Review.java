@@ -3,6 +3,7 @@ package ch.zhaw.shareway.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Getter;
@@ -21,12 +22,15 @@ public class Review {
     private String id;
     
     @NonNull
+    @Indexed
     private String rideId;
     
     @NonNull
+    @Indexed
     private String fromUserId;
     
     @NonNull
+    @Indexed
     private String toUserId;
     
     @NonNull
@@ -1,10 +1,20 @@
 package ch.zhaw.shareway.model;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
@@ -12,6 +22,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.Setter;  // ← NEU!
 
 @Document("rides")
+@CompoundIndexes({
+        // Suche: Status + Start (Prefix) + Ziel (Prefix), sortiert nach Abfahrt
+        @CompoundIndex(name = "status_start_end_departure", def = "{'status': 1, 'startLocationKey': 1, 'endLocationKey': 1, 'departureTime': 1}"),
+        // Suche nur nach Ziel
+        @CompoundIndex(name = "status_end_departure", def = "{'status': 1, 'endLocationKey': 1, 'departureTime': 1}"),
+        // Suche nur nach Datum / Preis, Liste nach Status (Keyset auf departureTime, _id)
+        @CompoundIndex(name = "status_departure_id", def = "{'status': 1, 'departureTime': 1, '_id': 1}"),
+        // Liste ohne Status-Filter
+        @CompoundIndex(name = "departure_id", def = "{'departureTime': 1, '_id': 1}")
+})
 @NoArgsConstructor
 @RequiredArgsConstructor
 @Getter
@@ -20,6 +40,10 @@ public class Ride {
     @Id
     private String id;
 
+    // Optimistic Locking: save() schlägt fehl, wenn das Dokument inzwischen geändert wurde
+    @Version
+    private Long version;
+
     @NonNull
     private String driverId;
 
@@ -44,15 +68,53 @@ public class Ride {
     @NonNull
     private Integer seatsFree;
 
+    // Plätze in offenen Seat-Holds, sind in seatsFree bereits abgezogen
+    private Integer seatsHeld = 0;
+
+    // Bookings auf der Warteliste; solange 0, werden Plätze ohne Transaktion freigegeben
+    private Integer waitlisted = 0;
+
     private RideStatus status = RideStatus.OPEN;
 
     private String description;
 
     private Double routeRadiusKm = 5.0;
 
+    // Instant-Book: Buchungen werden ohne Bestätigung durch den Driver genehmigt
+    private boolean instantBook;
+
+    // Geokodierte Start- und Zielpunkte (GeoJSON, [lng, lat])
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint startPoint;
+
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint endPoint;
+
+    // Vereinfachte Route (OSRM), nur für das Matching entlang der Strecke
+    @JsonIgnore
+    private GeoJsonLineString route;
+
     private Double distanceKm;
 
     private Integer durationMinutes;
 
     private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Normalisierte Suchschlüssel (lowercase), werden beim Speichern gesetzt
+    @JsonIgnore
+    private String startLocationKey;
+
+    @JsonIgnore
+    private String endLocationKey;
+
+    public boolean isRouteStored() {
+        return route != null;
+    }
+
+    public static String toLocationKey(String location) {
+        if (location == null) {
+            return null;
+        }
+        return location.trim().toLowerCase(Locale.ROOT);
+    }
 }
\ No newline at end of file
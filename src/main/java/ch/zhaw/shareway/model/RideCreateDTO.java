@@ -17,6 +17,11 @@ public class RideCreateDTO {
     private Integer seatsTotal;
     private String description;
     private Double routeRadiusKm; // Optional, default 5.0
+    private Boolean instantBook; // Optional, Buchungen ohne Bestätigung durch den Driver
     private Double distanceKm; // Optional
     private Integer durationMinutes; // Optional
+    private Double startLat; // Optional, Koordinaten vom Autocomplete
+    private Double startLng; // Optional
+    private Double endLat; // Optional
+    private Double endLng; // Optional
 }
\ No newline at end of file
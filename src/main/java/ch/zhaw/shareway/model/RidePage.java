@@ -0,0 +1,15 @@
+package ch.zhaw.shareway.model;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RidePage {
+    private List<RideSummary> content;
+    private int size;
+    private String nextCursor;   // null auf der letzten Seite
+    private Long totalElements;  // null, wenn withTotal=false
+}
@@ -0,0 +1,12 @@
+package ch.zhaw.shareway.model;
+
+import java.util.List;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@Getter
+public class RideRouteDTO {
+    private List<List<Double>> coordinates; // GeoJSON Reihenfolge: [lng, lat]
+}
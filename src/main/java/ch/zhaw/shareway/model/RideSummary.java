@@ -0,0 +1,38 @@
+package ch.zhaw.shareway.model;
+
+import java.time.LocalDateTime;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Projection of a ride for list views. Only these fields are read from
+ * MongoDB and serialized, description, geo points and audit fields stay out.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+public class RideSummary {
+
+    // Felder, die aus "rides" gelesen werden (Namen wie in Ride)
+    public static final String[] FIELDS = {
+            "id", "driverId", "startLocation", "endLocation", "departureTime",
+            "pricePerSeat", "seatsTotal", "seatsFree", "seatsHeld", "status", "durationMinutes",
+            "instantBook", "waitlisted"
+    };
+
+    private String id;
+    private String driverId;
+    private String startLocation;
+    private String endLocation;
+    private LocalDateTime departureTime;
+    private Double pricePerSeat;
+    private Integer seatsTotal;
+    private Integer seatsFree;
+    private Integer seatsHeld;
+    private RideStatus status;
+    private Integer durationMinutes;
+    private boolean instantBook;
+    private Integer waitlisted;
+}
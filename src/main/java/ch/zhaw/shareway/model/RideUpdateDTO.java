@@ -12,4 +12,5 @@ public class RideUpdateDTO {
     private Double pricePerSeat;
     private String description;
     private Double routeRadiusKm;
+    private Boolean instantBook;
 }
\ No newline at end of file
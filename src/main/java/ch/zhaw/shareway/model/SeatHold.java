@@ -0,0 +1,49 @@
+package ch.zhaw.shareway.model;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Seats of a ride held for a rider during checkout. The seats are taken
+ * from Ride.seatsFree while the hold exists and counted in Ride.seatsHeld.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@Document("seatHolds")
+public class SeatHold {
+
+    @Id
+    private String id;
+
+    private String rideId;
+    private String riderId;
+    private Integer seats;
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    // Abgelaufene Holds gibt der Sweep zurück; der TTL-Index räumt nur auf,
+    // falls der Sweep lange nicht gelaufen ist (Plätze wären dann verloren)
+    @Indexed(name = "expiresAt_ttl", expireAfter = "1h")
+    private LocalDateTime expiresAt;
+
+    // Gesetzt, sobald ein Sweep den Hold übernommen hat
+    @Indexed(name = "sweepId", sparse = true)
+    private String sweepId;
+
+    // Zeitpunkt der Übernahme: bleibt ein Sweep hängen, übernimmt ihn später ein anderer
+    private LocalDateTime sweptAt;
+
+    public SeatHold(String rideId, String riderId, int seats, LocalDateTime expiresAt) {
+        this.rideId = rideId;
+        this.riderId = riderId;
+        this.seats = seats;
+        this.expiresAt = expiresAt;
+    }
+}
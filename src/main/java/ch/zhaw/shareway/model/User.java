@@ -3,6 +3,8 @@ package ch.zhaw.shareway.model;
 import java.time.LocalDateTime;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Getter;
@@ -16,13 +18,17 @@ import lombok.Setter;
 @RequiredArgsConstructor
 @Getter
 public class User {
+    public static final String IMAGE_PATH = "/api/images/";
+
     @Id
     private String id;
 
     @NonNull
+    @Indexed
     private String auth0Id;
 
     @NonNull
+    @Indexed(unique = true)
     private String email;
 
     @NonNull
@@ -37,16 +43,18 @@ public class User {
     @Setter
     private String lastName;
 
+    // Bilder liegen in GridFS, hier nur die File-Ids (siehe ImageService)
     @Setter
-    private String profileImage;
+    private String profileImageId;
 
     @Setter
-    private String licenseImageFront;
+    private String licenseImageFrontId;
 
     @Setter
-    private String licenseImageBack;
+    private String licenseImageBackId;
 
     @Setter
+    @Indexed
     private VerificationStatus verificationStatus = VerificationStatus.UNVERIFIED;
 
     private String pictureUrl;
@@ -62,6 +70,28 @@ public class User {
 
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    /**
+     * URL the image with the given GridFS id is served at, null without image
+     */
+    public static String imageUrl(String imageId) {
+        return imageId != null ? IMAGE_PATH + imageId : null;
+    }
+
+    @Transient
+    public String getProfileImage() {
+        return imageUrl(profileImageId);
+    }
+
+    @Transient
+    public String getLicenseImageFront() {
+        return imageUrl(licenseImageFrontId);
+    }
+
+    @Transient
+    public String getLicenseImageBack() {
+        return imageUrl(licenseImageBackId);
+    }
+
     // Profil ist vollständig wenn Name und Nachname vorhanden
     public boolean isProfileComplete() {
         return firstName != null && !firstName.isEmpty() &&
@@ -0,0 +1,46 @@
+package ch.zhaw.shareway.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Public profile of a user, e.g. to show driver and rider names next to
+ * rides and bookings. License images, phone number and verification data
+ * are not read from MongoDB.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+public class UserProfile {
+
+    // Felder, die aus "users" gelesen werden (Namen wie in User)
+    public static final String[] FIELDS = {
+            "id", "email", "name", "firstName", "lastName", "rating", "reviewCount",
+            "profileImageId", "pictureUrl"
+    };
+
+    private String id;
+    private String email;
+    private String name;
+    private String firstName;
+    private String lastName;
+    private Double rating;
+    private Integer reviewCount;
+
+    // Hochgeladenes Bild (GridFS), wird als pictureUrl ausgegeben
+    @JsonIgnore
+    private String profileImageId;
+
+    private String pictureUrl;
+
+    /**
+     * Uploaded profile image if there is one, otherwise the picture from the
+     * identity provider
+     */
+    public String getPictureUrl() {
+        return profileImageId != null ? User.imageUrl(profileImageId) : pictureUrl;
+    }
+}
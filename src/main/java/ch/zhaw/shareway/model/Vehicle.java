@@ -1,6 +1,7 @@
 package ch.zhaw.shareway.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Getter;
@@ -17,6 +18,7 @@ public class Vehicle {
     private String id;
     
     @NonNull
+    @Indexed
     private String ownerId; // Referenz zu User (muss DRIVER sein)
     
     @NonNull
@@ -17,9 +17,6 @@ public interface BookingRepository extends MongoRepository<Booking, String> {
     // Alle Bookings für eine Ride
     List<Booking> findByRideId(String rideId);
     
-    // Alle Bookings mit einem bestimmten Status
-    List<Booking> findByStatus(BookingStatus status);
-    
     // Bookings von einem Rider mit bestimmtem Status
     List<Booking> findByRiderIdAndStatus(String riderId, BookingStatus status);
     
@@ -27,9 +24,6 @@ public interface BookingRepository extends MongoRepository<Booking, String> {
     List<Booking> findByRideIdAndStatus(String rideId, BookingStatus status);
 
     List<Booking> findByRiderIdAndRideId(String riderId, String rideId);
-    
-    // NEU: Prüfen ob Rider bereits für diese Ride gebucht hat
-    boolean existsByRideIdAndRiderId(String rideId, String riderId);
 
     // Alle Bookings für eine Ride löschen
     void deleteByRideId(String rideId);
@@ -0,0 +1,8 @@
+package ch.zhaw.shareway.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import ch.zhaw.shareway.model.GeocodedLocation;
+
+public interface GeocodedLocationRepository extends MongoRepository<GeocodedLocation, String> {
+}
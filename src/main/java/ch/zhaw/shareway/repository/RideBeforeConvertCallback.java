@@ -0,0 +1,21 @@
+package ch.zhaw.shareway.repository;
+
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+import ch.zhaw.shareway.model.Ride;
+
+/**
+ * Sets the normalized search keys on every save, so that the
+ * search queries can use the compound indexes on Ride
+ */
+@Component
+public class RideBeforeConvertCallback implements BeforeConvertCallback<Ride> {
+
+    @Override
+    public Ride onBeforeConvert(Ride ride, String collection) {
+        ride.setStartLocationKey(Ride.toLocationKey(ride.getStartLocation()));
+        ride.setEndLocationKey(Ride.toLocationKey(ride.getEndLocation()));
+        return ride;
+    }
+}
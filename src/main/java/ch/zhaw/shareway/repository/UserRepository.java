@@ -6,13 +6,10 @@ import java.util.Optional;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import ch.zhaw.shareway.model.User;
-import ch.zhaw.shareway.model.UserRole;
 import ch.zhaw.shareway.model.VerificationStatus;
 
 public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByEmail(String email);
     Optional<User> findByAuth0Id(String auth0Id);
-    List<User> findByRole(UserRole role);
-    List<User> findByRatingGreaterThanEqual(Double minRating);
     List<User> findByVerificationStatus(VerificationStatus status);
 }
\ No newline at end of file
@@ -9,7 +9,4 @@ import ch.zhaw.shareway.model.Vehicle;
 public interface VehicleRepository extends MongoRepository<Vehicle, String> {
     // Query-Methoden
     List<Vehicle> findByOwnerId(String ownerId);
-    List<Vehicle> findBySeatsGreaterThanEqual(Integer minSeats);
-    List<Vehicle> findByMake(String make);
-    List<Vehicle> findByModel(String model);
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package ch.zhaw.shareway.security;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import ch.zhaw.shareway.model.UserRole;
+import lombok.Getter;
+
+/**
+ * The caller of the current request, resolved once from the JWT when the
+ * request is authenticated. Controllers get it with
+ * {@code @AuthenticationPrincipal AuthenticatedUser me}.
+ */
+@Getter
+public class AuthenticatedUser {
+
+    private final String email;
+    private final String subject;
+    private final String name;
+    private final Set<UserRole> roles;
+
+    public AuthenticatedUser(String email, String subject, String name, Set<UserRole> roles) {
+        this.email = email;
+        this.subject = subject;
+        this.name = name != null ? name : email;
+        this.roles = roles.isEmpty() ? EnumSet.noneOf(UserRole.class) : EnumSet.copyOf(roles);
+    }
+
+    public static AuthenticatedUser from(Jwt jwt) {
+        EnumSet<UserRole> roles = EnumSet.noneOf(UserRole.class);
+        List<String> claim = jwt.getClaimAsStringList("user_roles");
+        if (claim != null) {
+            for (String role : claim) {
+                UserRole userRole = role(role);
+                if (userRole != null) {
+                    roles.add(userRole);
+                }
+            }
+        }
+        return new AuthenticatedUser(jwt.getClaimAsString("email"), jwt.getSubject(),
+                jwt.getClaimAsString("name"), roles);
+    }
+
+    // Rollen im Token sind klein geschrieben ("admin", "user"), unbekannte werden ignoriert
+    public static UserRole role(String role) {
+        for (UserRole userRole : UserRole.values()) {
+            if (userRole.name().equalsIgnoreCase(role)) {
+                return userRole;
+            }
+        }
+        return null;
+    }
+
+    public boolean hasRole(UserRole role) {
+        return roles.contains(role);
+    }
+
+    public boolean isAdmin() {
+        return roles.contains(UserRole.ADMIN);
+    }
+}
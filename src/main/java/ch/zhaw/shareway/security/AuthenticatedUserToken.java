@@ -0,0 +1,42 @@
+package ch.zhaw.shareway.security;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
+
+/**
+ * Authentication of a request with a JWT whose principal is the resolved
+ * {@link AuthenticatedUser} instead of the raw token. Roles become
+ * ROLE_ADMIN / ROLE_USER authorities.
+ */
+public class AuthenticatedUserToken extends AbstractOAuth2TokenAuthenticationToken<Jwt> {
+
+    public AuthenticatedUserToken(Jwt jwt, AuthenticatedUser user) {
+        super(jwt, user, jwt, user.getRoles().stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.name()))
+                .collect(Collectors.toList()));
+        setAuthenticated(true);
+    }
+
+    @Override
+    public Map<String, Object> getTokenAttributes() {
+        return getToken().getClaims();
+    }
+
+    @Override
+    public String getName() {
+        return getToken().getSubject();
+    }
+
+    /**
+     * Used by the resource server instead of the default JwtAuthenticationConverter
+     */
+    public static Converter<Jwt, AbstractAuthenticationToken> converter() {
+        return jwt -> new AuthenticatedUserToken(jwt, AuthenticatedUser.from(jwt));
+    }
+}
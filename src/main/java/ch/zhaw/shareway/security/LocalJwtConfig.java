@@ -0,0 +1,53 @@
+package ch.zhaw.shareway.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import com.mongodb.ConnectionString;
+
+/**
+ * Profile "local-jwt": tokens are signed and verified with a local key
+ * instead of Auth0, e.g. to benchmark authentication offline. Tokens are
+ * issued by GET /local/token?email=...&roles=user to loopback clients only.
+ *
+ * Anyone who can reach the issuer can act as any user, so the profile
+ * refuses to start unless MongoDB runs on this machine
+ * (application-local-jwt.properties points to mongodb://localhost:27017/).
+ *
+ * mvn spring-boot:run -Dspring-boot.run.profiles=local-jwt
+ */
+@Configuration
+@Profile("local-jwt")
+public class LocalJwtConfig {
+
+    @Bean
+    public LocalJwtIssuer localJwtIssuer(@Value("${spring.data.mongodb.uri}") String mongoUri) {
+        if (!isLocal(mongoUri)) {
+            throw new IllegalStateException(
+                    "Profile local-jwt only runs against a local MongoDB, not " + new ConnectionString(mongoUri)
+                            .getHosts());
+        }
+        return new LocalJwtIssuer();
+    }
+
+    // Ersetzt den Decoder mit issuer-uri (Auth0)
+    @Bean
+    public JwtDecoder jwtDecoder(LocalJwtIssuer localJwtIssuer) {
+        return localJwtIssuer.decoder();
+    }
+
+    // Alle Hosts auf diesem Rechner; SRV-URIs (Atlas) sind nie lokal
+    static boolean isLocal(String mongoUri) {
+        ConnectionString connection = new ConnectionString(mongoUri);
+        if (connection.isSrvProtocol()) {
+            return false;
+        }
+        return connection.getHosts().stream()
+                .map(host -> host.startsWith("[") ? host.substring(1, host.indexOf(']'))
+                        : host.split(":")[0])
+                .allMatch(host -> host.equals("localhost") || host.startsWith("127.") || host.equals("::1"));
+    }
+}
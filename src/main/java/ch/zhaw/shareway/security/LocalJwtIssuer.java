@@ -0,0 +1,88 @@
+package ch.zhaw.shareway.security;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+
+/**
+ * Stand-in for Auth0 to run and benchmark the app offline: signs RS256
+ * tokens with a key generated at startup and verifies them with a
+ * NimbusJwtDecoder, i.e. the same signature and claim checks as with the
+ * real JWKS, without fetching keys over the network.
+ */
+public class LocalJwtIssuer {
+
+    public static final String ISSUER = "https://shareway.local/";
+
+    private final String keyId = UUID.randomUUID().toString();
+    private final RSAPublicKey publicKey;
+    private final JwtEncoder encoder;
+
+    public LocalJwtIssuer() {
+        KeyPair keyPair = generateKeyPair();
+        this.publicKey = (RSAPublicKey) keyPair.getPublic();
+        RSAKey jwk = new RSAKey.Builder(publicKey)
+                .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .keyID(keyId)
+                .build();
+        this.encoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(jwk)));
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("RSA not available", e);
+        }
+    }
+
+    /**
+     * Sign a token with the claims the app reads from Auth0 tokens
+     *
+     * @param roles e.g. "user", "admin"
+     */
+    public String issue(String email, List<String> roles, Duration validity) {
+        Instant now = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer(ISSUER)
+                .subject("local|" + email)
+                .issuedAt(now)
+                .expiresAt(now.plus(validity))
+                .claim("email", email)
+                .claim("name", email)
+                .claim("user_roles", roles)
+                .build();
+        JwsHeader header = JwsHeader.with(SignatureAlgorithm.RS256).keyId(keyId).build();
+        return encoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+    }
+
+    /**
+     * Decoder that checks the signature, expiry and issuer of local tokens
+     */
+    public NimbusJwtDecoder decoder() {
+        NimbusJwtDecoder decoder = NimbusJwtDecoder.withPublicKey(publicKey).build();
+        decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(ISSUER));
+        return decoder;
+    }
+}
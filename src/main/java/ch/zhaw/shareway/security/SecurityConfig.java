@@ -1,25 +1,40 @@
 package ch.zhaw.shareway.security;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.web.SecurityFilterChain;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    // Bereits geprüfte Tokens merken (0 = jedes Token bei jedem Request prüfen)
+    @Value("${shareway.jwt-cache.max-size:10000}")
+    private long jwtCacheSize;
+
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtDecoder jwtDecoder,
+            MeterRegistry meterRegistry) throws Exception {
+        JwtDecoder decoder = jwtCacheSize > 0 ? new CachingJwtDecoder(jwtDecoder, jwtCacheSize, meterRegistry)
+                : jwtDecoder;
         http
             .authorizeHttpRequests(authorize -> authorize
                 .requestMatchers("/*").permitAll()
                 .requestMatchers("/api/**").authenticated()
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/**").authenticated()
                 .requestMatchers("/**").permitAll()           
             )
-            .oauth2ResourceServer((oauth2) -> oauth2.jwt(Customizer.withDefaults()));
+            .oauth2ResourceServer((oauth2) -> oauth2.jwt(jwt -> jwt
+                .decoder(decoder)
+                // Claims einmal pro Request auslesen, Controller bekommen den AuthenticatedUser
+                .jwtAuthenticationConverter(AuthenticatedUserToken.converter())));
         return http.build();
     }
 }
\ No newline at end of file
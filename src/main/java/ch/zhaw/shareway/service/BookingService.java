@@ -1,23 +1,56 @@
 package ch.zhaw.shareway.service;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
 
 import ch.zhaw.shareway.model.Booking;
 import ch.zhaw.shareway.model.BookingStatus;
+import ch.zhaw.shareway.model.Mail;
 import ch.zhaw.shareway.model.Ride;
 import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.SeatHold;
 import ch.zhaw.shareway.model.User;
 import ch.zhaw.shareway.repository.BookingRepository;
 import ch.zhaw.shareway.repository.RideRepository;
-import ch.zhaw.shareway.repository.UserRepository;
 
 @Service
 public class BookingService {
 
+    // Höchstens so viele Wartende werden pro Freigabe geprüft
+    static final int PROMOTION_SCAN = 50;
+
     @Autowired
     private BookingRepository bookingRepository;
 
@@ -25,11 +58,32 @@ public class BookingService {
     private RideRepository rideRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private UserCache userCache;
 
     @Autowired
     private DiscountService discountService;
 
+    @Autowired
+    private RideGeoIndex rideGeoIndex;
+
+    @Autowired
+    private RideRouteIndex rideRouteIndex;
+
+    @Autowired
+    private GeocodingService geocodingService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private MailService mailService;
+
     public Optional<Booking> createBooking(String rideId, String riderId, int seats) {
         return createBooking(rideId, riderId, seats, null, null, null);
     }
@@ -43,7 +97,7 @@ public class BookingService {
             String pickupLocation, String message, String promoCode) {
         
         // Prüfen ob User existiert und Profil vollständig ist
-        Optional<User> userOpt = userRepository.findByEmail(riderId);
+        Optional<User> userOpt = userCache.findByEmail(riderId);
         if (userOpt.isEmpty() || !userOpt.get().isProfileComplete()) {
             return Optional.empty();
         }
@@ -61,11 +115,6 @@ public class BookingService {
             return Optional.empty();
         }
 
-        // Validate: Rider cannot book the same ride twice
-        if (bookingRepository.existsByRideIdAndRiderId(rideId, riderId)) {
-            return Optional.empty();
-        }
-
         // Validate: Ride must be OPEN
         if (ride.getStatus() != RideStatus.OPEN) {
             return Optional.empty();
@@ -76,13 +125,128 @@ public class BookingService {
             return Optional.empty();
         }
 
+        Booking booking = newBooking(ride, riderId, seats, pickupLocation, message, promoCode);
+        if (ride.isInstantBook()) {
+            return instantBook(booking, ride.getDriverId());
+        }
+        return insert(booking);
+    }
+
+    /**
+     * Create an APPROVED booking and take its seats in one multi-document
+     * transaction, so there is no separate approval round-trip. A write
+     * conflict with a parallel booking aborts the transaction, which is then
+     * retried.
+     *
+     * @return the booking, or empty if the seats are gone or the rider already booked
+     */
+    private Optional<Booking> instantBook(Booking booking, String driverId) {
+        booking.setStatus(BookingStatus.APPROVED);
+        try {
+            Ride ride = optimisticRetry.run("booking.instant", () -> transactionTemplate.execute(status -> {
+                Ride reserved = reserveSeats(booking.getRideId(), driverId, booking.getSeats());
+                if (reserved != null) {
+                    booking.setId(null);
+                    bookingRepository.insert(booking);
+                }
+                return reserved;
+            }));
+            if (ride == null) {
+                return Optional.empty();
+            }
+            updateIndexes(ride);
+            return Optional.of(booking);
+        } catch (DuplicateKeyException e) {
+            // Transaktion zurückgerollt, Plätze sind nicht reserviert
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Put the rider on the waitlist of a ride without enough free seats. The
+     * waitlist counter of the ride is increased in the same transaction, so a
+     * concurrent release either sees the entry or conflicts and is retried.
+     *
+     * @return the WAITLISTED booking, or empty if the seats are free (book
+     *         instead), the ride is closed or the rider already has a booking
+     */
+    public Optional<Booking> joinWaitlist(String rideId, String riderId, int seats, String pickupLocation,
+            String message, String promoCode) {
+        Optional<User> userOpt = userCache.findByEmail(riderId);
+        if (userOpt.isEmpty() || !userOpt.get().isProfileComplete()) {
+            return Optional.empty();
+        }
+
+        Optional<Ride> rideOpt = rideRepository.findById(rideId);
+        if (rideOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Ride ride = rideOpt.get();
+        // Mehr Plätze als die Ride hat, rücken nie nach
+        if (ride.getDriverId().equals(riderId) || seats < 1 || seats > ride.getSeatsTotal()) {
+            return Optional.empty();
+        }
+
+        Booking booking = newBooking(ride, riderId, seats, pickupLocation, message, promoCode);
+        booking.setStatus(BookingStatus.WAITLISTED);
+        booking.setWaitlistedAt(booking.getCreatedAt());
+
+        Query query = new Query(Criteria.where("id").is(rideId)
+                .and("status").in(RideStatus.OPEN, RideStatus.FULL)
+                .and("seatsFree").lt(seats));
+        try {
+            Ride joined = optimisticRetry.run("booking.waitlist", () -> transactionTemplate.execute(status -> {
+                Ride updated = mongoTemplate.findAndModify(query, new Update().inc("waitlisted", 1),
+                        FindAndModifyOptions.options().returnNew(true), Ride.class);
+                if (updated != null) {
+                    booking.setId(null);
+                    bookingRepository.insert(booking);
+                }
+                return updated;
+            }));
+            return joined == null ? Optional.empty() : Optional.of(booking);
+        } catch (DuplicateKeyException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Turn a claimed seat hold into a REQUESTED booking. The seats stay
+     * reserved for the booking, so approval does not take them again.
+     *
+     * @param hold Hold that was already removed from "seatHolds"
+     * @return the booking, or empty if the rider cannot book (the caller gives the seats back)
+     */
+    public Optional<Booking> createBookingFromHold(SeatHold hold, String pickupLocation, String message,
+            String promoCode) {
+        Optional<User> userOpt = userCache.findByEmail(hold.getRiderId());
+        if (userOpt.isEmpty() || !userOpt.get().isProfileComplete()) {
+            return Optional.empty();
+        }
+
+        // Status und freie Plätze wurden beim Anlegen des Holds geprüft
+        Optional<Ride> rideOpt = rideRepository.findById(hold.getRideId());
+        if (rideOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Booking booking = newBooking(rideOpt.get(), hold.getRiderId(), hold.getSeats(), pickupLocation, message,
+                promoCode);
+        booking.setSeatsReserved(true);
+        return insert(booking);
+    }
+
+    private Booking newBooking(Ride ride, String riderId, int seats, String pickupLocation, String message,
+            String promoCode) {
         // Create booking using constructor
-        Booking booking = new Booking(rideId, riderId, seats);
+        Booking booking = new Booking(ride.getId(), riderId, seats);
         booking.setUpdatedAt(LocalDateTime.now());
 
         // Set pickup location
         if (pickupLocation != null && !pickupLocation.isEmpty()) {
             booking.setPickupLocation(pickupLocation);
+            booking.setPickupPoint(geocodingService.toPoint(pickupLocation));
         }
 
         // Set message
@@ -107,8 +271,32 @@ public class BookingService {
         } else {
             booking.setFinalPrice(originalPrice);
         }
+        return booking;
+    }
+
+    private Optional<Booking> insert(Booking booking) {
+        // Validate: Rider cannot book the same ride twice. Der Unique-Index
+        // ride_rider_current lässt pro Rider nur eine aktive Buchung je Ride zu
+        try {
+            return Optional.of(bookingRepository.save(booking));
+        } catch (DuplicateKeyException e) {
+            return Optional.empty();
+        }
+    }
 
-        return Optional.of(bookingRepository.save(booking));
+    // Nur die rideId laden, z.B. um Befehle der Lane ihrer Ride zuzuordnen
+    public Optional<String> findRideId(String bookingId) {
+        Query query = new Query(Criteria.where("id").is(bookingId));
+        query.fields().include("rideId");
+        return Optional.ofNullable(mongoTemplate.findOne(query, Booking.class)).map(Booking::getRideId);
+    }
+
+    // Dasselbe für mehrere Bookings in einer Abfrage: bookingId -> rideId, unbekannte fehlen
+    public Map<String, String> findRideIds(List<String> bookingIds) {
+        Query query = new Query(Criteria.where("id").in(bookingIds));
+        query.fields().include("rideId");
+        return mongoTemplate.find(query, Booking.class).stream()
+                .collect(Collectors.toMap(Booking::getId, Booking::getRideId));
     }
 
     public Optional<Booking> approveBooking(String bookingId, String driverId) {
@@ -120,36 +308,39 @@ public class BookingService {
 
         Booking booking = bookingOpt.get();
 
-        Optional<Ride> rideOpt = rideRepository.findById(booking.getRideId());
-        if (rideOpt.isEmpty()) {
+        if (booking.getStatus() != BookingStatus.REQUESTED) {
             return Optional.empty();
         }
 
-        Ride ride = rideOpt.get();
-
-        if (!ride.getDriverId().equals(driverId)) {
-            return Optional.empty();
+        if (booking.isSeatsReserved()) {
+            // Plätze hält die Booking schon seit dem Seat-Hold
+            if (!mongoTemplate.exists(new Query(Criteria.where("id").is(booking.getRideId())
+                    .and("driverId").is(driverId)), Ride.class)) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(changeStatus(bookingId,
+                    Criteria.where("status").is(BookingStatus.REQUESTED), BookingStatus.APPROVED, true));
         }
 
-        if (booking.getStatus() != BookingStatus.REQUESTED) {
+        // Plätze zuerst reservieren: schlägt fehl, wenn die Ride fehlt, nicht
+        // dem Driver gehört oder nicht mehr genug Plätze frei sind
+        Ride ride = reserveSeats(booking.getRideId(), driverId, booking.getSeats());
+        if (ride == null) {
             return Optional.empty();
         }
 
-        if (ride.getSeatsFree() < booking.getSeats()) {
-            return Optional.empty();
+        Booking approved = changeStatus(bookingId, Criteria.where("status").is(BookingStatus.REQUESTED),
+                BookingStatus.APPROVED, true);
+        if (approved == null) {
+            // Booking wurde inzwischen storniert oder abgelehnt: Plätze zurückgeben
+            ride = releaseSeatsAndPromote(booking.getRideId(), booking.getSeats());
         }
 
-        booking.setStatus(BookingStatus.APPROVED);
-        booking.setUpdatedAt(LocalDateTime.now());
-
-        ride.setSeatsFree(ride.getSeatsFree() - booking.getSeats());
-
-        if (ride.getSeatsFree() == 0) {
-            ride.setStatus(RideStatus.FULL);
+        if (ride != null) {
+            rideGeoIndex.update(ride);
+            rideRouteIndex.update(ride);
         }
-
-        rideRepository.save(ride);
-        return Optional.of(bookingRepository.save(booking));
+        return Optional.ofNullable(approved);
     }
 
     public Optional<Booking> rejectBooking(String bookingId, String driverId) {
@@ -176,10 +367,152 @@ public class BookingService {
             return Optional.empty();
         }
 
-        booking.setStatus(BookingStatus.REJECTED);
-        booking.setUpdatedAt(LocalDateTime.now());
+        // Nur REQUESTED ablehnen, auch wenn parallel genehmigt oder storniert wird
+        Booking rejected = changeStatusAndRelease("booking.reject", bookingId,
+                Criteria.where("status").is(BookingStatus.REQUESTED), BookingStatus.REJECTED);
+        if (rejected == null) {
+            return Optional.empty();
+        }
+
+        rejected.setStatus(BookingStatus.REJECTED);
+        rejected.setUpdatedAt(LocalDateTime.now());
+        return Optional.of(rejected);
+    }
+
+    /**
+     * Approve several REQUESTED bookings of the driver at once. Seats are
+     * taken with one conditional update per ride and the status changes are
+     * written with one bulk write. Requests that do not fit into the free
+     * seats anymore stay REQUESTED, oldest requests are approved first.
+     *
+     * @return the approved bookings
+     */
+    public List<Booking> approveBookings(List<String> bookingIds, String driverId) {
+        Map<String, Ride> rides = new HashMap<>();
+        Map<String, List<Booking>> requested = requestedByRide(bookingIds, driverId, rides);
+
+        List<Booking> accepted = new ArrayList<>();
+        Map<String, Ride> changedRides = new HashMap<>();
+        requested.forEach((rideId, bookings) -> {
+            List<Booking> fitting = new ArrayList<>();
+            int seats = 0;
+            for (Booking booking : bookings) {
+                if (booking.isSeatsReserved()) {
+                    fitting.add(booking);
+                } else if (seats + booking.getSeats() <= rides.get(rideId).getSeatsFree()) {
+                    seats += booking.getSeats();
+                    fitting.add(booking);
+                }
+            }
+            if (seats > 0) {
+                Ride ride = reserveSeats(rideId, driverId, seats);
+                if (ride == null) {
+                    // Ride wurde inzwischen geändert: nur Bookings mit eigenen Plätzen genehmigen
+                    fitting.removeIf(booking -> !booking.isSeatsReserved());
+                } else {
+                    changedRides.put(rideId, ride);
+                }
+            }
+            accepted.addAll(fitting);
+        });
+
+        List<Booking> approved = writeStatus(accepted, BookingStatus.APPROVED);
+        if (approved.size() < accepted.size()) {
+            // Parallel storniert oder abgelehnt: reservierte Plätze zurückgeben
+            Map<String, Integer> unused = new HashMap<>();
+            accepted.stream()
+                    .filter(booking -> !approved.contains(booking) && !booking.isSeatsReserved())
+                    .forEach(booking -> unused.merge(booking.getRideId(), booking.getSeats(), Integer::sum));
+            unused.forEach((rideId, seats) -> changedRides.put(rideId, releaseSeatsAndPromote(rideId, seats)));
+        }
+        changedRides.values().forEach(this::updateIndexes);
+        return approved;
+    }
+
+    /**
+     * Reject several REQUESTED bookings of the driver with one bulk write.
+     * Seats that came from a seat hold are given back per ride.
+     *
+     * @return the rejected bookings
+     */
+    public List<Booking> rejectBookings(List<String> bookingIds, String driverId) {
+        Map<String, List<Booking>> requested = requestedByRide(bookingIds, driverId, new HashMap<>());
+        List<Booking> rejected = writeStatus(
+                requested.values().stream().flatMap(List::stream).toList(), BookingStatus.REJECTED);
+
+        Map<String, Integer> reserved = new HashMap<>();
+        rejected.stream()
+                .filter(Booking::isSeatsReserved)
+                .forEach(booking -> reserved.merge(booking.getRideId(), booking.getSeats(), Integer::sum));
+        reserved.forEach((rideId, seats) -> updateIndexes(releaseSeatsAndPromote(rideId, seats)));
+        return rejected;
+    }
+
+    // REQUESTED Bookings auf Rides des Drivers, je Ride nach Anfragezeit sortiert
+    private Map<String, List<Booking>> requestedByRide(List<String> bookingIds, String driverId,
+            Map<String, Ride> rides) {
+        Query bookingQuery = new Query(Criteria.where("id").in(bookingIds)
+                .and("status").is(BookingStatus.REQUESTED))
+                .with(Sort.by("createdAt"));
+        List<Booking> bookings = mongoTemplate.find(bookingQuery, Booking.class);
+        if (bookings.isEmpty()) {
+            return Map.of();
+        }
+
+        Set<String> rideIds = bookings.stream().map(Booking::getRideId).collect(Collectors.toSet());
+        mongoTemplate.find(new Query(Criteria.where("id").in(rideIds).and("driverId").is(driverId)), Ride.class)
+                .forEach(ride -> rides.put(ride.getId(), ride));
 
-        return Optional.of(bookingRepository.save(booking));
+        Map<String, List<Booking>> byRide = new LinkedHashMap<>();
+        for (Booking booking : bookings) {
+            if (rides.containsKey(booking.getRideId())) {
+                byRide.computeIfAbsent(booking.getRideId(), id -> new ArrayList<>()).add(booking);
+            }
+        }
+        return byRide;
+    }
+
+    /**
+     * Set the status of bookings that are still REQUESTED with one bulk
+     * write. Bulk writes do not increase @Version, so it is set explicitly.
+     *
+     * @return the bookings that were changed; bookings changed in between by
+     *         someone else are left out
+     */
+    private List<Booking> writeStatus(List<Booking> bookings, BookingStatus status) {
+        if (bookings.isEmpty()) {
+            return List.of();
+        }
+
+        // Millisekunden wie in MongoDB, damit der Zeitstempel unten wieder passt
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+        for (Booking booking : bookings) {
+            bulk.updateOne(new Query(Criteria.where("id").is(booking.getId())
+                    .and("status").is(BookingStatus.REQUESTED)),
+                    new Update().set("status", status).set("updatedAt", now).inc("version", 1));
+        }
+        BulkWriteResult result = bulk.execute();
+
+        List<Booking> written = bookings;
+        if (result.getModifiedCount() < bookings.size()) {
+            // Eigene Änderungen am Zeitstempel erkennen
+            Query query = new Query(Criteria.where("id").in(bookings.stream().map(Booking::getId).toList())
+                    .and("status").is(status)
+                    .and("updatedAt").is(now));
+            query.fields().include("id");
+            Set<String> ids = mongoTemplate.find(query, Booking.class).stream()
+                    .map(Booking::getId)
+                    .collect(Collectors.toSet());
+            written = bookings.stream().filter(booking -> ids.contains(booking.getId())).toList();
+        }
+
+        for (Booking booking : written) {
+            booking.setStatus(status);
+            booking.setUpdatedAt(now);
+            booking.setVersion(booking.getVersion() == null ? 1 : booking.getVersion() + 1);
+        }
+        return written;
     }
 
     public Optional<Booking> cancelBooking(String bookingId, String riderId) {
@@ -196,27 +529,250 @@ public class BookingService {
         }
 
         if (booking.getStatus() != BookingStatus.REQUESTED &&
-                booking.getStatus() != BookingStatus.APPROVED) {
+                booking.getStatus() != BookingStatus.APPROVED &&
+                booking.getStatus() != BookingStatus.WAITLISTED) {
             return Optional.empty();
         }
 
-        if (booking.getStatus() == BookingStatus.APPROVED) {
-            Optional<Ride> rideOpt = rideRepository.findById(booking.getRideId());
-            if (rideOpt.isPresent()) {
-                Ride ride = rideOpt.get();
-                ride.setSeatsFree(ride.getSeatsFree() + booking.getSeats());
+        Booking previous = changeStatusAndRelease("booking.cancel", bookingId,
+                Criteria.where("status").in(BookingStatus.REQUESTED, BookingStatus.APPROVED,
+                        BookingStatus.WAITLISTED),
+                BookingStatus.CANCELED);
+        if (previous == null) {
+            return Optional.empty();
+        }
 
-                if (ride.getStatus() == RideStatus.FULL) {
-                    ride.setStatus(RideStatus.OPEN);
-                }
+        previous.setStatus(BookingStatus.CANCELED);
+        previous.setUpdatedAt(LocalDateTime.now());
+        return Optional.of(previous);
+    }
 
-                rideRepository.save(ride);
+    /**
+     * Change the status of a booking and give back what it holds in the same
+     * transaction: the seats of an approved, held or promoted booking (then
+     * waitlisted bookings move up), or the waitlist place of a waitlisted
+     * one. Write conflicts abort the transaction and it is retried; if it
+     * fails for good, the booking keeps its status and the ride its seats.
+     *
+     * @param operation Name for the retry metrics
+     * @return the booking before the change, or null if it did not match expected
+     */
+    private Booking changeStatusAndRelease(String operation, String bookingId, Criteria expected,
+            BookingStatus status) {
+        List<Booking> promoted = new ArrayList<>();
+        AtomicReference<Ride> ride = new AtomicReference<>();
+        Booking previous = optimisticRetry.run(operation, () -> transactionTemplate.execute(tx -> {
+            promoted.clear();
+            ride.set(null);
+            // Vorheriger Stand, damit Plätze nur zurückgehen, wenn die Booking welche hält
+            Booking before = changeStatus(bookingId, expected, status, false);
+            if (before == null) {
+                return null;
+            }
+            if (before.getStatus() == BookingStatus.WAITLISTED) {
+                ride.set(mongoTemplate.findAndModify(new Query(Criteria.where("id").is(before.getRideId())),
+                        new Update().inc("waitlisted", -1), FindAndModifyOptions.options().returnNew(true),
+                        Ride.class));
+            } else if (before.getStatus() == BookingStatus.APPROVED || before.isSeatsReserved()) {
+                Ride released = releaseSeats(before.getRideId(), before.getSeats());
+                ride.set(released == null ? null : promote(released, promoted));
             }
+            return before;
+        }));
+
+        if (ride.get() != null) {
+            updateIndexes(ride.get());
+            notifyPromoted(promoted, ride.get());
         }
+        return previous;
+    }
 
-        booking.setStatus(BookingStatus.CANCELED);
-        booking.setUpdatedAt(LocalDateTime.now());
+    /**
+     * Reserve seats in one findAndModify: only matches when the ride belongs
+     * to the driver and has enough free seats, and sets FULL in the same
+     * update when the last seats are taken.
+     *
+     * @return the updated ride, or null if nothing matched
+     */
+    Ride reserveSeats(String rideId, String driverId, int seats) {
+        Query query = new Query(Criteria.where("id").is(rideId)
+                .and("driverId").is(driverId)
+                .and("seatsFree").gte(seats));
+
+        return mongoTemplate.findAndModify(query, AggregationUpdate.update().set(takeSeats(seats)),
+                FindAndModifyOptions.options().returnNew(true), Ride.class);
+    }
+
+    // Ein $set-Stage: $seatsFree und $status sind die Werte vor dem Update
+    private static SetOperation takeSeats(int seats) {
+        return SetOperation
+                .set("seatsFree").toValue(ArithmeticOperators.valueOf("seatsFree").subtract(seats))
+                .and().set("status").toValue(ConditionalOperators
+                        .when(ComparisonOperators.valueOf("seatsFree").equalToValue(seats))
+                        .then(RideStatus.FULL.name())
+                        .otherwiseValueOf("status"));
+    }
+
+    /**
+     * Give seats back in one findAndModify and reopen a FULL ride.
+     *
+     * @return the updated ride, or null if the ride does not exist anymore
+     */
+    Ride releaseSeats(String rideId, int seats) {
+        return mongoTemplate.findAndModify(new Query(Criteria.where("id").is(rideId)), releaseUpdate(seats),
+                FindAndModifyOptions.options().returnNew(true), Ride.class);
+    }
+
+    private static AggregationUpdate releaseUpdate(int seats) {
+        return AggregationUpdate.update().set(SetOperation
+                .set("seatsFree").toValue(ArithmeticOperators.valueOf("seatsFree").add(seats))
+                .and().set("status").toValue(ConditionalOperators
+                        .when(ComparisonOperators.valueOf("status").equalToValue(RideStatus.FULL.name()))
+                        .then(RideStatus.OPEN.name())
+                        .otherwiseValueOf("status")));
+    }
+
+    /**
+     * Give seats back. Without a waitlist this is one conditional update;
+     * otherwise freeing the seats and promoting the oldest waitlisted
+     * bookings that fit run in one transaction, so nobody can take the seats
+     * in between. Concurrent releases write the same ride document, so one
+     * transaction aborts and is retried.
+     *
+     * @return the updated ride, or null if the ride does not exist anymore
+     */
+    Ride releaseSeatsAndPromote(String rideId, int seats) {
+        Query noWaitlist = new Query(Criteria.where("id").is(rideId).and("waitlisted").not().gt(0));
+        Ride ride = mongoTemplate.findAndModify(noWaitlist, releaseUpdate(seats),
+                FindAndModifyOptions.options().returnNew(true), Ride.class);
+        return ride != null ? ride : releaseAndPromote(rideId, seats);
+    }
 
-        return Optional.of(bookingRepository.save(booking));
+    /**
+     * Promote waitlisted bookings into seats that were freed elsewhere, e.g.
+     * by an expired seat hold.
+     */
+    public void promoteWaitlist(String rideId) {
+        updateIndexes(releaseAndPromote(rideId, 0));
+    }
+
+    private Ride releaseAndPromote(String rideId, int seats) {
+        List<Booking> promoted = new ArrayList<>();
+        Ride ride = optimisticRetry.run("booking.promote", () -> transactionTemplate.execute(status -> {
+            promoted.clear();
+            Ride current = seats > 0 ? releaseSeats(rideId, seats) : mongoTemplate.findById(rideId, Ride.class);
+            return current == null ? null : promote(current, promoted);
+        }));
+        if (ride != null) {
+            notifyPromoted(promoted, ride);
+        }
+        return ride;
+    }
+
+    // Läuft in der Transaktion: älteste wartende Bookings nachrücken lassen, solange sie passen
+    private Ride promote(Ride ride, List<Booking> promoted) {
+        if (ride.getStatus() != RideStatus.OPEN || ride.getSeatsFree() <= 0) {
+            return ride;
+        }
+
+        // Nur den Anfang der Warteliste lesen (Index ride_waitlist), auch bei langen Listen
+        Query waitlist = new Query(Criteria.where("rideId").is(ride.getId())
+                .and("status").is(BookingStatus.WAITLISTED))
+                .with(Sort.by("waitlistedAt", "id"))
+                .limit(PROMOTION_SCAN);
+        int seats = 0;
+        for (Booking booking : mongoTemplate.find(waitlist, Booking.class)) {
+            if (seats + booking.getSeats() <= ride.getSeatsFree()) {
+                seats += booking.getSeats();
+                promoted.add(booking);
+            }
+            if (seats == ride.getSeatsFree()) {
+                break;
+            }
+        }
+        if (promoted.isEmpty()) {
+            return ride;
+        }
+
+        // Plätze gehören ab jetzt der Booking; bei Instant-Book direkt genehmigt
+        BookingStatus status = ride.isInstantBook() ? BookingStatus.APPROVED : BookingStatus.REQUESTED;
+        LocalDateTime now = LocalDateTime.now();
+        UpdateResult moved = mongoTemplate.updateMulti(
+                new Query(Criteria.where("id").in(promoted.stream().map(Booking::getId).toList())
+                        .and("status").is(BookingStatus.WAITLISTED)),
+                new Update().set("status", status).set("seatsReserved", true).set("updatedAt", now)
+                        .inc("version", 1),
+                Booking.class);
+        if (moved.getModifiedCount() != promoted.size()) {
+            // Warteliste hat sich geändert: Transaktion abbrechen, OptimisticRetry versucht es neu
+            throw new OptimisticLockingFailureException("Waitlist of ride " + ride.getId() + " changed");
+        }
+        for (Booking booking : promoted) {
+            booking.setStatus(status);
+            booking.setSeatsReserved(true);
+            booking.setUpdatedAt(now);
+            booking.setVersion(booking.getVersion() == null ? 1 : booking.getVersion() + 1);
+        }
+
+        AggregationUpdate update = AggregationUpdate.update().set(takeSeats(seats)
+                .and().set("waitlisted").toValue(ArithmeticOperators
+                        .valueOf(ConditionalOperators.ifNull("waitlisted").then(0)).subtract(promoted.size())));
+        return mongoTemplate.findAndModify(new Query(Criteria.where("id").is(ride.getId())), update,
+                FindAndModifyOptions.options().returnNew(true), Ride.class);
+    }
+
+    // Nachgerückte Rider informieren, im Hintergrund
+    private void notifyPromoted(List<Booking> promoted, Ride ride) {
+        for (Booking booking : promoted) {
+            Mail mail = new Mail();
+            mail.setTo(booking.getRiderId());
+            mail.setSubject("ShareWay - Platz frei geworden!");
+            mail.setMessage(
+                    "Gute Nachrichten!\n\n" +
+                            (booking.getStatus() == BookingStatus.APPROVED
+                                    ? "Du bist von der Warteliste nachgerückt, deine Buchung ist bestätigt.\n\n"
+                                    : "Du bist von der Warteliste nachgerückt. Deine Plätze sind reserviert, "
+                                            + "der Fahrer muss die Buchung noch bestätigen.\n\n")
+                            +
+                            "Fahrt: " + ride.getStartLocation() + " → " + ride.getEndLocation() + "\n" +
+                            "Abfahrt: " + ride.getDepartureTime() + "\n\n" +
+                            "Dein ShareWay Team");
+            mailService.sendMailAsync(mail);
+        }
+    }
+
+    private void updateIndexes(Ride ride) {
+        if (ride != null) {
+            rideGeoIndex.update(ride);
+            rideRouteIndex.update(ride);
+        }
+    }
+
+    // Statuswechsel nur, wenn die Booking noch im erwarteten Status ist
+    private Booking changeStatus(String bookingId, Criteria expected, BookingStatus status, boolean returnNew) {
+        Query query = new Query(Criteria.where("id").is(bookingId).andOperator(expected));
+        Update update = new Update()
+                .set("status", status)
+                .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(returnNew),
+                Booking.class);
+    }
+
+    /**
+     * Buchungen von vor dem Optimistic Locking haben noch kein version-Feld,
+     * save() würde sie sonst als neu einfügen.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillVersions() {
+        try {
+            UpdateResult versioned = mongoTemplate.updateMulti(
+                    new Query(Criteria.where("version").exists(false)),
+                    new Update().set("version", 0L), Booking.class);
+            if (versioned.getModifiedCount() > 0) {
+                System.out.println("Backfilled version for " + versioned.getModifiedCount() + " bookings");
+            }
+        } catch (Exception e) {
+            System.err.println("Booking version backfill error: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
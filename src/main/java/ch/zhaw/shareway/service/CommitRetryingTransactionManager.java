@@ -0,0 +1,44 @@
+package ch.zhaw.shareway.service;
+
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import com.mongodb.MongoException;
+
+/**
+ * MongoTransactionManager that repeats only the commit when its outcome is
+ * unknown (UnknownTransactionCommitResult, e.g. a network error or a new
+ * primary during the commit). The commit may already have been applied, so
+ * running the whole transaction again could e.g. insert a booking a second
+ * time; committing the same transaction again is safe. Write conflicts are
+ * retried by OptimisticRetry, which runs the block again.
+ */
+public class CommitRetryingTransactionManager extends MongoTransactionManager {
+
+    static final int MAX_COMMIT_ATTEMPTS = 3;
+
+    public CommitRetryingTransactionManager(MongoDatabaseFactory databaseFactory) {
+        super(databaseFactory);
+    }
+
+    @Override
+    protected void doCommit(MongoTransactionObject transactionObject) throws Exception {
+        commit(transactionObject::commitTransaction);
+    }
+
+    // Commit wiederholen, solange sein Ergebnis unbekannt ist
+    static void commit(Runnable commit) throws InterruptedException {
+        for (int attempt = 1;; attempt++) {
+            try {
+                commit.run();
+                return;
+            } catch (MongoException e) {
+                if (attempt >= MAX_COMMIT_ATTEMPTS
+                        || !e.hasErrorLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL)) {
+                    throw e;
+                }
+            }
+            Thread.sleep(OptimisticRetry.backoffMillis(attempt));
+        }
+    }
+}
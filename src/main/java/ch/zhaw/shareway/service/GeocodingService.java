@@ -0,0 +1,217 @@
+package ch.zhaw.shareway.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.stereotype.Service;
+
+import ch.zhaw.shareway.model.GeocodedLocation;
+import ch.zhaw.shareway.repository.GeocodedLocationRepository;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Resolves free-text locations ("Zürich HB", "Bahnhofstrasse 1, 8001 Zürich")
+ * to coordinates without any network access.
+ *
+ * Lookup order: in-memory LRU cache, persistent cache collection (geocodes),
+ * bundled gazetteer of Swiss localities. Gazetteer hits are written to the
+ * collection; entries added there by hand take precedence over the gazetteer.
+ *
+ * "Not found" is only cached in memory for NOT_FOUND_TTL, so a location
+ * added to the collection later is found without a restart. Stored gazetteer
+ * hits expire via a TTL index on createdAt (see GeocodedLocation).
+ */
+@Service
+public class GeocodingService {
+
+    static final String GAZETTEER = "geo/ch-localities.csv";
+
+    static final int CACHE_SIZE = 1024;
+
+    // Längster Ortsname im Gazetteer in Wörtern (z.B. "la chaux de fonds")
+    private static final int MAX_NAME_TOKENS = 5;
+
+    // Wie lange "nicht gefunden" im LRU Cache bleibt
+    static final Duration NOT_FOUND_TTL = Duration.ofMinutes(10);
+
+    @Autowired
+    private GeocodedLocationRepository geocodedLocationRepository;
+
+    private final List<Locality> localities;
+
+    private final Map<String, Locality> localitiesByKey;
+
+    // Treffer bleiben, bis sie verdrängt werden; "nicht gefunden" (location null) läuft ab
+    private record Cached(GeocodedLocation location, Instant expiresAt) {
+    }
+
+    private final Map<String, Cached> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    // Für Tests ersetzbar
+    Clock clock = Clock.systemUTC();
+
+    public GeocodingService() {
+        this.localities = loadGazetteer();
+        Map<String, Locality> byKey = new HashMap<>();
+        for (Locality locality : localities) {
+            byKey.putIfAbsent(normalize(locality.getName()), locality);
+            for (String alias : locality.getAliases()) {
+                byKey.putIfAbsent(normalize(alias), locality);
+            }
+        }
+        this.localitiesByKey = byKey;
+    }
+
+    /**
+     * Ortschaft aus dem Gazetteer
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Locality {
+        private final String name;
+        private final List<String> aliases;
+        private final String canton;
+        private final double lat;
+        private final double lng;
+    }
+
+    /**
+     * @return the resolved location, or empty if no locality matches
+     */
+    public Optional<GeocodedLocation> geocode(String location) {
+        String key = normalize(location);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Cached cached = cache.get(key);
+        if (cached != null && (cached.expiresAt() == null || clock.instant().isBefore(cached.expiresAt()))) {
+            return Optional.ofNullable(cached.location());
+        }
+
+        GeocodedLocation result = findStored(key);
+        if (result == null) {
+            Locality locality = resolve(location);
+            if (locality != null) {
+                result = new GeocodedLocation(key, locality.getName(), locality.getCanton(),
+                        new GeoJsonPoint(locality.getLng(), locality.getLat()));
+                store(result);
+            }
+        }
+
+        cache.put(key, new Cached(result, result != null ? null : clock.instant().plus(NOT_FOUND_TTL)));
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * @return the point of the location, or null if it cannot be resolved
+     */
+    public GeoJsonPoint toPoint(String location) {
+        return geocode(location).map(GeocodedLocation::getPoint).orElse(null);
+    }
+
+    public List<Locality> getLocalities() {
+        return localities;
+    }
+
+    /**
+     * Lowercase, without diacritics and punctuation: "St. Gallen" -> "st gallen"
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", " ").trim();
+    }
+
+    /**
+     * Matches the whole text first, then each comma-separated part (first
+     * part first) on its longest run of words that names a locality.
+     */
+    Locality resolve(String location) {
+        Locality exact = localitiesByKey.get(normalize(location));
+        if (exact != null) {
+            return exact;
+        }
+        for (String part : location.split(",")) {
+            String normalized = normalize(part);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            String[] tokens = normalized.split(" ");
+            for (int length = Math.min(tokens.length, MAX_NAME_TOKENS); length > 0; length--) {
+                for (int start = 0; start + length <= tokens.length; start++) {
+                    Locality locality = localitiesByKey.get(String.join(" ", List.of(tokens).subList(start, start + length)));
+                    if (locality != null) {
+                        return locality;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private GeocodedLocation findStored(String key) {
+        try {
+            return geocodedLocationRepository.findById(key).orElse(null);
+        } catch (Exception e) {
+            System.err.println("Geocode cache read error: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(GeocodedLocation location) {
+        try {
+            geocodedLocationRepository.save(location);
+        } catch (Exception e) {
+            System.err.println("Geocode cache write error: " + e.getMessage());
+        }
+    }
+
+    private static List<Locality> loadGazetteer() {
+        List<Locality> result = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(GAZETTEER).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                // name;aliases;canton;lat;lng
+                String[] columns = line.split(";", -1);
+                List<String> aliases = columns[1].isEmpty() ? List.of() : List.of(columns[1].split("\\|"));
+                result.add(new Locality(columns[0], aliases, columns[2],
+                        Double.parseDouble(columns[3]), Double.parseDouble(columns[4])));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Gazetteer load error: " + e.getMessage());
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -0,0 +1,265 @@
+package ch.zhaw.shareway.service;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.zhaw.shareway.model.IdempotencyRecord;
+
+/**
+ * Makes mutation endpoints safe to retry. The response of a request with an
+ * Idempotency-Key header is stored in "idempotencyKeys" (TTL 24h) and in a
+ * small in-memory LRU that also forgets entries after 24h; a retry with the
+ * same key gets the stored response without running the request again. A
+ * duplicate that arrives while the first request is still running waits for
+ * its response.
+ *
+ * Replays: same status and JSON body, plus the header Idempotent-Replayed.
+ * A key reused for a different request gets 422, a duplicate whose first
+ * request failed or did not finish in time gets 409.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    static final int MAX_KEY_LENGTH = 200;
+    static final int CACHE_SIZE = 1000;
+    static final long POLL_MS = 50;
+
+    // Länger offene Einträge gelten als abgebrochen (z.B. Instanz neu gestartet)
+    static final long STALE_SECONDS = 120;
+
+    // Wie createdAt_ttl in IdempotencyRecord: danach gilt ein Key auch im Cache als unbekannt
+    static final long TTL_HOURS = 24;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final long waitMillis;
+
+    // Abgeschlossene Einträge, zuletzt benutzte zuletzt
+    private final Map<String, IdempotencyRecord> completed = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    // Requests, die in dieser Instanz gerade laufen
+    private final Map<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+            @Value("${shareway.idempotency.wait-ms:30000}") long waitMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Run the request once per key and user
+     *
+     * @param key     Value of the Idempotency-Key header, may be null
+     * @param userId  Keys are scoped per user
+     * @param request Endpoint and parameters, e.g. "bookride|rideId|1"
+     * @param action  The request; its response is stored for retries
+     * @return the response of the action, or the stored response for a retry
+     */
+    public ResponseEntity<?> execute(String key, String userId, String request,
+            Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String id = userId + ":" + key;
+        IdempotencyRecord cached = cached(id);
+        if (cached != null) {
+            return replay(cached, request);
+        }
+
+        CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+        CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(id, mine);
+        if (running != null) {
+            return replay(await(running), request);
+        }
+
+        try {
+            IdempotencyRecord stored = claim(id, request);
+            if (stored == null) {
+                return run(id, request, action, mine);
+            }
+            if (!stored.getRequest().equals(request)) {
+                // Key eines anderen Requests: nicht auf dessen Antwort warten
+                mine.complete(null);
+                return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+            if (!stored.isCompleted()) {
+                stored = waitForCompletion(id);
+            }
+            if (stored != null) {
+                completed.put(id, stored);
+            }
+            mine.complete(stored);
+            return replay(stored, request);
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    // Abgeschlossener Eintrag aus dem Cache, solange er in MongoDB noch nicht abgelaufen ist
+    private IdempotencyRecord cached(String id) {
+        IdempotencyRecord cached = completed.get(id);
+        if (cached != null && cached.getCreatedAt().isBefore(LocalDateTime.now().minusHours(TTL_HOURS))) {
+            completed.remove(id, cached);
+            return null;
+        }
+        return cached;
+    }
+
+    private ResponseEntity<?> run(String id, String request, Supplier<ResponseEntity<?>> action,
+            CompletableFuture<IdempotencyRecord> mine) {
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            // Fehlgeschlagen: Eintrag freigeben, damit ein neuer Versuch wieder läuft
+            mongoTemplate.remove(new Query(Criteria.where("id").is(id)), IdempotencyRecord.class);
+            throw e;
+        }
+
+        IdempotencyRecord record = new IdempotencyRecord(id, request);
+        record.setResponseStatus(response.getStatusCode().value());
+        record.setResponseBody(toJson(response.getBody()));
+        mongoTemplate.save(record);
+        completed.put(id, record);
+        mine.complete(record);
+        return response;
+    }
+
+    /**
+     * Create the record for a new key
+     *
+     * @return null if this request owns the key now, otherwise the record of
+     *         the earlier request
+     */
+    private IdempotencyRecord claim(String id, String request) {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                mongoTemplate.insert(new IdempotencyRecord(id, request));
+                return null;
+            } catch (DuplicateKeyException e) {
+                IdempotencyRecord existing = mongoTemplate.findById(id, IdempotencyRecord.class);
+                if (existing == null) {
+                    // Inzwischen gelöscht (fehlgeschlagen oder abgelaufen): nochmals anlegen
+                    continue;
+                }
+                if (!existing.isCompleted() && existing.getRequest().equals(request)
+                        && takeOverStale(id, request)) {
+                    return null;
+                }
+                return existing;
+            }
+        }
+        throw new IllegalStateException("Could not claim idempotency key " + id);
+    }
+
+    // Nur für denselben Request: ein anderer bekommt 422, auch wenn der Eintrag hängt
+    private boolean takeOverStale(String id, String request) {
+        LocalDateTime now = LocalDateTime.now();
+        Query stale = new Query(Criteria.where("id").is(id)
+                .and("request").is(request)
+                .and("responseStatus").is(null)
+                .and("createdAt").lt(now.minusSeconds(STALE_SECONDS)));
+        return mongoTemplate.findAndModify(stale, new Update().set("createdAt", now),
+                IdempotencyRecord.class) != null;
+    }
+
+    // Läuft der erste Request in einer anderen Instanz: auf dessen Antwort warten
+    private IdempotencyRecord waitForCompletion(String id) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (System.currentTimeMillis() < deadline) {
+            sleep(POLL_MS);
+            IdempotencyRecord record = mongoTemplate.findById(id, IdempotencyRecord.class);
+            if (record == null || record.isCompleted()) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private IdempotencyRecord await(CompletableFuture<IdempotencyRecord> running) {
+        try {
+            return running.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private ResponseEntity<?> replay(IdempotencyRecord record, String request) {
+        if (record == null) {
+            // Erster Request fehlgeschlagen oder nicht rechtzeitig fertig
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        if (!record.getRequest().equals(request)) {
+            return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(record.getResponseStatus())
+                .header(REPLAYED_HEADER, "true");
+        if (record.getResponseBody() == null) {
+            return response.build();
+        }
+        // Gespeichertes JSON unverändert zurückgeben
+        return response.contentType(MediaType.APPLICATION_JSON).body(record.getResponseBody());
+    }
+
+    private String toJson(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store response for idempotency key", e);
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for idempotent request", e);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ch.zhaw.shareway.service;
+
+import java.io.ByteArrayInputStream;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.result.UpdateResult;
+
+import ch.zhaw.shareway.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Profile and license images in GridFS. User documents only keep the file
+ * ids, so loading a user no longer loads its images; the images are streamed
+ * by the ImageController.
+ *
+ * Forms send an image field either as the URL of the current image
+ * (unchanged), as a data URL (new upload) or empty (removed).
+ */
+@Service
+public class ImageService {
+
+    public static final String PROFILE = "profile";
+    public static final String LICENSE_FRONT = "licenseFront";
+    public static final String LICENSE_BACK = "licenseBack";
+
+    // Alte Felder im User-Dokument (Data-URL) -> neues Feld mit der GridFS-Id
+    static final Map<String, String> LEGACY_FIELDS = Map.of(
+            "profileImage", "profileImageId",
+            "licenseImageFront", "licenseImageFrontId",
+            "licenseImageBack", "licenseImageBackId");
+
+    static final Map<String, String> LEGACY_KINDS = Map.of(
+            "profileImage", PROFILE,
+            "licenseImageFront", LICENSE_FRONT,
+            "licenseImageBack", LICENSE_BACK);
+
+    // Nur Rasterbilder: SVG könnte Skripte enthalten
+    static final Set<String> CONTENT_TYPES = Set.of("image/jpeg", "image/png", "image/gif", "image/webp");
+
+    private static final Pattern DATA_URL = Pattern.compile("data:([\\w.+-]+/[\\w.+-]+);base64,(.*)", Pattern.DOTALL);
+
+    private final GridFsTemplate gridFsTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final long maxBytes;
+
+    public ImageService(GridFsTemplate gridFsTemplate, MongoTemplate mongoTemplate,
+            @Value("${shareway.images.max-bytes:5242880}") long maxBytes) {
+        this.gridFsTemplate = gridFsTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Id of the image after a form was submitted; stores a new upload. The
+     * replaced image is not deleted here, call deleteReplaced() once the user
+     * is saved.
+     *
+     * @throws IllegalArgumentException if the value is neither the current
+     *                                  image nor a valid image data URL
+     */
+    public String update(String currentId, String submitted, String owner, String kind) {
+        if (submitted == null || submitted.isEmpty()) {
+            return null;
+        }
+        if (currentId != null && submitted.equals(User.imageUrl(currentId))) {
+            return currentId;
+        }
+        return store(submitted, owner, kind);
+    }
+
+    /**
+     * Store an image given as data URL ("data:image/png;base64,...")
+     *
+     * @return the GridFS id
+     */
+    public String store(String dataUrl, String owner, String kind) {
+        return store(dataUrl, owner, kind, true);
+    }
+
+    // checked = false bei der Migration: vorhandene Bilder nie wegen Typ oder Grösse verwerfen
+    private String store(String dataUrl, String owner, String kind, boolean checked) {
+        Matcher matcher = DATA_URL.matcher(dataUrl);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Image must be a data URL");
+        }
+        String contentType = matcher.group(1).toLowerCase();
+        if (checked && !CONTENT_TYPES.contains(contentType)) {
+            throw new IllegalArgumentException("Unsupported image type " + contentType);
+        }
+        // Base64 ist ca. 4/3 so gross wie die Bytes: zu grosse Bilder gar nicht erst dekodieren
+        if (checked && matcher.group(2).length() / 4 * 3 > maxBytes) {
+            throw new IllegalArgumentException("Image larger than " + maxBytes + " bytes");
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getMimeDecoder().decode(matcher.group(2));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid image data", e);
+        }
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Image is empty");
+        }
+        if (checked && bytes.length > maxBytes) {
+            throw new IllegalArgumentException("Image larger than " + maxBytes + " bytes");
+        }
+
+        Document metadata = new Document("owner", owner).append("kind", kind);
+        ObjectId id = gridFsTemplate.store(new ByteArrayInputStream(bytes), kind + "-" + owner, contentType,
+                metadata);
+        return id.toHexString();
+    }
+
+    /**
+     * The stored image, empty for unknown or malformed ids
+     */
+    public Optional<Image> find(String id) {
+        if (!ObjectId.isValid(id)) {
+            return Optional.empty();
+        }
+        GridFSFile file = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(new ObjectId(id))));
+        if (file == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new Image(file, gridFsTemplate.getResource(file)));
+    }
+
+    /**
+     * Delete the old image if the user now references another one
+     */
+    public void deleteReplaced(String oldId, String newId) {
+        if (oldId != null && !oldId.equals(newId) && ObjectId.isValid(oldId)) {
+            gridFsTemplate.delete(new Query(Criteria.where("_id").is(new ObjectId(oldId))));
+        }
+    }
+
+    /**
+     * Moves images still stored inline in user documents (data URLs in
+     * profileImage / licenseImageFront / licenseImageBack) to GridFS. Each
+     * field is moved with a conditional update, so instances starting at the
+     * same time do not move an image twice.
+     *
+     * Nothing is lost: type and size limits of uploads do not apply here,
+     * and values that are no data URL stay in the document and are reported
+     * on every start until they are fixed by hand.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateUserImages() {
+        try {
+            long moved = 0;
+            long bytes = 0;
+            long kept = 0;
+            Criteria legacy = new Criteria().orOperator(LEGACY_FIELDS.keySet().stream()
+                    .map(field -> Criteria.where(field).exists(true))
+                    .toList());
+            Query query = new Query(legacy);
+            query.fields().include("email").include(LEGACY_FIELDS.keySet().toArray(String[]::new));
+
+            // Einzeln lesen statt alle User mit ihren Bildern auf einmal
+            try (Stream<Document> users = mongoTemplate.stream(query, Document.class, UserService.USERS_COLLECTION)) {
+                for (Document user : (Iterable<Document>) users::iterator) {
+                    for (Map.Entry<String, String> field : LEGACY_FIELDS.entrySet()) {
+                        if (!user.containsKey(field.getKey())) {
+                            continue;
+                        }
+                        Object value = user.get(field.getKey());
+                        switch (migrate(user, field.getKey(), field.getValue(), value)) {
+                            case MOVED -> {
+                                moved++;
+                                bytes += ((String) value).length();
+                            }
+                            case KEPT -> kept++;
+                            default -> {
+                            }
+                        }
+                    }
+                }
+            }
+
+            if (moved > 0) {
+                System.out.println("Moved " + moved + " user images to GridFS (" + bytes / 1024 + " KB)");
+            }
+            if (kept > 0) {
+                System.err.println(kept + " user images could not be moved to GridFS and stay inline");
+            }
+        } catch (Exception e) {
+            System.err.println("Image migration error: " + e.getMessage());
+        }
+    }
+
+    private enum Outcome {
+        MOVED, CLEARED, KEPT, ALREADY_MIGRATED
+    }
+
+    private Outcome migrate(Document user, String legacyField, String idField, Object value) {
+        String email = user.getString("email");
+        String id = null;
+        if (value instanceof String dataUrl && !dataUrl.isEmpty()) {
+            try {
+                id = store(dataUrl, email, LEGACY_KINDS.get(legacyField), false);
+            } catch (IllegalArgumentException e) {
+                // Nicht verschiebbar (z.B. kein Data-URL): Feld bleibt, wie es ist
+                System.err.println("Keeping " + legacyField + " of " + email + " inline: " + e.getMessage());
+                return Outcome.KEPT;
+            }
+        } else if (value != null && !(value instanceof String)) {
+            System.err.println("Keeping " + legacyField + " of " + email + " inline: not a data URL");
+            return Outcome.KEPT;
+        }
+
+        // Leere Felder werden nur entfernt
+        Update update = new Update().unset(legacyField);
+        if (id != null) {
+            update.set(idField, id);
+        }
+        UpdateResult result = mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(user.get("_id")).and(legacyField).exists(true)),
+                update, UserService.USERS_COLLECTION);
+        if (result.getModifiedCount() == 0) {
+            // Schon von einer anderen Instanz migriert
+            deleteReplaced(id, null);
+            return Outcome.ALREADY_MIGRATED;
+        }
+        return id != null ? Outcome.MOVED : Outcome.CLEARED;
+    }
+
+    /**
+     * A stored image with its GridFS metadata
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Image {
+        private final GridFSFile file;
+        private final GridFsResource resource;
+
+        public String getId() {
+            return file.getObjectId().toHexString();
+        }
+
+        public String getOwner() {
+            return file.getMetadata() != null ? file.getMetadata().getString("owner") : null;
+        }
+
+        public String getKind() {
+            return file.getMetadata() != null ? file.getMetadata().getString("kind") : null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ch.zhaw.shareway.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Service;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.FlaggedContent;
+import ch.zhaw.shareway.model.GeocodedLocation;
+import ch.zhaw.shareway.model.IdempotencyRecord;
+import ch.zhaw.shareway.model.Review;
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.SeatHold;
+import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.model.Vehicle;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Creates the indexes declared with @Indexed / @CompoundIndex on the
+ * documents at startup and reports indexes that are missing (creation
+ * failed), not declared in code, or never used since the last restart.
+ *
+ * Startup fails when a unique index of a document in UNIQUE_REQUIRED cannot
+ * be created: e.g. BookingService relies on ride_rider_current instead of a
+ * pre-check to reject a second active booking, so it must not run without it.
+ */
+@Service
+public class IndexVerifier {
+
+    static final List<Class<?>> DOCUMENTS = List.of(
+            Ride.class, Booking.class, Review.class, User.class, Vehicle.class,
+            FlaggedContent.class, GeocodedLocation.class, SeatHold.class,
+            IdempotencyRecord.class);
+
+    // Standard-Index auf _id, wird nicht deklariert
+    static final String ID_INDEX = "_id_";
+
+    // Unique-Indexes dieser Dokumente ersetzen Prüfungen im Code und müssen existieren
+    static final Set<Class<?>> UNIQUE_REQUIRED = Set.of(Booking.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verifyAll() {
+        try {
+            for (Class<?> type : DOCUMENTS) {
+                Report report = verify(type);
+                if (report.isOk()) {
+                    System.out.println("Indexes OK for " + report.getCollection());
+                }
+                if (!report.getMissing().isEmpty()) {
+                    System.err.println("Missing indexes on " + report.getCollection() + ": " + report.getMissing());
+                }
+                if (!report.getUndeclared().isEmpty()) {
+                    System.err.println("Undeclared indexes on " + report.getCollection() + ": "
+                            + report.getUndeclared());
+                }
+                if (!report.getUnused().isEmpty()) {
+                    System.err.println("Unused indexes on " + report.getCollection() + ": " + report.getUnused());
+                }
+            }
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("Index verification error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Ensure and check the indexes of one document class
+     *
+     * @param type The @Document class
+     * @return the names of missing, undeclared and unused indexes
+     * @throws IllegalStateException if a required unique index is missing
+     */
+    Report verify(Class<?> type) {
+        String collection = mongoTemplate.getCollectionName(type);
+        IndexOperations indexOps = mongoTemplate.indexOps(type);
+
+        // Bestehende Indexes zuerst lesen: ist MongoDB nicht erreichbar, bricht es hier ab
+        Set<String> existing = new LinkedHashSet<>();
+        for (IndexInfo info : indexOps.getIndexInfo()) {
+            existing.add(info.getName());
+        }
+
+        Set<String> declared = new LinkedHashSet<>();
+        Set<String> created = new LinkedHashSet<>();
+        List<String> missing = new ArrayList<>();
+        List<String> missingUnique = new ArrayList<>();
+        for (IndexDefinition definition : new MongoPersistentEntityIndexResolver(
+                mongoTemplate.getConverter().getMappingContext()).resolveIndexFor(type)) {
+            String name = definition.getIndexOptions().getString("name");
+            declared.add(name);
+            if (existing.contains(name)) {
+                continue;
+            }
+            try {
+                indexOps.createIndex(definition);
+                existing.add(name);
+                created.add(name);
+                System.out.println("Created index " + name + " on " + collection);
+            } catch (Exception e) {
+                // z.B. Duplikate bei unique oder Konflikt mit bestehendem Index gleicher Felder
+                System.err.println("Could not create index " + name + " on " + collection + ": " + e.getMessage());
+                missing.add(name);
+                if (definition.getIndexOptions().getBoolean("unique", false)) {
+                    missingUnique.add(name);
+                }
+            }
+        }
+
+        if (!missingUnique.isEmpty() && UNIQUE_REQUIRED.contains(type)) {
+            throw new IllegalStateException("Required unique indexes " + missingUnique + " on " + collection
+                    + " could not be created; remove duplicates and restart");
+        }
+
+        List<String> undeclared = new ArrayList<>();
+        for (String name : existing) {
+            if (!declared.contains(name) && !ID_INDEX.equals(name)) {
+                undeclared.add(name);
+            }
+        }
+
+        // $indexStats zählt Zugriffe seit dem letzten Neustart von MongoDB,
+        // eben erstellte Indexes können noch nicht benutzt worden sein
+        List<String> unused = new ArrayList<>();
+        Aggregation indexStats = Aggregation.newAggregation(
+                Aggregation.stage(new Document("$indexStats", new Document())));
+        for (Document stats : mongoTemplate.aggregate(indexStats, collection, Document.class)) {
+            String name = stats.getString("name");
+            Document accesses = stats.get("accesses", Document.class);
+            Number ops = accesses != null ? accesses.get("ops", Number.class) : null;
+            if (ops != null && ops.longValue() == 0 && !ID_INDEX.equals(name) && !created.contains(name)) {
+                unused.add(name);
+            }
+        }
+
+        return new Report(collection, missing, undeclared, unused);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class Report {
+        private String collection;
+        private List<String> missing;
+        private List<String> undeclared;
+        private List<String> unused;
+
+        boolean isOk() {
+            return missing.isEmpty() && undeclared.isEmpty() && unused.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package ch.zhaw.shareway.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import ch.zhaw.shareway.model.LocationSuggestion;
+import ch.zhaw.shareway.model.Ride;
+
+/**
+ * In-memory prefix index for location autocomplete.
+ *
+ * Contains all gazetteer localities (with aliases) and all distinct
+ * startLocation/endLocation values of rides, ranked by how many rides use
+ * them. Names and normalized keys are stored in shared char pools. Every
+ * word start of every key is an entry in a sorted suffix array, so a prefix
+ * lookup is a binary search plus a scan over the matching range. Lookups
+ * match word by word ("gallen" finds "St. Gallen").
+ *
+ * Ride locations are free text (e.g. full addresses): once no ride uses
+ * them any more they are no longer suggested, and compact() drops them
+ * from the pools every hour.
+ */
+@Service
+public class LocationSuggestIndex {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private GeocodingService geocodingService;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready = false;
+
+    // Einträge (parallele Arrays), Anzeigenamen im gemeinsamen Pool
+    private char[] namePool;
+    private int namePoolSize;
+    private int[] nameStart;
+    private int[] nameLength;
+    private int[] uses;
+    private double[] lat;
+    private double[] lng;
+    private int entryCount;
+    // Einträge davor stammen aus dem Gazetteer und bleiben immer vorschlagbar
+    private int gazetteerEntries;
+    private final Map<String, Integer> entryByKey = new HashMap<>();
+
+    // Normalisierte Schlüssel im gemeinsamen Pool
+    private char[] keyPool;
+    private int keyPoolSize;
+
+    // Wortanfänge, sortiert nach dem Rest des Schlüssels ab dieser Position
+    private int[] suffixStart;
+    private int[] suffixEnd;
+    private int[] suffixEntry;
+    private int suffixCount;
+
+    public LocationSuggestIndex() {
+        clear();
+    }
+
+    /**
+     * Lädt Gazetteer und Nutzungszahlen aller Ride-Orte beim Start
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Map<String, Integer> counts = new HashMap<>();
+        try {
+            countLocations("startLocation", counts);
+            countLocations("endLocation", counts);
+        } catch (Exception e) {
+            System.err.println("Location suggest index load error: " + e.getMessage());
+        }
+        rebuild(counts);
+        System.out.println("Location suggest index loaded with " + size() + " locations");
+    }
+
+    private void countLocations(String field, Map<String, Integer> counts) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where(field).ne(null)),
+                Aggregation.group(field).count().as("count"));
+        for (Document document : mongoTemplate.aggregate(aggregation, Ride.class, Document.class)) {
+            Object location = document.get("_id");
+            if (location instanceof String name) {
+                counts.merge(name, ((Number) document.get("count")).intValue(), Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the index from the gazetteer and the given location usage counts
+     */
+    public void rebuild(Map<String, Integer> locationCounts) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (GeocodingService.Locality locality : geocodingService.getLocalities()) {
+                int entry = addEntry(locality.getName(), locality.getLat(), locality.getLng());
+                addKey(GeocodingService.normalize(locality.getName()), entry, false);
+                for (String alias : locality.getAliases()) {
+                    addKey(GeocodingService.normalize(alias), entry, false);
+                }
+            }
+            gazetteerEntries = entryCount;
+            for (Map.Entry<String, Integer> location : locationCounts.entrySet()) {
+                Integer entry = findOrAdd(location.getKey(), false);
+                if (entry != null) {
+                    uses[entry] += location.getValue();
+                }
+            }
+            sortSuffixes();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts one more ride using this location (new values are inserted)
+     */
+    public void add(String location) {
+        lock.writeLock().lock();
+        try {
+            Integer entry = findOrAdd(location, true);
+            if (entry != null) {
+                uses[entry]++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts one ride less using this location
+     */
+    public void remove(String location) {
+        lock.writeLock().lock();
+        try {
+            Integer entry = entryByKey.get(GeocodingService.normalize(location));
+            if (entry != null && uses[entry] > 0) {
+                uses[entry]--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index without the ride locations no ride uses any more
+     */
+    @Scheduled(fixedRate = 3600000)
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            Map<String, Integer> counts = new HashMap<>();
+            boolean unused = false;
+            for (int entry = 0; entry < entryCount; entry++) {
+                if (uses[entry] > 0) {
+                    counts.put(name(entry), uses[entry]);
+                } else if (entry >= gazetteerEntries) {
+                    unused = true;
+                }
+            }
+            if (unused) {
+                rebuild(counts);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entryCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return locations with a word starting with the query, most used first
+     */
+    public List<LocationSuggestion> suggest(String query, int limit) {
+        String prefix = GeocodingService.normalize(query);
+        if (prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int[] best = new int[limit];
+            int found = 0;
+            for (int i = lowerBound(prefix); i < suffixCount && startsWith(i, prefix); i++) {
+                int entry = suffixEntry[i];
+                // Ride-Orte ohne Ride nicht mehr vorschlagen
+                if (entry >= gazetteerEntries && uses[entry] == 0) {
+                    continue;
+                }
+                if (contains(best, found, entry)) {
+                    continue;
+                }
+                if (found == limit && !ranksBefore(entry, best[found - 1])) {
+                    continue;
+                }
+                // Top-k per Insertion Sort (k ist klein)
+                int pos = found < limit ? found++ : found - 1;
+                while (pos > 0 && ranksBefore(entry, best[pos - 1])) {
+                    best[pos] = best[pos - 1];
+                    pos--;
+                }
+                best[pos] = entry;
+            }
+
+            List<LocationSuggestion> result = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                int entry = best[i];
+                boolean located = !Double.isNaN(lat[entry]);
+                result.add(new LocationSuggestion(
+                        name(entry),
+                        uses[entry],
+                        located ? lat[entry] : null,
+                        located ? lng[entry] : null));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== Internals (Schreibzugriffe nur unter Write-Lock) ==========
+
+    private void clear() {
+        namePool = new char[4096];
+        namePoolSize = 0;
+        nameStart = new int[256];
+        nameLength = new int[256];
+        uses = new int[256];
+        lat = new double[256];
+        lng = new double[256];
+        entryCount = 0;
+        gazetteerEntries = 0;
+        entryByKey.clear();
+
+        keyPool = new char[4096];
+        keyPoolSize = 0;
+        suffixStart = new int[512];
+        suffixEnd = new int[512];
+        suffixEntry = new int[512];
+        suffixCount = 0;
+    }
+
+    // Neuer Ort aus einem Ride; Koordinaten der Ortschaft, falls bekannt
+    private Integer findOrAdd(String location, boolean keepSorted) {
+        String key = GeocodingService.normalize(location);
+        if (key.isEmpty()) {
+            return null;
+        }
+        Integer existing = entryByKey.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        GeocodingService.Locality locality = geocodingService.resolve(location);
+        int entry = addEntry(location.trim(),
+                locality != null ? locality.getLat() : Double.NaN,
+                locality != null ? locality.getLng() : Double.NaN);
+        addKey(key, entry, keepSorted);
+        return entry;
+    }
+
+    private String name(int entry) {
+        return new String(namePool, nameStart[entry], nameLength[entry]);
+    }
+
+    private int addEntry(String name, double entryLat, double entryLng) {
+        if (entryCount == nameStart.length) {
+            int newLength = entryCount * 2;
+            nameStart = Arrays.copyOf(nameStart, newLength);
+            nameLength = Arrays.copyOf(nameLength, newLength);
+            uses = Arrays.copyOf(uses, newLength);
+            lat = Arrays.copyOf(lat, newLength);
+            lng = Arrays.copyOf(lng, newLength);
+        }
+        if (namePoolSize + name.length() > namePool.length) {
+            namePool = Arrays.copyOf(namePool, Math.max(namePool.length * 2, namePoolSize + name.length()));
+        }
+        name.getChars(0, name.length(), namePool, namePoolSize);
+        int entry = entryCount++;
+        nameStart[entry] = namePoolSize;
+        nameLength[entry] = name.length();
+        uses[entry] = 0;
+        lat[entry] = entryLat;
+        lng[entry] = entryLng;
+        namePoolSize += name.length();
+        return entry;
+    }
+
+    private void addKey(String key, int entry, boolean keepSorted) {
+        if (key.isEmpty() || entryByKey.putIfAbsent(key, entry) != null) {
+            return;
+        }
+        if (keyPoolSize + key.length() > keyPool.length) {
+            keyPool = Arrays.copyOf(keyPool, Math.max(keyPool.length * 2, keyPoolSize + key.length()));
+        }
+        int start = keyPoolSize;
+        int end = start + key.length();
+        key.getChars(0, key.length(), keyPool, start);
+        keyPoolSize = end;
+
+        for (int i = start; i < end; i++) {
+            if (i == start || keyPool[i - 1] == ' ') {
+                addSuffix(i, end, entry, keepSorted);
+            }
+        }
+    }
+
+    private void addSuffix(int start, int end, int entry, boolean keepSorted) {
+        if (suffixCount == suffixStart.length) {
+            int newLength = suffixCount * 2;
+            suffixStart = Arrays.copyOf(suffixStart, newLength);
+            suffixEnd = Arrays.copyOf(suffixEnd, newLength);
+            suffixEntry = Arrays.copyOf(suffixEntry, newLength);
+        }
+        int pos = suffixCount;
+        if (keepSorted) {
+            // Einfügeposition per binärer Suche, Rest verschieben
+            int low = 0;
+            int high = suffixCount;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compareSuffix(suffixStart[mid], suffixEnd[mid], start, end) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            pos = low;
+            System.arraycopy(suffixStart, pos, suffixStart, pos + 1, suffixCount - pos);
+            System.arraycopy(suffixEnd, pos, suffixEnd, pos + 1, suffixCount - pos);
+            System.arraycopy(suffixEntry, pos, suffixEntry, pos + 1, suffixCount - pos);
+        }
+        suffixStart[pos] = start;
+        suffixEnd[pos] = end;
+        suffixEntry[pos] = entry;
+        suffixCount++;
+    }
+
+    // Einmalig beim Aufbau
+    private void sortSuffixes() {
+        Integer[] order = new Integer[suffixCount];
+        for (int i = 0; i < suffixCount; i++) {
+            order[i] = i;
+        }
+        int[] start = suffixStart;
+        int[] end = suffixEnd;
+        Arrays.sort(order, (a, b) -> compareSuffix(start[a], end[a], start[b], end[b]));
+
+        int[] sortedStart = new int[suffixStart.length];
+        int[] sortedEnd = new int[suffixStart.length];
+        int[] sortedEntry = new int[suffixStart.length];
+        for (int i = 0; i < suffixCount; i++) {
+            sortedStart[i] = suffixStart[order[i]];
+            sortedEnd[i] = suffixEnd[order[i]];
+            sortedEntry[i] = suffixEntry[order[i]];
+        }
+        suffixStart = sortedStart;
+        suffixEnd = sortedEnd;
+        suffixEntry = sortedEntry;
+    }
+
+    private int compareSuffix(int aStart, int aEnd, int bStart, int bEnd) {
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++) {
+            char a = keyPool[aStart + i];
+            char b = keyPool[bStart + i];
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+
+    // Erster Suffix >= prefix
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = suffixCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareToPrefix(mid, prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int compareToPrefix(int suffix, String prefix) {
+        int start = suffixStart[suffix];
+        int length = suffixEnd[suffix] - start;
+        int common = Math.min(length, prefix.length());
+        for (int i = 0; i < common; i++) {
+            char a = keyPool[start + i];
+            char b = prefix.charAt(i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return length - prefix.length();
+    }
+
+    private boolean startsWith(int suffix, String prefix) {
+        int start = suffixStart[suffix];
+        if (suffixEnd[suffix] - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (keyPool[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Häufiger genutzt zuerst, dann kürzerer Name
+    private boolean ranksBefore(int a, int b) {
+        if (uses[a] != uses[b]) {
+            return uses[a] > uses[b];
+        }
+        if (nameLength[a] != nameLength[b]) {
+            return nameLength[a] < nameLength[b];
+        }
+        return a < b;
+    }
+
+    private static boolean contains(int[] entries, int size, int entry) {
+        for (int i = 0; i < size; i++) {
+            if (entries[i] == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -3,6 +3,7 @@ package ch.zhaw.shareway.service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import ch.zhaw.shareway.model.Mail;
@@ -26,4 +27,10 @@ public class MailService {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    // Im Hintergrund senden, damit der SMTP-Server den Request nicht aufhält
+    @Async
+    public void sendMailAsync(Mail mail) {
+        sendMail(mail);
+    }
+}
@@ -0,0 +1,106 @@
+package ch.zhaw.shareway.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.MongoException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs a read-modify-save block again when the save fails because of a
+ * concurrent change (@Version conflict, or a write conflict that aborted a
+ * transaction). The block must read the document itself, so every attempt
+ * works on the current state.
+ *
+ * Metrics per operation (tag "operation"):
+ * shareway.optimistic.calls, shareway.optimistic.conflicts and
+ * shareway.optimistic.exhausted; conflicts / calls is the conflict rate.
+ */
+@Service
+public class OptimisticRetry {
+
+    static final int MAX_ATTEMPTS = 4;
+    static final long BASE_BACKOFF_MS = 10;
+    static final long MAX_BACKOFF_MS = 200;
+
+    // MongoDB-Fehlercode WriteConflict
+    static final int WRITE_CONFLICT = 112;
+
+    private final MeterRegistry meterRegistry;
+
+    public OptimisticRetry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Run the block, retrying on optimistic locking conflicts
+     *
+     * @param operation Name of the operation for the metrics, e.g. "ride.update"
+     * @param action    Read-modify-save block
+     * @return the result of the first successful attempt
+     * @throws RuntimeException the last conflict if all attempts conflicted
+     */
+    public <T> T run(String operation, Supplier<T> action) {
+        meterRegistry.counter("shareway.optimistic.calls", "operation", operation).increment();
+
+        for (int attempt = 1;; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                if (!isConflict(e)) {
+                    throw e;
+                }
+                meterRegistry.counter("shareway.optimistic.conflicts", "operation", operation).increment();
+                if (attempt >= MAX_ATTEMPTS) {
+                    meterRegistry.counter("shareway.optimistic.exhausted", "operation", operation).increment();
+                    throw e;
+                }
+                sleep(backoffMillis(attempt));
+            }
+        }
+    }
+
+    /**
+     * A @Version conflict, or a write conflict / transient transaction error
+     * of MongoDB. The translator does not map write conflicts to one
+     * exception type (code 112 becomes a DataIntegrityViolationException, a
+     * failed commit a TransactionSystemException), so the driver exception is
+     * looked up in the cause chain.
+     *
+     * A commit with unknown result is no conflict: it may have been applied,
+     * so running the block again could apply it twice. The
+     * CommitRetryingTransactionManager repeats only the commit.
+     */
+    static boolean isConflict(Throwable e) {
+        if (e instanceof OptimisticLockingFailureException) {
+            return true;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException mongo
+                    && (mongo.getCode() == WRITE_CONFLICT
+                            || mongo.hasErrorLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Exponentiell mit Jitter, damit konkurrierende Requests nicht wieder gleichzeitig speichern
+    static long backoffMillis(int attempt) {
+        long max = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempt - 1));
+        return max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for retry", e);
+        }
+    }
+}
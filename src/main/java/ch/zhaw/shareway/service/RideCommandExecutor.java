@@ -0,0 +1,274 @@
+package ch.zhaw.shareway.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs booking mutations of a ride one after another. Ride ids are hashed
+ * onto a fixed set of lanes with one thread each, so commands for the same
+ * ride never overlap and run in the order they were submitted, while rides
+ * on other lanes run in parallel. Callers wait for their command.
+ *
+ * Ride-scoped writes of requests and jobs go through here: booking create,
+ * approve, reject and cancel (single and bulk), waitlist, seat holds and the
+ * follow-up of the hold sweep, ride update, route update, completion (by the
+ * driver and the RideScheduler) and deletion. Outside the lanes run only the
+ * seat return of the hold sweep, as one bulk increment across rides, and
+ * the backfills of RideService at startup; conditional updates and the
+ * version check guard them like they guard writes of other instances.
+ *
+ * The commands mostly wait for MongoDB, so there are more lanes than CPUs
+ * (shareway.ride-commands.lanes, default 32).
+ *
+ * With shareway.ride-commands.coalesce=true, mergeable commands of the same
+ * kind that queued up for one ride run as a single batch, e.g. several
+ * approvals become one seat update and one bulk write.
+ *
+ * Metrics: shareway.ride-commands.queued (gauge) and
+ * shareway.ride-commands.coalesced (commands that ran inside a batch).
+ */
+@Service
+public class RideCommandExecutor {
+
+    static final long COMMAND_TIMEOUT_S = 30;
+    static final int DEFAULT_LANES = 32;
+
+    // Lane-Threads führen verschachtelte Befehle direkt aus, sonst warten sie auf sich selbst
+    private static final ThreadLocal<Boolean> ON_LANE = ThreadLocal.withInitial(() -> false);
+
+    private final Lane[] lanes;
+    private final boolean coalesce;
+    private final MeterRegistry meterRegistry;
+
+    // Für Tests kürzer
+    Duration timeout = Duration.ofSeconds(COMMAND_TIMEOUT_S);
+
+    public RideCommandExecutor(MeterRegistry meterRegistry,
+            @Value("${shareway.ride-commands.lanes:" + DEFAULT_LANES + "}") int lanes,
+            @Value("${shareway.ride-commands.coalesce:false}") boolean coalesce) {
+        this.meterRegistry = meterRegistry;
+        this.coalesce = coalesce;
+        if (lanes < 1) {
+            throw new IllegalArgumentException("shareway.ride-commands.lanes must be at least 1");
+        }
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < this.lanes.length; i++) {
+            this.lanes[i] = new Lane("ride-lane-" + i);
+        }
+        meterRegistry.gauge("shareway.ride-commands.queued", this, executor -> executor.queued());
+    }
+
+    /**
+     * Run a command in the lane of the ride
+     *
+     * @return the result of the command
+     */
+    public <T> T execute(String rideId, Supplier<T> command) {
+        return submit(new Command(rideId, null, null, input -> command.get(), null));
+    }
+
+    /**
+     * Run a command that can be merged with queued commands of the same kind
+     * for the same ride. Without coalescing, or when nothing else is queued,
+     * the single variant runs.
+     *
+     * @param kind   Commands of the same kind are merged, e.g. "approve:" + driverId
+     * @param single Runs the command for one input
+     * @param batch  Runs the command for several inputs; inputs missing in the
+     *               result get null
+     * @return the result for this input
+     */
+    @SuppressWarnings("unchecked")
+    public <I, R> R execute(String rideId, String kind, I input, Function<I, R> single,
+            Function<List<I>, Map<I, R>> batch) {
+        return submit(new Command(rideId, kind, input,
+                value -> single.apply((I) value),
+                values -> (Map<Object, Object>) batch.apply((List<I>) values)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T submit(Command command) {
+        if (ON_LANE.get()) {
+            return (T) command.single.apply(command.input);
+        }
+
+        lanes[laneOf(command.rideId)].queue.add(command);
+        try {
+            try {
+                return (T) command.result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (command.cancel()) {
+                    throw new IllegalStateException("Ride command timed out for ride " + command.rideId
+                            + " and was not run", e);
+                }
+                // Läuft schon: Ergebnis abwarten, sonst bekäme der Client einen Fehler für einen ausgeführten Befehl
+                return (T) command.result.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Ride command failed", e.getCause());
+        } catch (InterruptedException e) {
+            command.cancel();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ride command", e);
+        }
+    }
+
+    int laneOf(String rideId) {
+        return Math.floorMod(rideId.hashCode(), lanes.length);
+    }
+
+    int queued() {
+        int queued = 0;
+        for (Lane lane : lanes) {
+            queued += lane.queue.size();
+        }
+        return queued;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+    }
+
+    // Alles, was beim Abholen in der Queue liegt, als eine Runde abarbeiten
+    private void process(List<Command> round) {
+        for (int i = 0; i < round.size(); i++) {
+            Command command = round.get(i);
+            // Abgebrochen oder schon in einem Batch gelaufen
+            if (!command.claim()) {
+                continue;
+            }
+            if (!coalesce || command.kind == null) {
+                command.run();
+                continue;
+            }
+
+            // Gleichartige Befehle derselben Ride sammeln, bis ein anderer Befehl dieser Ride kommt
+            List<Command> group = new ArrayList<>();
+            group.add(command);
+            for (int j = i + 1; j < round.size(); j++) {
+                Command other = round.get(j);
+                if (!other.rideId.equals(command.rideId) || other.isClaimed()) {
+                    continue;
+                }
+                if (!command.kind.equals(other.kind)) {
+                    break;
+                }
+                if (other.claim()) {
+                    group.add(other);
+                }
+            }
+
+            if (group.size() == 1) {
+                command.run();
+            } else {
+                runBatch(group);
+            }
+        }
+    }
+
+    private void runBatch(List<Command> group) {
+        try {
+            List<Object> inputs = group.stream().map(command -> command.input).toList();
+            Map<Object, Object> results = group.get(0).batch.apply(inputs);
+            for (Command command : group) {
+                command.result.complete(results.get(command.input));
+            }
+            meterRegistry.counter("shareway.ride-commands.coalesced").increment(group.size());
+        } catch (RuntimeException e) {
+            group.forEach(command -> command.result.completeExceptionally(e));
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        private final LinkedBlockingQueue<Command> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+
+        Lane(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            ON_LANE.set(true);
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    List<Command> round = new ArrayList<>();
+                    round.add(queue.take());
+                    queue.drainTo(round);
+                    process(round);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            queue.forEach(command -> command.result
+                    .completeExceptionally(new IllegalStateException("Ride command executor stopped")));
+        }
+    }
+
+    private static final class Command {
+
+        private final String rideId;
+        private final String kind;
+        private final Object input;
+        private final Function<Object, Object> single;
+        private final Function<List<Object>, Map<Object, Object>> batch;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Command(String rideId, String kind, Object input, Function<Object, Object> single,
+                Function<List<Object>, Map<Object, Object>> batch) {
+            this.rideId = rideId;
+            this.kind = kind;
+            this.input = input;
+            this.single = single;
+            this.batch = batch;
+        }
+
+        // Zur Ausführung übernehmen; false, wenn abgebrochen oder schon übernommen
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        boolean isClaimed() {
+            return claimed.get();
+        }
+
+        // Nur abbrechen, solange die Lane den Befehl noch nicht übernommen hat
+        boolean cancel() {
+            return claim() && result.cancel(false);
+        }
+
+        void run() {
+            try {
+                result.complete(single.apply(input));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
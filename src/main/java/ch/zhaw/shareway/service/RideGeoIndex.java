@@ -0,0 +1,388 @@
+package ch.zhaw.shareway.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.repository.RideRepository;
+
+/**
+ * In-memory grid index over all OPEN rides with start and end points.
+ *
+ * Every ride is registered in all grid cells that its start circle
+ * (startPoint, routeRadiusKm) overlaps. A radius lookup therefore reads a
+ * single cell and checks the candidates with plain double arithmetic on
+ * parallel arrays; nothing is allocated per candidate.
+ *
+ * Must be kept up to date by every code path that changes the status,
+ * points or radius of a ride (see {@link #update(Ride)}).
+ */
+@Service
+public class RideGeoIndex {
+
+    // Zellgrösse in Grad (ca. 11 km Nord-Süd, 7.5 km Ost-West in der Schweiz)
+    static final double CELL_DEG = 0.1;
+
+    private static final double KM_PER_DEG = 111.32;
+
+    private static final long EMPTY_CELL = Long.MIN_VALUE;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready = false;
+
+    // Ride-Daten pro Slot (parallele Arrays)
+    private String[] rideIds;
+    private double[] startLat;
+    private double[] startLng;
+    private double[] endLat;
+    private double[] endLng;
+    private double[] radiusKm;
+    private int slotCount;
+    private int[] freeSlots;
+    private int freeCount;
+    private final Map<String, Integer> slotByRideId = new HashMap<>();
+
+    // Zellen: Open Addressing Hash von Zell-Key auf Slot-Liste
+    private long[] cellKeys;
+    private int[][] cellSlots;
+    private int[] cellSizes;
+    private int cellCount;
+
+    public RideGeoIndex() {
+        clear();
+    }
+
+    /**
+     * Lädt alle OPEN Rides beim Start
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            List<Ride> openRides = rideRepository.findByStatus(RideStatus.OPEN);
+            rebuild(openRides);
+            System.out.println("Ride geo index loaded with " + size() + " rides");
+        } catch (Exception e) {
+            System.err.println("Ride geo index load error: " + e.getMessage());
+        }
+    }
+
+    public void rebuild(Collection<Ride> rides) {
+        lock.writeLock().lock();
+        try {
+            clear();
+            for (Ride ride : rides) {
+                if (isIndexable(ride)) {
+                    insert(ride);
+                }
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds, moves or removes a ride depending on its current state.
+     * Only OPEN rides with start and end point are kept.
+     */
+    public void update(Ride ride) {
+        if (ride == null || ride.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeSlot(ride.getId());
+            if (isIndexable(ride)) {
+                insert(ride);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String rideId) {
+        if (rideId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeSlot(rideId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotByRideId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Same semantics as the MongoDB path in {@link RideService#findRidesNear}:
+     * start and destination of the rider must both lie within the ride's own
+     * routeRadiusKm (capped at {@link RideService#MAX_ROUTE_RADIUS_KM}).
+     *
+     * @return ride ids, nearest start first
+     */
+    public List<String> findRideIdsNear(double fromLat, double fromLng, double toLat, double toLng, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        double cosFrom = Math.cos(Math.toRadians(fromLat));
+        double cosTo = Math.cos(Math.toRadians(toLat));
+
+        lock.readLock().lock();
+        try {
+            int cell = findCell(cellKey(cellOf(fromLat), cellOf(fromLng)));
+            if (cell < 0) {
+                return List.of();
+            }
+            int[] slots = cellSlots[cell];
+            int size = cellSizes[cell];
+
+            // Top-k nach Startdistanz (Insertion Sort, k ist klein)
+            int capacity = Math.min(limit, size);
+            int[] bestSlots = new int[capacity];
+            double[] bestDistances = new double[capacity];
+            int found = 0;
+
+            for (int i = 0; i < size; i++) {
+                int slot = slots[i];
+                double radius = radiusKm[slot];
+                double startDistance = distanceKm(fromLat, fromLng, startLat[slot], startLng[slot], cosFrom);
+                if (startDistance > radius) {
+                    continue;
+                }
+                if (distanceKm(toLat, toLng, endLat[slot], endLng[slot], cosTo) > radius) {
+                    continue;
+                }
+                if (found == capacity && startDistance >= bestDistances[found - 1]) {
+                    continue;
+                }
+                int pos = found < capacity ? found++ : found - 1;
+                while (pos > 0 && bestDistances[pos - 1] > startDistance) {
+                    bestSlots[pos] = bestSlots[pos - 1];
+                    bestDistances[pos] = bestDistances[pos - 1];
+                    pos--;
+                }
+                bestSlots[pos] = slot;
+                bestDistances[pos] = startDistance;
+            }
+
+            List<String> result = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                result.add(rideIds[bestSlots[i]]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== Internals (nur unter Write-Lock) ==========
+
+    private static boolean isIndexable(Ride ride) {
+        return ride.getId() != null
+                && ride.getStatus() == RideStatus.OPEN
+                && ride.getStartPoint() != null
+                && ride.getEndPoint() != null;
+    }
+
+    private void clear() {
+        rideIds = new String[64];
+        startLat = new double[64];
+        startLng = new double[64];
+        endLat = new double[64];
+        endLng = new double[64];
+        radiusKm = new double[64];
+        slotCount = 0;
+        freeSlots = new int[16];
+        freeCount = 0;
+        slotByRideId.clear();
+
+        cellKeys = new long[256];
+        Arrays.fill(cellKeys, EMPTY_CELL);
+        cellSlots = new int[256][];
+        cellSizes = new int[256];
+        cellCount = 0;
+    }
+
+    private void insert(Ride ride) {
+        int slot = allocateSlot();
+        double radius = ride.getRouteRadiusKm() != null ? ride.getRouteRadiusKm() : RideService.DEFAULT_ROUTE_RADIUS_KM;
+        rideIds[slot] = ride.getId();
+        startLat[slot] = ride.getStartPoint().getY();
+        startLng[slot] = ride.getStartPoint().getX();
+        endLat[slot] = ride.getEndPoint().getY();
+        endLng[slot] = ride.getEndPoint().getX();
+        radiusKm[slot] = Math.min(radius, RideService.MAX_ROUTE_RADIUS_KM);
+        slotByRideId.put(ride.getId(), slot);
+
+        forEachCoveredCell(slot, true);
+    }
+
+    private void removeSlot(String rideId) {
+        Integer slot = slotByRideId.remove(rideId);
+        if (slot == null) {
+            return;
+        }
+        forEachCoveredCell(slot, false);
+        rideIds[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // Alle Zellen in der Bounding Box des Startkreises
+    private void forEachCoveredCell(int slot, boolean add) {
+        double lat = startLat[slot];
+        double lng = startLng[slot];
+        double dLat = radiusKm[slot] / KM_PER_DEG;
+        double dLng = radiusKm[slot] / (KM_PER_DEG * Math.max(Math.cos(Math.toRadians(lat)), 0.01));
+
+        int minLat = cellOf(lat - dLat);
+        int maxLat = cellOf(lat + dLat);
+        int minLng = cellOf(lng - dLng);
+        int maxLng = cellOf(lng + dLng);
+
+        for (int latCell = minLat; latCell <= maxLat; latCell++) {
+            for (int lngCell = minLng; lngCell <= maxLng; lngCell++) {
+                long key = cellKey(latCell, lngCell);
+                if (add) {
+                    addToCell(key, slot);
+                } else {
+                    removeFromCell(key, slot);
+                }
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == rideIds.length) {
+            int newLength = slotCount * 2;
+            rideIds = Arrays.copyOf(rideIds, newLength);
+            startLat = Arrays.copyOf(startLat, newLength);
+            startLng = Arrays.copyOf(startLng, newLength);
+            endLat = Arrays.copyOf(endLat, newLength);
+            endLng = Arrays.copyOf(endLng, newLength);
+            radiusKm = Arrays.copyOf(radiusKm, newLength);
+        }
+        return slotCount++;
+    }
+
+    private void addToCell(long key, int slot) {
+        if ((cellCount + 1) * 2 > cellKeys.length) {
+            resizeCells();
+        }
+        int cell = probe(key);
+        if (cellKeys[cell] == EMPTY_CELL) {
+            cellKeys[cell] = key;
+            cellSlots[cell] = new int[4];
+            cellCount++;
+        }
+        int[] slots = cellSlots[cell];
+        if (cellSizes[cell] == slots.length) {
+            slots = Arrays.copyOf(slots, slots.length * 2);
+            cellSlots[cell] = slots;
+        }
+        slots[cellSizes[cell]++] = slot;
+    }
+
+    private void removeFromCell(long key, int slot) {
+        int cell = findCell(key);
+        if (cell < 0) {
+            return;
+        }
+        int[] slots = cellSlots[cell];
+        int size = cellSizes[cell];
+        for (int i = 0; i < size; i++) {
+            if (slots[i] == slot) {
+                slots[i] = slots[size - 1];
+                cellSizes[cell] = size - 1;
+                return;
+            }
+        }
+    }
+
+    private void resizeCells() {
+        long[] oldKeys = cellKeys;
+        int[][] oldSlots = cellSlots;
+        int[] oldSizes = cellSizes;
+
+        cellKeys = new long[oldKeys.length * 2];
+        Arrays.fill(cellKeys, EMPTY_CELL);
+        cellSlots = new int[cellKeys.length][];
+        cellSizes = new int[cellKeys.length];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_CELL) {
+                int cell = probe(oldKeys[i]);
+                cellKeys[cell] = oldKeys[i];
+                cellSlots[cell] = oldSlots[i];
+                cellSizes[cell] = oldSizes[i];
+            }
+        }
+    }
+
+    // Position des Keys oder des ersten freien Platzes (lineares Sondieren)
+    private int probe(long key) {
+        int mask = cellKeys.length - 1;
+        int i = hash(key) & mask;
+        while (cellKeys[i] != EMPTY_CELL && cellKeys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int findCell(long key) {
+        int cell = probe(key);
+        return cellKeys[cell] == key ? cell : -1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEG);
+    }
+
+    static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xFFFFFFFFL);
+    }
+
+    // Equirectangular-Näherung, genau genug für Distanzen bis ca. 50 km
+    private static double distanceKm(double lat1, double lng1, double lat2, double lng2, double cosLat) {
+        double dLat = lat2 - lat1;
+        double dLng = (lng2 - lng1) * cosLat;
+        return KM_PER_DEG * Math.sqrt(dLat * dLat + dLng * dLng);
+    }
+}
@@ -0,0 +1,710 @@
+package ch.zhaw.shareway.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
+import org.springframework.stereotype.Service;
+
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.repository.RideRepository;
+
+/**
+ * In-memory R-tree over the route segments of all OPEN rides.
+ *
+ * The base tree is bulk-loaded with Sort-Tile-Recursive (STR) into flat float
+ * arrays. Each segment box is widened by its ride's routeRadiusKm, so a
+ * lookup is a point query. Rides added or changed afterwards live in a small
+ * delta list that is scanned linearly; removed rides are masked. Once the
+ * delta or the masked part grows too large, the tree is rebuilt.
+ */
+@Service
+public class RideRouteIndex {
+
+    // Max. Kinder pro Knoten
+    static final int NODE_CAPACITY = 16;
+
+    // Delta-Grenze, ab der neu aufgebaut wird
+    static final int MAX_DELTA_RIDES = 256;
+
+    private static final double KM_PER_DEG = 111.32;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready = false;
+
+    private Snapshot base = Snapshot.build(List.of());
+
+    // Base-Rides, die entfernt oder ersetzt wurden
+    private BitSet deadBaseSlots = new BitSet();
+    private int deadBaseCount = 0;
+
+    // Neu hinzugekommene oder geänderte Rides seit dem letzten Aufbau
+    private final Map<String, RouteEntry> delta = new LinkedHashMap<>();
+
+    /**
+     * Lädt alle OPEN Rides mit Route beim Start
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        try {
+            List<Ride> openRides = rideRepository.findByStatus(RideStatus.OPEN);
+            rebuild(openRides);
+            System.out.println("Ride route index loaded with " + size() + " rides");
+        } catch (Exception e) {
+            System.err.println("Ride route index load error: " + e.getMessage());
+        }
+    }
+
+    public void rebuild(Collection<Ride> rides) {
+        List<RouteEntry> entries = new ArrayList<>();
+        for (Ride ride : rides) {
+            if (isIndexable(ride)) {
+                entries.add(RouteEntry.of(ride));
+            }
+        }
+        Snapshot snapshot = Snapshot.build(entries);
+
+        lock.writeLock().lock();
+        try {
+            base = snapshot;
+            deadBaseSlots = new BitSet();
+            deadBaseCount = 0;
+            delta.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds, replaces or removes a ride depending on its current state.
+     * Only OPEN rides with a stored route are kept. Changes that do not
+     * touch the route, its radius or whether the ride is indexed (e.g. seat
+     * counts) leave the index as it is.
+     */
+    public void update(Ride ride) {
+        if (ride == null || ride.getId() == null) {
+            return;
+        }
+        boolean indexable = isIndexable(ride);
+
+        lock.readLock().lock();
+        try {
+            if (indexable ? isIndexedWithSameRoute(ride) : !isIndexed(ride.getId())) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        RouteEntry entry = indexable ? RouteEntry.of(ride) : null;
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(ride.getId());
+            if (entry != null) {
+                delta.put(ride.getId(), entry);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String rideId) {
+        if (rideId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeInternal(rideId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Rides im Delta, nur für Tests
+    int deltaSize() {
+        lock.readLock().lock();
+        try {
+            return delta.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return base.rideCount() - deadBaseCount + delta.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rides whose route passes within their routeRadiusKm of the pickup and
+     * of the drop-off, with the pickup before the drop-off along the route.
+     *
+     * @return ride ids, smallest total detour (pickup + drop-off distance) first
+     */
+    public List<String> findRideIdsAlongRoute(double pickupLat, double pickupLng,
+            double dropoffLat, double dropoffLng, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Map<String, Match> matches = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            // Pickup: früheste Position entlang der Route
+            base.query(pickupLat, pickupLng, deadBaseSlots, (rideId, distance, position) -> {
+                Match match = matches.computeIfAbsent(rideId, id -> new Match());
+                match.addPickup(distance, position);
+            });
+            for (RouteEntry entry : delta.values()) {
+                entry.query(pickupLat, pickupLng, (rideId, distance, position) -> {
+                    Match match = matches.computeIfAbsent(rideId, id -> new Match());
+                    match.addPickup(distance, position);
+                });
+            }
+            if (matches.isEmpty()) {
+                return List.of();
+            }
+
+            // Drop-off: späteste Position, nur für Rides mit Pickup-Treffer
+            HitConsumer dropoff = (rideId, distance, position) -> {
+                Match match = matches.get(rideId);
+                if (match != null) {
+                    match.addDropoff(distance, position);
+                }
+            };
+            base.query(dropoffLat, dropoffLng, deadBaseSlots, dropoff);
+            for (RouteEntry entry : delta.values()) {
+                if (matches.containsKey(entry.rideId)) {
+                    entry.query(dropoffLat, dropoffLng, dropoff);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return matches.entrySet().stream()
+                .filter(e -> e.getValue().isInOrder())
+                .sorted((a, b) -> Double.compare(a.getValue().detourKm(), b.getValue().detourKm()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // ========== Internals ==========
+
+    private static boolean isIndexable(Ride ride) {
+        return ride.getId() != null
+                && ride.getStatus() == RideStatus.OPEN
+                && ride.getRoute() != null
+                && ride.getRoute().getCoordinates().size() >= 2;
+    }
+
+    // Nur unter Lock
+    private boolean isIndexed(String rideId) {
+        if (delta.containsKey(rideId)) {
+            return true;
+        }
+        Integer slot = base.slotOf(rideId);
+        return slot != null && !deadBaseSlots.get(slot);
+    }
+
+    // Nur unter Lock; vergleicht die gespeicherten float-Werte, wie sie RouteEntry.of erzeugt
+    private boolean isIndexedWithSameRoute(Ride ride) {
+        float radiusKm = RouteEntry.radiusOf(ride);
+        List<Point> coordinates = ride.getRoute().getCoordinates();
+        RouteEntry entry = delta.get(ride.getId());
+        if (entry != null) {
+            return entry.radiusKm == radiusKm && samePoints(entry.lat, entry.lng, 0, entry.lat.length, coordinates);
+        }
+        Integer slot = base.slotOf(ride.getId());
+        return slot != null && !deadBaseSlots.get(slot) && base.rideRadiusKm[slot] == radiusKm
+                && samePoints(base.lat, base.lng, base.ridePointStart[slot], base.ridePointCount[slot], coordinates);
+    }
+
+    private static boolean samePoints(float[] lat, float[] lng, int from, int count, List<Point> coordinates) {
+        if (count != coordinates.size()) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            Point point = coordinates.get(i);
+            if (lat[from + i] != (float) point.getY() || lng[from + i] != (float) point.getX()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Nur unter Write-Lock
+    private void removeInternal(String rideId) {
+        if (delta.remove(rideId) != null) {
+            return;
+        }
+        Integer slot = base.slotOf(rideId);
+        if (slot != null && !deadBaseSlots.get(slot)) {
+            deadBaseSlots.set(slot);
+            deadBaseCount++;
+        }
+    }
+
+    // Nur unter Write-Lock
+    private void compactIfNeeded() {
+        if (delta.size() <= MAX_DELTA_RIDES && deadBaseCount <= Math.max(MAX_DELTA_RIDES, base.rideCount() / 4)) {
+            return;
+        }
+        List<RouteEntry> entries = new ArrayList<>(base.rideCount() - deadBaseCount + delta.size());
+        for (int slot = 0; slot < base.rideCount(); slot++) {
+            if (!deadBaseSlots.get(slot)) {
+                entries.add(base.entryOf(slot));
+            }
+        }
+        entries.addAll(delta.values());
+        base = Snapshot.build(entries);
+        deadBaseSlots = new BitSet();
+        deadBaseCount = 0;
+        delta.clear();
+    }
+
+    @FunctionalInterface
+    interface HitConsumer {
+        void accept(String rideId, double distanceKm, double positionKm);
+    }
+
+    private static final class Match {
+        double pickupDistance = Double.MAX_VALUE;
+        double pickupPosition = Double.MAX_VALUE;
+        double dropoffDistance = Double.MAX_VALUE;
+        double dropoffPosition = -1;
+
+        void addPickup(double distance, double position) {
+            pickupDistance = Math.min(pickupDistance, distance);
+            pickupPosition = Math.min(pickupPosition, position);
+        }
+
+        void addDropoff(double distance, double position) {
+            dropoffDistance = Math.min(dropoffDistance, distance);
+            dropoffPosition = Math.max(dropoffPosition, position);
+        }
+
+        boolean isInOrder() {
+            return dropoffPosition >= 0 && pickupPosition < dropoffPosition;
+        }
+
+        double detourKm() {
+            return pickupDistance + dropoffDistance;
+        }
+    }
+
+    /**
+     * Route of a single ride: points and cumulative distance along the route
+     */
+    static final class RouteEntry {
+        final String rideId;
+        final float radiusKm;
+        final float[] lat;
+        final float[] lng;
+        final float[] km;
+
+        RouteEntry(String rideId, float radiusKm, float[] lat, float[] lng, float[] km) {
+            this.rideId = rideId;
+            this.radiusKm = radiusKm;
+            this.lat = lat;
+            this.lng = lng;
+            this.km = km;
+        }
+
+        static RouteEntry of(Ride ride) {
+            List<Point> coordinates = ride.getRoute().getCoordinates();
+            int n = coordinates.size();
+            float[] lat = new float[n];
+            float[] lng = new float[n];
+            float[] km = new float[n];
+            for (int i = 0; i < n; i++) {
+                lat[i] = (float) coordinates.get(i).getY();
+                lng[i] = (float) coordinates.get(i).getX();
+                if (i > 0) {
+                    km[i] = km[i - 1] + (float) RideService.distanceKm(lat[i - 1], lng[i - 1], lat[i], lng[i]);
+                }
+            }
+            return new RouteEntry(ride.getId(), radiusOf(ride), lat, lng, km);
+        }
+
+        static float radiusOf(Ride ride) {
+            double radius = ride.getRouteRadiusKm() != null ? ride.getRouteRadiusKm() : RideService.DEFAULT_ROUTE_RADIUS_KM;
+            return (float) Math.min(radius, RideService.MAX_ROUTE_RADIUS_KM);
+        }
+
+        // Linearer Scan über alle Segmente (nur für das Delta)
+        void query(double pLat, double pLng, HitConsumer consumer) {
+            double cos = Math.cos(Math.toRadians(pLat));
+            for (int i = 0; i + 1 < lat.length; i++) {
+                checkSegment(pLat, pLng, cos, lat[i], lng[i], km[i], lat[i + 1], lng[i + 1], km[i + 1],
+                        radiusKm, rideId, consumer);
+            }
+        }
+    }
+
+    /**
+     * Projects the point onto the segment (local equirectangular plane) and
+     * reports a hit with distance and position along the route.
+     */
+    static void checkSegment(double pLat, double pLng, double cos,
+            float aLat, float aLng, float aKm, float bLat, float bLng, float bKm,
+            float radiusKm, String rideId, HitConsumer consumer) {
+        double ax = (aLng - pLng) * cos * KM_PER_DEG;
+        double ay = (aLat - pLat) * KM_PER_DEG;
+        double dx = (bLng - aLng) * cos * KM_PER_DEG;
+        double dy = (bLat - aLat) * KM_PER_DEG;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? -(ax * dx + ay * dy) / lengthSquared : 0;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx;
+        double cy = ay + t * dy;
+        double distance = Math.sqrt(cx * cx + cy * cy);
+        if (distance <= radiusKm) {
+            consumer.accept(rideId, distance, aKm + t * (bKm - aKm));
+        }
+    }
+
+    /**
+     * Immutable STR-packed R-tree with all segments in flat arrays
+     */
+    static final class Snapshot {
+        // Rides
+        final String[] rideIds;
+        final float[] rideRadiusKm;
+        final int[] ridePointStart;
+        final int[] ridePointCount;
+        final Map<String, Integer> slotByRideId;
+
+        // Punkte, pro Ride zusammenhängend
+        final float[] lat;
+        final float[] lng;
+        final float[] km;
+
+        // Segmente in Baum-Reihenfolge: Segment i verbindet Punkt segPoint[i] und segPoint[i] + 1
+        final int[] segPoint;
+        final int[] segRide;
+
+        // Knoten; Blätter zeigen auf Segmente, innere Knoten auf zusammenhängende Kinder
+        final float[] nodeMinLat;
+        final float[] nodeMinLng;
+        final float[] nodeMaxLat;
+        final float[] nodeMaxLng;
+        final int[] nodeFirst;
+        final int[] nodeCount;
+        final boolean[] nodeLeaf;
+        final int root;
+
+        private Snapshot(String[] rideIds, float[] rideRadiusKm, int[] ridePointStart, int[] ridePointCount,
+                float[] lat, float[] lng, float[] km, int[] segPoint, int[] segRide,
+                float[] nodeMinLat, float[] nodeMinLng, float[] nodeMaxLat, float[] nodeMaxLng,
+                int[] nodeFirst, int[] nodeCount, boolean[] nodeLeaf, int root) {
+            this.rideIds = rideIds;
+            this.rideRadiusKm = rideRadiusKm;
+            this.ridePointStart = ridePointStart;
+            this.ridePointCount = ridePointCount;
+            this.lat = lat;
+            this.lng = lng;
+            this.km = km;
+            this.segPoint = segPoint;
+            this.segRide = segRide;
+            this.nodeMinLat = nodeMinLat;
+            this.nodeMinLng = nodeMinLng;
+            this.nodeMaxLat = nodeMaxLat;
+            this.nodeMaxLng = nodeMaxLng;
+            this.nodeFirst = nodeFirst;
+            this.nodeCount = nodeCount;
+            this.nodeLeaf = nodeLeaf;
+            this.root = root;
+            this.slotByRideId = new HashMap<>(rideIds.length * 2);
+            for (int i = 0; i < rideIds.length; i++) {
+                slotByRideId.put(rideIds[i], i);
+            }
+        }
+
+        int rideCount() {
+            return rideIds.length;
+        }
+
+        Integer slotOf(String rideId) {
+            return slotByRideId.get(rideId);
+        }
+
+        RouteEntry entryOf(int slot) {
+            int from = ridePointStart[slot];
+            int to = from + ridePointCount[slot];
+            return new RouteEntry(rideIds[slot], rideRadiusKm[slot],
+                    Arrays.copyOfRange(lat, from, to),
+                    Arrays.copyOfRange(lng, from, to),
+                    Arrays.copyOfRange(km, from, to));
+        }
+
+        void query(double pLat, double pLng, BitSet deadSlots, HitConsumer consumer) {
+            if (root < 0) {
+                return;
+            }
+            double cos = Math.cos(Math.toRadians(pLat));
+            int[] stack = new int[64];
+            int top = 0;
+            stack[top++] = root;
+
+            while (top > 0) {
+                int node = stack[--top];
+                if (pLat < nodeMinLat[node] || pLat > nodeMaxLat[node]
+                        || pLng < nodeMinLng[node] || pLng > nodeMaxLng[node]) {
+                    continue;
+                }
+                int first = nodeFirst[node];
+                int end = first + nodeCount[node];
+                if (nodeLeaf[node]) {
+                    for (int s = first; s < end; s++) {
+                        int ride = segRide[s];
+                        if (deadSlots.get(ride)) {
+                            continue;
+                        }
+                        int a = segPoint[s];
+                        checkSegment(pLat, pLng, cos, lat[a], lng[a], km[a], lat[a + 1], lng[a + 1], km[a + 1],
+                                rideRadiusKm[ride], rideIds[ride], consumer);
+                    }
+                } else {
+                    if (top + nodeCount[node] > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    for (int child = first; child < end; child++) {
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+
+        static Snapshot build(List<RouteEntry> entries) {
+            int rides = entries.size();
+            String[] rideIds = new String[rides];
+            float[] rideRadiusKm = new float[rides];
+            int[] ridePointStart = new int[rides];
+            int[] ridePointCount = new int[rides];
+
+            int points = 0;
+            for (RouteEntry entry : entries) {
+                points += entry.lat.length;
+            }
+            float[] lat = new float[points];
+            float[] lng = new float[points];
+            float[] km = new float[points];
+            int segments = points - rides;
+            int[] rawSegPoint = new int[Math.max(segments, 0)];
+            int[] rawSegRide = new int[Math.max(segments, 0)];
+
+            int p = 0;
+            int s = 0;
+            for (int r = 0; r < rides; r++) {
+                RouteEntry entry = entries.get(r);
+                rideIds[r] = entry.rideId;
+                rideRadiusKm[r] = entry.radiusKm;
+                ridePointStart[r] = p;
+                ridePointCount[r] = entry.lat.length;
+                System.arraycopy(entry.lat, 0, lat, p, entry.lat.length);
+                System.arraycopy(entry.lng, 0, lng, p, entry.lng.length);
+                System.arraycopy(entry.km, 0, km, p, entry.km.length);
+                for (int i = 0; i + 1 < entry.lat.length; i++) {
+                    rawSegPoint[s] = p + i;
+                    rawSegRide[s] = r;
+                    s++;
+                }
+                p += entry.lat.length;
+            }
+
+            // Segment-Boxen, erweitert um den Radius der Fahrt
+            float[] boxMinLat = new float[segments];
+            float[] boxMinLng = new float[segments];
+            float[] boxMaxLat = new float[segments];
+            float[] boxMaxLng = new float[segments];
+            for (int i = 0; i < segments; i++) {
+                int a = rawSegPoint[i];
+                float radius = rideRadiusKm[rawSegRide[i]];
+                float dLat = (float) (radius / KM_PER_DEG);
+                double midLat = (lat[a] + lat[a + 1]) / 2.0;
+                float dLng = (float) (radius / (KM_PER_DEG * Math.max(Math.cos(Math.toRadians(midLat)), 0.01)));
+                boxMinLat[i] = Math.min(lat[a], lat[a + 1]) - dLat;
+                boxMaxLat[i] = Math.max(lat[a], lat[a + 1]) + dLat;
+                boxMinLng[i] = Math.min(lng[a], lng[a + 1]) - dLng;
+                boxMaxLng[i] = Math.max(lng[a], lng[a + 1]) + dLng;
+            }
+
+            // Blätter: Segmente in STR-Reihenfolge
+            int[] order = strOrder(boxMinLat, boxMinLng, boxMaxLat, boxMaxLng, segments);
+            int[] segPoint = new int[segments];
+            int[] segRide = new int[segments];
+            for (int i = 0; i < segments; i++) {
+                segPoint[i] = rawSegPoint[order[i]];
+                segRide[i] = rawSegRide[order[i]];
+            }
+
+            NodeBuilder nodes = new NodeBuilder(segments / NODE_CAPACITY * 2 + 16);
+            int levelStart = nodes.size;
+            for (int first = 0; first < segments; first += NODE_CAPACITY) {
+                int count = Math.min(NODE_CAPACITY, segments - first);
+                float minLat = Float.MAX_VALUE, minLng = Float.MAX_VALUE;
+                float maxLat = -Float.MAX_VALUE, maxLng = -Float.MAX_VALUE;
+                for (int i = first; i < first + count; i++) {
+                    int raw = order[i];
+                    minLat = Math.min(minLat, boxMinLat[raw]);
+                    minLng = Math.min(minLng, boxMinLng[raw]);
+                    maxLat = Math.max(maxLat, boxMaxLat[raw]);
+                    maxLng = Math.max(maxLng, boxMaxLng[raw]);
+                }
+                nodes.add(minLat, minLng, maxLat, maxLng, first, count, true);
+            }
+            int levelSize = nodes.size - levelStart;
+
+            // Innere Knoten: jede Ebene wieder mit STR packen
+            while (levelSize > 1) {
+                int[] levelOrder = strOrder(
+                        Arrays.copyOfRange(nodes.minLat, levelStart, levelStart + levelSize),
+                        Arrays.copyOfRange(nodes.minLng, levelStart, levelStart + levelSize),
+                        Arrays.copyOfRange(nodes.maxLat, levelStart, levelStart + levelSize),
+                        Arrays.copyOfRange(nodes.maxLng, levelStart, levelStart + levelSize),
+                        levelSize);
+                // Ebene in STR-Reihenfolge kopieren, damit Geschwister zusammenhängend sind
+                int sortedStart = nodes.size;
+                for (int i = 0; i < levelSize; i++) {
+                    nodes.copy(levelStart + levelOrder[i]);
+                }
+                int parentStart = nodes.size;
+                for (int first = 0; first < levelSize; first += NODE_CAPACITY) {
+                    int count = Math.min(NODE_CAPACITY, levelSize - first);
+                    float minLat = Float.MAX_VALUE, minLng = Float.MAX_VALUE;
+                    float maxLat = -Float.MAX_VALUE, maxLng = -Float.MAX_VALUE;
+                    for (int i = sortedStart + first; i < sortedStart + first + count; i++) {
+                        minLat = Math.min(minLat, nodes.minLat[i]);
+                        minLng = Math.min(minLng, nodes.minLng[i]);
+                        maxLat = Math.max(maxLat, nodes.maxLat[i]);
+                        maxLng = Math.max(maxLng, nodes.maxLng[i]);
+                    }
+                    nodes.add(minLat, minLng, maxLat, maxLng, sortedStart + first, count, false);
+                }
+                levelStart = parentStart;
+                levelSize = nodes.size - parentStart;
+            }
+            int root = levelSize == 1 ? levelStart : -1;
+
+            return new Snapshot(rideIds, rideRadiusKm, ridePointStart, ridePointCount, lat, lng, km,
+                    segPoint, segRide,
+                    Arrays.copyOf(nodes.minLat, nodes.size), Arrays.copyOf(nodes.minLng, nodes.size),
+                    Arrays.copyOf(nodes.maxLat, nodes.size), Arrays.copyOf(nodes.maxLng, nodes.size),
+                    Arrays.copyOf(nodes.first, nodes.size), Arrays.copyOf(nodes.count, nodes.size),
+                    Arrays.copyOf(nodes.leaf, nodes.size), root);
+        }
+
+        /**
+         * Sort-Tile-Recursive order: vertical slices by center longitude,
+         * each slice sorted by center latitude.
+         */
+        static int[] strOrder(float[] minLat, float[] minLng, float[] maxLat, float[] maxLng, int n) {
+            long[] keys = new long[n];
+            for (int i = 0; i < n; i++) {
+                keys[i] = sortKey((minLng[i] + maxLng[i]) / 2, i);
+            }
+            Arrays.sort(keys);
+
+            int leaves = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            int slices = (int) Math.ceil(Math.sqrt(leaves));
+            int sliceSize = slices * NODE_CAPACITY;
+
+            int[] order = new int[n];
+            for (int sliceStart = 0; sliceStart < n; sliceStart += sliceSize) {
+                int sliceEnd = Math.min(n, sliceStart + sliceSize);
+                long[] sliceKeys = new long[sliceEnd - sliceStart];
+                for (int i = sliceStart; i < sliceEnd; i++) {
+                    int item = (int) keys[i];
+                    sliceKeys[i - sliceStart] = sortKey((minLat[item] + maxLat[item]) / 2, item);
+                }
+                Arrays.sort(sliceKeys);
+                for (int i = 0; i < sliceKeys.length; i++) {
+                    order[sliceStart + i] = (int) sliceKeys[i];
+                }
+            }
+            return order;
+        }
+
+        // Float-Wert (sortierbar) in den oberen, Index in den unteren 32 Bit
+        private static long sortKey(float value, int index) {
+            int bits = Float.floatToIntBits(value);
+            int sortable = bits >= 0 ? bits : bits ^ 0x7FFFFFFF;
+            return ((long) sortable << 32) | (index & 0xFFFFFFFFL);
+        }
+    }
+
+    private static final class NodeBuilder {
+        float[] minLat;
+        float[] minLng;
+        float[] maxLat;
+        float[] maxLng;
+        int[] first;
+        int[] count;
+        boolean[] leaf;
+        int size;
+
+        NodeBuilder(int capacity) {
+            minLat = new float[capacity];
+            minLng = new float[capacity];
+            maxLat = new float[capacity];
+            maxLng = new float[capacity];
+            first = new int[capacity];
+            count = new int[capacity];
+            leaf = new boolean[capacity];
+        }
+
+        void add(float nMinLat, float nMinLng, float nMaxLat, float nMaxLng, int nFirst, int nCount, boolean nLeaf) {
+            if (size == minLat.length) {
+                int newLength = size * 2;
+                minLat = Arrays.copyOf(minLat, newLength);
+                minLng = Arrays.copyOf(minLng, newLength);
+                maxLat = Arrays.copyOf(maxLat, newLength);
+                maxLng = Arrays.copyOf(maxLng, newLength);
+                first = Arrays.copyOf(first, newLength);
+                count = Arrays.copyOf(count, newLength);
+                leaf = Arrays.copyOf(leaf, newLength);
+            }
+            minLat[size] = nMinLat;
+            minLng[size] = nMinLng;
+            maxLat[size] = nMaxLat;
+            maxLng[size] = nMaxLng;
+            first[size] = nFirst;
+            count[size] = nCount;
+            leaf[size] = nLeaf;
+            size++;
+        }
+
+        void copy(int node) {
+            add(minLat[node], minLng[node], maxLat[node], maxLng[node], first[node], count[node], leaf[node]);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package ch.zhaw.shareway.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -17,6 +18,18 @@ public class RideScheduler {
     @Autowired
     private RideRepository rideRepository;
 
+    @Autowired
+    private RideGeoIndex rideGeoIndex;
+
+    @Autowired
+    private RideRouteIndex rideRouteIndex;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private RideCommandExecutor rideCommands;
+
     // Läuft alle 15 Minuten
     @Scheduled(fixedRate = 900000)
     public void autoCompleteRides() {
@@ -28,15 +41,43 @@ public class RideScheduler {
         // OPEN Rides prüfen
         for (Ride ride : openRides) {
             if (shouldComplete(ride, now)) {
-                ride.setStatus(RideStatus.COMPLETED);
-                rideRepository.save(ride);
-                System.out.println("Auto-completed ride: " + ride.getId());
+                try {
+                    // In der Lane der Ride, wie alle anderen Änderungen an ihr
+                    rideCommands.execute(ride.getId(), () -> complete(ride, now));
+                } catch (RuntimeException e) {
+                    System.err.println("Could not auto-complete ride " + ride.getId() + ": " + e.getMessage());
+                }
             }
         }
 
 
     }
 
+    private Ride complete(Ride ride, LocalDateTime now) {
+        return optimisticRetry.run("ride.autoComplete", new Supplier<Ride>() {
+            private Ride current = ride;
+
+            @Override
+            public Ride get() {
+                // Ab dem zweiten Versuch den aktuellen Stand lesen und erneut prüfen
+                if (current == null) {
+                    current = rideRepository.findById(ride.getId()).orElse(null);
+                    if (current == null || current.getStatus() != RideStatus.OPEN || !shouldComplete(current, now)) {
+                        return current;
+                    }
+                }
+                Ride toSave = current;
+                current = null;
+                toSave.setStatus(RideStatus.COMPLETED);
+                Ride saved = rideRepository.save(toSave);
+                rideGeoIndex.update(saved);
+                rideRouteIndex.update(saved);
+                System.out.println("Auto-completed ride: " + saved.getId());
+                return saved;
+            }
+        });
+    }
+
     private boolean shouldComplete(Ride ride, LocalDateTime now) {
         if (ride.getDepartureTime() == null) {
             return false;
@@ -1,11 +1,46 @@
 package ch.zhaw.shareway.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.EvaluationOperators;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.NearQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import com.mongodb.client.result.UpdateResult;
+
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RidePage;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.RideSummary;
 import ch.zhaw.shareway.model.Vehicle;
+import ch.zhaw.shareway.repository.RideRepository;
 import ch.zhaw.shareway.repository.VehicleRepository;
 
 /**
@@ -15,9 +50,48 @@ import ch.zhaw.shareway.repository.VehicleRepository;
 @Service
 public class RideService {
 
+    // Offene Grenzen für das Abfahrtsfenster, falls kein Datum angegeben
+    static final LocalDateTime MIN_DEPARTURE = LocalDateTime.of(1970, 1, 1, 0, 0);
+    static final LocalDateTime MAX_DEPARTURE = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    // Obergrenze für routeRadiusKm bei der Umkreissuche (Vorfilter im Index)
+    static final double MAX_ROUTE_RADIUS_KM = 50.0;
+
+    // Default wie in Ride.routeRadiusKm
+    static final double DEFAULT_ROUTE_RADIUS_KM = 5.0;
+
+    // Collection von Ride, für Projektionen auf RideSummary
+    static final String RIDES_COLLECTION = "rides";
+
+    // Obergrenze für pageSize bei Listen und Suche
+    static final int MAX_PAGE_SIZE = 100;
+
+    // Max. Kandidaten aus $geoNear, bevor der Zielradius geprüft wird
+    static final int MAX_NEARBY_CANDIDATES = 500;
+
+    // Toleranz für die Vereinfachung der Route (Douglas-Peucker)
+    static final double ROUTE_TOLERANCE_KM = 0.25;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+
     @Autowired
     private VehicleRepository vehicleRepository;
 
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RideGeoIndex rideGeoIndex;
+
+    @Autowired
+    private RideRouteIndex rideRouteIndex;
+
+    @Autowired
+    private GeocodingService geocodingService;
+
     /**
      * Validate that vehicle exists and belongs to driver
      * 
@@ -32,4 +106,357 @@ public class RideService {
         }
         return vehicle.get().getOwnerId().equals(driverId);
     }
-}
\ No newline at end of file
+
+    /**
+     * List rides with optional status and price filter, ordered by departure time
+     *
+     * @param status    Ride status, optional
+     * @param maxPrice  Max price per seat, optional
+     * @param cursor    Continuation token of the previous page, null for the first page
+     * @param pageSize  Page size
+     * @param withTotal Whether to count all matching rides
+     * @return a page of ride summaries with the token for the next page
+     */
+    public RidePage listRides(RideStatus status, Double maxPrice, String cursor, int pageSize,
+            boolean withTotal) {
+        Criteria filter = new Criteria();
+        if (status != null) {
+            filter.and("status").is(status);
+        }
+        if (maxPrice != null) {
+            filter.and("pricePerSeat").lte(maxPrice);
+        }
+        return findPage(filter, cursor, pageSize, withTotal);
+    }
+
+    /**
+     * Search rides in MongoDB instead of filtering a page on the client.
+     * The prefixes are anchored regexes on the normalized location keys, so
+     * the status_start_end_departure / status_end_departure indexes are used.
+     *
+     * @param from          Prefix of the start location (case-insensitive), optional
+     * @param to            Prefix of the end location (case-insensitive), optional
+     * @param date          Departure day, optional (takes precedence over the window)
+     * @param departureFrom Start of the departure window (inclusive), optional
+     * @param departureTo   End of the departure window (exclusive), optional
+     * @param status        Ride status, optional (all statuses if null)
+     * @param maxPrice      Max price per seat, optional
+     * @param cursor        Continuation token of the previous page, null for the first page
+     * @param pageSize      Page size
+     * @param withTotal     Whether to count all matching rides
+     * @return a page of ride summaries sorted by departure time
+     */
+    public RidePage searchRides(String from, String to, LocalDate date,
+            LocalDateTime departureFrom, LocalDateTime departureTo,
+            RideStatus status, Double maxPrice, String cursor, int pageSize, boolean withTotal) {
+
+        List<RideStatus> statuses = status != null ? List.of(status) : Arrays.asList(RideStatus.values());
+
+        LocalDateTime windowStart = departureFrom != null ? departureFrom : MIN_DEPARTURE;
+        LocalDateTime windowEnd = departureTo != null ? departureTo : MAX_DEPARTURE;
+        if (date != null) {
+            windowStart = date.atStartOfDay();
+            windowEnd = date.plusDays(1).atStartOfDay();
+        }
+
+        Criteria filter = Criteria.where("status").in(statuses)
+                .and("startLocationKey").regex(toPrefixRegex(from))
+                .and("endLocationKey").regex(toPrefixRegex(to))
+                .and("departureTime").gte(windowStart).lt(windowEnd)
+                .and("pricePerSeat").lte(maxPrice != null ? maxPrice : Double.MAX_VALUE);
+        return findPage(filter, cursor, pageSize, withTotal);
+    }
+
+    /**
+     * Keyset-Pagination auf (departureTime, id): statt skip() wird ab dem
+     * letzten Ride der vorherigen Seite gelesen, tiefe Seiten kosten also
+     * gleich viel wie die erste. Ein Element mehr als nötig zeigt an, ob es
+     * eine nächste Seite gibt. Gelesen werden nur die Felder von RideSummary.
+     */
+    private RidePage findPage(Criteria filter, String cursor, int pageSize, boolean withTotal) {
+        int size = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+
+        Criteria criteria = filter;
+        if (cursor != null && !cursor.isBlank()) {
+            criteria = new Criteria().andOperator(filter, keysetAfter(cursor));
+        }
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Direction.ASC, "departureTime", "id"))
+                .limit(size + 1);
+        query.fields().include(RideSummary.FIELDS);
+        List<RideSummary> rides = mongoTemplate.find(query, RideSummary.class, RIDES_COLLECTION);
+
+        String nextCursor = null;
+        if (rides.size() > size) {
+            rides = new ArrayList<>(rides.subList(0, size));
+            RideSummary last = rides.get(size - 1);
+            nextCursor = encodeCursor(last.getDepartureTime(), last.getId());
+        }
+        Long total = withTotal ? mongoTemplate.count(new Query(filter), Ride.class) : null;
+        return new RidePage(rides, size, nextCursor, total);
+    }
+
+    // departureTime > t OR (departureTime = t AND id > lastId)
+    static Criteria keysetAfter(String cursor) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        int separator = decoded.indexOf('|');
+        if (separator <= 0 || separator == decoded.length() - 1) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        LocalDateTime departureTime;
+        try {
+            departureTime = LocalDateTime.parse(decoded.substring(0, separator));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+        String id = decoded.substring(separator + 1);
+
+        return new Criteria().orOperator(
+                Criteria.where("departureTime").gt(departureTime),
+                Criteria.where("departureTime").is(departureTime).and("id").gt(id));
+    }
+
+    static String encodeCursor(LocalDateTime departureTime, String id) {
+        String raw = departureTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Find OPEN rides starting near A and going near B. A ride matches when the
+     * rider's start is within the ride's own routeRadiusKm of the ride's start
+     * point, and the rider's destination within the same radius of its end point.
+     *
+     * Uses the in-memory {@link RideGeoIndex} once it is loaded, MongoDB otherwise.
+     *
+     * @return matching rides, nearest start first
+     */
+    public List<Ride> findRidesNear(double fromLat, double fromLng, double toLat, double toLng, int limit) {
+        if (rideGeoIndex.isReady()) {
+            List<String> rideIds = rideGeoIndex.findRideIdsNear(fromLat, fromLng, toLat, toLng, limit);
+            Map<String, Ride> ridesById = new HashMap<>();
+            rideRepository.findAllById(rideIds).forEach(ride -> ridesById.put(ride.getId(), ride));
+            return rideIds.stream()
+                    .map(ridesById::get)
+                    .filter(ride -> ride != null && ride.getStatus() == RideStatus.OPEN)
+                    .toList();
+        }
+        return findRidesNearInMongo(fromLat, fromLng, toLat, toLng, limit);
+    }
+
+    /**
+     * MongoDB path for {@link #findRidesNear}, used until the index is loaded
+     */
+    public List<Ride> findRidesNearInMongo(double fromLat, double fromLng, double toLat, double toLng, int limit) {
+        List<Ride> candidates = mongoTemplate.aggregate(
+                buildNearbyAggregation(fromLat, fromLng, toLat, toLng), Ride.class, Ride.class)
+                .getMappedResults();
+
+        return candidates.stream()
+                .filter(ride -> ride.getEndPoint() != null)
+                .filter(ride -> distanceKm(toLat, toLng, ride.getEndPoint().getY(), ride.getEndPoint().getX())
+                        <= radiusOf(ride))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * $geoNear on startPoint (2dsphere) with $geoWithin on endPoint as index-backed
+     * prefilter, then $match against each ride's own routeRadiusKm.
+     */
+    Aggregation buildNearbyAggregation(double fromLat, double fromLng, double toLat, double toLng) {
+        Distance maxDistance = new Distance(MAX_ROUTE_RADIUS_KM, Metrics.KILOMETERS);
+
+        NearQuery nearQuery = NearQuery.near(new GeoJsonPoint(fromLng, fromLat), Metrics.KILOMETERS)
+                .spherical(true)
+                .maxDistance(maxDistance)
+                .query(new Query(Criteria.where("status").is(RideStatus.OPEN)
+                        .and("endPoint").withinSphere(new Circle(new Point(toLng, toLat), maxDistance))));
+
+        return Aggregation.newAggregation(
+                Aggregation.geoNear(nearQuery, "startDistanceKm"),
+                Aggregation.match(EvaluationOperators.valueOf(
+                        ComparisonOperators.valueOf("startDistanceKm").lessThanEqualTo(
+                                ConditionalOperators.ifNull("routeRadiusKm").then(DEFAULT_ROUTE_RADIUS_KM)))
+                        .expr()),
+                Aggregation.limit(MAX_NEARBY_CANDIDATES));
+    }
+
+    /**
+     * Open rides whose stored route passes within routeRadiusKm of the pickup
+     * and of the drop-off, pickup first. Rides without a route are not found.
+     */
+    public List<Ride> findRidesAlongRoute(double pickupLat, double pickupLng,
+            double dropoffLat, double dropoffLng, int limit) {
+        List<String> rideIds = rideRouteIndex.findRideIdsAlongRoute(pickupLat, pickupLng, dropoffLat, dropoffLng, limit);
+        Map<String, Ride> ridesById = new HashMap<>();
+        rideRepository.findAllById(rideIds).forEach(ride -> ridesById.put(ride.getId(), ride));
+        return rideIds.stream()
+                .map(ridesById::get)
+                .filter(ride -> ride != null && ride.getStatus() == RideStatus.OPEN)
+                .toList();
+    }
+
+    /**
+     * Simplifies a route ([lng, lat] pairs) with Douglas-Peucker so that no
+     * dropped point is further than {@link #ROUTE_TOLERANCE_KM} from the result.
+     *
+     * @return the simplified route, or null if there are fewer than 2 valid points
+     */
+    public GeoJsonLineString simplifyRoute(List<List<Double>> coordinates) {
+        if (coordinates == null) {
+            return null;
+        }
+        List<Point> points = new ArrayList<>();
+        for (List<Double> coordinate : coordinates) {
+            if (coordinate == null || coordinate.size() < 2 || coordinate.get(0) == null || coordinate.get(1) == null) {
+                continue;
+            }
+            double lng = coordinate.get(0);
+            double lat = coordinate.get(1);
+            if (Math.abs(lat) > 90 || Math.abs(lng) > 180) {
+                continue;
+            }
+            Point point = new Point(lng, lat);
+            if (points.isEmpty() || !points.get(points.size() - 1).equals(point)) {
+                points.add(point);
+            }
+        }
+        if (points.size() < 2) {
+            return null;
+        }
+
+        boolean[] keep = new boolean[points.size()];
+        keep[0] = true;
+        keep[points.size() - 1] = true;
+        // Iterativ statt rekursiv (OSRM-Routen haben tausende Punkte)
+        List<int[]> stack = new ArrayList<>();
+        stack.add(new int[] { 0, points.size() - 1 });
+        while (!stack.isEmpty()) {
+            int[] range = stack.remove(stack.size() - 1);
+            int first = range[0];
+            int last = range[1];
+            double maxDistance = 0;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistanceKm(points.get(i), points.get(first), points.get(last));
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxDistance > ROUTE_TOLERANCE_KM) {
+                keep[index] = true;
+                stack.add(new int[] { first, index });
+                stack.add(new int[] { index, last });
+            }
+        }
+
+        List<Point> simplified = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            if (keep[i]) {
+                simplified.add(points.get(i));
+            }
+        }
+        return new GeoJsonLineString(simplified);
+    }
+
+    // Abstand Punkt-Segment in km (lokal equirectangular)
+    private static double segmentDistanceKm(Point p, Point a, Point b) {
+        double kmPerDeg = Math.toRadians(EARTH_RADIUS_KM);
+        double cos = Math.cos(Math.toRadians(p.getY()));
+        double ax = (a.getX() - p.getX()) * cos * kmPerDeg;
+        double ay = (a.getY() - p.getY()) * kmPerDeg;
+        double dx = (b.getX() - a.getX()) * cos * kmPerDeg;
+        double dy = (b.getY() - a.getY()) * kmPerDeg;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared)) : 0;
+        return Math.hypot(ax + t * dx, ay + t * dy);
+    }
+
+    private static double radiusOf(Ride ride) {
+        return ride.getRouteRadiusKm() != null ? ride.getRouteRadiusKm() : DEFAULT_ROUTE_RADIUS_KM;
+    }
+
+    /**
+     * Great-circle distance (haversine) in km
+     */
+    static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                        * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+
+    /**
+     * Anchored regex for a location prefix. Only an anchored, case-sensitive
+     * regex can use index bounds, so the input is normalized like the stored key.
+     */
+    static String toPrefixRegex(String location) {
+        String key = Ride.toLocationKey(location);
+        if (key == null || key.isEmpty()) {
+            return "^";
+        }
+        return "^" + key.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+
+    /**
+     * Setzt fehlende Start- und Zielpunkte aus dem Gazetteer, damit auch
+     * ältere Rides in der Umkreissuche gefunden werden.
+     */
+    void backfillPoints() {
+        List<Ride> geocoded = new ArrayList<>();
+        for (Ride ride : rideRepository.findByStartPointIsNullOrEndPointIsNull()) {
+            boolean changed = false;
+            if (ride.getStartPoint() == null) {
+                ride.setStartPoint(geocodingService.toPoint(ride.getStartLocation()));
+                changed |= ride.getStartPoint() != null;
+            }
+            if (ride.getEndPoint() == null) {
+                ride.setEndPoint(geocodingService.toPoint(ride.getEndLocation()));
+                changed |= ride.getEndPoint() != null;
+            }
+            if (changed) {
+                geocoded.add(ride);
+            }
+        }
+        if (!geocoded.isEmpty()) {
+            rideRepository.saveAll(geocoded).forEach(rideGeoIndex::update);
+            System.out.println("Geocoded points for " + geocoded.size() + " rides");
+        }
+    }
+
+    /**
+     * Rides die vor Einführung der Suche gespeichert wurden, haben noch keine
+     * Suchschlüssel. Beim erneuten Speichern werden sie gesetzt.
+     * Die Indexes legt der {@link IndexVerifier} an.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prepareSearch() {
+        try {
+            // Zuerst: ohne version würde save() die Rides als neu einfügen
+            UpdateResult versioned = mongoTemplate.updateMulti(
+                    new Query(Criteria.where("version").exists(false)),
+                    new Update().set("version", 0L), Ride.class);
+            if (versioned.getModifiedCount() > 0) {
+                System.out.println("Backfilled version for " + versioned.getModifiedCount() + " rides");
+            }
+
+            List<Ride> rides = rideRepository.findByStartLocationKeyIsNullOrEndLocationKeyIsNull();
+            if (!rides.isEmpty()) {
+                rideRepository.saveAll(rides);
+                System.out.println("Backfilled search keys for " + rides.size() + " rides");
+            }
+
+            backfillPoints();
+        } catch (Exception e) {
+            System.err.println("Ride search preparation error: " + e.getMessage());
+        }
+    }
+}
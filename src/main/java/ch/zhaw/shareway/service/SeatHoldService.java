@@ -0,0 +1,307 @@
+package ch.zhaw.shareway.service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.SeatHold;
+
+/**
+ * Holds seats of a ride for a few minutes during checkout. Creating a hold
+ * takes the seats from Ride.seatsFree in one conditional update, so listings
+ * show them as taken without looking at the holds. Expired holds are given
+ * back by a scheduled sweep, one bulk write per batch.
+ *
+ * Holds change seats of a ride, so they run in the ride's command lane like
+ * the booking commands.
+ */
+@Service
+public class SeatHoldService {
+
+    static final int HOLD_MINUTES = 10;
+    static final int SWEEP_BATCH = 500;
+    // Übernommene Holds, die so lange nicht entfernt wurden, gehören einem abgebrochenen Sweep
+    static final int SWEEP_STALE_MINUTES = 5;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private RideGeoIndex rideGeoIndex;
+
+    @Autowired
+    private RideRouteIndex rideRouteIndex;
+
+    @Autowired
+    private RideCommandExecutor rideCommands;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Hold seats of an OPEN ride for the rider
+     *
+     * @return the hold, or empty if the ride is not open, is the rider's own
+     *         ride or has not enough free seats
+     */
+    public Optional<SeatHold> createHold(String rideId, String riderId, int seats) {
+        if (seats < 1) {
+            return Optional.empty();
+        }
+        return rideCommands.execute(rideId, () -> hold(rideId, riderId, seats));
+    }
+
+    private Optional<SeatHold> hold(String rideId, String riderId, int seats) {
+        Query query = new Query(Criteria.where("id").is(rideId)
+                .and("status").is(RideStatus.OPEN)
+                .and("driverId").ne(riderId)
+                .and("seatsFree").gte(seats));
+        Ride ride = mongoTemplate.findAndModify(query, holdSeats(seats),
+                FindAndModifyOptions.options().returnNew(true), Ride.class);
+        if (ride == null) {
+            return Optional.empty();
+        }
+        updateIndexes(ride);
+
+        SeatHold hold = new SeatHold(rideId, riderId, seats, LocalDateTime.now().plusMinutes(HOLD_MINUTES));
+        try {
+            return Optional.of(mongoTemplate.insert(hold));
+        } catch (RuntimeException e) {
+            updateIndexes(unholdSeats(rideId, seats, true));
+            throw e;
+        }
+    }
+
+    /**
+     * Give the seats of a hold back before it expires
+     *
+     * @return the released hold, or empty if it does not exist anymore
+     */
+    public Optional<SeatHold> releaseHold(String holdId, String riderId) {
+        return findRideId(holdId).flatMap(rideId -> rideCommands.execute(rideId, () -> release(holdId, riderId)));
+    }
+
+    private Optional<SeatHold> release(String holdId, String riderId) {
+        SeatHold hold = claim(holdId, riderId, false);
+        if (hold == null) {
+            return Optional.empty();
+        }
+        promoteWaitlist(updateIndexes(unholdSeats(hold.getRideId(), hold.getSeats(), true)));
+        return Optional.of(hold);
+    }
+
+    /**
+     * Turn an active hold into a booking request that keeps the held seats
+     *
+     * @return the booking, or empty if the hold expired or the rider cannot book
+     */
+    public Optional<Booking> confirmHold(String holdId, String riderId, String pickupLocation, String message,
+            String promoCode) {
+        return findRideId(holdId).flatMap(rideId -> rideCommands.execute(rideId,
+                () -> confirm(holdId, riderId, pickupLocation, message, promoCode)));
+    }
+
+    private Optional<Booking> confirm(String holdId, String riderId, String pickupLocation, String message,
+            String promoCode) {
+        SeatHold hold = claim(holdId, riderId, true);
+        if (hold == null) {
+            return Optional.empty();
+        }
+
+        Optional<Booking> booking;
+        try {
+            booking = bookingService.createBookingFromHold(hold, pickupLocation, message, promoCode);
+        } catch (RuntimeException e) {
+            // Der Hold ist schon entfernt: Plätze zurückgeben, sonst bleiben sie in seatsHeld hängen
+            promoteWaitlist(updateIndexes(unholdSeats(hold.getRideId(), hold.getSeats(), true)));
+            throw e;
+        }
+        // Plätze gehören jetzt der Booking oder gehen zurück
+        Ride ride = updateIndexes(unholdSeats(hold.getRideId(), hold.getSeats(), booking.isEmpty()));
+        if (booking.isEmpty()) {
+            promoteWaitlist(ride);
+        }
+        return booking;
+    }
+
+    /**
+     * Give back the seats of expired holds. Runs in batches; per batch the
+     * holds are claimed with one update, then removed and their seats
+     * returned with one bulk write in a single transaction. Holds claimed by
+     * a sweep that did not finish (e.g. the instance died) are claimed again
+     * after SWEEP_STALE_MINUTES; the transaction guarantees their seats were
+     * not returned yet.
+     *
+     * @return number of released holds
+     */
+    @Scheduled(fixedRate = 30000)
+    public int sweepExpiredHolds() {
+        int released = 0;
+        try {
+            int claimed;
+            do {
+                claimed = sweepBatch();
+                released += claimed;
+            } while (claimed > 0);
+        } catch (Exception e) {
+            System.err.println("Seat hold sweep error: " + e.getMessage());
+        }
+        if (released > 0) {
+            System.out.println("Released " + released + " expired seat holds");
+        }
+        return released;
+    }
+
+    // Ein Batch abgelaufener Holds, liefert die Anzahl übernommener Holds
+    int sweepBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Query expired = new Query(Criteria.where("expiresAt").lt(now).andOperator(claimable(now)))
+                .limit(SWEEP_BATCH);
+        expired.fields().include("id");
+        List<Object> ids = mongoTemplate.find(expired, SeatHold.class).stream()
+                .map(hold -> (Object) hold.getId())
+                .toList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // Übernehmen: nur Holds, die nicht gleichzeitig bestätigt oder freigegeben wurden
+        String sweepId = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(new Query(Criteria.where("id").in(ids).andOperator(claimable(now))),
+                new Update().set("sweepId", sweepId).set("sweptAt", now), SeatHold.class);
+        Query claimed = new Query(Criteria.where("sweepId").is(sweepId));
+
+        // Entfernen und Zurückgeben gelingen nur zusammen; hat ein anderer Sweep die Holds
+        // inzwischen übernommen, findet ein neuer Versuch keine mehr
+        Map<String, Integer> seatsPerRide = new LinkedHashMap<>();
+        List<SeatHold> holds = optimisticRetry.run("seatHold.sweep", () -> transactionTemplate.execute(status -> {
+            seatsPerRide.clear();
+            List<SeatHold> removed = mongoTemplate.findAllAndRemove(claimed, SeatHold.class);
+            for (SeatHold hold : removed) {
+                seatsPerRide.merge(hold.getRideId(), hold.getSeats(), Integer::sum);
+            }
+            if (!seatsPerRide.isEmpty()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Ride.class);
+                seatsPerRide.forEach((rideId, seats) -> bulk.updateOne(
+                        new Query(Criteria.where("id").is(rideId)), unholdUpdate(seats, true, true)));
+                bulk.execute();
+            }
+            return removed;
+        }));
+
+        // Suchindexes halten seatsFree: betroffene Rides in ihrer Lane neu laden, damit ein
+        // älterer Stand nie einen neueren Index-Eintrag überschreibt
+        seatsPerRide.keySet().forEach(rideId -> rideCommands.execute(rideId, () -> {
+            promoteWaitlist(updateIndexes(mongoTemplate.findById(rideId, Ride.class)));
+            return null;
+        }));
+        return holds.size();
+    }
+
+    // Noch von keinem Sweep übernommen, oder von einem, der nicht fertig wurde
+    private static Criteria claimable(LocalDateTime now) {
+        return new Criteria().orOperator(
+                Criteria.where("sweepId").exists(false),
+                Criteria.where("sweptAt").lt(now.minusMinutes(SWEEP_STALE_MINUTES)));
+    }
+
+    // Nur die rideId laden, um den Befehl der Lane der Ride zuzuordnen
+    private Optional<String> findRideId(String holdId) {
+        Query query = new Query(Criteria.where("id").is(holdId));
+        query.fields().include("rideId");
+        return Optional.ofNullable(mongoTemplate.findOne(query, SeatHold.class)).map(SeatHold::getRideId);
+    }
+
+    // Hold atomar entfernen, sofern er nicht schon vom Sweep übernommen wurde
+    private SeatHold claim(String holdId, String riderId, boolean activeOnly) {
+        Criteria criteria = Criteria.where("id").is(holdId)
+                .and("riderId").is(riderId)
+                .and("sweepId").exists(false);
+        if (activeOnly) {
+            criteria.and("expiresAt").gt(LocalDateTime.now());
+        }
+        return mongoTemplate.findAndRemove(new Query(criteria), SeatHold.class);
+    }
+
+    private Ride unholdSeats(String rideId, int seats, boolean giveBack) {
+        return mongoTemplate.findAndModify(new Query(Criteria.where("id").is(rideId)),
+                unholdUpdate(seats, giveBack, false), FindAndModifyOptions.options().returnNew(true), Ride.class);
+    }
+
+    private Ride updateIndexes(Ride ride) {
+        if (ride != null) {
+            rideGeoIndex.update(ride);
+            rideRouteIndex.update(ride);
+        }
+        return ride;
+    }
+
+    // Zurückgegebene Plätze gehen zuerst an die Warteliste
+    private void promoteWaitlist(Ride ride) {
+        if (ride != null && ride.getWaitlisted() != null && ride.getWaitlisted() > 0) {
+            bookingService.promoteWaitlist(ride.getId());
+        }
+    }
+
+    // Ein $set-Stage: $seatsFree und $status sind die Werte vor dem Update
+    static AggregationUpdate holdSeats(int seats) {
+        return AggregationUpdate.update().set(SetOperation
+                .set("seatsFree").toValue(ArithmeticOperators.valueOf("seatsFree").subtract(seats))
+                .and().set("seatsHeld").toValue(ArithmeticOperators
+                        .valueOf(ConditionalOperators.ifNull("seatsHeld").then(0)).add(seats))
+                .and().set("status").toValue(ConditionalOperators
+                        .when(ComparisonOperators.valueOf("seatsFree").equalToValue(seats))
+                        .then(RideStatus.FULL.name())
+                        .otherwiseValueOf("status")));
+    }
+
+    /**
+     * Remove seats from seatsHeld, optionally giving them back to seatsFree
+     * and reopening a FULL ride. Bulk writes do not increase @Version, so
+     * they set it explicitly.
+     */
+    static AggregationUpdate unholdUpdate(int seats, boolean giveBack, boolean increaseVersion) {
+        SetOperation set = SetOperation.set("seatsHeld").toValue(ArithmeticOperators
+                .valueOf(ConditionalOperators.ifNull("seatsHeld").then(0)).subtract(seats));
+        if (giveBack) {
+            set = set.and().set("seatsFree").toValue(ArithmeticOperators.valueOf("seatsFree").add(seats))
+                    .and().set("status").toValue(ConditionalOperators
+                            .when(ComparisonOperators.valueOf("status").equalToValue(RideStatus.FULL.name()))
+                            .then(RideStatus.OPEN.name())
+                            .otherwiseValueOf("status"));
+        }
+        if (increaseVersion) {
+            set = set.and().set("version").toValue(ArithmeticOperators
+                    .valueOf(ConditionalOperators.ifNull("version").then(0)).add(1));
+        }
+        return AggregationUpdate.update().set(set);
+    }
+}
@@ -0,0 +1,66 @@
+package ch.zhaw.shareway.service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded in-memory cache of users by email for the lookups on every
+ * request (authorization, booking checks, /users/me). Writes on this
+ * node call invalidate(); changes made on other nodes are picked up after
+ * shareway.user-cache.ttl-seconds.
+ *
+ * Cached users are shared between requests: read them, but load a user from
+ * the repository before changing and saving it.
+ *
+ * Metrics: cache.gets (hit/miss), cache.load.duration and
+ * shareway.user-cache.hit-ratio, tagged cache=users.email.
+ */
+@Service
+public class UserCache {
+
+    private final LoadingCache<String, User> byEmail;
+
+    public UserCache(UserRepository userRepository, MeterRegistry meterRegistry,
+            @Value("${shareway.user-cache.max-size:10000}") long maxSize,
+            @Value("${shareway.user-cache.ttl-seconds:60}") long ttlSeconds) {
+        // Unbekannte User werden nicht gecacht (Loader liefert null), damit ein neu angelegter sofort gefunden wird
+        this.byEmail = monitor(Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build(email -> userRepository.findByEmail(email).orElse(null)), "users.email", meterRegistry);
+    }
+
+    private static LoadingCache<String, User> monitor(LoadingCache<String, User> cache, String name,
+            MeterRegistry meterRegistry) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        meterRegistry.gauge("shareway.user-cache.hit-ratio", Tags.of("cache", name), cache,
+                c -> c.stats().hitRate());
+        return cache;
+    }
+
+    public Optional<User> findByEmail(String email) {
+        return email == null ? Optional.empty() : Optional.ofNullable(byEmail.get(email));
+    }
+
+    /**
+     * Remove a user after it was created or changed
+     */
+    public void invalidate(User user) {
+        if (user.getEmail() != null) {
+            byEmail.invalidate(user.getEmail());
+        }
+    }
+}
@@ -1,58 +1,58 @@
 package ch.zhaw.shareway.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.jwt.Jwt;
 
 import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.model.UserProfile;
 import ch.zhaw.shareway.model.VerificationStatus;
-import ch.zhaw.shareway.repository.UserRepository;
+import ch.zhaw.shareway.security.AuthenticatedUser;
 
 @Service
 public class UserService {
 
+    static final String USERS_COLLECTION = "users";
+
+    @Autowired
+    private UserCache userCache;
+
     @Autowired
-    private UserRepository userRepository;
+    private MongoTemplate mongoTemplate;
 
-    public boolean userHasRole(String role) {
-        Jwt jwt = (Jwt) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        List<String> userRoles = jwt.getClaimAsStringList("user_roles");
-        if (userRoles != null && userRoles.contains(role)) {
+    public boolean canCreateRides(AuthenticatedUser me) {
+        if (me.isAdmin()) {
             return true;
         }
-        return false;
-    }
-
-    public String getEmail() {
-        Jwt jwt = (Jwt) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        return jwt.getClaimAsString("email");
-    }
-
-    public String getAuth0Id() {
-        Jwt jwt = (Jwt) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        return jwt.getSubject();
-    }
-
-    public String getName() {
-        Jwt jwt = (Jwt) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        String name = jwt.getClaimAsString("name");
-        return name != null ? name : getEmail();
-    }
-
-    public boolean isAdmin() {
-        return userHasRole("admin");
+        Optional<User> user = userCache.findByEmail(me.getEmail());
+        return user.isPresent() && user.get().getVerificationStatus() == VerificationStatus.VERIFIED;
     }
 
-    public boolean canCreateRides() {
-        if (isAdmin()) {
-            return true;
+    /**
+     * Public profiles for the given user ids and emails, read with one query
+     * that only loads the profile fields
+     */
+    public List<UserProfile> findProfiles(Collection<String> ids, Collection<String> emails) {
+        List<Criteria> matches = new ArrayList<>();
+        if (!ids.isEmpty()) {
+            matches.add(Criteria.where("id").in(ids));
         }
-        String email = getEmail();
-        Optional<User> user = userRepository.findByEmail(email);
-        return user.isPresent() && user.get().getVerificationStatus() == VerificationStatus.VERIFIED;
+        if (!emails.isEmpty()) {
+            matches.add(Criteria.where("email").in(emails));
+        }
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+
+        Query query = new Query(matches.size() == 1 ? matches.get(0) : new Criteria().orOperator(matches));
+        query.fields().include(UserProfile.FIELDS);
+        return mongoTemplate.find(query, UserProfile.class, USERS_COLLECTION);
     }
-}
\ No newline at end of file
+}
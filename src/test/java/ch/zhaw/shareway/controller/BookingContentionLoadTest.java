@@ -0,0 +1,244 @@
+package ch.zhaw.shareway.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.BookingStatus;
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.model.UserRole;
+import ch.zhaw.shareway.repository.BookingRepository;
+import ch.zhaw.shareway.repository.RideRepository;
+import ch.zhaw.shareway.repository.UserRepository;
+import ch.zhaw.shareway.service.MailService;
+
+/**
+ * Load test for the booking path: many riders book, get approved and cancel
+ * on a few hot rides at the same time, over HTTP against the running app
+ * and a local MongoDB replica set (Testcontainers). JWTs are stubbed, mails
+ * are mocked. Prints throughput and p50/p99 latency per endpoint and checks
+ * that no ride is overbooked. Only runs with -Dbenchmark=true and Docker
+ * (e.g. mvn test -Dtest=BookingContentionLoadTest -Dbenchmark=true).
+ *
+ * Same seed, same sequence of calls per rider; e.g. compare
+ * -Dshareway.ride-commands.coalesce=true with the default.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BookingContentionLoadTest {
+
+    private static final String DRIVER = "load-driver@test.com";
+    private static final int HOT_RIDES = 4;
+    private static final int SEATS = 8;
+    private static final int RIDERS = 300;
+    private static final int ROUNDS = 4;
+    private static final int THREADS = 32;
+    private static final long SEED = 42;
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    // Token "driver" oder "rider-N", die E-Mail steht im Token selbst
+    @TestConfiguration
+    static class LoadTestSecurity {
+
+        @Bean
+        public JwtDecoder jwtDecoder() {
+            return token -> {
+                String email = token.equals("driver") ? DRIVER
+                        : token.startsWith("rider-") ? "load-" + token + "@test.com" : null;
+                if (email == null) {
+                    throw new AuthenticationException("Invalid JWT") {};
+                }
+                return new Jwt(token, Instant.now(), Instant.now().plusSeconds(3600),
+                        Map.of("alg", "none"), Map.of("sub", token, "email", email, "user_roles", List.of("user")));
+            };
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @MockitoBean
+    private MailService mailService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newFixedThreadPool(THREADS))
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final Map<String, List<Long>> latencies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+    private final List<Ride> rides = new ArrayList<>();
+    private final List<User> riders = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        for (int i = 0; i < RIDERS; i++) {
+            User rider = new User("load|" + i, "load-rider-" + i + "@test.com", "Rider " + i, UserRole.USER);
+            rider.setFirstName("Rider");
+            rider.setLastName("No" + i);
+            riders.add(rider);
+        }
+        userRepository.saveAll(riders);
+
+        for (int i = 0; i < HOT_RIDES; i++) {
+            Ride ride = new Ride(DRIVER, "load-vehicle", "Zürich", "Bern",
+                    LocalDateTime.now().plusDays(1), 20.0, SEATS, SEATS);
+            ride.setStatus(RideStatus.OPEN);
+            rides.add(rideRepository.save(ride));
+        }
+    }
+
+    @AfterAll
+    void cleanup() {
+        rides.forEach(ride -> bookingRepository.deleteByRideId(ride.getId()));
+        rideRepository.deleteAll(rides);
+        // Nur die geseedeten load-rider-* User
+        userRepository.deleteAll(riders);
+    }
+
+    // PUT mit Query-Parametern, misst die Latenz pro Endpoint
+    private HttpResponse<String> put(String endpoint, String token, String query) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/service/me/" + endpoint + "?" + query))
+                .header("Authorization", "Bearer " + token)
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        latencies.computeIfAbsent(endpoint, e -> Collections.synchronizedList(new ArrayList<>()))
+                .add((System.nanoTime() - start) / 1000);
+        if (response.statusCode() != 200) {
+            failures.computeIfAbsent(endpoint + " " + response.statusCode(), e -> new AtomicInteger())
+                    .incrementAndGet();
+        }
+        return response;
+    }
+
+    // Ein Rider: buchen, vom Driver genehmigen lassen, teilweise wieder stornieren
+    private void rider(int i) throws Exception {
+        Random random = new Random(SEED + i);
+        String token = "rider-" + i;
+        for (int round = 0; round < ROUNDS; round++) {
+            Ride ride = rides.get(random.nextInt(HOT_RIDES));
+            HttpResponse<String> booked = put("bookride", token, "rideId=" + ride.getId() + "&seats=1");
+            if (booked.statusCode() != 200) {
+                continue;
+            }
+            String bookingId = objectMapper.readTree(booked.body()).get("id").asText();
+            HttpResponse<String> approved = put("approvebooking", "driver", "bookingId=" + bookingId);
+            // Nicht genehmigte Anfragen zurückziehen, damit der Rider wieder buchen kann
+            if (approved.statusCode() != 200 || random.nextBoolean()) {
+                put("cancelbooking", token, "bookingId=" + bookingId);
+            }
+        }
+    }
+
+    private void print(String endpoint, List<Long> micros) {
+        long[] sorted = micros.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("Load %-15s %5d calls  p50 %7d µs  p99 %7d µs%n", endpoint, sorted.length,
+                sorted[sorted.length / 2], sorted[sorted.length * 99 / 100]);
+    }
+
+    @Test
+    void testContendedBookingsNeverOverbook() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < RIDERS; i++) {
+            int n = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                rider(n);
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<Object> future : futures) {
+            future.get(5, TimeUnit.MINUTES);
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        executor.shutdown();
+
+        int calls = latencies.values().stream().mapToInt(List::size).sum();
+        System.out.printf("Load %d calls on %d rides in %.2f s: %.0f calls/s%n", calls, HOT_RIDES, seconds,
+                calls / seconds);
+        latencies.forEach(this::print);
+        failures.forEach((kind, count) -> System.out.println("Load non-200 " + kind + ": " + count));
+        assertTrue(calls >= RIDERS * ROUNDS);
+
+        // Invariante: freie Plätze = Plätze total - Plätze der genehmigten Buchungen
+        for (Ride ride : rides) {
+            Ride current = rideRepository.findById(ride.getId()).orElseThrow();
+            int approvedSeats = bookingRepository.findByRideIdAndStatus(ride.getId(), BookingStatus.APPROVED)
+                    .stream().mapToInt(Booking::getSeats).sum();
+            System.out.printf("Load ride %s: %d approved seats, %d free%n", ride.getId(), approvedSeats,
+                    current.getSeatsFree());
+            assertEquals(current.getSeatsTotal() - approvedSeats, current.getSeatsFree());
+            assertTrue(current.getSeatsFree() >= 0);
+            assertEquals(current.getSeatsFree() == 0 ? RideStatus.FULL : RideStatus.OPEN, current.getStatus());
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ch.zhaw.shareway.controller;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+
+import ch.zhaw.shareway.model.UserRole;
+import ch.zhaw.shareway.security.AuthenticatedUser;
+import ch.zhaw.shareway.service.ImageService;
+import ch.zhaw.shareway.service.ImageService.Image;
+
+/**
+ * Streaming, Range and conditional requests of the image endpoint; runs
+ * without MongoDB (ImageService mocked).
+ */
+@ExtendWith(MockitoExtension.class)
+public class ImageControllerTest {
+
+    private static final byte[] BYTES = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Mock
+    private ImageService imageService;
+
+    @InjectMocks
+    private ImageController imageController;
+
+    private MockMvc mvc;
+
+    private final ObjectId id = new ObjectId();
+
+    @BeforeEach
+    void setUp() {
+        mvc = MockMvcBuilders.standaloneSetup(imageController)
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+        login("user@test.com", EnumSet.of(UserRole.USER));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private void login(String email, Set<UserRole> roles) {
+        AuthenticatedUser me = new AuthenticatedUser(email, "auth0|" + email, email, roles);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(me, null));
+    }
+
+    private void givenImage(String owner, String kind) {
+        Document metadata = new Document("owner", owner).append("kind", kind).append("_contentType", "image/png");
+        GridFSFile file = new GridFSFile(new BsonObjectId(id), kind + "-" + owner, BYTES.length, 255 * 1024,
+                new Date(), metadata);
+        GridFsResource resource = new GridFsResource(file, new ByteArrayInputStream(BYTES));
+        when(imageService.find(id.toHexString())).thenReturn(Optional.of(new Image(file, resource)));
+    }
+
+    @Test
+    void testGetImage() throws Exception {
+        givenImage("driver@test.com", ImageService.PROFILE);
+
+        mvc.perform(get("/api/images/" + id.toHexString()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + id.toHexString() + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, private, immutable"))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andExpect(header().string("Content-Security-Policy", ImageController.CONTENT_SECURITY_POLICY))
+                .andExpect(header().string("X-Content-Type-Options", "nosniff"))
+                .andExpect(content().bytes(BYTES));
+    }
+
+    @Test
+    void testRangeRequest() throws Exception {
+        givenImage("driver@test.com", ImageService.PROFILE);
+
+        mvc.perform(get("/api/images/" + id.toHexString()).header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(content().bytes("2345".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void testNotModified() throws Exception {
+        givenImage("driver@test.com", ImageService.PROFILE);
+
+        mvc.perform(get("/api/images/" + id.toHexString())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + id.toHexString() + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void testLicenseImageOnlyForOwnerAndAdmin() throws Exception {
+        givenImage("driver@test.com", ImageService.LICENSE_FRONT);
+
+        mvc.perform(get("/api/images/" + id.toHexString()))
+                .andExpect(status().isForbidden());
+
+        login("driver@test.com", EnumSet.of(UserRole.USER));
+        mvc.perform(get("/api/images/" + id.toHexString()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testUnknownImage() throws Exception {
+        when(imageService.find("unknown")).thenReturn(Optional.empty());
+
+        mvc.perform(get("/api/images/unknown"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,62 @@
+package ch.zhaw.shareway.controller;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import ch.zhaw.shareway.security.TestSecurityConfig;
+
+@SpringBootTest
+@Import(TestSecurityConfig.class)
+@AutoConfigureMockMvc
+public class LocationControllerTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Test
+    public void testGeocode() throws Exception {
+        mvc.perform(get("/api/locations/geocode")
+                .param("q", "Bahnhofstrasse 1, 8001 Zürich")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Zürich"))
+                .andExpect(jsonPath("$.canton").value("ZH"))
+                .andExpect(jsonPath("$.point.coordinates[0]").value(8.5417))
+                .andExpect(jsonPath("$.point.coordinates[1]").value(47.3769));
+    }
+
+    @Test
+    public void testGeocodeUnknownLocation() throws Exception {
+        mvc.perform(get("/api/locations/geocode")
+                .param("q", "Atlantis")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testSuggest() throws Exception {
+        mvc.perform(get("/api/locations/suggest")
+                .param("q", "st gal")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("St. Gallen"))
+                .andExpect(jsonPath("$[0].lat").value(47.4245));
+    }
+}
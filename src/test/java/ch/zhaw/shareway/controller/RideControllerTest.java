@@ -9,6 +9,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.MethodOrderer.OrderAnnotation;
 import org.junit.jupiter.api.Order;
@@ -266,6 +268,278 @@ public class RideControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @Order(30)
+    public void testSearchRidesByStartAndEnd() throws Exception {
+        mvc.perform(get("/api/rides/search")
+                .param("from", TEST_START.toLowerCase())
+                .param("to", "test-end")
+                .param("date", "2025-12-15")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(ride_id));
+    }
+
+    @Test
+    @Order(31)
+    public void testSearchRidesNoMatch() throws Exception {
+        mvc.perform(get("/api/rides/search")
+                .param("from", TEST_START)
+                .param("date", "2025-12-16")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements").value(0));
+    }
+
+    @Test
+    @Order(32)
+    public void testGetRidesNearby() throws Exception {
+        String jsonBody = """
+            {
+                "driverId": "admin@test.com",
+                "vehicleId": "%s",
+                "startLocation": "NEARBY-TEST-START",
+                "endLocation": "NEARBY-TEST-END",
+                "departureTime": "2025-12-20T10:00:00",
+                "pricePerSeat": 20.0,
+                "seatsTotal": 3,
+                "routeRadiusKm": 5.0,
+                "startLat": 47.3779,
+                "startLng": 8.5403,
+                "endLat": 46.9490,
+                "endLng": 7.4395
+            }
+            """.formatted(admin_vehicle_id);
+
+        mvc.perform(post("/api/rides")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jsonBody)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.ADMIN))
+                .andExpect(status().isCreated());
+
+        // Rider ca. 2 km vom Start und Ziel entfernt
+        mvc.perform(get("/api/rides/nearby")
+                .param("fromLat", "47.3900")
+                .param("fromLng", "8.5300")
+                .param("toLat", "46.9600")
+                .param("toLng", "7.4500")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.startLocation == 'NEARBY-TEST-START')]").exists());
+    }
+
+    @Test
+    @Order(33)
+    public void testGetRidesNearbyInvalidCoordinates() throws Exception {
+        mvc.perform(get("/api/rides/nearby")
+                .param("fromLat", "147.0")
+                .param("fromLng", "8.5")
+                .param("toLat", "46.9")
+                .param("toLng", "7.4")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        // limit ausserhalb von 1..MAX_LIMIT
+        for (String limit : new String[] { "0", "-1", String.valueOf(RideController.MAX_LIMIT + 1) }) {
+            mvc.perform(get("/api/rides/nearby")
+                    .param("fromLat", "47.39")
+                    .param("fromLng", "8.53")
+                    .param("toLat", "46.96")
+                    .param("toLng", "7.45")
+                    .param("limit", limit)
+                    .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                    .andExpect(status().isBadRequest());
+            mvc.perform(get("/api/rides/along")
+                    .param("pickupLat", "47.3885")
+                    .param("pickupLng", "8.1803")
+                    .param("dropoffLat", "46.9490")
+                    .param("dropoffLng", "7.4395")
+                    .param("limit", limit)
+                    .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Test
+    @Order(34)
+    public void testUpdateRideRouteAndFindAlongRoute() throws Exception {
+        Ride ride = new Ride();
+        ride.setDriverId("admin@test.com");
+        ride.setVehicleId(admin_vehicle_id);
+        ride.setStartLocation("ALONG-TEST-START");
+        ride.setEndLocation("ALONG-TEST-END");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(1));
+        ride.setPricePerSeat(25.0);
+        ride.setSeatsTotal(3);
+        ride.setSeatsFree(3);
+        ride.setStatus(RideStatus.OPEN);
+        Ride saved = rideRepository.save(ride);
+
+        // Zürich - Baden - Aarau - Bern
+        String routeJson = """
+            {
+                "coordinates": [[8.5403, 47.3779], [8.3064, 47.4733], [8.0444, 47.3925], [7.4395, 46.9490]]
+            }
+            """;
+
+        mvc.perform(put("/api/rides/" + saved.getId() + "/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(routeJson)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.ADMIN))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.routeStored").value(true))
+                .andExpect(jsonPath("$.route").doesNotExist());
+
+        // Rider steigt in Lenzburg zu (unterwegs), Ziel Bern
+        mvc.perform(get("/api/rides/along")
+                .param("pickupLat", "47.3885")
+                .param("pickupLng", "8.1803")
+                .param("dropoffLat", "46.9490")
+                .param("dropoffLng", "7.4395")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.startLocation == 'ALONG-TEST-START')]").exists());
+
+        // Falsche Richtung
+        mvc.perform(get("/api/rides/along")
+                .param("pickupLat", "46.9490")
+                .param("pickupLng", "7.4395")
+                .param("dropoffLat", "47.3885")
+                .param("dropoffLng", "8.1803")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.startLocation == 'ALONG-TEST-START')]").doesNotExist());
+
+        mvc.perform(delete("/api/rides/" + saved.getId())
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.ADMIN))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @Order(35)
+    public void testUpdateRideRouteForbiddenForNonOwner() throws Exception {
+        Ride ride = new Ride();
+        ride.setDriverId("admin@test.com");
+        ride.setVehicleId(admin_vehicle_id);
+        ride.setStartLocation("ROUTE-FORBIDDEN-START");
+        ride.setEndLocation("ROUTE-FORBIDDEN-END");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(1));
+        ride.setPricePerSeat(25.0);
+        ride.setSeatsTotal(3);
+        ride.setSeatsFree(3);
+        ride.setStatus(RideStatus.OPEN);
+        Ride saved = rideRepository.save(ride);
+
+        mvc.perform(put("/api/rides/" + saved.getId() + "/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"coordinates\": [[8.5403, 47.3779], [7.4395, 46.9490]]}")
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isForbidden());
+
+        rideRepository.delete(saved);
+    }
+
+    @Test
+    @Order(36)
+    public void testUpdateRideRouteInvalid() throws Exception {
+        Ride ride = new Ride();
+        ride.setDriverId("admin@test.com");
+        ride.setVehicleId(admin_vehicle_id);
+        ride.setStartLocation("ROUTE-INVALID-START");
+        ride.setEndLocation("ROUTE-INVALID-END");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(1));
+        ride.setPricePerSeat(25.0);
+        ride.setSeatsTotal(3);
+        ride.setSeatsFree(3);
+        ride.setStatus(RideStatus.OPEN);
+        Ride saved = rideRepository.save(ride);
+
+        mvc.perform(put("/api/rides/" + saved.getId() + "/route")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"coordinates\": [[8.5403, 47.3779]]}")
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.ADMIN))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+
+        rideRepository.delete(saved);
+    }
+
+    @Test
+    @Order(37)
+    public void testSearchRidesWithCursor() throws Exception {
+        List<Ride> saved = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Ride ride = new Ride();
+            ride.setDriverId("admin@test.com");
+            ride.setVehicleId(admin_vehicle_id);
+            ride.setStartLocation("CURSOR-TEST-START");
+            ride.setEndLocation("CURSOR-TEST-END");
+            ride.setDepartureTime(LocalDateTime.of(2025, 12, 17, 8, 0)); // gleiche Abfahrt, Reihenfolge über id
+            ride.setPricePerSeat(25.0);
+            ride.setSeatsTotal(3);
+            ride.setSeatsFree(3);
+            ride.setStatus(RideStatus.OPEN);
+            saved.add(rideRepository.save(ride));
+        }
+
+        var result = mvc.perform(get("/api/rides/search")
+                .param("from", "cursor-test-start")
+                .param("pageSize", "2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[0].id").value(saved.get(0).getId()))
+                .andExpect(jsonPath("$.content[0].startLocation").value("CURSOR-TEST-START"))
+                .andExpect(jsonPath("$.content[0].createdAt").doesNotExist())
+                .andExpect(jsonPath("$.totalElements").value(3))
+                .andReturn();
+
+        String cursor = objectMapper.readTree(result.getResponse().getContentAsString()).get("nextCursor").asText();
+
+        mvc.perform(get("/api/rides/search")
+                .param("from", "cursor-test-start")
+                .param("pageSize", "2")
+                .param("cursor", cursor)
+                .param("withTotal", "false")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].id").value(saved.get(2).getId()))
+                .andExpect(jsonPath("$.nextCursor").isEmpty())
+                .andExpect(jsonPath("$.totalElements").isEmpty());
+
+        rideRepository.deleteAll(saved);
+    }
+
+    @Test
+    @Order(38)
+    public void testGetAllRidesInvalidCursor() throws Exception {
+        mvc.perform(get("/api/rides")
+                .param("cursor", "not-a-cursor")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
     // ==================== Update Tests ====================
 
     @Test
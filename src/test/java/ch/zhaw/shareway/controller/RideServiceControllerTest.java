@@ -1,5 +1,6 @@
 package ch.zhaw.shareway.controller;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -19,6 +20,8 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import ch.zhaw.shareway.model.Booking;
 import ch.zhaw.shareway.model.BookingStatus;
 import ch.zhaw.shareway.model.Ride;
@@ -49,6 +52,9 @@ public class RideServiceControllerTest {
     @Autowired
     BookingRepository bookingRepository;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
     private static String test_user_id = "";
     private static String test_ride_id = "";
     private static String test_booking_id = "";
@@ -383,6 +389,171 @@ public class RideServiceControllerTest {
         rideRepository.delete(savedRide);
     }
 
+    // ==================== Seat Hold Tests ====================
+
+    @Test
+    @Order(170)
+    public void testHoldSeatsAndRelease() throws Exception {
+        Ride ride = new Ride();
+        ride.setDriverId("admin@test.com");
+        ride.setStartLocation("HOLD-TEST-START");
+        ride.setEndLocation("HOLD-TEST-END");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(6));
+        ride.setPricePerSeat(12.0);
+        ride.setSeatsTotal(2);
+        ride.setSeatsFree(2);
+        ride.setStatus(RideStatus.OPEN);
+        Ride savedRide = rideRepository.save(ride);
+
+        var result = mvc.perform(put("/api/service/me/holdseats")
+                .param("rideId", savedRide.getId())
+                .param("seats", "2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.seats").value(2))
+                .andReturn();
+        String holdId = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asText();
+
+        Ride held = rideRepository.findById(savedRide.getId()).orElseThrow();
+        assertEquals(0, held.getSeatsFree());
+        assertEquals(2, held.getSeatsHeld());
+        assertEquals(RideStatus.FULL, held.getStatus());
+
+        mvc.perform(put("/api/service/me/releasehold")
+                .param("holdId", holdId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        Ride released = rideRepository.findById(savedRide.getId()).orElseThrow();
+        assertEquals(2, released.getSeatsFree());
+        assertEquals(0, released.getSeatsHeld());
+        assertEquals(RideStatus.OPEN, released.getStatus());
+
+        rideRepository.delete(released);
+    }
+
+    @Test
+    @Order(175)
+    public void testConfirmHoldKeepsSeats() throws Exception {
+        Ride ride = new Ride();
+        ride.setDriverId("admin@test.com");
+        ride.setStartLocation("HOLD-CONFIRM-START");
+        ride.setEndLocation("HOLD-CONFIRM-END");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(6));
+        ride.setPricePerSeat(12.0);
+        ride.setSeatsTotal(3);
+        ride.setSeatsFree(3);
+        ride.setStatus(RideStatus.OPEN);
+        Ride savedRide = rideRepository.save(ride);
+
+        var result = mvc.perform(put("/api/service/me/holdseats")
+                .param("rideId", savedRide.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andExpect(status().isOk())
+                .andReturn();
+        String holdId = objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asText();
+
+        mvc.perform(put("/api/service/me/confirmhold")
+                .param("holdId", holdId)
+                .param("pickupLocation", "Hold Pickup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("REQUESTED"))
+                .andExpect(jsonPath("$.seatsReserved").value(true));
+
+        Ride booked = rideRepository.findById(savedRide.getId()).orElseThrow();
+        assertEquals(2, booked.getSeatsFree());
+        assertEquals(0, booked.getSeatsHeld());
+
+        // Hold ist verbraucht
+        mvc.perform(put("/api/service/me/confirmhold")
+                .param("holdId", holdId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andExpect(status().isBadRequest());
+
+        bookingRepository.deleteByRideId(savedRide.getId());
+        rideRepository.delete(booked);
+    }
+
+    @Test
+    @Order(180)
+    public void testApproveBookingsInBulk() throws Exception {
+        Ride ride = new Ride();
+        ride.setDriverId("admin@test.com");
+        ride.setStartLocation("BULK-TEST-START");
+        ride.setEndLocation("BULK-TEST-END");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(6));
+        ride.setPricePerSeat(12.0);
+        ride.setSeatsTotal(1);
+        ride.setSeatsFree(1);
+        ride.setStatus(RideStatus.OPEN);
+        Ride savedRide = rideRepository.save(ride);
+
+        Booking first = bookingRepository.save(new Booking(savedRide.getId(), "bulk-1@test.com", 1));
+        Booking second = bookingRepository.save(new Booking(savedRide.getId(), "bulk-2@test.com", 1));
+
+        // Nur ein Platz frei: die ältere Anfrage wird genehmigt, die andere bleibt offen
+        mvc.perform(put("/api/service/me/approvebookings")
+                .param("bookingIds", first.getId(), second.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.ADMIN))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(first.getId()))
+                .andExpect(jsonPath("$[0].status").value("APPROVED"));
+
+        Ride full = rideRepository.findById(savedRide.getId()).orElseThrow();
+        assertEquals(0, full.getSeatsFree());
+        assertEquals(RideStatus.FULL, full.getStatus());
+
+        mvc.perform(put("/api/service/me/rejectbookings")
+                .param("bookingIds", second.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.ADMIN))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("REJECTED"));
+
+        bookingRepository.deleteByRideId(savedRide.getId());
+        rideRepository.delete(full);
+    }
+
+    @Test
+    @Order(185)
+    public void testApproveBookingsNotDriver() throws Exception {
+        Ride ride = new Ride();
+        ride.setDriverId("admin@test.com");
+        ride.setStartLocation("BULK-OTHER-START");
+        ride.setEndLocation("BULK-OTHER-END");
+        ride.setDepartureTime(LocalDateTime.now().plusDays(6));
+        ride.setPricePerSeat(12.0);
+        ride.setSeatsTotal(2);
+        ride.setSeatsFree(2);
+        ride.setStatus(RideStatus.OPEN);
+        Ride savedRide = rideRepository.save(ride);
+        Booking booking = bookingRepository.save(new Booking(savedRide.getId(), "bulk-3@test.com", 1));
+
+        mvc.perform(put("/api/service/me/approvebookings")
+                .param("bookingIds", booking.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        assertEquals(2, rideRepository.findById(savedRide.getId()).orElseThrow().getSeatsFree());
+
+        bookingRepository.deleteByRideId(savedRide.getId());
+        rideRepository.delete(savedRide);
+    }
+
     // ==================== Cleanup ====================
 
     @Test
@@ -1,8 +1,11 @@
 package ch.zhaw.shareway.controller;
 
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -40,12 +43,29 @@ public class UserControllerTest {
 
     @Test
     @Order(10)
-    public void testGetAllUsers() throws Exception {
+    public void testGetAllUsersForbiddenForNonAdmin() throws Exception {
         mvc.perform(get("/api/users")
                 .contentType(MediaType.APPLICATION_JSON)
                 .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
                 .andDo(print())
-                .andExpect(status().isOk());
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @Order(15)
+    public void testGetAllUsersPaged() throws Exception {
+        mvc.perform(get("/api/users?page=0&pageSize=5")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.ADMIN))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Total-Count"))
+                .andExpect(jsonPath("$.length()").value(lessThanOrEqualTo(5)));
+
+        mvc.perform(get("/api/users?pageSize=1000")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.ADMIN))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -129,8 +149,8 @@ public class UserControllerTest {
 
         String jsonBody = """
             {
-                "licenseImageFront": "base64imagedata",
-                "licenseImageBack": "base64imagedata"
+                "licenseImageFront": "data:image/png;base64,iVBORw0KGgo=",
+                "licenseImageBack": "data:image/png;base64,iVBORw0KGgo="
             }
             """;
 
@@ -157,8 +177,8 @@ public class UserControllerTest {
     public void testRequestVerificationWithBothImages() throws Exception {
         String jsonBody = """
             {
-                "licenseImageFront": "base64imagefront",
-                "licenseImageBack": "base64imageback"
+                "licenseImageFront": "data:image/png;base64,iVBORw0KGgo=",
+                "licenseImageBack": "data:image/jpeg;base64,/9j/4AAQ"
             }
             """;
 
@@ -169,8 +189,26 @@ public class UserControllerTest {
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.verificationStatus").value("PENDING"))
-                .andExpect(jsonPath("$.licenseImageFront").value("base64imagefront"))
-                .andExpect(jsonPath("$.licenseImageBack").value("base64imageback"));
+                .andExpect(jsonPath("$.licenseImageFront").value(startsWith(User.IMAGE_PATH)))
+                .andExpect(jsonPath("$.licenseImageBack").value(startsWith(User.IMAGE_PATH)));
+    }
+
+    @Test
+    @Order(62)
+    public void testRequestVerificationWithInvalidImage() throws Exception {
+        String jsonBody = """
+            {
+                "licenseImageFront": "data:image/svg+xml;base64,PHN2Zz4=",
+                "licenseImageBack": "data:image/png;base64,iVBORw0KGgo="
+            }
+            """;
+
+        mvc.perform(put("/api/users/me/verification")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(jsonBody)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -179,7 +217,7 @@ public class UserControllerTest {
         // Only front image - should set to UNVERIFIED
         String jsonBody = """
             {
-                "licenseImageFront": "base64imagefront",
+                "licenseImageFront": "data:image/png;base64,iVBORw0KGgo=",
                 "licenseImageBack": ""
             }
             """;
@@ -231,6 +269,20 @@ public class UserControllerTest {
                 .andExpect(status().isForbidden());
     }
 
+    @Test
+    @Order(87)
+    public void testGetProfiles() throws Exception {
+        mvc.perform(get("/api/users/profiles?emails=user@test.com,unknown@test.com")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, TestSecurityConfig.USER))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].email").value("user@test.com"))
+                .andExpect(jsonPath("$[0].licenseImageFront").doesNotExist())
+                .andExpect(jsonPath("$[0].phoneNumber").doesNotExist());
+    }
+
     @Test
     @Order(90)
     public void testCleanup() throws Exception {
@@ -0,0 +1,226 @@
+package ch.zhaw.shareway.repository;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Named;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.FlaggedContent;
+import ch.zhaw.shareway.model.Review;
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.model.UserRole;
+import ch.zhaw.shareway.model.Vehicle;
+import ch.zhaw.shareway.service.IndexVerifier;
+
+/**
+ * Runs every query method declared on the repositories against a local
+ * MongoDB (Testcontainers), captures the commands the driver sends and
+ * explains them. A winning plan with a COLLSCAN fails the test, so a new
+ * findByXAndY without a matching @Indexed / @CompoundIndex is caught here.
+ * Skipped when Docker is not available.
+ */
+@DataMongoTest
+@Testcontainers(disabledWithoutDocker = true)
+@Import({ IndexVerifier.class, QueryPlanTest.CommandCapture.class })
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class QueryPlanTest {
+
+    static final List<Class<?>> REPOSITORIES = List.of(
+            RideRepository.class, BookingRepository.class, ReviewRepository.class,
+            UserRepository.class, VehicleRepository.class, FlaggedContentRepository.class,
+            GeocodedLocationRepository.class);
+
+    // Bewusst ohne Index: einmalige Backfills beim Start, danach leer
+    static final Map<String, String> ALLOWED_COLLSCANS = Map.of(
+            "RideRepository.findByStartLocationKeyIsNullOrEndLocationKeyIsNull", "search key backfill",
+            "RideRepository.findByStartPointIsNullOrEndPointIsNull", "geo point backfill");
+
+    static final Set<String> QUERY_COMMANDS = Set.of("find", "count", "aggregate", "delete", "distinct",
+            "findAndModify", "update");
+
+    static final int SEED_SIZE = 200;
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    static final List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+
+    @TestConfiguration
+    static class CommandCapture {
+        @Bean
+        MongoClientSettingsBuilderCustomizer commandCapture() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (QUERY_COMMANDS.contains(event.getCommandName())) {
+                        commands.add(event.getCommand().clone());
+                    }
+                }
+            });
+        }
+    }
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private IndexVerifier indexVerifier;
+
+    @BeforeAll
+    void seed() {
+        indexVerifier.verifyAll();
+
+        List<Ride> rides = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        List<Review> reviews = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        List<Vehicle> vehicles = new ArrayList<>();
+        List<FlaggedContent> flagged = new ArrayList<>();
+        for (int i = 0; i < SEED_SIZE; i++) {
+            String user = "user-" + i + "@test.com";
+            Ride ride = new Ride(user, "vehicle-" + i, "Start " + i, "End " + i,
+                    LocalDateTime.now().plusHours(i), 10.0 + i % 30, 4, 4);
+            ride.setStatus(RideStatus.values()[i % RideStatus.values().length]);
+            ride.setStartLocationKey(Ride.toLocationKey(ride.getStartLocation()));
+            ride.setEndLocationKey(Ride.toLocationKey(ride.getEndLocation()));
+            rides.add(ride);
+            bookings.add(new Booking("ride-" + i % 50, user, 1));
+            reviews.add(new Review("ride-" + i % 50, user, "user-" + (i + 1) + "@test.com", 1 + i % 5, "ok"));
+            users.add(new User("auth0|" + i, user, "User " + i, UserRole.USER));
+            vehicles.add(new Vehicle(user, "Make", "Model", 4, "PLATE-" + i));
+            FlaggedContent content = new FlaggedContent();
+            content.setContentType("REVIEW");
+            content.setContentId("review-" + i);
+            flagged.add(content);
+        }
+        mongoTemplate.insertAll(rides);
+        mongoTemplate.insertAll(bookings);
+        mongoTemplate.insertAll(reviews);
+        mongoTemplate.insertAll(users);
+        mongoTemplate.insertAll(vehicles);
+        mongoTemplate.insertAll(flagged);
+    }
+
+    static Stream<Named<Method>> repositoryMethods() {
+        return REPOSITORIES.stream()
+                .flatMap(repository -> Arrays.stream(repository.getDeclaredMethods()))
+                .filter(method -> !method.isDefault() && !Modifier.isStatic(method.getModifiers()))
+                .map(method -> Named.of(name(method), method));
+    }
+
+    static String name(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryMethods")
+    void queryUsesIndex(Method method) throws Exception {
+        Object repository = context.getBean(method.getDeclaringClass());
+
+        commands.clear();
+        method.invoke(repository, sampleArguments(method));
+        List<BsonDocument> sent = new ArrayList<>(commands);
+        assertFalse(sent.isEmpty(), "No query sent by " + name(method));
+
+        for (BsonDocument command : sent) {
+            Document plan = explain(command);
+            if (plan.toJson().contains("\"COLLSCAN\"") && !ALLOWED_COLLSCANS.containsKey(name(method))) {
+                fail(name(method) + " does a collection scan, add an index for: " + command.toJson()
+                        + "\nwinning plan: " + plan.toJson());
+            }
+        }
+    }
+
+    private Document explain(BsonDocument command) {
+        BsonDocument explained = new BsonDocument();
+        for (String key : command.keySet()) {
+            // Session- und Transport-Felder gehören nicht in den explain-Befehl
+            if (!key.startsWith("$") && !Set.of("lsid", "txnNumber", "readConcern", "writeConcern").contains(key)) {
+                explained.put(key, command.get(key));
+            }
+        }
+        Document result = mongoTemplate.getDb().runCommand(
+                new Document("explain", explained).append("verbosity", "queryPlanner"));
+        Document queryPlanner = result.get("queryPlanner", Document.class);
+        if (queryPlanner == null) {
+            // aggregate: Plan steckt in der $cursor-Stage
+            return result;
+        }
+        return queryPlanner.get("winningPlan", Document.class);
+    }
+
+    private Object[] sampleArguments(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            arguments[i] = sampleValue(types[i]);
+        }
+        return arguments;
+    }
+
+    private Object sampleValue(Class<?> type) {
+        if (type == String.class) {
+            return "user-1@test.com";
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        if (type == Double.class || type == double.class) {
+            return 1.0;
+        }
+        if (type == Integer.class || type == int.class) {
+            return 1;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return true;
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (Collection.class.isAssignableFrom(type)) {
+            return List.of();
+        }
+        throw new IllegalArgumentException("No sample value for parameter type " + type.getName()
+                + ", extend QueryPlanTest.sampleValue");
+    }
+}
@@ -0,0 +1,58 @@
+package ch.zhaw.shareway.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import ch.zhaw.shareway.model.UserRole;
+
+public class AuthenticatedUserTest {
+
+    private Jwt createJwt(Map<String, Object> claims) {
+        return new Jwt("token", Instant.now(), Instant.now().plusSeconds(3600), Map.of("alg", "none"), claims);
+    }
+
+    @Test
+    void testFromJwt() {
+        AuthenticatedUser me = AuthenticatedUser.from(createJwt(Map.of("email", "admin@test.com",
+                "sub", "auth0|12345", "name", "John Doe", "user_roles", List.of("admin", "user"))));
+
+        assertEquals("admin@test.com", me.getEmail());
+        assertEquals("auth0|12345", me.getSubject());
+        assertEquals("John Doe", me.getName());
+        assertEquals(EnumSet.of(UserRole.ADMIN, UserRole.USER), me.getRoles());
+        assertTrue(me.isAdmin());
+    }
+
+    @Test
+    void testRolesFromJwt() {
+        AuthenticatedUser me = AuthenticatedUser.from(createJwt(Map.of("email", "user@test.com",
+                "sub", "sub123", "user_roles", List.of("user", "moderator"))));
+
+        // Unbekannte Rollen werden ignoriert, ohne Name gilt die E-Mail
+        assertEquals(EnumSet.of(UserRole.USER), me.getRoles());
+        assertFalse(me.isAdmin());
+        assertEquals("user@test.com", me.getName());
+    }
+
+    @Test
+    void testWithoutRoles() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("email", "user@test.com");
+        claims.put("sub", "sub123");
+
+        AuthenticatedUser me = AuthenticatedUser.from(createJwt(claims));
+
+        assertTrue(me.getRoles().isEmpty());
+        assertFalse(me.hasRole(UserRole.ADMIN));
+    }
+}
@@ -0,0 +1,126 @@
+package ch.zhaw.shareway.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CachingJwtDecoderTest {
+
+    private final Instant now = Instant.parse("2026-01-01T10:00:00Z");
+
+    private JwtDecoder delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private CachingJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(JwtDecoder.class);
+        meterRegistry = new SimpleMeterRegistry();
+        decoder = create(now);
+    }
+
+    private CachingJwtDecoder create(Instant at) {
+        return new CachingJwtDecoder(delegate, 100, meterRegistry, Clock.fixed(at, ZoneOffset.UTC));
+    }
+
+    private Jwt jwt(String token, Instant expiresAt) {
+        return new Jwt(token, now.minusSeconds(60), expiresAt, Map.of("alg", "RS256"),
+                Map.of("sub", "user", "email", "user@test.com"));
+    }
+
+    @Test
+    void testVerifiedTokenIsCached() {
+        Jwt jwt = jwt("token-1", now.plusSeconds(3600));
+        when(delegate.decode("token-1")).thenReturn(jwt);
+
+        assertEquals(jwt, decoder.decode("token-1"));
+        assertEquals(jwt, decoder.decode("token-1"));
+
+        verify(delegate, times(1)).decode("token-1");
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "jwt.verified").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testOtherTokenIsVerified() {
+        when(delegate.decode("token-1")).thenReturn(jwt("token-1", now.plusSeconds(3600)));
+        when(delegate.decode("token-2")).thenReturn(jwt("token-2", now.plusSeconds(3600)));
+
+        decoder.decode("token-1");
+        decoder.decode("token-2");
+
+        verify(delegate).decode("token-1");
+        verify(delegate).decode("token-2");
+        assertEquals(2, decoder.size());
+    }
+
+    @Test
+    void testInvalidTokenIsNotCached() {
+        when(delegate.decode("forged")).thenThrow(new BadJwtException("Invalid signature"));
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("forged"));
+        assertThrows(BadJwtException.class, () -> decoder.decode("forged"));
+
+        verify(delegate, times(2)).decode("forged");
+        assertEquals(0, decoder.size());
+    }
+
+    @Test
+    void testExpiredTokenIsVerifiedAgain() {
+        Jwt jwt = jwt("token-1", now.plusSeconds(60));
+        when(delegate.decode("token-1")).thenReturn(jwt);
+        decoder.decode("token-1");
+
+        // Gleicher Cache-Inhalt, aber die Uhr steht nach dem Ablauf
+        CachingJwtDecoder later = new CachingJwtDecoder(delegate, 100, new SimpleMeterRegistry(),
+                Clock.fixed(now.plus(Duration.ofMinutes(2)), ZoneOffset.UTC));
+        later.decode("token-1");
+        later.decode("token-1");
+
+        verify(delegate, times(3)).decode("token-1");
+    }
+
+    @Test
+    void testTokenWithoutExpiryIsNotCached() {
+        Jwt jwt = jwt("token-1", null);
+        when(delegate.decode("token-1")).thenReturn(jwt);
+
+        decoder.decode("token-1");
+        decoder.decode("token-1");
+
+        verify(delegate, times(2)).decode("token-1");
+    }
+
+    @Test
+    void testLocalTokensAreVerifiedOnce() {
+        LocalJwtIssuer issuer = new LocalJwtIssuer();
+        CachingJwtDecoder caching = new CachingJwtDecoder(issuer.decoder(), 100, new SimpleMeterRegistry());
+        String token = issuer.issue("rider@test.com", List.of("user"), Duration.ofMinutes(5));
+
+        Jwt first = caching.decode(token);
+        Jwt second = caching.decode(token);
+
+        assertEquals(first, second);
+        assertEquals("rider@test.com", first.getClaimAsString("email"));
+        assertEquals(List.of("user"), first.getClaimAsStringList("user_roles"));
+        assertThrows(BadJwtException.class, () -> caching.decode(token.substring(0, token.length() - 4) + "AAAA"));
+    }
+}
@@ -0,0 +1,61 @@
+package ch.zhaw.shareway.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares full RS256 verification of every request with the verified-token
+ * cache, using the offline key of LocalJwtIssuer. A few hundred users send
+ * many requests each with the same token, like the SvelteKit server does.
+ * Only runs with -Dbenchmark=true (mvn test -Dtest=JwtDecoderBenchmarkTest -Dbenchmark=true)
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class JwtDecoderBenchmarkTest {
+
+    private static final int USERS = 200;
+    private static final int REQUESTS = 20000;
+    private static final int WARMUP = 2000;
+
+    private final LocalJwtIssuer issuer = new LocalJwtIssuer();
+
+    private double microsPerRequest(JwtDecoder decoder, List<String> requests) {
+        for (int i = 0; i < WARMUP; i++) {
+            decoder.decode(requests.get(i));
+        }
+        long start = System.nanoTime();
+        for (String token : requests) {
+            assertEquals("local", decoder.decode(token).getSubject().substring(0, 5));
+        }
+        return (System.nanoTime() - start) / 1000.0 / requests.size();
+    }
+
+    @Test
+    void compareVerifyWithCache() {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            tokens.add(issuer.issue("bench-" + i + "@test.com", List.of("user"), Duration.ofHours(1)));
+        }
+        Random random = new Random(42);
+        List<String> requests = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            requests.add(tokens.get(random.nextInt(USERS)));
+        }
+
+        double verify = microsPerRequest(issuer.decoder(), requests);
+        double cached = microsPerRequest(new CachingJwtDecoder(issuer.decoder(), 10000, new SimpleMeterRegistry()),
+                requests);
+
+        System.out.printf("JWT decode: verify every request %.1f µs, verified-token cache %.1f µs"
+                + " (%d users, %d requests)%n", verify, cached, USERS, REQUESTS);
+    }
+}
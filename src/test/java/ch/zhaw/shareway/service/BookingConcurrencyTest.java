@@ -0,0 +1,198 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.BookingStatus;
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.repository.BookingRepository;
+import ch.zhaw.shareway.repository.RideRepository;
+
+/**
+ * Approves and cancels bookings of one ride from many threads against a
+ * local MongoDB (Testcontainers) and checks that seats are never overbooked
+ * and freed seats go to the waitlist in order.
+ * Prints the approval throughput under contention. Skipped without Docker.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+public class BookingConcurrencyTest {
+
+    private static final String DRIVER = "concurrency-driver@test.com";
+    private static final int THREADS = 16;
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    private final List<Ride> rides = new ArrayList<>();
+
+    @AfterEach
+    void cleanup() {
+        rides.forEach(ride -> bookingRepository.deleteByRideId(ride.getId()));
+        rideRepository.deleteAll(rides);
+        rides.clear();
+    }
+
+    private Ride createRide(int seats) {
+        Ride ride = new Ride(DRIVER, "concurrency-vehicle", "Zürich", "Bern",
+                LocalDateTime.now().plusDays(1), 20.0, seats, seats);
+        ride.setStatus(RideStatus.OPEN);
+        Ride saved = rideRepository.save(ride);
+        rides.add(saved);
+        return saved;
+    }
+
+    private List<Booking> createBookings(Ride ride, int count) {
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bookings.add(new Booking(ride.getId(), "rider-" + i + "@test.com", 1));
+        }
+        return bookingRepository.saveAll(bookings);
+    }
+
+    // Startet alle Aufgaben gleichzeitig und zählt die erfolgreichen
+    private int runConcurrently(List<Callable<Boolean>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (var task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        int succeeded = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get(30, TimeUnit.SECONDS)) {
+                succeeded++;
+            }
+        }
+        executor.shutdown();
+        return succeeded;
+    }
+
+    @Test
+    void testConcurrentApprovalsNeverOverbook() throws Exception {
+        int seats = 5;
+        int requests = 200;
+        Ride ride = createRide(seats);
+        List<Booking> bookings = createBookings(ride, requests);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (Booking booking : bookings) {
+            tasks.add(() -> bookingService.approveBooking(booking.getId(), DRIVER).isPresent());
+        }
+
+        long start = System.nanoTime();
+        int approved = runConcurrently(tasks);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Ride reloaded = rideRepository.findById(ride.getId()).orElseThrow();
+        assertEquals(seats, approved);
+        assertEquals(0, reloaded.getSeatsFree());
+        assertEquals(RideStatus.FULL, reloaded.getStatus());
+        assertEquals(seats, bookingRepository.findByRideIdAndStatus(ride.getId(), BookingStatus.APPROVED).size());
+
+        System.out.printf("Booking contention: %d approvals on %d seats, %d threads: %.0f ops/s%n",
+                requests, seats, THREADS, requests / seconds);
+    }
+
+    @Test
+    void testApprovalsRacingCancellationsKeepSeatCount() throws Exception {
+        int seats = 10;
+        Ride ride = createRide(seats);
+        List<Booking> bookings = createBookings(ride, 40);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < bookings.size(); i++) {
+            Booking booking = bookings.get(i);
+            tasks.add(() -> bookingService.approveBooking(booking.getId(), DRIVER).isPresent());
+            if (i % 2 == 0) {
+                tasks.add(() -> bookingService.cancelBooking(booking.getId(), booking.getRiderId()).isPresent());
+            }
+        }
+        runConcurrently(tasks);
+
+        Ride reloaded = rideRepository.findById(ride.getId()).orElseThrow();
+        int approved = bookingRepository.findByRideIdAndStatus(ride.getId(), BookingStatus.APPROVED).stream()
+                .mapToInt(Booking::getSeats).sum();
+        assertTrue(reloaded.getSeatsFree() >= 0);
+        assertEquals(seats - approved, reloaded.getSeatsFree());
+        assertEquals(reloaded.getSeatsFree() == 0 ? RideStatus.FULL : RideStatus.OPEN, reloaded.getStatus());
+    }
+
+    @Test
+    void testConcurrentCancellationsPromoteWaitlistInOrder() throws Exception {
+        int seats = 10;
+        int canceled = 6;
+        Ride ride = createRide(seats);
+        List<Booking> approved = createBookings(ride, seats);
+        approved.forEach(booking -> booking.setStatus(BookingStatus.APPROVED));
+        bookingRepository.saveAll(approved);
+
+        List<Booking> waitlist = new ArrayList<>();
+        LocalDateTime enqueued = LocalDateTime.now().minusHours(1);
+        for (int i = 0; i < 20; i++) {
+            Booking booking = new Booking(ride.getId(), "waiting-" + i + "@test.com", 1);
+            booking.setStatus(BookingStatus.WAITLISTED);
+            booking.setWaitlistedAt(enqueued.plusSeconds(i));
+            waitlist.add(booking);
+        }
+        waitlist = bookingRepository.saveAll(waitlist);
+
+        Ride full = rideRepository.findById(ride.getId()).orElseThrow();
+        full.setSeatsFree(0);
+        full.setStatus(RideStatus.FULL);
+        full.setWaitlisted(waitlist.size());
+        rideRepository.save(full);
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (Booking booking : approved.subList(0, canceled)) {
+            tasks.add(() -> bookingService.cancelBooking(booking.getId(), booking.getRiderId()).isPresent());
+        }
+        assertEquals(canceled, runConcurrently(tasks));
+
+        // Freie Plätze gingen an die ältesten Wartenden, keiner doppelt
+        Ride reloaded = rideRepository.findById(ride.getId()).orElseThrow();
+        assertEquals(0, reloaded.getSeatsFree());
+        assertEquals(RideStatus.FULL, reloaded.getStatus());
+        assertEquals(waitlist.size() - canceled, reloaded.getWaitlisted());
+        for (int i = 0; i < waitlist.size(); i++) {
+            Booking booking = bookingRepository.findById(waitlist.get(i).getId()).orElseThrow();
+            assertEquals(i < canceled ? BookingStatus.REQUESTED : BookingStatus.WAITLISTED, booking.getStatus());
+            assertEquals(i < canceled, booking.isSeatsReserved());
+        }
+    }
+}
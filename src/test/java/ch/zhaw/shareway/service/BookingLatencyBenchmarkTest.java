@@ -0,0 +1,133 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.BookingStatus;
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.model.UserRole;
+import ch.zhaw.shareway.repository.BookingRepository;
+import ch.zhaw.shareway.repository.RideRepository;
+import ch.zhaw.shareway.repository.UserRepository;
+
+/**
+ * Compares the end-to-end latency of an instant-book booking (one
+ * transaction) with the request/approve flow (create, then approve) against
+ * a local MongoDB replica set (Testcontainers). Only runs with
+ * -Dbenchmark=true and Docker (e.g. mvn test -Dtest=BookingLatencyBenchmarkTest -Dbenchmark=true)
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BookingLatencyBenchmarkTest {
+
+    private static final String DRIVER = "latency-driver@test.com";
+    private static final int BOOKINGS = 200;
+    private static final int WARMUP = 20;
+
+    @Container
+    @ServiceConnection
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7.0");
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<Ride> rides = new ArrayList<>();
+
+    @BeforeAll
+    void seedRiders() {
+        List<User> riders = new ArrayList<>();
+        for (int i = 0; i < BOOKINGS + WARMUP; i++) {
+            User rider = new User("latency|" + i, rider(i), "Rider " + i, UserRole.USER);
+            rider.setFirstName("Rider");
+            rider.setLastName("No" + i);
+            riders.add(rider);
+        }
+        userRepository.saveAll(riders);
+    }
+
+    @AfterAll
+    void cleanup() {
+        rides.forEach(ride -> bookingRepository.deleteByRideId(ride.getId()));
+        rideRepository.deleteAll(rides);
+        userRepository.deleteAll();
+    }
+
+    private String rider(int i) {
+        return "latency-rider-" + i + "@test.com";
+    }
+
+    private Ride createRide(boolean instantBook) {
+        int seats = BOOKINGS + WARMUP;
+        Ride ride = new Ride(DRIVER, "latency-vehicle", "Zürich", "Bern",
+                LocalDateTime.now().plusDays(1), 20.0, seats, seats);
+        ride.setStatus(RideStatus.OPEN);
+        ride.setInstantBook(instantBook);
+        Ride saved = rideRepository.save(ride);
+        rides.add(saved);
+        return saved;
+    }
+
+    private long[] measure(boolean instantBook) {
+        Ride ride = createRide(instantBook);
+        long[] micros = new long[BOOKINGS];
+        for (int i = 0; i < BOOKINGS + WARMUP; i++) {
+            long start = System.nanoTime();
+            Booking booking = bookingService.createBooking(ride.getId(), rider(i), 1).orElseThrow();
+            if (!instantBook) {
+                booking = bookingService.approveBooking(booking.getId(), DRIVER).orElseThrow();
+            }
+            long elapsed = (System.nanoTime() - start) / 1000;
+            assertEquals(BookingStatus.APPROVED, booking.getStatus());
+            if (i >= WARMUP) {
+                micros[i - WARMUP] = elapsed;
+            }
+        }
+        assertEquals(0, rideRepository.findById(ride.getId()).orElseThrow().getSeatsFree());
+        Arrays.sort(micros);
+        return micros;
+    }
+
+    private void print(String flow, long[] sorted) {
+        System.out.printf("Booking latency %-16s p50 %6d µs  p95 %6d µs  p99 %6d µs%n", flow,
+                sorted[sorted.length / 2], sorted[sorted.length * 95 / 100], sorted[sorted.length * 99 / 100]);
+    }
+
+    @Test
+    void compareInstantBookWithRequestApprove() {
+        long[] requestApprove = measure(false);
+        long[] instant = measure(true);
+
+        print("request+approve", requestApprove);
+        print("instant-book", instant);
+    }
+}
@@ -2,31 +2,56 @@ package ch.zhaw.shareway.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
 
 import ch.zhaw.shareway.model.Booking;
 import ch.zhaw.shareway.model.BookingStatus;
+import ch.zhaw.shareway.model.Mail;
 import ch.zhaw.shareway.model.Ride;
 import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.SeatHold;
 import ch.zhaw.shareway.model.User;
 import ch.zhaw.shareway.model.UserRole;
 import ch.zhaw.shareway.repository.BookingRepository;
 import ch.zhaw.shareway.repository.RideRepository;
-import ch.zhaw.shareway.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 public class BookingServiceTest {
@@ -38,11 +63,35 @@ public class BookingServiceTest {
     private RideRepository rideRepository;
 
     @Mock
-    private UserRepository userRepository;
+    private UserCache userCache;
 
     @Mock
     private DiscountService discountService;
 
+    @Mock
+    private RideGeoIndex rideGeoIndex;
+
+    @Mock
+    private RideRouteIndex rideRouteIndex;
+
+    @Mock
+    private GeocodingService geocodingService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private MailService mailService;
+
+    @Spy
+    private OptimisticRetry optimisticRetry = new OptimisticRetry(new SimpleMeterRegistry());
+
     @InjectMocks
     private BookingService bookingService;
 
@@ -78,9 +127,8 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingSuccess() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
         when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
@@ -93,7 +141,7 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingUserNotFound() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.empty());
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.empty());
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
 
@@ -105,7 +153,7 @@ public class BookingServiceTest {
     void testCreateBookingUserProfileIncomplete() {
         User incompleteUser = new User("auth0-id", "rider@test.com", "Test", UserRole.USER);
         // firstName and lastName are null -> isProfileComplete() returns false
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(incompleteUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(incompleteUser));
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
 
@@ -114,7 +162,7 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingRideNotFound() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.empty());
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
@@ -124,7 +172,7 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingDriverCannotBookOwnRide() {
-        when(userRepository.findByEmail("driver@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("driver@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "driver@test.com", 1);
@@ -134,21 +182,22 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingAlreadyBooked() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(true);
+        // Unique-Index auf (rideId, riderId) für aktive Buchungen
+        when(bookingRepository.save(any(Booking.class))).thenThrow(new DuplicateKeyException("ride_rider_current"));
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
 
         assertFalse(result.isPresent());
+        verify(bookingRepository, never()).findByRiderIdAndRideId(any(), any());
     }
 
     @Test
     void testCreateBookingRideNotOpen() {
         testRide.setStatus(RideStatus.COMPLETED);
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
 
@@ -158,9 +207,8 @@ public class BookingServiceTest {
     @Test
     void testCreateBookingNotEnoughSeats() {
         testRide.setSeatsFree(1);
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 3);
 
@@ -169,24 +217,25 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingWithPickupAndMessage() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
         when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
+        GeoJsonPoint pickupPoint = new GeoJsonPoint(8.1803, 47.3885);
+        when(geocodingService.toPoint("Pickup Location")).thenReturn(pickupPoint);
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1, 
                 "Pickup Location", "Please wait");
 
         assertTrue(result.isPresent());
         assertEquals("Pickup Location", result.get().getPickupLocation());
+        assertEquals(pickupPoint, result.get().getPickupPoint());
         assertEquals("Please wait", result.get().getMessage());
     }
 
     @Test
     void testCreateBookingWithValidPromoCode() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
         when(discountService.isValidCode("WELCOME10")).thenReturn(true);
         when(discountService.getDiscountPercent("WELCOME10")).thenReturn(10);
         when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
@@ -203,9 +252,8 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingWithInvalidPromoCode() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
         when(discountService.isValidCode("INVALID")).thenReturn(false);
         when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
 
@@ -216,19 +264,121 @@ public class BookingServiceTest {
         assertEquals(20.0, result.get().getFinalPrice()); // No discount
     }
 
+    // ==================== Instant-Book Tests ====================
+
+    private void mockTransaction() {
+        when(transactionTemplate.execute(any())).thenAnswer(
+                i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void testCreateBookingInstantBookApprovesAndTakesSeats() {
+        testRide.setInstantBook(true);
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockTransaction();
+        mockRideUpdate(testRide);
+        when(bookingRepository.insert(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
+
+        Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 2);
+
+        assertTrue(result.isPresent());
+        assertEquals(BookingStatus.APPROVED, result.get().getStatus());
+        Document query = capturedRideQuery().getQueryObject();
+        assertEquals("driver@test.com", query.get("driverId"));
+        assertEquals(new Document("$gte", 2), query.get("seatsFree"));
+        verify(bookingRepository, never()).save(any());
+        verify(rideGeoIndex).update(testRide);
+    }
+
+    @Test
+    void testCreateBookingInstantBookNoSeatsLeft() {
+        testRide.setInstantBook(true);
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockTransaction();
+        mockRideUpdate(null);
+
+        Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
+
+        assertFalse(result.isPresent());
+        verify(bookingRepository, never()).insert(any(Booking.class));
+    }
+
+    @Test
+    void testCreateBookingInstantBookAlreadyBooked() {
+        testRide.setInstantBook(true);
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockTransaction();
+        mockRideUpdate(testRide);
+        when(bookingRepository.insert(any(Booking.class))).thenThrow(new DuplicateKeyException("ride_rider_current"));
+
+        Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
+
+        assertFalse(result.isPresent());
+        verify(rideGeoIndex, never()).update(any());
+    }
+
+    @Test
+    void testCreateBookingInstantBookRetriesWriteConflict() {
+        testRide.setInstantBook(true);
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        when(transactionTemplate.execute(any()))
+                .thenThrow(OptimisticRetryTest.writeConflict())
+                .thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        mockRideUpdate(testRide);
+        when(bookingRepository.insert(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
+
+        Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1);
+
+        assertTrue(result.isPresent());
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
     // ==================== approveBooking Tests ====================
 
+    private Booking withStatus(Booking booking, BookingStatus status) {
+        Booking copy = new Booking(booking.getRideId(), booking.getRiderId(), booking.getSeats());
+        copy.setId(booking.getId());
+        copy.setStatus(status);
+        copy.setSeatsReserved(booking.isSeatsReserved());
+        return copy;
+    }
+
+    private void mockRideUpdate(Ride result) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class))).thenReturn(result);
+    }
+
+    private void mockBookingUpdate(Booking result) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Booking.class))).thenReturn(result);
+    }
+
+    private Query capturedRideQuery() {
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(captor.capture(), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        return captor.getValue();
+    }
+
     @Test
     void testApproveBookingSuccess() {
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
-        when(rideRepository.save(any(Ride.class))).thenAnswer(i -> i.getArgument(0));
+        mockRideUpdate(testRide);
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.APPROVED));
 
         Optional<Booking> result = bookingService.approveBooking("booking-123", "driver@test.com");
 
         assertTrue(result.isPresent());
         assertEquals(BookingStatus.APPROVED, result.get().getStatus());
+        Document query = capturedRideQuery().getQueryObject();
+        assertEquals("ride-123", query.get("id"));
+        assertEquals("driver@test.com", query.get("driverId"));
+        assertEquals(new Document("$gte", 1), query.get("seatsFree"));
+        verify(rideRepository, never()).save(any(Ride.class));
     }
 
     @Test
@@ -243,58 +393,111 @@ public class BookingServiceTest {
     @Test
     void testApproveBookingRideNotFound() {
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.empty());
+        mockRideUpdate(null);
 
         Optional<Booking> result = bookingService.approveBooking("booking-123", "driver@test.com");
 
         assertFalse(result.isPresent());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Booking.class));
     }
 
     @Test
     void testApproveBookingNotDriver() {
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockRideUpdate(null);
 
         Optional<Booking> result = bookingService.approveBooking("booking-123", "other@test.com");
 
         assertFalse(result.isPresent());
+        assertEquals("other@test.com", capturedRideQuery().getQueryObject().get("driverId"));
     }
 
     @Test
     void testApproveBookingNotRequestedStatus() {
         testBooking.setStatus(BookingStatus.APPROVED);
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
 
         Optional<Booking> result = bookingService.approveBooking("booking-123", "driver@test.com");
 
         assertFalse(result.isPresent());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
     }
 
     @Test
     void testApproveBookingNotEnoughSeats() {
-        testRide.setSeatsFree(0);
+        testBooking.setSeats(3);
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockRideUpdate(null);
 
         Optional<Booking> result = bookingService.approveBooking("booking-123", "driver@test.com");
 
         assertFalse(result.isPresent());
+        assertEquals(new Document("$gte", 3), capturedRideQuery().getQueryObject().get("seatsFree"));
     }
 
     @Test
     void testApproveBookingFillsRide() {
-        testRide.setSeatsFree(1);
-        testBooking.setSeats(1);
+        testRide.setSeatsFree(0);
+        testRide.setStatus(RideStatus.FULL);
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
-        when(rideRepository.save(any(Ride.class))).thenAnswer(i -> i.getArgument(0));
+        mockRideUpdate(testRide);
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.APPROVED));
 
         Optional<Booking> result = bookingService.approveBooking("booking-123", "driver@test.com");
 
         assertTrue(result.isPresent());
-        assertEquals(RideStatus.FULL, testRide.getStatus());
+        verify(rideGeoIndex).update(testRide);
+        verify(rideRouteIndex).update(testRide);
+    }
+
+    @Test
+    void testApproveBookingCanceledMeanwhileReleasesSeats() {
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        mockRideUpdate(testRide);
+        mockBookingUpdate(null); // Booking ist nicht mehr REQUESTED
+
+        Optional<Booking> result = bookingService.approveBooking("booking-123", "driver@test.com");
+
+        assertFalse(result.isPresent());
+        // reserveSeats und releaseSeats
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+    }
+
+    @Test
+    void testReserveSeatsSetsFullInSameStage() {
+        bookingService.reserveSeats("ride-123", "driver@test.com", 2);
+
+        ArgumentCaptor<UpdateDefinition> captor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), captor.capture(),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        List<Document> pipeline = ((AggregationUpdate) captor.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        assertEquals(1, pipeline.size());
+        Document set = pipeline.get(0).get("$set", Document.class);
+        assertEquals(new Document("$subtract", List.of("$seatsFree", 2)), set.get("seatsFree"));
+        Document cond = set.get("status", Document.class).get("$cond", Document.class);
+        assertEquals(new Document("$eq", List.of("$seatsFree", 2)), cond.get("if"));
+        assertEquals("FULL", cond.get("then"));
+        assertEquals("$status", cond.get("else"));
+    }
+
+    @Test
+    void testReleaseSeatsReopensFullRide() {
+        bookingService.releaseSeats("ride-123", 2);
+
+        ArgumentCaptor<UpdateDefinition> captor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), captor.capture(),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        List<Document> pipeline = ((AggregationUpdate) captor.getValue()).toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        Document set = pipeline.get(0).get("$set", Document.class);
+        assertEquals(new Document("$add", List.of("$seatsFree", 2)), set.get("seatsFree"));
+        Document cond = set.get("status", Document.class).get("$cond", Document.class);
+        assertEquals(new Document("$eq", List.of("$status", "FULL")), cond.get("if"));
+        assertEquals("OPEN", cond.get("then"));
     }
 
     // ==================== rejectBooking Tests ====================
@@ -303,7 +506,8 @@ public class BookingServiceTest {
     void testRejectBookingSuccess() {
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.REJECTED));
+        mockTransaction();
 
         Optional<Booking> result = bookingService.rejectBooking("booking-123", "driver@test.com");
 
@@ -311,6 +515,18 @@ public class BookingServiceTest {
         assertEquals(BookingStatus.REJECTED, result.get().getStatus());
     }
 
+    @Test
+    void testRejectBookingApprovedMeanwhile() {
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockBookingUpdate(null);
+        mockTransaction();
+
+        Optional<Booking> result = bookingService.rejectBooking("booking-123", "driver@test.com");
+
+        assertFalse(result.isPresent());
+    }
+
     @Test
     void testRejectBookingNotFound() {
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.empty());
@@ -356,44 +572,45 @@ public class BookingServiceTest {
     @Test
     void testCancelBookingRequestedSuccess() {
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.REQUESTED));
+        mockTransaction();
 
         Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
 
         assertTrue(result.isPresent());
         assertEquals(BookingStatus.CANCELED, result.get().getStatus());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
     }
 
     @Test
     void testCancelBookingApprovedRestoresSeats() {
         testBooking.setStatus(BookingStatus.APPROVED);
-        testRide.setSeatsFree(3);
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
-        when(rideRepository.save(any(Ride.class))).thenAnswer(i -> i.getArgument(0));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.APPROVED));
+        mockRideUpdate(testRide);
+        mockTransaction();
 
         Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
 
         assertTrue(result.isPresent());
         assertEquals(BookingStatus.CANCELED, result.get().getStatus());
-        assertEquals(4, testRide.getSeatsFree()); // Seats restored
+        assertEquals("ride-123", capturedRideQuery().getQueryObject().get("id"));
     }
 
     @Test
     void testCancelBookingApprovedReopensFullRide() {
         testBooking.setStatus(BookingStatus.APPROVED);
-        testRide.setSeatsFree(0);
-        testRide.setStatus(RideStatus.FULL);
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
-        when(rideRepository.save(any(Ride.class))).thenAnswer(i -> i.getArgument(0));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.APPROVED));
+        mockRideUpdate(testRide);
+        mockTransaction();
 
         Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
 
         assertTrue(result.isPresent());
-        assertEquals(RideStatus.OPEN, testRide.getStatus());
+        verify(rideGeoIndex).update(testRide);
+        verify(rideRouteIndex).update(testRide);
     }
 
     @Test
@@ -428,37 +645,35 @@ public class BookingServiceTest {
     void testCancelBookingApprovedRideNotFound() {
         testBooking.setStatus(BookingStatus.APPROVED);
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.empty());
-        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.APPROVED));
+        mockRideUpdate(null);
+        mockTransaction();
 
         Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
 
         assertTrue(result.isPresent());
         assertEquals(BookingStatus.CANCELED, result.get().getStatus());
+        verify(rideGeoIndex, never()).update(any(Ride.class));
     }
 
     @Test
-    void testCancelBookingApprovedRideNotFull() {
+    void testCancelBookingChangedMeanwhile() {
         testBooking.setStatus(BookingStatus.APPROVED);
-        testRide.setSeatsFree(2);
-        testRide.setStatus(RideStatus.OPEN); // Not FULL
         when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
-        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
-        when(rideRepository.save(any(Ride.class))).thenAnswer(i -> i.getArgument(0));
+        mockBookingUpdate(null); // bereits storniert
+        mockTransaction();
 
         Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
 
-        assertTrue(result.isPresent());
-        assertEquals(RideStatus.OPEN, testRide.getStatus()); // Still OPEN
-        assertEquals(3, testRide.getSeatsFree()); // Seats restored
+        assertFalse(result.isPresent());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
     }
 
     @Test
     void testCreateBookingWithEmptyPickupLocation() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
         when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1, 
@@ -470,9 +685,8 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingWithEmptyMessage() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
         when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1, 
@@ -484,9 +698,8 @@ public class BookingServiceTest {
 
     @Test
     void testCreateBookingWithEmptyPromoCode() {
-        when(userRepository.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
         when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
-        when(bookingRepository.existsByRideIdAndRiderId("ride-123", "rider@test.com")).thenReturn(false);
         when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
 
         Optional<Booking> result = bookingService.createBooking("ride-123", "rider@test.com", 1, 
@@ -495,4 +708,425 @@ public class BookingServiceTest {
         assertTrue(result.isPresent());
         assertEquals(20.0, result.get().getFinalPrice()); // No discount
     }
+
+    // ==================== Seat Hold Tests ====================
+
+    @Test
+    void testCreateBookingFromHoldKeepsSeatsReserved() {
+        SeatHold hold = new SeatHold("ride-123", "rider@test.com", 2, LocalDateTime.now().plusMinutes(5));
+        testRide.setStatus(RideStatus.FULL); // letzte Plätze sind gehalten
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        when(bookingRepository.save(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
+
+        Optional<Booking> result = bookingService.createBookingFromHold(hold, "Pickup", null, null);
+
+        assertTrue(result.isPresent());
+        assertTrue(result.get().isSeatsReserved());
+        assertEquals(BookingStatus.REQUESTED, result.get().getStatus());
+        assertEquals(2, result.get().getSeats());
+        assertEquals(40.0, result.get().getFinalPrice());
+    }
+
+    @Test
+    void testCreateBookingFromHoldProfileIncomplete() {
+        SeatHold hold = new SeatHold("ride-123", "rider@test.com", 1, LocalDateTime.now().plusMinutes(5));
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.empty());
+
+        Optional<Booking> result = bookingService.createBookingFromHold(hold, null, null, null);
+
+        assertFalse(result.isPresent());
+        verify(bookingRepository, never()).save(any());
+    }
+
+    @Test
+    void testApproveReservedBookingDoesNotTakeSeatsAgain() {
+        testBooking.setSeatsReserved(true);
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        when(mongoTemplate.exists(any(Query.class), eq(Ride.class))).thenReturn(true);
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.APPROVED));
+
+        Optional<Booking> result = bookingService.approveBooking("booking-123", "driver@test.com");
+
+        assertTrue(result.isPresent());
+        assertEquals(BookingStatus.APPROVED, result.get().getStatus());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+    }
+
+    @Test
+    void testApproveReservedBookingNotDriver() {
+        testBooking.setSeatsReserved(true);
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        when(mongoTemplate.exists(any(Query.class), eq(Ride.class))).thenReturn(false);
+
+        Optional<Booking> result = bookingService.approveBooking("booking-123", "other@test.com");
+
+        assertFalse(result.isPresent());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Booking.class));
+    }
+
+    @Test
+    void testRejectReservedBookingReleasesSeats() {
+        testBooking.setSeatsReserved(true);
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.REJECTED));
+        mockRideUpdate(testRide);
+        mockTransaction();
+
+        Optional<Booking> result = bookingService.rejectBooking("booking-123", "driver@test.com");
+
+        assertTrue(result.isPresent());
+        assertEquals("ride-123", capturedRideQuery().getQueryObject().get("id"));
+        verify(rideGeoIndex).update(testRide);
+    }
+
+    @Test
+    void testCancelReservedRequestedBookingReleasesSeats() {
+        testBooking.setSeatsReserved(true);
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.REQUESTED));
+        mockRideUpdate(testRide);
+        mockTransaction();
+
+        Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
+
+        assertTrue(result.isPresent());
+        assertEquals(BookingStatus.CANCELED, result.get().getStatus());
+        assertEquals("ride-123", capturedRideQuery().getQueryObject().get("id"));
+    }
+
+    // ==================== Bulk Decision Tests ====================
+
+    private Booking request(String id, String rideId, int seats) {
+        Booking booking = new Booking(rideId, "rider-" + id + "@test.com", seats);
+        booking.setId(id);
+        return booking;
+    }
+
+    private void mockBulkWrite(int modified) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.getModifiedCount()).thenReturn(modified);
+        when(bulkOperations.execute()).thenReturn(result);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class)).thenReturn(bulkOperations);
+    }
+
+    @Test
+    void testApproveBookingsOneSeatUpdatePerRide() {
+        Ride otherRide = new Ride();
+        otherRide.setId("ride-456");
+        otherRide.setDriverId("driver@test.com");
+        otherRide.setSeatsFree(2);
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class))).thenReturn(List.of(
+                request("b1", "ride-123", 1), request("b2", "ride-123", 2), request("b3", "ride-456", 1)));
+        when(mongoTemplate.find(any(Query.class), eq(Ride.class))).thenReturn(List.of(testRide, otherRide));
+        mockRideUpdate(testRide);
+        mockBulkWrite(3);
+
+        List<Booking> result = bookingService.approveBookings(List.of("b1", "b2", "b3"), "driver@test.com");
+
+        assertEquals(3, result.size());
+        assertTrue(result.stream().allMatch(b -> b.getStatus() == BookingStatus.APPROVED));
+        ArgumentCaptor<Query> rideQueries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).findAndModify(rideQueries.capture(), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        assertEquals(new Document("$gte", 3), rideQueries.getAllValues().get(0).getQueryObject().get("seatsFree"));
+        verify(bulkOperations, times(3)).updateOne(any(Query.class), any(Update.class));
+        verify(bulkOperations).execute();
+    }
+
+    @Test
+    void testApproveBookingsSkipsRequestsThatDoNotFit() {
+        testRide.setSeatsFree(2);
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class))).thenReturn(List.of(
+                request("b1", "ride-123", 2), request("b2", "ride-123", 1)));
+        when(mongoTemplate.find(any(Query.class), eq(Ride.class))).thenReturn(List.of(testRide));
+        mockRideUpdate(testRide);
+        mockBulkWrite(1);
+
+        List<Booking> result = bookingService.approveBookings(List.of("b1", "b2"), "driver@test.com");
+
+        assertEquals(1, result.size());
+        assertEquals("b1", result.get(0).getId());
+        verify(bulkOperations, times(1)).updateOne(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    void testApproveBookingsIgnoresOtherDriversRides() {
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class))).thenReturn(List.of(
+                request("b1", "ride-123", 1)));
+        when(mongoTemplate.find(any(Query.class), eq(Ride.class))).thenReturn(List.of());
+
+        List<Booking> result = bookingService.approveBookings(List.of("b1"), "other@test.com");
+
+        assertTrue(result.isEmpty());
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Booking.class));
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+    }
+
+    @Test
+    void testApproveBookingsCanceledMeanwhileReleasesSeats() {
+        Booking written = new Booking();
+        written.setId("b1");
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class)))
+                .thenReturn(List.of(request("b1", "ride-123", 1), request("b2", "ride-123", 2)))
+                .thenReturn(List.of(written));
+        when(mongoTemplate.find(any(Query.class), eq(Ride.class))).thenReturn(List.of(testRide));
+        mockRideUpdate(testRide);
+        mockBulkWrite(1);
+
+        List<Booking> result = bookingService.approveBookings(List.of("b1", "b2"), "driver@test.com");
+
+        assertEquals(1, result.size());
+        assertEquals("b1", result.get(0).getId());
+        // Reservieren für beide, dann die 2 Plätze von b2 zurückgeben
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), updates.capture(),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        Document release = ((AggregationUpdate) updates.getAllValues().get(1))
+                .toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).get("$set", Document.class);
+        assertEquals(new Document("$add", List.of("$seatsFree", 2)), release.get("seatsFree"));
+    }
+
+    @Test
+    void testRejectBookingsReleasesOnlyReservedSeats() {
+        Booking reserved = request("b1", "ride-123", 2);
+        reserved.setSeatsReserved(true);
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class))).thenReturn(List.of(
+                reserved, request("b2", "ride-123", 1)));
+        when(mongoTemplate.find(any(Query.class), eq(Ride.class))).thenReturn(List.of(testRide));
+        mockRideUpdate(testRide);
+        mockBulkWrite(2);
+
+        List<Booking> result = bookingService.rejectBookings(List.of("b1", "b2"), "driver@test.com");
+
+        assertEquals(2, result.size());
+        assertTrue(result.stream().allMatch(b -> b.getStatus() == BookingStatus.REJECTED));
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), updates.capture(),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        Document release = ((AggregationUpdate) updates.getValue())
+                .toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).get("$set", Document.class);
+        assertEquals(new Document("$add", List.of("$seatsFree", 2)), release.get("seatsFree"));
+    }
+
+    // ==================== Waitlist Tests ====================
+
+    private Booking waiting(String id, int seats) {
+        Booking booking = request(id, "ride-123", seats);
+        booking.setStatus(BookingStatus.WAITLISTED);
+        booking.setWaitlistedAt(LocalDateTime.now());
+        return booking;
+    }
+
+    private Ride rideWithWaitlist(int seatsFree, int waitlisted) {
+        Ride ride = new Ride();
+        ride.setId("ride-123");
+        ride.setDriverId("driver@test.com");
+        ride.setStartLocation("Start");
+        ride.setEndLocation("End");
+        ride.setSeatsTotal(4);
+        ride.setSeatsFree(seatsFree);
+        ride.setWaitlisted(waitlisted);
+        ride.setStatus(RideStatus.OPEN);
+        return ride;
+    }
+
+    @Test
+    void testJoinWaitlistOnFullRide() {
+        testRide.setSeatsFree(0);
+        testRide.setStatus(RideStatus.FULL);
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockTransaction();
+        mockRideUpdate(testRide);
+        when(bookingRepository.insert(any(Booking.class))).thenAnswer(i -> i.getArgument(0));
+
+        Optional<Booking> result = bookingService.joinWaitlist("ride-123", "rider@test.com", 1, null, null, null);
+
+        assertTrue(result.isPresent());
+        assertEquals(BookingStatus.WAITLISTED, result.get().getStatus());
+        assertTrue(result.get().getWaitlistedAt() != null);
+        Document query = capturedRideQuery().getQueryObject();
+        assertEquals(new Document("$lt", 1), query.get("seatsFree"));
+    }
+
+    @Test
+    void testJoinWaitlistSeatsStillFree() {
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+        mockTransaction();
+        mockRideUpdate(null);
+
+        Optional<Booking> result = bookingService.joinWaitlist("ride-123", "rider@test.com", 1, null, null, null);
+
+        assertFalse(result.isPresent());
+        verify(bookingRepository, never()).insert(any(Booking.class));
+    }
+
+    @Test
+    void testJoinWaitlistMoreSeatsThanRideHas() {
+        when(userCache.findByEmail("rider@test.com")).thenReturn(Optional.of(testUser));
+        when(rideRepository.findById("ride-123")).thenReturn(Optional.of(testRide));
+
+        Optional<Booking> result = bookingService.joinWaitlist("ride-123", "rider@test.com", 5, null, null, null);
+
+        assertFalse(result.isPresent());
+        verify(transactionTemplate, never()).execute(any());
+    }
+
+    @Test
+    void testCancelWaitlistedBookingDecrementsCounter() {
+        testBooking.setStatus(BookingStatus.WAITLISTED);
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.WAITLISTED));
+        mockTransaction();
+
+        Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
+
+        assertTrue(result.isPresent());
+        assertEquals(BookingStatus.CANCELED, result.get().getStatus());
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class),
+                eq(Ride.class));
+        assertEquals(new Document("waitlisted", -1), update.getValue().getUpdateObject().get("$inc"));
+        verify(transactionTemplate).execute(any());
+    }
+
+    @Test
+    void testReleaseWithoutWaitlistNeedsNoTransaction() {
+        mockRideUpdate(testRide);
+
+        assertEquals(testRide, bookingService.releaseSeatsAndPromote("ride-123", 1));
+
+        Document query = capturedRideQuery().getQueryObject();
+        assertEquals(new Document("$not", new Document("$gt", 0)), query.get("waitlisted"));
+        verify(transactionTemplate, never()).execute(any());
+    }
+
+    @Test
+    void testCancelRetriedWithStatusChangeOnWriteConflict() {
+        testBooking.setStatus(BookingStatus.APPROVED);
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        // Erster Versuch bricht ab: Statuswechsel und Freigabe werden zusammen wiederholt
+        when(transactionTemplate.execute(any()))
+                .thenThrow(OptimisticRetryTest.writeConflict())
+                .thenAnswer(i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.APPROVED));
+        mockRideUpdate(testRide);
+
+        Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
+
+        assertTrue(result.isPresent());
+        assertEquals(BookingStatus.CANCELED, result.get().getStatus());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(rideGeoIndex).update(testRide);
+    }
+
+    @Test
+    void testCancelFailsWithoutReleasingOutsideTransaction() {
+        testBooking.setStatus(BookingStatus.APPROVED);
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        when(transactionTemplate.execute(any())).thenThrow(OptimisticRetryTest.writeConflict());
+
+        assertThrows(RuntimeException.class, () -> bookingService.cancelBooking("booking-123", "rider@test.com"));
+
+        // Nichts ausserhalb der (abgebrochenen) Transaktion geschrieben
+        verify(transactionTemplate, times(OptimisticRetry.MAX_ATTEMPTS)).execute(any());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), any());
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(Ride.class));
+    }
+
+    @Test
+    void testPromotionRetriedWhenWaitlistChanged() {
+        mockTransaction();
+        when(mongoTemplate.findById("ride-123", Ride.class)).thenReturn(rideWithWaitlist(1, 1));
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class))).thenReturn(List.of(waiting("w1", 1)));
+        // Erst ist die Booking schon weg (0 geändert), beim zweiten Versuch passt es
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Booking.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 0L, null), UpdateResult.acknowledged(1, 1L, null));
+        mockRideUpdate(rideWithWaitlist(0, 0));
+
+        bookingService.promoteWaitlist("ride-123");
+
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(mongoTemplate, times(1)).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+    }
+
+    @Test
+    void testReleasePromotesOldestWaitlistedThatFit() {
+        testBooking.setStatus(BookingStatus.APPROVED);
+        testBooking.setSeats(2);
+        when(bookingRepository.findById("booking-123")).thenReturn(Optional.of(testBooking));
+        mockBookingUpdate(withStatus(testBooking, BookingStatus.APPROVED));
+        mockTransaction();
+        // Freigabe und Nachrücken in der Transaktion des Statuswechsels
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class)))
+                .thenReturn(rideWithWaitlist(2, 3), rideWithWaitlist(0, 1));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Booking.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+        Booking tooBig = waiting("w1", 3);
+        Booking second = waiting("w2", 1);
+        Booking third = waiting("w3", 1);
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class))).thenReturn(List.of(tooBig, second, third));
+
+        Optional<Booking> result = bookingService.cancelBooking("booking-123", "rider@test.com");
+
+        assertTrue(result.isPresent());
+        assertEquals(BookingStatus.WAITLISTED, tooBig.getStatus());
+        assertEquals(BookingStatus.REQUESTED, second.getStatus());
+        assertTrue(second.isSeatsReserved());
+        assertEquals(BookingStatus.REQUESTED, third.getStatus());
+
+        ArgumentCaptor<Query> promotedQuery = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateMulti(promotedQuery.capture(), any(Update.class), eq(Booking.class));
+        assertEquals(new Document("$in", List.of("w2", "w3")), promotedQuery.getValue().getQueryObject().get("id"));
+
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), updates.capture(),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        Document take = ((AggregationUpdate) updates.getAllValues().get(1))
+                .toPipeline(Aggregation.DEFAULT_CONTEXT).get(0).get("$set", Document.class);
+        assertEquals(new Document("$subtract", List.of("$seatsFree", 2)), take.get("seatsFree"));
+        assertEquals(new Document("$subtract", List.of(new Document("$ifNull", List.of("$waitlisted", 0)), 2)),
+                take.get("waitlisted"));
+        verify(mailService, times(2)).sendMailAsync(any(Mail.class));
+    }
+
+    @Test
+    void testPromoteWaitlistInstantBookApproves() {
+        Ride ride = rideWithWaitlist(1, 1);
+        ride.setInstantBook(true);
+        mockTransaction();
+        when(mongoTemplate.findById("ride-123", Ride.class)).thenReturn(ride);
+        Booking entry = waiting("w1", 1);
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class))).thenReturn(List.of(entry));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(Booking.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        mockRideUpdate(rideWithWaitlist(0, 0));
+
+        bookingService.promoteWaitlist("ride-123");
+
+        assertEquals(BookingStatus.APPROVED, entry.getStatus());
+        verify(rideGeoIndex).update(any(Ride.class));
+        verify(mailService).sendMailAsync(any(Mail.class));
+    }
+
+    @Test
+    void testPromoteWaitlistNothingFits() {
+        mockTransaction();
+        when(mongoTemplate.findById("ride-123", Ride.class)).thenReturn(rideWithWaitlist(1, 1));
+        when(mongoTemplate.find(any(Query.class), eq(Booking.class))).thenReturn(List.of(waiting("w1", 2)));
+
+        bookingService.promoteWaitlist("ride-123");
+
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(Booking.class));
+        verify(mailService, never()).sendMailAsync(any(Mail.class));
+    }
 }
@@ -0,0 +1,57 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.mongodb.MongoException;
+
+public class CommitRetryingTransactionManagerTest {
+
+    private MongoException commitError(String label) {
+        MongoException e = new MongoException("commit failed");
+        e.addLabel(label);
+        return e;
+    }
+
+    @Test
+    void testRepeatsCommitWithUnknownResult() throws Exception {
+        AtomicInteger commits = new AtomicInteger();
+
+        CommitRetryingTransactionManager.commit(() -> {
+            if (commits.incrementAndGet() < 2) {
+                throw commitError(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL);
+            }
+        });
+
+        assertEquals(2, commits.get());
+    }
+
+    @Test
+    void testGivesUpAfterMaxAttempts() {
+        AtomicInteger commits = new AtomicInteger();
+
+        assertThrows(MongoException.class, () -> CommitRetryingTransactionManager.commit(() -> {
+            commits.incrementAndGet();
+            throw commitError(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL);
+        }));
+
+        assertEquals(CommitRetryingTransactionManager.MAX_COMMIT_ATTEMPTS, commits.get());
+    }
+
+    @Test
+    void testOtherErrorsAreNotRepeated() {
+        AtomicInteger commits = new AtomicInteger();
+
+        // Abgebrochene Transaktion: wiederholt OptimisticRetry mit dem ganzen Block
+        assertThrows(MongoException.class, () -> CommitRetryingTransactionManager.commit(() -> {
+            commits.incrementAndGet();
+            throw commitError(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+        }));
+
+        assertEquals(1, commits.get());
+    }
+}
@@ -0,0 +1,128 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+
+import ch.zhaw.shareway.model.GeocodedLocation;
+import ch.zhaw.shareway.repository.GeocodedLocationRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class GeocodingServiceTest {
+
+    @Mock
+    private GeocodedLocationRepository geocodedLocationRepository;
+
+    @InjectMocks
+    private GeocodingService geocodingService;
+
+    @Test
+    void testGazetteerLoaded() {
+        assertTrue(geocodingService.getLocalities().size() > 100);
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals("st gallen", GeocodingService.normalize(" St. Gallen "));
+        assertEquals("zurich hb", GeocodingService.normalize("Zürich HB"));
+        assertEquals("neuchatel", GeocodingService.normalize("Neuchâtel"));
+        assertEquals("", GeocodingService.normalize(null));
+    }
+
+    @Test
+    void testResolveNamesAliasesAndAddresses() {
+        assertEquals("Zürich", geocodingService.resolve("Zürich").getName());
+        assertEquals("Zürich", geocodingService.resolve("zuerich").getName());
+        assertEquals("Genève", geocodingService.resolve("Geneva").getName());
+        assertEquals("St. Gallen", geocodingService.resolve("St Gallen").getName());
+        assertEquals("Zürich", geocodingService.resolve("Zürich HB").getName());
+        assertEquals("Zürich", geocodingService.resolve("Bahnhofstrasse 1, 8001 Zürich").getName());
+        assertEquals("La Chaux-de-Fonds", geocodingService.resolve("La Chaux-de-Fonds, Switzerland").getName());
+        assertNull(geocodingService.resolve("Bernstrasse 5"));
+    }
+
+    @Test
+    void testGeocodeStoresGazetteerHit() {
+        when(geocodedLocationRepository.findById("bern bahnhof")).thenReturn(Optional.empty());
+
+        Optional<GeocodedLocation> result = geocodingService.geocode("Bern Bahnhof");
+
+        assertTrue(result.isPresent());
+        assertEquals("Bern", result.get().getName());
+        assertEquals("BE", result.get().getCanton());
+        assertEquals(7.4474, result.get().getPoint().getX(), 1e-9);
+        assertEquals(46.9480, result.get().getPoint().getY(), 1e-9);
+        verify(geocodedLocationRepository).save(result.get());
+    }
+
+    @Test
+    void testGeocodePrefersStoredEntry() {
+        GeocodedLocation stored = new GeocodedLocation("zurich hb", "Zürich HB", "ZH", new GeoJsonPoint(8.5402, 47.3782));
+        when(geocodedLocationRepository.findById("zurich hb")).thenReturn(Optional.of(stored));
+
+        assertEquals(stored, geocodingService.geocode("Zürich HB").get());
+        verify(geocodedLocationRepository, never()).save(any());
+    }
+
+    @Test
+    void testGeocodeUsesLruCache() {
+        when(geocodedLocationRepository.findById(anyString())).thenReturn(Optional.empty());
+
+        geocodingService.geocode("Luzern");
+        geocodingService.geocode("luzern");
+        geocodingService.geocode("Atlantis");
+        geocodingService.geocode("Atlantis");
+
+        verify(geocodedLocationRepository, times(1)).findById("luzern");
+        verify(geocodedLocationRepository, times(1)).findById("atlantis");
+        verify(geocodedLocationRepository, times(1)).save(any());
+    }
+
+    @Test
+    void testNotFoundExpires() {
+        Instant now = Instant.parse("2026-01-01T10:00:00Z");
+        geocodingService.clock = Clock.fixed(now, ZoneOffset.UTC);
+        GeocodedLocation added = new GeocodedLocation("atlantis", "Atlantis", "ZH", new GeoJsonPoint(8.5, 47.4));
+        when(geocodedLocationRepository.findById("atlantis"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(added));
+
+        assertFalse(geocodingService.geocode("Atlantis").isPresent());
+        geocodingService.clock = Clock.fixed(now.plus(GeocodingService.NOT_FOUND_TTL).minusSeconds(1), ZoneOffset.UTC);
+        assertFalse(geocodingService.geocode("Atlantis").isPresent());
+
+        // Inzwischen von Hand eingetragen
+        geocodingService.clock = Clock.fixed(now.plus(GeocodingService.NOT_FOUND_TTL), ZoneOffset.UTC);
+        assertEquals(added, geocodingService.geocode("Atlantis").get());
+        verify(geocodedLocationRepository, times(2)).findById("atlantis");
+    }
+
+    @Test
+    void testGeocodeWorksWithoutDatabase() {
+        when(geocodedLocationRepository.findById("thun")).thenThrow(new RuntimeException("no connection"));
+        when(geocodedLocationRepository.save(any())).thenThrow(new RuntimeException("no connection"));
+
+        assertEquals("Thun", geocodingService.geocode("Thun").get().getName());
+        assertFalse(geocodingService.geocode("  ").isPresent());
+        assertNull(geocodingService.toPoint("Atlantis"));
+    }
+}
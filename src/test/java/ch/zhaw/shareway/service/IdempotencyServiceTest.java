@@ -0,0 +1,292 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.IdempotencyRecord;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private IdempotencyService idempotencyService;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new IdempotencyService(mongoTemplate, mapper(), 2000);
+    }
+
+    // Booking enthält LocalDateTime, wie der ObjectMapper von Spring Boot
+    private ObjectMapper mapper() {
+        return JsonMapper.builder().findAndAddModules().build();
+    }
+
+    @AfterEach
+    void shutdown() {
+        callers.shutdownNow();
+    }
+
+    private ResponseEntity<?> book(AtomicInteger calls) {
+        calls.incrementAndGet();
+        Booking booking = new Booking("ride-1", "rider@test.com", 1);
+        booking.setId("booking-1");
+        return ResponseEntity.ok(booking);
+    }
+
+    private IdempotencyRecord stored(String request, Integer status, String body) {
+        IdempotencyRecord record = new IdempotencyRecord("rider@test.com:key-1", request);
+        record.setResponseStatus(status);
+        record.setResponseBody(body);
+        return record;
+    }
+
+    @Test
+    void testWithoutKeyRunsEveryTime() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute(null, "rider@test.com", "bookride|ride-1", () -> book(calls));
+        idempotencyService.execute(" ", "rider@test.com", "bookride|ride-1", () -> book(calls));
+
+        assertEquals(2, calls.get());
+        verify(mongoTemplate, never()).insert(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void testKeyTooLong() {
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<?> response = idempotencyService.execute("x".repeat(IdempotencyService.MAX_KEY_LENGTH + 1),
+                "rider@test.com", "bookride|ride-1", () -> book(calls));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void testRetryReplaysFromCache() {
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<?> first = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1",
+                () -> book(calls));
+        ResponseEntity<?> retry = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1",
+                () -> book(calls));
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(true, ((String) retry.getBody()).contains("\"id\":\"booking-1\""));
+        // Antwort wird für andere Instanzen gespeichert
+        verify(mongoTemplate).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void testKeysAreScopedPerUser() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1", () -> book(calls));
+        ResponseEntity<?> other = idempotencyService.execute("key-1", "other@test.com", "bookride|ride-1",
+                () -> book(calls));
+
+        assertEquals(2, calls.get());
+        assertNull(other.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testRetryReplaysFromMongo() {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("rider@test.com:key-1", IdempotencyRecord.class))
+                .thenReturn(stored("bookride|ride-1", 200, "{\"id\":\"booking-1\"}"));
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<?> retry = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1",
+                () -> book(calls));
+
+        assertEquals(0, calls.get());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals("{\"id\":\"booking-1\"}", retry.getBody());
+    }
+
+    @Test
+    void testKeyReusedForOtherRequest() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1", () -> book(calls));
+        ResponseEntity<?> reused = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-2",
+                () -> book(calls));
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, reused.getStatusCode());
+    }
+
+    @Test
+    void testEmptyResponseIsReplayed() {
+        AtomicInteger calls = new AtomicInteger();
+
+        idempotencyService.execute("key-1", "rider@test.com", "cancelbooking|b1", () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.badRequest().build();
+        });
+        ResponseEntity<?> retry = idempotencyService.execute("key-1", "rider@test.com", "cancelbooking|b1",
+                () -> book(calls));
+
+        assertEquals(1, calls.get());
+        assertEquals(HttpStatus.BAD_REQUEST, retry.getStatusCode());
+        assertNull(retry.getBody());
+    }
+
+    @Test
+    void testFailedRequestCanBeRetried() {
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class,
+                () -> idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1", () -> {
+                    throw new IllegalStateException("boom");
+                }));
+        ResponseEntity<?> retry = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1",
+                () -> book(calls));
+
+        // Eintrag wurde freigegeben, der zweite Versuch läuft wirklich
+        verify(mongoTemplate).remove(any(Query.class), eq(IdempotencyRecord.class));
+        assertEquals(1, calls.get());
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testConcurrentDuplicatesWaitForFirst() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        Future<ResponseEntity<?>> first = callers.submit(() -> idempotencyService.execute("key-1",
+                "rider@test.com", "bookride|ride-1", () -> {
+                    started.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return book(calls);
+                }));
+        started.await(5, TimeUnit.SECONDS);
+
+        List<Future<ResponseEntity<?>>> duplicates = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            duplicates.add(callers.submit(() -> idempotencyService.execute("key-1", "rider@test.com",
+                    "bookride|ride-1", () -> book(calls))));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals(HttpStatus.OK, first.get(5, TimeUnit.SECONDS).getStatusCode());
+        for (Future<ResponseEntity<?>> duplicate : duplicates) {
+            ResponseEntity<?> response = duplicate.get(5, TimeUnit.SECONDS);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals("true", response.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testInProgressOnOtherInstanceTimesOut() {
+        idempotencyService = new IdempotencyService(mongoTemplate, mapper(), 150);
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("rider@test.com:key-1", IdempotencyRecord.class))
+                .thenReturn(stored("bookride|ride-1", null, null));
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                eq(IdempotencyRecord.class))).thenReturn(null);
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<?> response = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1",
+                () -> book(calls));
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void testStaleInProgressIsTakenOver() {
+        IdempotencyRecord stale = stored("bookride|ride-1", null, null);
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("rider@test.com:key-1", IdempotencyRecord.class)).thenReturn(stale);
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                eq(IdempotencyRecord.class))).thenReturn(stale);
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<?> response = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1",
+                () -> book(calls));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testStaleInProgressOfOtherRequestIsNotTakenOver() {
+        when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("dup"));
+        when(mongoTemplate.findById("rider@test.com:key-1", IdempotencyRecord.class))
+                .thenReturn(stored("bookride|ride-2", null, null));
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<?> response = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1",
+                () -> book(calls));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+        assertEquals(0, calls.get());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                eq(IdempotencyRecord.class));
+    }
+
+    @Test
+    void testExpiredCacheEntryIsNotReplayed() {
+        AtomicInteger calls = new AtomicInteger();
+        idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1", () -> book(calls));
+        ArgumentCaptor<IdempotencyRecord> record = ArgumentCaptor.forClass(IdempotencyRecord.class);
+        verify(mongoTemplate).save(record.capture());
+
+        // In MongoDB per TTL schon gelöscht
+        record.getValue().setCreatedAt(LocalDateTime.now().minusHours(IdempotencyService.TTL_HOURS + 1));
+        ResponseEntity<?> retry = idempotencyService.execute("key-1", "rider@test.com", "bookride|ride-1",
+                () -> book(calls));
+
+        assertEquals(2, calls.get());
+        assertNull(retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+}
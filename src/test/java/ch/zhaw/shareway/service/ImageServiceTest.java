@@ -0,0 +1,203 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.InputStream;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+import com.mongodb.client.result.UpdateResult;
+
+import ch.zhaw.shareway.model.User;
+
+@ExtendWith(MockitoExtension.class)
+public class ImageServiceTest {
+
+    private static final String PNG = "data:image/png;base64,iVBORw0KGgo=";
+
+    @Mock
+    private GridFsTemplate gridFsTemplate;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private ImageService imageService;
+
+    private final ObjectId storedId = new ObjectId();
+
+    @BeforeEach
+    void setUp() {
+        imageService = new ImageService(gridFsTemplate, mongoTemplate, 1024);
+    }
+
+    @Test
+    void testStoreDataUrl() {
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenReturn(storedId);
+
+        String id = imageService.store(PNG, "user@test.com", ImageService.PROFILE);
+
+        assertEquals(storedId.toHexString(), id);
+        ArgumentCaptor<Document> metadata = ArgumentCaptor.forClass(Document.class);
+        verify(gridFsTemplate).store(any(InputStream.class), eq("profile-user@test.com"), eq("image/png"),
+                metadata.capture());
+        assertEquals("user@test.com", metadata.getValue().getString("owner"));
+        assertEquals(ImageService.PROFILE, metadata.getValue().getString("kind"));
+    }
+
+    @Test
+    void testStoreRejectsInvalidImages() {
+        // Kein Data-URL, SVG, kaputtes Base64, zu gross
+        assertThrows(IllegalArgumentException.class,
+                () -> imageService.store("base64imagedata", "user@test.com", ImageService.PROFILE));
+        assertThrows(IllegalArgumentException.class,
+                () -> imageService.store("data:image/svg+xml;base64,PHN2Zz4=", "user@test.com", ImageService.PROFILE));
+        assertThrows(IllegalArgumentException.class,
+                () -> imageService.store("data:image/png;base64,%%%", "user@test.com", ImageService.PROFILE));
+        assertThrows(IllegalArgumentException.class,
+                () -> imageService.store("data:image/png;base64," + "A".repeat(2000), "user@test.com",
+                        ImageService.PROFILE));
+        verifyNoInteractions(gridFsTemplate);
+    }
+
+    @Test
+    void testUpdateKeepsCurrentImage() {
+        String currentId = storedId.toHexString();
+
+        assertEquals(currentId, imageService.update(currentId, User.imageUrl(currentId), "user@test.com",
+                ImageService.PROFILE));
+        assertNull(imageService.update(currentId, "", "user@test.com", ImageService.PROFILE));
+        assertNull(imageService.update(currentId, null, "user@test.com", ImageService.PROFILE));
+        verifyNoInteractions(gridFsTemplate);
+    }
+
+    @Test
+    void testUpdateStoresNewUpload() {
+        ObjectId newId = new ObjectId();
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenReturn(newId);
+
+        assertEquals(newId.toHexString(),
+                imageService.update(storedId.toHexString(), PNG, "user@test.com", ImageService.PROFILE));
+    }
+
+    @Test
+    void testDeleteReplaced() {
+        imageService.deleteReplaced(storedId.toHexString(), storedId.toHexString());
+        imageService.deleteReplaced(null, storedId.toHexString());
+        verifyNoInteractions(gridFsTemplate);
+
+        imageService.deleteReplaced(storedId.toHexString(), null);
+        verify(gridFsTemplate).delete(any(Query.class));
+    }
+
+    @Test
+    void testFindUnknownOrMalformedId() {
+        assertTrue(imageService.find("not-an-object-id").isEmpty());
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(null);
+        assertFalse(imageService.find(storedId.toHexString()).isPresent());
+    }
+
+    @Test
+    void testMigrateMovesInlineImages() {
+        ObjectId userId = new ObjectId();
+        Document user = new Document("_id", userId).append("email", "user@test.com")
+                .append("profileImage", PNG)
+                .append("licenseImageFront", "");
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("users"))).thenReturn(Stream.of(user));
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenReturn(storedId);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq("users")))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        imageService.migrateUserImages();
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), updates.capture(),
+                eq("users"));
+        // Bild nach GridFS, leeres Feld nur entfernt
+        Document moved = updates.getAllValues().stream()
+                .map(Update::getUpdateObject)
+                .filter(update -> update.get("$set") != null)
+                .findFirst().orElseThrow();
+        assertEquals(storedId.toHexString(), ((Document) moved.get("$set")).getString("profileImageId"));
+        assertTrue(((Document) moved.get("$unset")).containsKey("profileImage"));
+        verify(gridFsTemplate, never()).delete(any(Query.class));
+    }
+
+    @Test
+    void testMigrateAlreadyMovedByOtherInstance() {
+        Document user = new Document("_id", new ObjectId()).append("email", "user@test.com")
+                .append("profileImage", PNG);
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("users"))).thenReturn(Stream.of(user));
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenReturn(storedId);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq("users")))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        imageService.migrateUserImages();
+
+        // Eigene Kopie wieder löschen
+        verify(gridFsTemplate).delete(any(Query.class));
+    }
+
+    @Test
+    void testMigrateIgnoresUploadLimits() {
+        // SVG und grösser als max-bytes (1024): wird trotzdem verschoben, nicht gelöscht
+        String svg = "data:image/svg+xml;base64," + "PHN2".repeat(500);
+        Document user = new Document("_id", new ObjectId()).append("email", "user@test.com")
+                .append("licenseImageFront", svg);
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("users"))).thenReturn(Stream.of(user));
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenReturn(storedId);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq("users")))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        imageService.migrateUserImages();
+
+        verify(gridFsTemplate).store(any(InputStream.class), eq("licenseFront-user@test.com"), eq("image/svg+xml"),
+                any(Document.class));
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq("users"));
+        assertEquals(storedId.toHexString(),
+                ((Document) update.getValue().getUpdateObject().get("$set")).getString("licenseImageFrontId"));
+    }
+
+    @Test
+    void testMigrateKeepsValuesThatCannotBeMoved() {
+        Document user = new Document("_id", new ObjectId()).append("email", "user@test.com")
+                .append("licenseImageFront", "base64imagedata")
+                .append("licenseImageBack", 42);
+        when(mongoTemplate.stream(any(Query.class), eq(Document.class), eq("users"))).thenReturn(Stream.of(user));
+
+        imageService.migrateUserImages();
+
+        // Kein $unset: die Daten bleiben im Dokument
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq("users"));
+        verifyNoInteractions(gridFsTemplate);
+    }
+}
@@ -0,0 +1,130 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.User;
+
+@ExtendWith(MockitoExtension.class)
+public class IndexVerifierTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoConverter mongoConverter;
+
+    @Mock
+    private IndexOperations indexOps;
+
+    @InjectMocks
+    private IndexVerifier indexVerifier;
+
+    @BeforeEach
+    void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        when(mongoTemplate.getConverter()).thenReturn(mongoConverter);
+        doReturn(mappingContext).when(mongoConverter).getMappingContext();
+    }
+
+    private IndexInfo index(String name) {
+        return IndexInfo.indexInfoOf(new Document("name", name).append("key", new Document(name, 1)));
+    }
+
+    private void mockCollection(Class<?> type, String collection, List<IndexInfo> existing,
+            List<Document> stats) {
+        when(mongoTemplate.getCollectionName(type)).thenReturn(collection);
+        when(mongoTemplate.indexOps(type)).thenReturn(indexOps);
+        when(indexOps.getIndexInfo()).thenReturn(existing);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(collection), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(stats, new Document()));
+    }
+
+    private Document stats(String name, long ops) {
+        return new Document("name", name).append("accesses", new Document("ops", ops));
+    }
+
+    @Test
+    void testCreatesMissingDeclaredIndexes() {
+        mockCollection(Booking.class, "bookings", new ArrayList<>(List.of(index("_id_"))), List.of(
+                stats("_id_", 0), stats("ride_rider_current", 0), stats("ride_waitlist", 0),
+                stats("ride_status", 0), stats("rider_status", 0)));
+
+        IndexVerifier.Report report = indexVerifier.verify(Booking.class);
+
+        verify(indexOps, times(4)).createIndex(any(IndexDefinition.class));
+        assertTrue(report.isOk()); // neu erstellte Indexes zählen nicht als ungenutzt
+    }
+
+    @Test
+    void testReportsUndeclaredAndUnusedIndexes() {
+        mockCollection(Booking.class, "bookings",
+                List.of(index("_id_"), index("ride_rider_current"), index("ride_waitlist"), index("ride_status"),
+                        index("rider_status"), index("legacy")),
+                List.of(stats("_id_", 0), stats("ride_rider_current", 12), stats("ride_waitlist", 2),
+                        stats("ride_status", 4), stats("rider_status", 0), stats("legacy", 3)));
+
+        IndexVerifier.Report report = indexVerifier.verify(Booking.class);
+
+        verify(indexOps, never()).createIndex(any(IndexDefinition.class));
+        assertTrue(report.getMissing().isEmpty());
+        assertEquals(List.of("legacy"), report.getUndeclared());
+        assertEquals(List.of("rider_status"), report.getUnused());
+    }
+
+    @Test
+    void testFailsWhenUniqueBookingIndexCannotBeCreated() {
+        when(mongoTemplate.getCollectionName(Booking.class)).thenReturn("bookings");
+        when(mongoTemplate.indexOps(Booking.class)).thenReturn(indexOps);
+        when(indexOps.getIndexInfo()).thenReturn(List.of(index("_id_"), index("ride_waitlist"),
+                index("ride_status"), index("rider_status")));
+        doThrow(new RuntimeException("E11000 duplicate key")).when(indexOps).createIndex(any(IndexDefinition.class));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> indexVerifier.verify(Booking.class));
+
+        assertTrue(e.getMessage().contains("ride_rider_current"));
+    }
+
+    @Test
+    void testReportsIndexThatCannotBeCreated() {
+        mockCollection(User.class, "users", new ArrayList<>(List.of(index("_id_"), index("auth0Id"),
+                index("verificationStatus"))), List.of());
+        doThrow(new RuntimeException("E11000 duplicate key")).when(indexOps).createIndex(any(IndexDefinition.class));
+
+        IndexVerifier.Report report = indexVerifier.verify(User.class);
+
+        assertEquals(List.of("email"), report.getMissing());
+    }
+}
@@ -0,0 +1,148 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import ch.zhaw.shareway.model.LocationSuggestion;
+
+@ExtendWith(MockitoExtension.class)
+public class LocationSuggestIndexTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    // Echter Gazetteer, ohne Datenbank
+    @Spy
+    private GeocodingService geocodingService = new GeocodingService();
+
+    @InjectMocks
+    private LocationSuggestIndex locationSuggestIndex;
+
+    @BeforeEach
+    void setUp() {
+        locationSuggestIndex.rebuild(Map.of(
+                "Zürich HB", 12,
+                "Zürich", 5,
+                "Zug", 2,
+                "Bahnhofplatz, Winterthur", 1));
+    }
+
+    private List<String> names(List<LocationSuggestion> suggestions) {
+        return suggestions.stream().map(LocationSuggestion::getName).toList();
+    }
+
+    @Test
+    void testContainsGazetteerAndRideLocations() {
+        // "Zürich" ist bereits im Gazetteer
+        assertEquals(geocodingService.getLocalities().size() + 2, locationSuggestIndex.size());
+        assertTrue(locationSuggestIndex.isReady());
+    }
+
+    @Test
+    void testRankedByUses() {
+        List<LocationSuggestion> result = locationSuggestIndex.suggest("zu", 3);
+
+        assertEquals(List.of("Zürich HB", "Zürich", "Zug"), names(result));
+        assertEquals(12, result.get(0).getUses());
+    }
+
+    @Test
+    void testMatchesWordsAliasesAndDiacritics() {
+        assertEquals("St. Gallen", names(locationSuggestIndex.suggest("gallen", 1)).get(0));
+        assertEquals("Genève", names(locationSuggestIndex.suggest("Genf", 1)).get(0));
+        assertEquals("Neuchâtel", names(locationSuggestIndex.suggest("neuch", 1)).get(0));
+        assertEquals("Bahnhofplatz, Winterthur", names(locationSuggestIndex.suggest("bahnhofpl", 5)).get(0));
+        assertTrue(locationSuggestIndex.suggest("xyz", 5).isEmpty());
+        assertTrue(locationSuggestIndex.suggest(" ", 5).isEmpty());
+    }
+
+    @Test
+    void testAliasesDoNotDuplicateEntries() {
+        // "Zürich" passt über Name und mehrere Aliase
+        List<String> result = names(locationSuggestIndex.suggest("z", 50));
+        assertEquals(result.size(), result.stream().distinct().count());
+    }
+
+    @Test
+    void testSuggestionsCarryCoordinates() {
+        LocationSuggestion bern = locationSuggestIndex.suggest("bern", 1).get(0);
+        assertEquals(46.9480, bern.getLat(), 1e-9);
+        assertEquals(7.4474, bern.getLng(), 1e-9);
+
+        // Ride-Ort mit Ortschaft: Koordinaten der Ortschaft
+        LocationSuggestion hb = locationSuggestIndex.suggest("zurich hb", 1).get(0);
+        assertEquals(47.3769, hb.getLat(), 1e-9);
+
+        locationSuggestIndex.add("Irgendwo im Nirgendwo");
+        LocationSuggestion unknown = locationSuggestIndex.suggest("irgendwo", 1).get(0);
+        assertNull(unknown.getLat());
+    }
+
+    @Test
+    void testIncrementalAddAndRemove() {
+        for (int i = 0; i < 20; i++) {
+            locationSuggestIndex.add("Zumikon Dorf");
+        }
+        locationSuggestIndex.add("Zürich");
+
+        assertEquals(List.of("Zumikon Dorf", "Zürich HB"), names(locationSuggestIndex.suggest("zu", 2)));
+        assertEquals(List.of(12, 6), locationSuggestIndex.suggest("zürich", 2).stream()
+                .map(LocationSuggestion::getUses).toList());
+
+        for (int i = 0; i < 20; i++) {
+            locationSuggestIndex.remove("zumikon dorf");
+        }
+        locationSuggestIndex.remove("unknown");
+
+        assertEquals(List.of("Zürich HB", "Zürich"), names(locationSuggestIndex.suggest("zu", 2)));
+        // Kein Ride mehr: wird nicht mehr vorgeschlagen
+        assertTrue(locationSuggestIndex.suggest("zumi", 1).isEmpty());
+    }
+
+    @Test
+    void testUnusedGazetteerLocationsStaySuggested() {
+        locationSuggestIndex.add("Bern");
+        locationSuggestIndex.remove("Bern");
+
+        assertEquals("Bern", names(locationSuggestIndex.suggest("bern", 1)).get(0));
+    }
+
+    @Test
+    void testCompactDropsUnusedRideLocations() {
+        int size = locationSuggestIndex.size();
+        locationSuggestIndex.add("Zumikon Dorf");
+        locationSuggestIndex.remove("Zumikon Dorf");
+        assertEquals(size + 1, locationSuggestIndex.size());
+
+        locationSuggestIndex.compact();
+
+        assertEquals(size, locationSuggestIndex.size());
+        assertEquals(List.of(12, 5), locationSuggestIndex.suggest("zürich", 2).stream()
+                .map(LocationSuggestion::getUses).toList());
+        assertEquals("Bahnhofplatz, Winterthur", names(locationSuggestIndex.suggest("bahnhofpl", 5)).get(0));
+    }
+
+    @Test
+    void testManyIncrementalInsertsStaySorted() {
+        for (int i = 999; i >= 0; i--) {
+            locationSuggestIndex.add("Teststrasse " + i + ", Bern");
+        }
+
+        assertEquals(111, locationSuggestIndex.suggest("teststrasse 1", 200).size());
+        assertEquals(1, locationSuggestIndex.suggest("teststrasse 999", 200).size());
+        assertEquals(1000, locationSuggestIndex.suggest("teststr", 2000).size());
+    }
+}
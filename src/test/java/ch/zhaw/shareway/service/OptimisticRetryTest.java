@@ -0,0 +1,195 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.transaction.TransactionSystemException;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class OptimisticRetryTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private OptimisticRetry optimisticRetry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        optimisticRetry = new OptimisticRetry(meterRegistry);
+    }
+
+    /**
+     * A WriteConflict as the server reports it, translated like in
+     * MongoTemplate (becomes a DataIntegrityViolationException)
+     */
+    static RuntimeException writeConflict() {
+        BsonDocument response = new BsonDocument("ok", new BsonDouble(0))
+                .append("code", new BsonInt32(OptimisticRetry.WRITE_CONFLICT))
+                .append("codeName", new BsonString("WriteConflict"))
+                .append("errmsg", new BsonString("Write conflict during plan execution"))
+                .append("errorLabels", new BsonArray(List.of(
+                        new BsonString(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL))));
+        MongoCommandException driverException = new MongoCommandException(response, new ServerAddress());
+        return new MongoExceptionTranslator().translateExceptionIfPossible(driverException);
+    }
+
+    private double count(String name, String operation) {
+        var counter = meterRegistry.find(name).tag("operation", operation).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    @Test
+    void testRunWithoutConflict() {
+        String result = optimisticRetry.run("test.op", () -> "ok");
+
+        assertEquals("ok", result);
+        assertEquals(1, count("shareway.optimistic.calls", "test.op"));
+        assertEquals(0, count("shareway.optimistic.conflicts", "test.op"));
+    }
+
+    @Test
+    void testRunRetriesAfterConflict() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = optimisticRetry.run("test.op", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(1, count("shareway.optimistic.calls", "test.op"));
+        assertEquals(2, count("shareway.optimistic.conflicts", "test.op"));
+        assertEquals(0, count("shareway.optimistic.exhausted", "test.op"));
+    }
+
+    @Test
+    void testRunGivesUpAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(OptimisticLockingFailureException.class, () -> optimisticRetry.run("test.op", () -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("conflict");
+        }));
+
+        assertEquals(OptimisticRetry.MAX_ATTEMPTS, attempts.get());
+        assertEquals(OptimisticRetry.MAX_ATTEMPTS, count("shareway.optimistic.conflicts", "test.op"));
+        assertEquals(1, count("shareway.optimistic.exhausted", "test.op"));
+    }
+
+    @Test
+    void testRunDoesNotRetryOtherExceptions() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(IllegalStateException.class, () -> optimisticRetry.run("test.op", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, count("shareway.optimistic.conflicts", "test.op"));
+    }
+
+    @Test
+    void testRunRetriesTransactionWriteConflict() {
+        AtomicInteger attempts = new AtomicInteger();
+        RuntimeException conflict = writeConflict();
+
+        String result = optimisticRetry.run("test.tx", () -> {
+            if (attempts.incrementAndGet() < 2) {
+                throw conflict;
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(1, count("shareway.optimistic.conflicts", "test.tx"));
+    }
+
+    @Test
+    void testRunRetriesTransientCommitError() {
+        AtomicInteger attempts = new AtomicInteger();
+        // So meldet MongoTransactionManager einen abgebrochenen Commit
+        MongoException commitError = new MongoException("commit failed");
+        commitError.addLabel(MongoException.TRANSIENT_TRANSACTION_ERROR_LABEL);
+
+        String result = optimisticRetry.run("test.tx", () -> {
+            if (attempts.incrementAndGet() < 2) {
+                throw new TransactionSystemException("Could not commit Mongo transaction", commitError);
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void testRunDoesNotRepeatCommitWithUnknownResult() {
+        AtomicInteger attempts = new AtomicInteger();
+        // Commit kann durchgegangen sein: der Block darf nicht nochmals laufen
+        MongoException commitError = new MongoException("commit result unknown");
+        commitError.addLabel(MongoException.UNKNOWN_TRANSACTION_COMMIT_RESULT_LABEL);
+
+        assertThrows(TransactionSystemException.class, () -> optimisticRetry.run("test.tx", () -> {
+            attempts.incrementAndGet();
+            throw new TransactionSystemException("Could not commit Mongo transaction", commitError);
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void testIsConflict() {
+        // Kein TransientDataAccessException: nur über die Ursache erkennbar
+        assertInstanceOf(DataIntegrityViolationException.class, writeConflict());
+        assertTrue(OptimisticRetry.isConflict(writeConflict()));
+        assertTrue(OptimisticRetry.isConflict(new OptimisticLockingFailureException("version")));
+        assertFalse(OptimisticRetry.isConflict(new MongoException(11000, "duplicate key")));
+        assertFalse(OptimisticRetry.isConflict(new IllegalStateException("boom")));
+    }
+
+    @Test
+    void testRunDoesNotRetryOtherTransientErrors() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(QueryTimeoutException.class, () -> optimisticRetry.run("test.op", () -> {
+            attempts.incrementAndGet();
+            throw new QueryTimeoutException("timeout");
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void testBackoffIsBounded() {
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            long backoff = OptimisticRetry.backoffMillis(attempt);
+            assertTrue(backoff >= OptimisticRetry.BASE_BACKOFF_MS / 2);
+            assertTrue(backoff <= OptimisticRetry.MAX_BACKOFF_MS);
+        }
+    }
+}
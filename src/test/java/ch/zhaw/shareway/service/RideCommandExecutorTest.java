@@ -0,0 +1,272 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RideCommandExecutorTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+    private RideCommandExecutor executor;
+
+    @AfterEach
+    void shutdown() {
+        callers.shutdownNow();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private RideCommandExecutor create(int lanes, boolean coalesce) {
+        executor = new RideCommandExecutor(new SimpleMeterRegistry(), lanes, coalesce);
+        return executor;
+    }
+
+    // Blockiert die Lane der Ride, bis latch freigegeben wird
+    private Future<Object> blockLane(String rideId, CountDownLatch started, CountDownLatch latch) {
+        return callers.submit(() -> executor.execute(rideId, () -> {
+            started.countDown();
+            await(latch);
+            return null;
+        }));
+    }
+
+    private void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitUntilQueued(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && executor.queued() < count; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, executor.queued());
+    }
+
+    @Test
+    void testCommandsOfOneRideNeverOverlap() throws Exception {
+        create(4, false);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(callers.submit(() -> executor.execute("ride-1", () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.yield();
+                return running.decrementAndGet();
+            })));
+        }
+        for (Future<Integer> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void testCommandsRunInSubmissionOrder() throws Exception {
+        create(2, false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Object> blocker = blockLane("ride-1", started, release);
+        await(started);
+
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int n = i;
+            futures.add(callers.submit(() -> executor.execute("ride-1", () -> order.add(n))));
+            waitUntilQueued(i + 1);
+        }
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        for (Future<Object> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4), order);
+    }
+
+    @Test
+    void testOtherLanesRunInParallel() throws Exception {
+        create(2, false);
+        String other = executor.laneOf("ride-a") == executor.laneOf("ride-b") ? "ride-c" : "ride-b";
+        assertNotEquals(executor.laneOf("ride-a"), executor.laneOf(other));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Object> blocker = blockLane("ride-a", started, release);
+        await(started);
+
+        // ride-a ist blockiert, die andere Lane läuft trotzdem
+        assertEquals("done", executor.execute(other, () -> "done"));
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testExceptionReachesCaller() {
+        create(1, false);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> executor.execute("ride-1", () -> {
+                    throw new IllegalArgumentException("boom");
+                }));
+
+        assertEquals("boom", e.getMessage());
+        assertEquals("ok", executor.execute("ride-1", () -> "ok"));
+    }
+
+    @Test
+    void testTimedOutCommandIsNotRun() throws Exception {
+        create(1, false);
+        executor.timeout = Duration.ofMillis(100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Der Blocker läuft länger als das Timeout, bekommt als laufender Befehl aber sein Ergebnis
+        Future<Object> blocker = blockLane("ride-1", started, release);
+        await(started);
+
+        AtomicInteger runs = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> executor.execute("ride-1", runs::incrementAndGet));
+
+        release.countDown();
+        assertNull(blocker.get(5, TimeUnit.SECONDS));
+        // Nach dem Timeout nie mehr ausgeführt
+        assertEquals("after", executor.execute("ride-1", () -> "after"));
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    void testLaneCountMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> create(0, false));
+    }
+
+    @Test
+    void testNestedCommandRunsInline() {
+        create(1, false);
+
+        String result = executor.execute("ride-1", () -> executor.execute("ride-2", () -> "nested"));
+
+        assertEquals("nested", result);
+    }
+
+    @Test
+    void testCoalesceMergesQueuedCommandsOfSameKind() throws Exception {
+        create(1, true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Object> blocker = blockLane("ride-1", started, release);
+        await(started);
+
+        AtomicInteger singles = new AtomicInteger();
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        List<Future<String>> futures = new ArrayList<>();
+        for (String id : List.of("b1", "b2", "b3")) {
+            futures.add(callers.submit(() -> executor.execute("ride-1", "approve", id,
+                    input -> {
+                        singles.incrementAndGet();
+                        return input.toUpperCase();
+                    },
+                    inputs -> {
+                        batches.add(inputs);
+                        // b3 passt nicht mehr: fehlt im Ergebnis
+                        return inputs.stream().filter(input -> !input.equals("b3"))
+                                .collect(Collectors.toMap(input -> input, String::toUpperCase));
+                    })));
+        }
+        waitUntilQueued(3);
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+
+        assertEquals("B1", futures.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals("B2", futures.get(1).get(5, TimeUnit.SECONDS));
+        assertNull(futures.get(2).get(5, TimeUnit.SECONDS));
+        assertEquals(1, batches.size());
+        assertEquals(Set.of("b1", "b2", "b3"), Set.copyOf(batches.get(0)));
+        assertEquals(0, singles.get());
+    }
+
+    @Test
+    void testCoalesceKeepsOrderAcrossOtherKinds() throws Exception {
+        create(1, true);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Object> blocker = blockLane("ride-1", started, release);
+        await(started);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<Object>> futures = new ArrayList<>();
+        // approve, cancel, approve: die Approvals dürfen nicht über den Cancel hinweg zusammengefasst werden
+        futures.add(callers.submit(() -> mergeable("b1", order)));
+        waitUntilQueued(1);
+        futures.add(callers.submit(() -> executor.execute("ride-1", () -> order.add("cancel"))));
+        waitUntilQueued(2);
+        futures.add(callers.submit(() -> mergeable("b2", order)));
+        waitUntilQueued(3);
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        for (Future<Object> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(List.of("single:b1", "cancel", "single:b2"), order);
+    }
+
+    private Object mergeable(String id, List<String> order) {
+        return executor.execute("ride-1", "approve", id,
+                input -> order.add("single:" + input),
+                inputs -> {
+                    order.add("batch:" + inputs);
+                    return Map.of();
+                });
+    }
+
+    @Test
+    void testWithoutCoalesceEachCommandRunsAlone() throws Exception {
+        create(1, false);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Object> blocker = blockLane("ride-1", started, release);
+        await(started);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<Object>> futures = new ArrayList<>();
+        futures.add(callers.submit(() -> mergeable("b1", order)));
+        futures.add(callers.submit(() -> mergeable("b2", order)));
+        waitUntilQueued(2);
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        for (Future<Object> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(2, order.size());
+        assertTrue(order.stream().allMatch(entry -> entry.startsWith("single:")));
+    }
+}
@@ -0,0 +1,115 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.repository.RideRepository;
+
+/**
+ * Compares the in-memory geo index with the MongoDB $geoNear path.
+ * Seeds synthetic rides into the configured database, so it only runs with
+ * -Dbenchmark=true (e.g. mvn test -Dtest=RideGeoIndexBenchmarkTest -Dbenchmark=true)
+ */
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class RideGeoIndexBenchmarkTest {
+
+    private static final String DRIVER = "benchmark-driver@test.com";
+    private static final int RIDES = 5000;
+    private static final int QUERIES = 500;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private RideGeoIndex rideGeoIndex;
+
+    private final Random random = new Random(42);
+
+    private final List<double[]> queries = new ArrayList<>();
+
+    private List<Ride> seededRides = new ArrayList<>();
+
+    @BeforeAll
+    void seed() {
+        List<Ride> rides = new ArrayList<>();
+        for (int i = 0; i < RIDES; i++) {
+            Ride ride = new Ride(DRIVER, "benchmark-vehicle", "BENCH-START-" + i, "BENCH-END-" + i,
+                    LocalDateTime.now().plusDays(1), 20.0, 3, 3);
+            ride.setStatus(RideStatus.OPEN);
+            ride.setRouteRadiusKm(5.0 + random.nextInt(20));
+            ride.setStartPoint(randomSwissPoint());
+            ride.setEndPoint(randomSwissPoint());
+            rides.add(ride);
+        }
+        seededRides = rideRepository.saveAll(rides);
+        rideGeoIndex.load();
+
+        for (int i = 0; i < QUERIES; i++) {
+            GeoJsonPoint from = randomSwissPoint();
+            GeoJsonPoint to = randomSwissPoint();
+            queries.add(new double[] { from.getY(), from.getX(), to.getY(), to.getX() });
+        }
+    }
+
+    @AfterAll
+    void cleanup() {
+        seededRides.forEach(r -> rideGeoIndex.remove(r.getId()));
+        rideRepository.deleteAll(seededRides);
+    }
+
+    @Test
+    void compareIndexWithMongo() {
+        long mongoNanos = 0;
+        long indexNanos = 0;
+
+        for (double[] q : queries) {
+            long start = System.nanoTime();
+            List<Ride> mongoResult = rideService.findRidesNearInMongo(q[0], q[1], q[2], q[3], 100);
+            mongoNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<String> indexResult = rideGeoIndex.findRideIdsNear(q[0], q[1], q[2], q[3], 100);
+            indexNanos += System.nanoTime() - start;
+
+            // Gleiche Treffer (Index-Distanz ist eine Näherung, Grenzfälle ausgenommen)
+            Set<String> mongoIds = new HashSet<>();
+            mongoResult.forEach(r -> mongoIds.add(r.getId()));
+            Set<String> indexIds = new HashSet<>(indexResult);
+            mongoIds.retainAll(indexIds);
+            assertTrue(indexIds.size() - mongoIds.size() <= 1);
+        }
+
+        System.out.printf("Geo benchmark (%d rides, %d queries)%n", RIDES, QUERIES);
+        System.out.printf("  MongoDB $geoNear: %8.3f ms/query%n", mongoNanos / 1e6 / QUERIES);
+        System.out.printf("  RideGeoIndex:     %8.3f ms/query%n", indexNanos / 1e6 / QUERIES);
+    }
+
+    // Bounding Box Schweiz
+    private GeoJsonPoint randomSwissPoint() {
+        double lat = 45.9 + random.nextDouble() * 1.8;
+        double lng = 6.0 + random.nextDouble() * 4.4;
+        return new GeoJsonPoint(lng, lat);
+    }
+}
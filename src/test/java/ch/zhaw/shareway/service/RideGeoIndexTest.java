@@ -0,0 +1,159 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.repository.RideRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class RideGeoIndexTest {
+
+    // Zürich HB, Bern, Basel, Winterthur
+    private static final double ZH_LAT = 47.3779, ZH_LNG = 8.5403;
+    private static final double BE_LAT = 46.9490, BE_LNG = 7.4395;
+    private static final double BS_LAT = 47.5596, BS_LNG = 7.5886;
+    private static final double WT_LAT = 47.5001, WT_LNG = 8.7237;
+
+    @Mock
+    private RideRepository rideRepository;
+
+    @InjectMocks
+    private RideGeoIndex rideGeoIndex;
+
+    @BeforeEach
+    void setUp() {
+        rideGeoIndex.rebuild(List.of());
+    }
+
+    private Ride createRide(String id, double startLat, double startLng, double endLat, double endLng,
+            double radiusKm) {
+        Ride ride = new Ride();
+        ride.setId(id);
+        ride.setStatus(RideStatus.OPEN);
+        ride.setRouteRadiusKm(radiusKm);
+        ride.setStartPoint(new GeoJsonPoint(startLng, startLat));
+        ride.setEndPoint(new GeoJsonPoint(endLng, endLat));
+        return ride;
+    }
+
+    @Test
+    void testLoadFromRepository() {
+        when(rideRepository.findByStatus(RideStatus.OPEN)).thenReturn(List.of(
+                createRide("zh-be", ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 5.0),
+                new Ride())); // ohne Koordinaten
+
+        rideGeoIndex.load();
+
+        assertTrue(rideGeoIndex.isReady());
+        assertEquals(1, rideGeoIndex.size());
+    }
+
+    @Test
+    void testFindRideIdsNearMatchesStartAndEnd() {
+        rideGeoIndex.update(createRide("zh-be", ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 5.0));
+        rideGeoIndex.update(createRide("zh-bs", ZH_LAT, ZH_LNG, BS_LAT, BS_LNG, 5.0));
+
+        List<String> result = rideGeoIndex.findRideIdsNear(47.39, 8.53, 46.96, 7.45, 10);
+
+        assertEquals(List.of("zh-be"), result);
+    }
+
+    @Test
+    void testFindRideIdsNearHonorsRideRadius() {
+        // Winterthur ist ca. 20 km von Zürich HB entfernt
+        rideGeoIndex.update(createRide("small", ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 5.0));
+        rideGeoIndex.update(createRide("large", ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 25.0));
+
+        List<String> result = rideGeoIndex.findRideIdsNear(WT_LAT, WT_LNG, BE_LAT, BE_LNG, 10);
+
+        assertEquals(List.of("large"), result);
+    }
+
+    @Test
+    void testFindRideIdsNearSortedByStartDistanceAndLimited() {
+        rideGeoIndex.update(createRide("far", 47.40, 8.56, BE_LAT, BE_LNG, 10.0));
+        rideGeoIndex.update(createRide("near", 47.378, 8.541, BE_LAT, BE_LNG, 10.0));
+        rideGeoIndex.update(createRide("middle", 47.39, 8.55, BE_LAT, BE_LNG, 10.0));
+
+        assertEquals(List.of("near", "middle", "far"),
+                rideGeoIndex.findRideIdsNear(ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 10));
+        assertEquals(List.of("near", "middle"),
+                rideGeoIndex.findRideIdsNear(ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 2));
+    }
+
+    @Test
+    void testUpdateRemovesFullAndCompletedRides() {
+        Ride ride = createRide("zh-be", ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 5.0);
+        rideGeoIndex.update(ride);
+
+        ride.setStatus(RideStatus.FULL);
+        rideGeoIndex.update(ride);
+        assertTrue(rideGeoIndex.findRideIdsNear(ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 10).isEmpty());
+
+        ride.setStatus(RideStatus.OPEN);
+        rideGeoIndex.update(ride);
+        assertEquals(List.of("zh-be"), rideGeoIndex.findRideIdsNear(ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 10));
+
+        ride.setStatus(RideStatus.COMPLETED);
+        rideGeoIndex.update(ride);
+        assertEquals(0, rideGeoIndex.size());
+    }
+
+    @Test
+    void testUpdateMovesRideWhenRadiusChanges() {
+        Ride ride = createRide("zh-be", ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 5.0);
+        rideGeoIndex.update(ride);
+        assertTrue(rideGeoIndex.findRideIdsNear(WT_LAT, WT_LNG, BE_LAT, BE_LNG, 10).isEmpty());
+
+        ride.setRouteRadiusKm(25.0);
+        rideGeoIndex.update(ride);
+
+        assertEquals(List.of("zh-be"), rideGeoIndex.findRideIdsNear(WT_LAT, WT_LNG, BE_LAT, BE_LNG, 10));
+        assertEquals(1, rideGeoIndex.size());
+    }
+
+    @Test
+    void testRemove() {
+        rideGeoIndex.update(createRide("zh-be", ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 5.0));
+
+        rideGeoIndex.remove("zh-be");
+        rideGeoIndex.remove("unknown");
+
+        assertEquals(0, rideGeoIndex.size());
+        assertTrue(rideGeoIndex.findRideIdsNear(ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 10).isEmpty());
+    }
+
+    @Test
+    void testManyRidesGrowAndReuseSlots() {
+        for (int i = 0; i < 1000; i++) {
+            rideGeoIndex.update(createRide("ride-" + i, ZH_LAT + i * 0.001, ZH_LNG, BE_LAT, BE_LNG, 5.0));
+        }
+        for (int i = 0; i < 1000; i += 2) {
+            rideGeoIndex.remove("ride-" + i);
+        }
+        for (int i = 1000; i < 1200; i++) {
+            rideGeoIndex.update(createRide("ride-" + i, BS_LAT, BS_LNG, BE_LAT, BE_LNG, 5.0));
+        }
+
+        assertEquals(700, rideGeoIndex.size());
+        List<String> result = rideGeoIndex.findRideIdsNear(ZH_LAT, ZH_LNG, BE_LAT, BE_LNG, 1000);
+        assertFalse(result.isEmpty());
+        assertTrue(result.stream().allMatch(id -> Integer.parseInt(id.substring(5)) % 2 == 1));
+        assertEquals("ride-1", result.get(0));
+        assertEquals(200, rideGeoIndex.findRideIdsNear(BS_LAT, BS_LNG, BE_LAT, BE_LNG, 1000).size());
+    }
+}
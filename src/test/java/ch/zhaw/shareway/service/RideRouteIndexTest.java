@@ -0,0 +1,185 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.repository.RideRepository;
+
+@ExtendWith(MockitoExtension.class)
+public class RideRouteIndexTest {
+
+    // Zürich HB -> Baden -> Aarau -> Bern (vereinfachte A1)
+    private static final Point ZH = new Point(8.5403, 47.3779);
+    private static final Point BADEN = new Point(8.3064, 47.4733);
+    private static final Point AARAU = new Point(8.0444, 47.3925);
+    private static final Point BE = new Point(7.4395, 46.9490);
+
+    private static final Point LUZERN = new Point(8.3093, 47.0502);
+
+    // Lenzburg liegt ca. 4.5 km neben der Strecke Baden - Aarau
+    private static final double LENZBURG_LAT = 47.3885, LENZBURG_LNG = 8.1803;
+    // Oensingen liegt ca. 10 km neben der Strecke Aarau - Bern
+    private static final double OENSINGEN_LAT = 47.2866, OENSINGEN_LNG = 7.7153;
+
+    @Mock
+    private RideRepository rideRepository;
+
+    @InjectMocks
+    private RideRouteIndex rideRouteIndex;
+
+    @BeforeEach
+    void setUp() {
+        rideRouteIndex.rebuild(List.of());
+    }
+
+    private Ride createRide(String id, double radiusKm, Point... points) {
+        Ride ride = new Ride();
+        ride.setId(id);
+        ride.setStatus(RideStatus.OPEN);
+        ride.setRouteRadiusKm(radiusKm);
+        ride.setRoute(new GeoJsonLineString(List.of(points)));
+        return ride;
+    }
+
+    @Test
+    void testLoadFromRepository() {
+        when(rideRepository.findByStatus(RideStatus.OPEN)).thenReturn(List.of(
+                createRide("zh-be", 5.0, ZH, BADEN, AARAU, BE),
+                new Ride())); // ohne Route
+
+        rideRouteIndex.load();
+
+        assertTrue(rideRouteIndex.isReady());
+        assertEquals(1, rideRouteIndex.size());
+    }
+
+    @Test
+    void testFindsRideForPickupHalfwayAlongRoute() {
+        rideRouteIndex.rebuild(List.of(createRide("zh-be", 8.0, ZH, BADEN, AARAU, BE)));
+
+        assertEquals(List.of("zh-be"),
+                rideRouteIndex.findRideIdsAlongRoute(LENZBURG_LAT, LENZBURG_LNG, BE.getY(), BE.getX(), 10));
+    }
+
+    @Test
+    void testRejectsWrongDirection() {
+        rideRouteIndex.rebuild(List.of(createRide("zh-be", 8.0, ZH, BADEN, AARAU, BE)));
+
+        assertTrue(rideRouteIndex.findRideIdsAlongRoute(BE.getY(), BE.getX(), LENZBURG_LAT, LENZBURG_LNG, 10)
+                .isEmpty());
+    }
+
+    @Test
+    void testHonorsRideRadius() {
+        rideRouteIndex.rebuild(List.of(
+                createRide("small", 5.0, ZH, BADEN, AARAU, BE),
+                createRide("large", 15.0, ZH, BADEN, AARAU, BE)));
+
+        assertEquals(List.of("large"),
+                rideRouteIndex.findRideIdsAlongRoute(OENSINGEN_LAT, OENSINGEN_LNG, BE.getY(), BE.getX(), 10));
+    }
+
+    @Test
+    void testSortedByDetourAndLimited() {
+        rideRouteIndex.rebuild(List.of(
+                createRide("via-luzern", 30.0, ZH, LUZERN, BE),
+                createRide("direct", 30.0, ZH, BADEN, AARAU, BE)));
+        rideRouteIndex.update(createRide("via-lenzburg", 30.0, ZH, new Point(LENZBURG_LNG, LENZBURG_LAT), BE));
+
+        assertEquals(List.of("via-lenzburg", "direct", "via-luzern"),
+                rideRouteIndex.findRideIdsAlongRoute(LENZBURG_LAT, LENZBURG_LNG, BE.getY(), BE.getX(), 10));
+        assertEquals(List.of("via-lenzburg"),
+                rideRouteIndex.findRideIdsAlongRoute(LENZBURG_LAT, LENZBURG_LNG, BE.getY(), BE.getX(), 1));
+    }
+
+    @Test
+    void testUpdateAndRemoveOnBaseAndDelta() {
+        Ride base = createRide("base", 8.0, ZH, BADEN, AARAU, BE);
+        rideRouteIndex.rebuild(List.of(base));
+        rideRouteIndex.update(createRide("delta", 8.0, ZH, BADEN, AARAU, BE));
+        assertEquals(2, rideRouteIndex.size());
+
+        base.setStatus(RideStatus.FULL);
+        rideRouteIndex.update(base);
+        rideRouteIndex.remove("delta");
+        rideRouteIndex.remove("unknown");
+
+        assertEquals(0, rideRouteIndex.size());
+        assertTrue(rideRouteIndex.findRideIdsAlongRoute(LENZBURG_LAT, LENZBURG_LNG, BE.getY(), BE.getX(), 10)
+                .isEmpty());
+
+        base.setStatus(RideStatus.OPEN);
+        rideRouteIndex.update(base);
+        assertEquals(List.of("base"),
+                rideRouteIndex.findRideIdsAlongRoute(LENZBURG_LAT, LENZBURG_LNG, BE.getY(), BE.getX(), 10));
+    }
+
+    @Test
+    void testUpdateWithoutRouteChangeKeepsIndex() {
+        Ride base = createRide("base", 8.0, ZH, BADEN, AARAU, BE);
+        rideRouteIndex.rebuild(List.of(base));
+        Ride delta = createRide("delta", 8.0, ZH, BADEN, AARAU, BE);
+        rideRouteIndex.update(delta);
+        assertEquals(1, rideRouteIndex.deltaSize());
+
+        // Nur Plätze geändert: weder der Base-Eintrag noch das Delta werden ersetzt
+        base.setSeatsFree(1);
+        delta.setSeatsFree(1);
+        rideRouteIndex.update(base);
+        rideRouteIndex.update(delta);
+        assertEquals(1, rideRouteIndex.deltaSize());
+
+        // Nicht indexierte Ride bleibt draussen
+        Ride full = createRide("full", 8.0, ZH, BE);
+        full.setStatus(RideStatus.FULL);
+        rideRouteIndex.update(full);
+        assertEquals(2, rideRouteIndex.size());
+
+        // Neuer Radius: Base-Eintrag wandert ins Delta
+        base.setRouteRadiusKm(2.0);
+        rideRouteIndex.update(base);
+        assertEquals(2, rideRouteIndex.deltaSize());
+        assertEquals(List.of("delta"),
+                rideRouteIndex.findRideIdsAlongRoute(LENZBURG_LAT, LENZBURG_LNG, BE.getY(), BE.getX(), 10));
+    }
+
+    @Test
+    void testCompactionKeepsAllRides() {
+        List<Ride> rides = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double offset = i * 0.00001;
+            rides.add(createRide("ride-" + i, 10.0, new Point(ZH.getX(), ZH.getY() + offset),
+                    new Point(BADEN.getX(), BADEN.getY() + offset), AARAU, BE));
+        }
+        rideRouteIndex.rebuild(rides);
+        for (int i = 0; i < 2000; i += 2) {
+            rideRouteIndex.remove("ride-" + i);
+        }
+        for (int i = 2000; i < 2600; i++) {
+            rideRouteIndex.update(createRide("ride-" + i, 5.0, AARAU, BE));
+        }
+
+        assertEquals(1600, rideRouteIndex.size());
+        List<String> result = rideRouteIndex.findRideIdsAlongRoute(LENZBURG_LAT, LENZBURG_LNG,
+                BE.getY(), BE.getX(), 5000);
+        assertEquals(1000, result.size());
+        assertTrue(result.stream().allMatch(id -> Integer.parseInt(id.substring(5)) % 2 == 1));
+        assertEquals(1600, rideRouteIndex.findRideIdsAlongRoute(AARAU.getY(), AARAU.getX(),
+                BE.getY(), BE.getX(), 5000).size());
+    }
+}
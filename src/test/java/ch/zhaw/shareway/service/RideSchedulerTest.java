@@ -1,6 +1,8 @@
 package ch.zhaw.shareway.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -9,16 +11,23 @@ import static org.mockito.Mockito.when;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Optional;
+import java.util.function.Supplier;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import ch.zhaw.shareway.model.Ride;
 import ch.zhaw.shareway.model.RideStatus;
 import ch.zhaw.shareway.repository.RideRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @ExtendWith(MockitoExtension.class)
 public class RideSchedulerTest {
@@ -26,9 +35,26 @@ public class RideSchedulerTest {
     @Mock
     private RideRepository rideRepository;
 
+    @Mock
+    private RideGeoIndex rideGeoIndex;
+
+    @Mock
+    private RideRouteIndex rideRouteIndex;
+
+    @Spy
+    private OptimisticRetry optimisticRetry = new OptimisticRetry(new SimpleMeterRegistry());
+
+    @Spy
+    private RideCommandExecutor rideCommands = new RideCommandExecutor(new SimpleMeterRegistry(), 1, false);
+
     @InjectMocks
     private RideScheduler rideScheduler;
 
+    @AfterEach
+    void tearDown() {
+        rideCommands.shutdown();
+    }
+
     @Test
     void testAutoCompleteRidesNoOpenRides() {
         when(rideRepository.findByStatus(RideStatus.OPEN)).thenReturn(Collections.emptyList());
@@ -67,6 +93,9 @@ public class RideSchedulerTest {
         rideScheduler.autoCompleteRides();
 
         verify(rideRepository, times(1)).save(any(Ride.class));
+        verify(rideGeoIndex).update(pastRide);
+        verify(rideRouteIndex).update(pastRide);
+        verify(rideCommands).execute(eq("past-ride"), ArgumentMatchers.<Supplier<Ride>>any());
     }
 
     @Test
@@ -144,4 +173,54 @@ public class RideSchedulerTest {
 
         verify(rideRepository, never()).save(any(Ride.class));
     }
+
+    @Test
+    void testAutoCompleteRidesRetriesOnVersionConflict() {
+        Ride pastRide = new Ride();
+        pastRide.setId("past-ride");
+        pastRide.setDepartureTime(LocalDateTime.now().minusHours(5));
+        pastRide.setDurationMinutes(60);
+        pastRide.setStatus(RideStatus.OPEN);
+
+        Ride reloaded = new Ride();
+        reloaded.setId("past-ride");
+        reloaded.setDepartureTime(pastRide.getDepartureTime());
+        reloaded.setDurationMinutes(60);
+        reloaded.setStatus(RideStatus.OPEN);
+
+        when(rideRepository.findByStatus(RideStatus.OPEN)).thenReturn(Arrays.asList(pastRide));
+        when(rideRepository.findById("past-ride")).thenReturn(Optional.of(reloaded));
+        when(rideRepository.save(any(Ride.class)))
+                .thenThrow(new OptimisticLockingFailureException("conflict"))
+                .thenAnswer(i -> i.getArgument(0));
+
+        rideScheduler.autoCompleteRides();
+
+        verify(rideRepository, times(2)).save(any(Ride.class));
+        assertEquals(RideStatus.COMPLETED, reloaded.getStatus());
+        verify(rideGeoIndex).update(reloaded);
+    }
+
+    @Test
+    void testAutoCompleteRidesSkipsRideChangedConcurrently() {
+        Ride pastRide = new Ride();
+        pastRide.setId("past-ride");
+        pastRide.setDepartureTime(LocalDateTime.now().minusHours(5));
+        pastRide.setDurationMinutes(60);
+        pastRide.setStatus(RideStatus.OPEN);
+
+        // Fahrer hat die Fahrt inzwischen selbst abgeschlossen
+        Ride reloaded = new Ride();
+        reloaded.setId("past-ride");
+        reloaded.setStatus(RideStatus.COMPLETED);
+
+        when(rideRepository.findByStatus(RideStatus.OPEN)).thenReturn(Arrays.asList(pastRide));
+        when(rideRepository.findById("past-ride")).thenReturn(Optional.of(reloaded));
+        when(rideRepository.save(any(Ride.class))).thenThrow(new OptimisticLockingFailureException("conflict"));
+
+        rideScheduler.autoCompleteRides();
+
+        verify(rideRepository, times(1)).save(any(Ride.class));
+        verify(rideGeoIndex, never()).update(any(Ride.class));
+    }
 }
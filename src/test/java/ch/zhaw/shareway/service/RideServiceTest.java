@@ -1,18 +1,45 @@
 package ch.zhaw.shareway.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.bson.Document;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonLineString;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.query.Query;
 
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RidePage;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.RideSummary;
 import ch.zhaw.shareway.model.Vehicle;
+import ch.zhaw.shareway.repository.RideRepository;
 import ch.zhaw.shareway.repository.VehicleRepository;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,6 +48,21 @@ public class RideServiceTest {
     @Mock
     private VehicleRepository vehicleRepository;
 
+    @Mock
+    private RideRepository rideRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private RideGeoIndex rideGeoIndex;
+
+    @Mock
+    private RideRouteIndex rideRouteIndex;
+
+    @Mock
+    private GeocodingService geocodingService;
+
     @InjectMocks
     private RideService rideService;
 
@@ -56,4 +98,265 @@ public class RideServiceTest {
 
         assertFalse(result);
     }
+
+    // ==================== searchRides Tests ====================
+
+    private RideSummary createSummary(String id, LocalDateTime departureTime) {
+        RideSummary summary = new RideSummary();
+        summary.setId(id);
+        summary.setDepartureTime(departureTime);
+        return summary;
+    }
+
+    @Test
+    void testSearchRidesWithAllFilters() {
+        when(mongoTemplate.find(any(Query.class), eq(RideSummary.class), eq("rides"))).thenReturn(List.of(new RideSummary()));
+        when(mongoTemplate.count(any(Query.class), eq(Ride.class))).thenReturn(1L);
+
+        RidePage result = rideService.searchRides(" Zürich ", "Bern", LocalDate.of(2025, 12, 15),
+                null, null, RideStatus.OPEN, 30.0, null, 10, true);
+
+        assertEquals(1, result.getContent().size());
+        assertEquals(1L, result.getTotalElements());
+        assertNull(result.getNextCursor());
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(RideSummary.class), eq("rides"));
+        Document filter = captor.getValue().getQueryObject();
+        assertEquals(new Document("$in", List.of(RideStatus.OPEN)), filter.get("status"));
+        assertEquals("^zürich", filter.get("startLocationKey").toString());
+        assertEquals("^bern", filter.get("endLocationKey").toString());
+        assertEquals(new Document("$gte", LocalDateTime.of(2025, 12, 15, 0, 0))
+                .append("$lt", LocalDateTime.of(2025, 12, 16, 0, 0)), filter.get("departureTime"));
+        assertEquals(new Document("$lte", 30.0), filter.get("pricePerSeat"));
+        assertEquals(new Document("departureTime", 1).append("id", 1), captor.getValue().getSortObject());
+        assertEquals(11, captor.getValue().getLimit());
+        // Nur die Felder der Listenansicht, keine Beschreibung oder Geodaten
+        Document fields = captor.getValue().getFieldsObject();
+        assertEquals(RideSummary.FIELDS.length, fields.size());
+        assertFalse(fields.containsKey("description"));
+        assertFalse(fields.containsKey("startPoint"));
+    }
+
+    @Test
+    void testSearchRidesWithoutFilters() {
+        when(mongoTemplate.find(any(Query.class), eq(RideSummary.class), eq("rides"))).thenReturn(List.of());
+
+        rideService.searchRides(null, "", null, null, null, null, null, null, 5, false);
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(RideSummary.class), eq("rides"));
+        Document filter = captor.getValue().getQueryObject();
+        assertEquals(new Document("$in", Arrays.asList(RideStatus.values())), filter.get("status"));
+        assertEquals("^", filter.get("startLocationKey").toString());
+        assertEquals(new Document("$gte", RideService.MIN_DEPARTURE).append("$lt", RideService.MAX_DEPARTURE),
+                filter.get("departureTime"));
+        assertEquals(new Document("$lte", Double.MAX_VALUE), filter.get("pricePerSeat"));
+    }
+
+    @Test
+    void testSearchRidesWithDepartureWindow() {
+        LocalDateTime from = LocalDateTime.of(2025, 12, 15, 8, 0);
+        LocalDateTime to = LocalDateTime.of(2025, 12, 15, 12, 0);
+        when(mongoTemplate.find(any(Query.class), eq(RideSummary.class), eq("rides"))).thenReturn(List.of());
+
+        rideService.searchRides(null, null, null, from, to, RideStatus.OPEN, null, null, 5, false);
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(RideSummary.class), eq("rides"));
+        assertEquals(new Document("$gte", from).append("$lt", to),
+                captor.getValue().getQueryObject().get("departureTime"));
+    }
+
+    @Test
+    void testListRidesReturnsCursorWhenMoreRidesExist() {
+        LocalDateTime departure = LocalDateTime.of(2025, 12, 15, 8, 0);
+        when(mongoTemplate.find(any(Query.class), eq(RideSummary.class), eq("rides"))).thenReturn(List.of(
+                createSummary("r1", departure), createSummary("r2", departure), createSummary("r3", departure)));
+
+        RidePage result = rideService.listRides(RideStatus.OPEN, null, null, 2, false);
+
+        assertEquals(List.of("r1", "r2"), result.getContent().stream().map(RideSummary::getId).toList());
+        assertEquals(RideService.encodeCursor(departure, "r2"), result.getNextCursor());
+        assertNull(result.getTotalElements());
+        verify(mongoTemplate, never()).count(any(Query.class), eq(Ride.class));
+    }
+
+    @Test
+    void testListRidesContinuesAfterCursor() {
+        LocalDateTime departure = LocalDateTime.of(2025, 12, 15, 8, 0);
+        String cursor = RideService.encodeCursor(departure, "r2");
+        when(mongoTemplate.find(any(Query.class), eq(RideSummary.class), eq("rides"))).thenReturn(List.of());
+        when(mongoTemplate.count(any(Query.class), eq(Ride.class))).thenReturn(2L);
+
+        RidePage result = rideService.listRides(RideStatus.OPEN, null, cursor, 2, true);
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(RideSummary.class), eq("rides"));
+        Document expected = new Document("$and", List.of(
+                new Document("status", RideStatus.OPEN),
+                new Document("$or", List.of(
+                        new Document("departureTime", new Document("$gt", departure)),
+                        new Document("departureTime", departure).append("id", new Document("$gt", "r2"))))));
+        assertEquals(expected, captor.getValue().getQueryObject());
+        assertEquals(2L, result.getTotalElements());
+
+        // Total zählt ohne Keyset-Bedingung
+        verify(mongoTemplate).count(captor.capture(), eq(Ride.class));
+        assertEquals(new Document("status", RideStatus.OPEN), captor.getValue().getQueryObject());
+    }
+
+    @Test
+    void testListRidesClampsPageSize() {
+        when(mongoTemplate.find(any(Query.class), eq(RideSummary.class), eq("rides"))).thenReturn(List.of());
+
+        RidePage result = rideService.listRides(null, null, null, 1000, false);
+
+        assertEquals(RideService.MAX_PAGE_SIZE, result.getSize());
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(captor.capture(), eq(RideSummary.class), eq("rides"));
+        assertEquals(RideService.MAX_PAGE_SIZE + 1, captor.getValue().getLimit());
+        assertTrue(captor.getValue().getQueryObject().isEmpty());
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> RideService.keysetAfter("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> RideService.keysetAfter(
+                Base64.getUrlEncoder().encodeToString("yesterday|r1".getBytes())));
+        assertThrows(IllegalArgumentException.class, () -> RideService.keysetAfter(
+                Base64.getUrlEncoder().encodeToString("2025-12-15T08:00|".getBytes())));
+    }
+
+    @Test
+    void testToPrefixRegexEscapesSpecialCharacters() {
+        assertEquals("^st\\. gallen \\(sg\\)", RideService.toPrefixRegex("St. Gallen (SG)"));
+    }
+
+    // ==================== findRidesNear Tests ====================
+
+    @Test
+    void testDistanceKmZurichBern() {
+        // Zürich HB -> Bern Bahnhof, Luftlinie ca. 95 km
+        double distance = RideService.distanceKm(47.3779, 8.5403, 46.9490, 7.4395);
+        assertTrue(distance > 94 && distance < 97);
+    }
+
+    @Test
+    void testBuildNearbyAggregationUsesGeoNearWithRideRadius() {
+        Aggregation aggregation = rideService.buildNearbyAggregation(47.3779, 8.5403, 46.9490, 7.4395);
+        List<Document> pipeline = aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+        Document geoNear = (Document) pipeline.get(0).get("$geoNear");
+        assertEquals("startDistanceKm", geoNear.get("distanceField"));
+        assertEquals(true, geoNear.get("spherical"));
+        assertEquals(RideService.MAX_ROUTE_RADIUS_KM * 1000, geoNear.get("maxDistance"));
+        assertEquals(0.001, geoNear.get("distanceMultiplier"));
+        assertTrue(pipeline.get(1).toJson().contains("$routeRadiusKm"));
+    }
+
+    @Test
+    void testFindRidesNearFiltersByEndRadius() {
+        Ride nearEnd = new Ride();
+        nearEnd.setId("near");
+        nearEnd.setEndPoint(new GeoJsonPoint(7.4395, 46.9490)); // Bern
+        Ride farEnd = new Ride();
+        farEnd.setId("far");
+        farEnd.setEndPoint(new GeoJsonPoint(7.5886, 47.5596)); // Basel
+        Ride wideRadius = new Ride();
+        wideRadius.setId("wide");
+        wideRadius.setRouteRadiusKm(30.0);
+        wideRadius.setEndPoint(new GeoJsonPoint(7.6280, 46.7580)); // Thun, ca. 25 km
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Ride.class), eq(Ride.class)))
+                .thenReturn(new AggregationResults<>(List.of(nearEnd, farEnd, wideRadius), new Document()));
+
+        List<Ride> result = rideService.findRidesNear(47.3779, 8.5403, 46.9490, 7.4395, 10);
+
+        assertEquals(List.of("near", "wide"), result.stream().map(Ride::getId).toList());
+    }
+
+    @Test
+    void testFindRidesNearUsesGeoIndexWhenReady() {
+        Ride first = new Ride();
+        first.setId("first");
+        first.setStatus(RideStatus.OPEN);
+        Ride second = new Ride();
+        second.setId("second");
+        second.setStatus(RideStatus.OPEN);
+        when(rideGeoIndex.isReady()).thenReturn(true);
+        when(rideGeoIndex.findRideIdsNear(47.3779, 8.5403, 46.9490, 7.4395, 10))
+                .thenReturn(List.of("first", "second"));
+        when(rideRepository.findAllById(List.of("first", "second"))).thenReturn(List.of(second, first));
+
+        List<Ride> result = rideService.findRidesNear(47.3779, 8.5403, 46.9490, 7.4395, 10);
+
+        assertEquals(List.of("first", "second"), result.stream().map(Ride::getId).toList());
+        verify(mongoTemplate, never()).aggregate(any(Aggregation.class), eq(Ride.class), eq(Ride.class));
+    }
+
+    @Test
+    void testSimplifyRouteDropsCollinearPoints() {
+        // Punkte auf einer Geraden (Meridian) und ein Umweg von ca. 1 km
+        List<List<Double>> coordinates = List.of(
+                List.of(8.5, 47.0),
+                List.of(8.5, 47.1),
+                List.of(8.5, 47.1),
+                List.of(8.5, 47.2),
+                List.of(8.513, 47.3),
+                List.of(8.5, 47.4));
+
+        GeoJsonLineString route = rideService.simplifyRoute(coordinates);
+
+        // 47.1 und das Duplikat fallen weg, 47.2 liegt zu weit neben der Linie zum Umweg
+        assertEquals(List.of(new Point(8.5, 47.0), new Point(8.5, 47.2), new Point(8.513, 47.3), new Point(8.5, 47.4)),
+                route.getCoordinates());
+    }
+
+    @Test
+    void testSimplifyRouteRejectsTooFewPoints() {
+        assertNull(rideService.simplifyRoute(null));
+        assertNull(rideService.simplifyRoute(List.of(List.of(8.5, 47.0), List.of(8.5, 47.0))));
+        assertNull(rideService.simplifyRoute(List.of(List.of(8.5, 47.0), List.of(200.0, 47.0))));
+    }
+
+    @Test
+    void testFindRidesAlongRouteKeepsIndexOrder() {
+        Ride first = new Ride();
+        first.setId("first");
+        first.setStatus(RideStatus.OPEN);
+        Ride full = new Ride();
+        full.setId("full");
+        full.setStatus(RideStatus.FULL);
+        when(rideRouteIndex.findRideIdsAlongRoute(47.5, 8.7, 46.9, 7.4, 10))
+                .thenReturn(List.of("full", "first"));
+        when(rideRepository.findAllById(List.of("full", "first"))).thenReturn(List.of(first, full));
+
+        List<Ride> result = rideService.findRidesAlongRoute(47.5, 8.7, 46.9, 7.4, 10);
+
+        assertEquals(List.of("first"), result.stream().map(Ride::getId).toList());
+    }
+
+    @Test
+    void testBackfillPointsFromGazetteer() {
+        Ride known = new Ride();
+        known.setId("known");
+        known.setStartLocation("Zürich");
+        known.setEndLocation("Bern");
+        Ride unknown = new Ride();
+        unknown.setId("unknown");
+        unknown.setStartLocation("Nowhere");
+        unknown.setEndLocation("Somewhere");
+        GeoJsonPoint zurich = new GeoJsonPoint(8.5417, 47.3769);
+        GeoJsonPoint bern = new GeoJsonPoint(7.4474, 46.9480);
+        when(rideRepository.findByStartPointIsNullOrEndPointIsNull()).thenReturn(List.of(known, unknown));
+        when(geocodingService.toPoint("Zürich")).thenReturn(zurich);
+        when(geocodingService.toPoint("Bern")).thenReturn(bern);
+        when(rideRepository.saveAll(List.of(known))).thenReturn(List.of(known));
+
+        rideService.backfillPoints();
+
+        assertEquals(zurich, known.getStartPoint());
+        assertEquals(bern, known.getEndPoint());
+        verify(rideGeoIndex).update(known);
+    }
 }
@@ -0,0 +1,354 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import ch.zhaw.shareway.model.Booking;
+import ch.zhaw.shareway.model.Ride;
+import ch.zhaw.shareway.model.RideStatus;
+import ch.zhaw.shareway.model.SeatHold;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class SeatHoldServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BookingService bookingService;
+
+    @Mock
+    private RideGeoIndex rideGeoIndex;
+
+    @Mock
+    private RideRouteIndex rideRouteIndex;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private OptimisticRetry optimisticRetry = new OptimisticRetry(new SimpleMeterRegistry());
+
+    @Spy
+    private RideCommandExecutor rideCommands = new RideCommandExecutor(new SimpleMeterRegistry(), 1, false);
+
+    @InjectMocks
+    private SeatHoldService seatHoldService;
+
+    private Ride testRide;
+    private SeatHold testHold;
+
+    @BeforeEach
+    void setUp() {
+        testRide = new Ride();
+        testRide.setId("ride-123");
+        testRide.setDriverId("driver@test.com");
+        testRide.setSeatsTotal(4);
+        testRide.setSeatsFree(2);
+        testRide.setStatus(RideStatus.OPEN);
+
+        testHold = new SeatHold("ride-123", "rider@test.com", 2, LocalDateTime.now().plusMinutes(5));
+        testHold.setId("hold-123");
+    }
+
+    @AfterEach
+    void tearDown() {
+        rideCommands.shutdown();
+    }
+
+    // Release und Confirm suchen zuerst die Ride des Holds für deren Lane
+    private void mockHoldLookup(SeatHold hold) {
+        when(mongoTemplate.findOne(any(Query.class), eq(SeatHold.class))).thenReturn(hold);
+    }
+
+    private void mockTransaction() {
+        when(transactionTemplate.execute(any())).thenAnswer(
+                i -> i.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    private void mockRideUpdate(Ride result) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class))).thenReturn(result);
+    }
+
+    private Document rideUpdateSet() {
+        ArgumentCaptor<UpdateDefinition> captor = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), captor.capture(),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        return setStage(captor.getValue());
+    }
+
+    private Document setStage(UpdateDefinition update) {
+        List<Document> pipeline = ((AggregationUpdate) update).toPipeline(Aggregation.DEFAULT_CONTEXT);
+        assertEquals(1, pipeline.size());
+        return pipeline.get(0).get("$set", Document.class);
+    }
+
+    // ==================== createHold Tests ====================
+
+    @Test
+    void testCreateHoldTakesSeats() {
+        mockRideUpdate(testRide);
+        when(mongoTemplate.insert(any(SeatHold.class))).thenAnswer(i -> i.getArgument(0));
+
+        Optional<SeatHold> result = seatHoldService.createHold("ride-123", "rider@test.com", 2);
+
+        assertTrue(result.isPresent());
+        assertEquals(2, result.get().getSeats());
+        assertTrue(result.get().getExpiresAt().isAfter(LocalDateTime.now()));
+        verify(rideGeoIndex).update(testRide);
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndModify(captor.capture(), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+        Document query = captor.getValue().getQueryObject();
+        assertEquals(RideStatus.OPEN, query.get("status"));
+        assertEquals(new Document("$ne", "rider@test.com"), query.get("driverId"));
+        assertEquals(new Document("$gte", 2), query.get("seatsFree"));
+    }
+
+    @Test
+    void testCreateHoldNotEnoughSeats() {
+        mockRideUpdate(null);
+
+        Optional<SeatHold> result = seatHoldService.createHold("ride-123", "rider@test.com", 3);
+
+        assertFalse(result.isPresent());
+        verify(mongoTemplate, never()).insert(any(SeatHold.class));
+    }
+
+    @Test
+    void testCreateHoldInvalidSeats() {
+        Optional<SeatHold> result = seatHoldService.createHold("ride-123", "rider@test.com", 0);
+
+        assertFalse(result.isPresent());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+    }
+
+    @Test
+    void testHoldSeatsPipeline() {
+        Document set = setStage(SeatHoldService.holdSeats(2));
+
+        assertEquals(new Document("$subtract", List.of("$seatsFree", 2)), set.get("seatsFree"));
+        assertEquals(new Document("$add", List.of(new Document("$ifNull", List.of("$seatsHeld", 0)), 2)),
+                set.get("seatsHeld"));
+        Document cond = set.get("status", Document.class).get("$cond", Document.class);
+        assertEquals(new Document("$eq", List.of("$seatsFree", 2)), cond.get("if"));
+        assertEquals("FULL", cond.get("then"));
+    }
+
+    // ==================== releaseHold / confirmHold Tests ====================
+
+    @Test
+    void testReleaseHoldGivesSeatsBack() {
+        mockHoldLookup(testHold);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SeatHold.class))).thenReturn(testHold);
+        mockRideUpdate(testRide);
+
+        Optional<SeatHold> result = seatHoldService.releaseHold("hold-123", "rider@test.com");
+
+        assertTrue(result.isPresent());
+        Document set = rideUpdateSet();
+        assertEquals(new Document("$add", List.of("$seatsFree", 2)), set.get("seatsFree"));
+        assertEquals(new Document("$subtract", List.of(new Document("$ifNull", List.of("$seatsHeld", 0)), 2)),
+                set.get("seatsHeld"));
+    }
+
+    @Test
+    void testReleaseUnknownHold() {
+        mockHoldLookup(null);
+
+        Optional<SeatHold> result = seatHoldService.releaseHold("hold-123", "rider@test.com");
+
+        assertFalse(result.isPresent());
+        verify(mongoTemplate, never()).findAndRemove(any(Query.class), eq(SeatHold.class));
+    }
+
+    @Test
+    void testReleaseHoldAlreadySwept() {
+        mockHoldLookup(testHold);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SeatHold.class))).thenReturn(null);
+
+        Optional<SeatHold> result = seatHoldService.releaseHold("hold-123", "rider@test.com");
+
+        assertFalse(result.isPresent());
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Ride.class));
+    }
+
+    @Test
+    void testConfirmHoldMovesSeatsToBooking() {
+        mockHoldLookup(testHold);
+        Booking booking = new Booking("ride-123", "rider@test.com", 2);
+        booking.setSeatsReserved(true);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SeatHold.class))).thenReturn(testHold);
+        when(bookingService.createBookingFromHold(testHold, "Pickup", null, null)).thenReturn(Optional.of(booking));
+        mockRideUpdate(testRide);
+
+        Optional<Booking> result = seatHoldService.confirmHold("hold-123", "rider@test.com", "Pickup", null, null);
+
+        assertTrue(result.isPresent());
+        Document set = rideUpdateSet();
+        // Plätze bleiben belegt, nur der Hold-Zähler sinkt
+        assertFalse(set.containsKey("seatsFree"));
+        assertTrue(set.containsKey("seatsHeld"));
+
+        ArgumentCaptor<Query> captor = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).findAndRemove(captor.capture(), eq(SeatHold.class));
+        assertTrue(captor.getValue().getQueryObject().containsKey("expiresAt"));
+    }
+
+    @Test
+    void testConfirmHoldBookingFailsGivesSeatsBack() {
+        mockHoldLookup(testHold);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SeatHold.class))).thenReturn(testHold);
+        when(bookingService.createBookingFromHold(testHold, null, null, null)).thenReturn(Optional.empty());
+        mockRideUpdate(testRide);
+
+        Optional<Booking> result = seatHoldService.confirmHold("hold-123", "rider@test.com", null, null, null);
+
+        assertFalse(result.isPresent());
+        assertEquals(new Document("$add", List.of("$seatsFree", 2)), rideUpdateSet().get("seatsFree"));
+    }
+
+    @Test
+    void testConfirmHoldBookingThrowsGivesSeatsBack() {
+        mockHoldLookup(testHold);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SeatHold.class))).thenReturn(testHold);
+        when(bookingService.createBookingFromHold(testHold, null, null, null))
+                .thenThrow(new IllegalStateException("write failed"));
+        mockRideUpdate(testRide);
+
+        assertThrows(IllegalStateException.class,
+                () -> seatHoldService.confirmHold("hold-123", "rider@test.com", null, null, null));
+
+        assertEquals(new Document("$add", List.of("$seatsFree", 2)), rideUpdateSet().get("seatsFree"));
+    }
+
+    @Test
+    void testConfirmExpiredHold() {
+        mockHoldLookup(testHold);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(SeatHold.class))).thenReturn(null);
+
+        Optional<Booking> result = seatHoldService.confirmHold("hold-123", "rider@test.com", null, null, null);
+
+        assertFalse(result.isPresent());
+        verify(bookingService, never()).createBookingFromHold(any(), any(), any(), any());
+    }
+
+    // ==================== sweep Tests ====================
+
+    @Test
+    void testSweepReleasesSeatsPerRideInOneBulkWrite() {
+        SeatHold id1 = new SeatHold();
+        id1.setId("hold-1");
+        SeatHold id2 = new SeatHold();
+        id2.setId("hold-2");
+        SeatHold id3 = new SeatHold();
+        id3.setId("hold-3");
+        SeatHold hold1 = new SeatHold("ride-1", "a@test.com", 1, LocalDateTime.now().minusMinutes(1));
+        SeatHold hold2 = new SeatHold("ride-1", "b@test.com", 2, LocalDateTime.now().minusMinutes(1));
+        SeatHold hold3 = new SeatHold("ride-2", "c@test.com", 1, LocalDateTime.now().minusMinutes(1));
+
+        // 1. Batch: IDs, in der Transaktion entfernte Holds; 2. Batch: leer
+        when(mongoTemplate.find(any(Query.class), eq(SeatHold.class)))
+                .thenReturn(List.of(id1, id2, id3))
+                .thenReturn(List.of());
+        when(mongoTemplate.findAllAndRemove(any(Query.class), eq(SeatHold.class)))
+                .thenReturn(List.of(hold1, hold2, hold3));
+        mockTransaction();
+        when(mongoTemplate.findById(anyString(), eq(Ride.class))).thenReturn(testRide);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Ride.class)).thenReturn(bulkOperations);
+
+        int released = seatHoldService.sweepExpiredHolds();
+
+        assertEquals(3, released);
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> updates = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(bulkOperations, times(2)).updateOne(queries.capture(), updates.capture());
+        verify(bulkOperations).execute();
+        assertEquals("ride-1", queries.getAllValues().get(0).getQueryObject().get("id"));
+        Document set = setStage(updates.getAllValues().get(0));
+        assertEquals(new Document("$add", List.of("$seatsFree", 3)), set.get("seatsFree"));
+        assertTrue(set.containsKey("version"));
+        verify(mongoTemplate).updateMulti(any(Query.class), any(Update.class), eq(SeatHold.class));
+        verify(transactionTemplate).execute(any());
+        verify(mongoTemplate).findById("ride-1", Ride.class);
+        verify(mongoTemplate).findById("ride-2", Ride.class);
+        verify(rideGeoIndex, times(2)).update(testRide);
+    }
+
+    @Test
+    void testSweepReclaimsStaleClaims() {
+        SeatHold id1 = new SeatHold();
+        id1.setId("hold-1");
+        when(mongoTemplate.find(any(Query.class), eq(SeatHold.class))).thenReturn(List.of(id1));
+        mockTransaction();
+        // Ein anderer Sweep war schneller: nichts mehr zurückzugeben
+        when(mongoTemplate.findAllAndRemove(any(Query.class), eq(SeatHold.class))).thenReturn(List.of());
+
+        assertEquals(0, seatHoldService.sweepBatch());
+
+        ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(claim.capture(), update.capture(), eq(SeatHold.class));
+        // Frei oder von einem hängengebliebenen Sweep übernommen
+        Document claimable = claim.getValue().getQueryObject().getList("$and", Document.class).get(0);
+        List<Document> or = claimable.getList("$or", Document.class);
+        assertEquals(new Document("$exists", false), or.get(0).get("sweepId"));
+        assertTrue(or.get(1).get("sweptAt", Document.class).containsKey("$lt"));
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertTrue(set.containsKey("sweepId"));
+        assertTrue(set.containsKey("sweptAt"));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Ride.class));
+    }
+
+    @Test
+    void testSweepNothingExpired() {
+        when(mongoTemplate.find(any(Query.class), eq(SeatHold.class))).thenReturn(List.of());
+
+        int released = seatHoldService.sweepExpiredHolds();
+
+        assertEquals(0, released);
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Ride.class));
+    }
+}
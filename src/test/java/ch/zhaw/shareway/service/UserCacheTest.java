@@ -0,0 +1,106 @@
+package ch.zhaw.shareway.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.model.UserRole;
+import ch.zhaw.shareway.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@ExtendWith(MockitoExtension.class)
+public class UserCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserCache userCache;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userCache = new UserCache(userRepository, meterRegistry, 100, 60);
+        user = new User("auth0|1", "user@test.com", "Test User", UserRole.USER);
+    }
+
+    @Test
+    void testSecondLookupIsCached() {
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(user));
+
+        assertEquals(user, userCache.findByEmail("user@test.com").orElseThrow());
+        assertEquals(user, userCache.findByEmail("user@test.com").orElseThrow());
+
+        verify(userRepository, times(1)).findByEmail("user@test.com");
+    }
+
+    @Test
+    void testUnknownUserIsNotCached() {
+        when(userRepository.findByEmail("new@test.com")).thenReturn(Optional.empty());
+
+        assertTrue(userCache.findByEmail("new@test.com").isEmpty());
+        assertTrue(userCache.findByEmail("new@test.com").isEmpty());
+
+        // Ein neu angelegter User muss sofort gefunden werden
+        verify(userRepository, times(2)).findByEmail("new@test.com");
+    }
+
+    @Test
+    void testNullEmail() {
+        assertTrue(userCache.findByEmail(null).isEmpty());
+        verify(userRepository, never()).findByEmail(any());
+    }
+
+    @Test
+    void testInvalidateReloads() {
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(user));
+        userCache.findByEmail("user@test.com");
+
+        userCache.invalidate(user);
+        userCache.findByEmail("user@test.com");
+
+        verify(userRepository, times(2)).findByEmail("user@test.com");
+    }
+
+    @Test
+    void testExpiredEntryIsReloaded() {
+        userCache = new UserCache(userRepository, new SimpleMeterRegistry(), 100, 0);
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(user));
+
+        userCache.findByEmail("user@test.com");
+        userCache.findByEmail("user@test.com");
+
+        verify(userRepository, times(2)).findByEmail("user@test.com");
+    }
+
+    @Test
+    void testHitRatioAndLoadTimeMetrics() {
+        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(user));
+
+        userCache.findByEmail("user@test.com");
+        userCache.findByEmail("user@test.com");
+
+        assertEquals(0.5, meterRegistry.get("shareway.user-cache.hit-ratio").tag("cache", "users.email")
+                .gauge().value());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "users.email").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.load").tag("cache", "users.email").tag("result", "success")
+                .functionCounter().count());
+        assertTrue(meterRegistry.get("cache.load.duration").tag("cache", "users.email").timeGauge()
+                .value() > 0);
+    }
+}
@@ -3,221 +3,113 @@ package ch.zhaw.shareway.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
-import java.time.Instant;
-import java.util.HashMap;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
-import org.junit.jupiter.api.AfterEach;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
 
 import ch.zhaw.shareway.model.User;
+import ch.zhaw.shareway.model.UserProfile;
 import ch.zhaw.shareway.model.UserRole;
 import ch.zhaw.shareway.model.VerificationStatus;
-import ch.zhaw.shareway.repository.UserRepository;
+import ch.zhaw.shareway.security.AuthenticatedUser;
 
 @ExtendWith(MockitoExtension.class)
 public class UserServiceTest {
 
     @Mock
-    private UserRepository userRepository;
+    private UserCache userCache;
 
     @Mock
-    private SecurityContext securityContext;
-
-    @Mock
-    private Authentication authentication;
+    private MongoTemplate mongoTemplate;
 
     @InjectMocks
     private UserService userService;
 
-    private Jwt createJwt(String email, String subject, String name, List<String> roles) {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("email", email);
-        claims.put("sub", subject);
-        claims.put("name", name);
-        claims.put("user_roles", roles);
-
-        return new Jwt(
-            "token",
-            Instant.now(),
-            Instant.now().plusSeconds(3600),
-            Map.of("alg", "none"),
-            claims
-        );
-    }
-
-    @BeforeEach
-    void setUp() {
-        SecurityContextHolder.setContext(securityContext);
-        when(securityContext.getAuthentication()).thenReturn(authentication);
-    }
-
-    @AfterEach
-    void tearDown() {
-        SecurityContextHolder.clearContext();
-    }
-
-    // ==================== userHasRole Tests ====================
-
-    @Test
-    void testUserHasRoleTrue() {
-        Jwt jwt = createJwt("user@test.com", "sub123", "Test User", List.of("admin", "user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        assertTrue(userService.userHasRole("admin"));
+    private AuthenticatedUser user(String email, UserRole... roles) {
+        return new AuthenticatedUser(email, "auth0|" + email, email, EnumSet.copyOf(List.of(roles)));
     }
 
-    @Test
-    void testUserHasRoleFalse() {
-        Jwt jwt = createJwt("user@test.com", "sub123", "Test User", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        assertFalse(userService.userHasRole("admin"));
+    private void givenUser(String email, VerificationStatus status) {
+        User user = new User("auth0", email, "User", UserRole.USER);
+        user.setVerificationStatus(status);
+        when(userCache.findByEmail(email)).thenReturn(Optional.of(user));
     }
 
-    @Test
-    void testUserHasRoleNullRoles() {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("email", "user@test.com");
-        claims.put("sub", "sub123");
-        // user_roles is not set (null)
-
-        Jwt jwt = new Jwt("token", Instant.now(), Instant.now().plusSeconds(3600),
-                Map.of("alg", "none"), claims);
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        assertFalse(userService.userHasRole("admin"));
-    }
-
-    // ==================== getEmail Tests ====================
-
-    @Test
-    void testGetEmail() {
-        Jwt jwt = createJwt("test@example.com", "sub123", "Test", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        assertEquals("test@example.com", userService.getEmail());
-    }
-
-    // ==================== getAuth0Id Tests ====================
-
-    @Test
-    void testGetAuth0Id() {
-        Jwt jwt = createJwt("test@example.com", "auth0|12345", "Test", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        assertEquals("auth0|12345", userService.getAuth0Id());
-    }
-
-    // ==================== getName Tests ====================
+    // ==================== canCreateRides Tests ====================
 
     @Test
-    void testGetNameWithName() {
-        Jwt jwt = createJwt("test@example.com", "sub123", "John Doe", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        assertEquals("John Doe", userService.getName());
+    void testCanCreateRidesAsAdmin() {
+        assertTrue(userService.canCreateRides(user("admin@test.com", UserRole.ADMIN)));
+        verifyNoInteractions(userCache);
     }
 
     @Test
-    void testGetNameWithNullName() {
-        Map<String, Object> claims = new HashMap<>();
-        claims.put("email", "test@example.com");
-        claims.put("sub", "sub123");
-        // name is not set (null)
-
-        Jwt jwt = new Jwt("token", Instant.now(), Instant.now().plusSeconds(3600),
-                Map.of("alg", "none"), claims);
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        // Should return email when name is null
-        assertEquals("test@example.com", userService.getName());
-    }
-
-    // ==================== isAdmin Tests ====================
-
-    @Test
-    void testIsAdminTrue() {
-        Jwt jwt = createJwt("admin@test.com", "sub123", "Admin", List.of("admin"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
+    void testCanCreateRidesVerifiedUser() {
+        givenUser("user@test.com", VerificationStatus.VERIFIED);
 
-        assertTrue(userService.isAdmin());
+        assertTrue(userService.canCreateRides(user("user@test.com", UserRole.USER)));
     }
 
     @Test
-    void testIsAdminFalse() {
-        Jwt jwt = createJwt("user@test.com", "sub123", "User", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
+    void testCanCreateRidesUnverifiedUser() {
+        givenUser("user@test.com", VerificationStatus.UNVERIFIED);
 
-        assertFalse(userService.isAdmin());
+        assertFalse(userService.canCreateRides(user("user@test.com", UserRole.USER)));
     }
 
-    // ==================== canCreateRides Tests ====================
-
     @Test
-    void testCanCreateRidesAsAdmin() {
-        Jwt jwt = createJwt("admin@test.com", "sub123", "Admin", List.of("admin"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
+    void testCanCreateRidesUserNotFound() {
+        when(userCache.findByEmail("user@test.com")).thenReturn(Optional.empty());
 
-        assertTrue(userService.canCreateRides());
+        assertFalse(userService.canCreateRides(user("user@test.com", UserRole.USER)));
     }
 
     @Test
-    void testCanCreateRidesVerifiedUser() {
-        Jwt jwt = createJwt("user@test.com", "sub123", "User", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        User verifiedUser = new User("auth0", "user@test.com", "User", UserRole.USER);
-        verifiedUser.setVerificationStatus(VerificationStatus.VERIFIED);
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(verifiedUser));
+    void testCanCreateRidesPendingUser() {
+        givenUser("user@test.com", VerificationStatus.PENDING);
 
-        assertTrue(userService.canCreateRides());
+        assertFalse(userService.canCreateRides(user("user@test.com", UserRole.USER)));
     }
 
-    @Test
-    void testCanCreateRidesUnverifiedUser() {
-        Jwt jwt = createJwt("user@test.com", "sub123", "User", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        User unverifiedUser = new User("auth0", "user@test.com", "User", UserRole.USER);
-        unverifiedUser.setVerificationStatus(VerificationStatus.UNVERIFIED);
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(unverifiedUser));
-
-        assertFalse(userService.canCreateRides());
-    }
+    // ==================== findProfiles Tests ====================
 
     @Test
-    void testCanCreateRidesUserNotFound() {
-        Jwt jwt = createJwt("user@test.com", "sub123", "User", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
+    void testFindProfilesSingleQuery() {
+        UserProfile profile = new UserProfile();
+        profile.setEmail("driver@test.com");
+        when(mongoTemplate.find(any(Query.class), eq(UserProfile.class), eq("users"))).thenReturn(List.of(profile));
 
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.empty());
+        List<UserProfile> profiles = userService.findProfiles(Set.of("id1"), Set.of("driver@test.com"));
 
-        assertFalse(userService.canCreateRides());
+        assertEquals(List.of(profile), profiles);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).find(query.capture(), eq(UserProfile.class), eq("users"));
+        // Nur Profilfelder, keine Ausweisbilder
+        assertTrue(query.getValue().getFieldsObject().containsKey("rating"));
+        assertFalse(query.getValue().getFieldsObject().containsKey("licenseImageFrontId"));
+        assertTrue(query.getValue().getQueryObject().containsKey("$or"));
     }
 
     @Test
-    void testCanCreateRidesPendingUser() {
-        Jwt jwt = createJwt("user@test.com", "sub123", "User", List.of("user"));
-        when(authentication.getPrincipal()).thenReturn(jwt);
-
-        User pendingUser = new User("auth0", "user@test.com", "User", UserRole.USER);
-        pendingUser.setVerificationStatus(VerificationStatus.PENDING);
-        when(userRepository.findByEmail("user@test.com")).thenReturn(Optional.of(pendingUser));
-
-        assertFalse(userService.canCreateRides());
+    void testFindProfilesWithoutInput() {
+        assertTrue(userService.findProfiles(Set.of(), Set.of()).isEmpty());
+        verifyNoInteractions(mongoTemplate);
     }
 }